@@ -7,6 +7,7 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.http.HttpStatus;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import org.springframework.http.ResponseEntity;
 import lombok.NonNull;
 import org.springframework.web.bind.annotation.*;
@@ -40,6 +41,9 @@ public class PodcastController {
     @NonNull
     private final VideoService videoService;
 
+    @NonNull
+    private final VideoToSpeechService videoToSpeechService;
+
     private final Map<String, PodcastService.PodcastResult> podcastCache = new ConcurrentHashMap<>();
 
     /**
@@ -47,11 +51,14 @@ public class PodcastController {
      *
      * @param openAIService   the service used to interact with the OpenAI API
      * @param podcastService  the service responsible for generating podcast scripts and audio
+     * @param videoToSpeechService the text-to-speech service used by the audio test endpoint
      */
-    public PodcastController(@NotNull OpenAIService openAIService, @NonNull PodcastService podcastService, @NonNull VideoService videoService) {
+    public PodcastController(@NotNull OpenAIService openAIService, @NonNull PodcastService podcastService, @NonNull VideoService videoService,
+                             @NonNull VideoToSpeechService videoToSpeechService) {
         this.openAIService = openAIService;
         this.podcastService = podcastService;
         this.videoService = videoService;
+        this.videoToSpeechService = videoToSpeechService;
     }
 
     /**
@@ -63,9 +70,10 @@ public class PodcastController {
      *
      * @param prompt the user-provided prompt to send to OpenAI
      * @return the raw completion text returned by the OpenAI API
+     * @throws IOException if the request to OpenAI failed
      */
     @PostMapping("/completion")
-    public String getChatCompletion(@RequestBody String prompt) {
+    public String getChatCompletion(@RequestBody String prompt) throws IOException {
         return openAIService.getChatCompletion(prompt);
     }
 
@@ -99,8 +107,7 @@ public class PodcastController {
         try {
             log.info("Testing and saving audio for text: {}", text.substring(0, Math.min(50, text.length())));
 
-            VideoToSpeechService speechService = new VideoToSpeechService();
-            byte[] audio = speechService.generateHostASpeech(text);
+            byte[] audio = videoToSpeechService.generateHostASpeech(text);
 
             // Guardar o ficheiro localmente
             String filename = "test_audio_" + System.currentTimeMillis() + ".mp3";
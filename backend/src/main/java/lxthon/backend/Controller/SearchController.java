@@ -0,0 +1,53 @@
+package lxthon.backend.Controller;
+
+import lombok.NonNull;
+import lxthon.backend.Domain.SearchHit;
+import lxthon.backend.Service.Search.TranscriptSearchIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller for full-text search across every transcript the backend has processed.
+ */
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private static final int MAX_LIMIT = 100;
+
+    @NonNull
+    private final TranscriptSearchIndex searchIndex;
+
+    /**
+     * Constructs the SearchController.
+     *
+     * @param searchIndex the index of raw and cleaned transcripts
+     */
+    public SearchController(@NonNull TranscriptSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Finds the videos mentioning the query terms.
+     * <p>
+     * Returns ranked {@link SearchHit}s, each with the start times (in seconds) of the
+     * segments where the terms are spoken, so the client can seek straight to them.
+     * </p>
+     *
+     * @param q     the free-text query
+     * @param limit the maximum number of videos to return (default 10, at most 100)
+     * @return a ResponseEntity with the hits, or 400 for a blank query
+     */
+    @GetMapping
+    public ResponseEntity<List<SearchHit>> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(searchIndex.search(q, Math.min(limit, MAX_LIMIT)));
+    }
+}
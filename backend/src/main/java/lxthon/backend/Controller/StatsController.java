@@ -0,0 +1,143 @@
+package lxthon.backend.Controller;
+
+import lombok.NonNull;
+import lxthon.backend.Service.Cache.ChunkMemoStore;
+import lxthon.backend.Service.Cache.LlmResponseCache;
+import lxthon.backend.Service.Cache.TranscriptCache;
+import lxthon.backend.Service.Cleaning.DisfluencyPreCleaner;
+import lxthon.backend.Service.Concurrency.AdaptiveConcurrencyLimiter;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry;
+import lxthon.backend.Service.Concurrency.RequestHedger;
+import lxthon.backend.Service.Concurrency.TokenBucketRateLimiter;
+import lxthon.backend.Service.Llm.LlmRouter;
+import lxthon.backend.Service.Process.YtDlpExecutor;
+import lxthon.backend.Service.Search.TranscriptSearchIndex;
+import lxthon.backend.Service.OpenAIService;
+import lxthon.backend.Service.TranscriptCleanerService;
+import lxthon.backend.Service.VideoService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * REST controller exposing runtime statistics of the backend's shared resources.
+ * <p>
+ * Intended for dashboards and load tests: every section is a flat map of counters
+ * and gauges taken from the corresponding service.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    @NonNull
+    private final YtDlpExecutor ytDlpExecutor;
+
+    @NonNull
+    private final TranscriptCache transcriptCache;
+
+    @NonNull
+    private final InFlightRequestRegistry inFlight;
+
+    @NonNull
+    private final VideoService videoService;
+
+    @NonNull
+    private final TranscriptSearchIndex searchIndex;
+
+    @NonNull
+    private final TokenBucketRateLimiter llmRateLimiter;
+
+    @NonNull
+    private final ChunkMemoStore chunkMemo;
+
+    @NonNull
+    private final DisfluencyPreCleaner preCleaner;
+
+    @NonNull
+    private final TranscriptCleanerService cleaner;
+
+    @NonNull
+    private final LlmResponseCache responseCache;
+
+    @NonNull
+    private final AdaptiveConcurrencyLimiter llmConcurrency;
+
+    @NonNull
+    private final OpenAIService openAIService;
+
+    @NonNull
+    private final RequestHedger llmHedger;
+
+    @NonNull
+    private final LlmRouter llmRouter;
+
+    /**
+     * Constructs the StatsController.
+     *
+     * @param ytDlpExecutor   the executor running yt-dlp processes
+     * @param transcriptCache the raw transcript cache
+     * @param inFlight        the registry of coalesced in-flight requests
+     * @param videoService    the video service, for transcript backend latencies
+     * @param searchIndex     the full-text transcript index
+     * @param llmRateLimiter  the limiter pacing LLM requests to the default model
+     * @param chunkMemo       the memo of cleaned transcript chunks
+     * @param preCleaner      the local filler remover
+     * @param cleaner         the LLM transcript cleaner
+     * @param responseCache   the cache of complete LLM responses
+     * @param llmConcurrency  the adaptive limit on LLM requests in flight to the default model
+     * @param openAIService   the LLM client, for retry and failure counts
+     * @param llmHedger       the hedger of latency-sensitive LLM requests
+     * @param llmRouter       the routes of pipeline stages to models and limits
+     */
+    public StatsController(@NonNull YtDlpExecutor ytDlpExecutor, @NonNull TranscriptCache transcriptCache,
+                           @NonNull InFlightRequestRegistry inFlight, @NonNull VideoService videoService,
+                           @NonNull TranscriptSearchIndex searchIndex, @NonNull TokenBucketRateLimiter llmRateLimiter,
+                           @NonNull ChunkMemoStore chunkMemo, @NonNull DisfluencyPreCleaner preCleaner,
+                           @NonNull TranscriptCleanerService cleaner, @NonNull LlmResponseCache responseCache,
+                           @NonNull AdaptiveConcurrencyLimiter llmConcurrency, @NonNull OpenAIService openAIService,
+                           @NonNull RequestHedger llmHedger, @NonNull LlmRouter llmRouter) {
+        this.ytDlpExecutor = ytDlpExecutor;
+        this.transcriptCache = transcriptCache;
+        this.inFlight = inFlight;
+        this.videoService = videoService;
+        this.searchIndex = searchIndex;
+        this.llmRateLimiter = llmRateLimiter;
+        this.chunkMemo = chunkMemo;
+        this.preCleaner = preCleaner;
+        this.cleaner = cleaner;
+        this.responseCache = responseCache;
+        this.llmConcurrency = llmConcurrency;
+        this.openAIService = openAIService;
+        this.llmHedger = llmHedger;
+        this.llmRouter = llmRouter;
+    }
+
+    /**
+     * Returns all statistics grouped by component.
+     *
+     * @return a map of component name to its statistics
+     */
+    @GetMapping
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ytDlp", ytDlpExecutor.getStats());
+        stats.put("transcriptCache", transcriptCache.getStats());
+        stats.put("inFlight", inFlight.getStats());
+        stats.put("transcriptBackends", videoService.getTranscriptBackendStats());
+        stats.put("searchIndex", searchIndex.getStats());
+        stats.put("llmRateLimit", llmRateLimiter.getStats());
+        stats.put("llmChunkMemo", chunkMemo.getStats());
+        stats.put("preCleaner", preCleaner.getStats());
+        stats.put("llmCleaning", cleaner.getStats());
+        stats.put("llmResponseCache", responseCache.getStats());
+        stats.put("llmConcurrency", llmConcurrency.getStats());
+        stats.put("llmRequests", openAIService.getStats());
+        stats.put("llmHedging", llmHedger.getStats());
+        stats.put("llmRoutes", llmRouter.getStats());
+        return stats;
+    }
+}
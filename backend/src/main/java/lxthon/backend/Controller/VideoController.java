@@ -1,26 +1,37 @@
 package lxthon.backend.Controller;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import lombok.NonNull;
 import lxthon.backend.Domain.Quiz;
 import lxthon.backend.Service.*;
+import lxthon.backend.Service.Codec.TranscriptCodec;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry.Artifact;
 import lxthon.backend.Service.PodcastGeneration.VideoToSpeechService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import lxthon.backend.Domain.CompactTranscript;
 import lxthon.backend.Domain.TranscriptSegment;
+import lxthon.backend.Domain.VideoBundle;
 
 /**
  * REST controller exposing endpoints for video processing features:
  * <ul>
- *   <li>Retrieve video metadata</li>
+ *   <li>Retrieve video metadata and the combined metadata/transcript bundle</li>
  *   <li>Download video</li>
- *   <li>Fetch raw and cleaned transcripts</li>
- *   <li>Generate summaries</li>
+ *   <li>Fetch raw and cleaned transcripts, the latter also as a progressive event stream</li>
+ *   <li>Generate summaries, also as a progressive event stream</li>
  *   <li>Generate quizzes</li>
  * </ul>
  */
@@ -28,6 +39,11 @@ import lxthon.backend.Domain.TranscriptSegment;
 @RequestMapping("/api/videos")
 public class VideoController {
 
+    /**
+     * How long a cleaned-transcript stream may stay open; long videos take minutes to clean.
+     */
+    private static final long STREAM_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
     @NonNull
     private final VideoService youtubeService;
 
@@ -43,6 +59,9 @@ public class VideoController {
     @NonNull
     private final QuizGeneratorService quizGenerator;
 
+    @NonNull
+    private final InFlightRequestRegistry inFlight;
+
     /**
      * Constructs the VideoController with all required services.
      *
@@ -51,13 +70,15 @@ public class VideoController {
      * @param transcriptProcessingService service for cleaning and processing transcripts
      * @param summaryGenerator           service for generating summaries from transcripts
      * @param quizGenerator              service for generating quizzes from transcript text
+     * @param inFlight                   registry coalescing concurrent requests for the same video
      */
-    public VideoController(VideoService youtubeService, VideoToSpeechService videoToSpeechService, @NonNull TranscriptProcessingService transcriptProcessingService, @NonNull SummaryGeneratorService summaryGenerator,  @NonNull QuizGeneratorService quizGenerator) {
+    public VideoController(VideoService youtubeService, VideoToSpeechService videoToSpeechService, @NonNull TranscriptProcessingService transcriptProcessingService, @NonNull SummaryGeneratorService summaryGenerator,  @NonNull QuizGeneratorService quizGenerator, @NonNull InFlightRequestRegistry inFlight) {
         this.youtubeService = youtubeService;
         this.videoToSpeechService = videoToSpeechService;
         this.transcriptProcessingService = transcriptProcessingService;
         this.summaryGenerator = summaryGenerator;
         this.quizGenerator = quizGenerator;
+        this.inFlight = inFlight;
     }
 
     /**
@@ -76,6 +97,27 @@ public class VideoController {
         return youtubeService.getVideoInfo(url);
     }
 
+    /**
+     * Retrieves the metadata bundle of a YouTube video.
+     * <p>
+     * Returns title, duration, chapters, available caption languages and the English
+     * transcript, all produced by a single yt-dlp run that the <code>/info</code> and
+     * <code>/transcript</code> endpoints then reuse.
+     * </p>
+     *
+     * @param url the URL of the YouTube video
+     * @return a ResponseEntity containing the {@link VideoBundle} or an error status
+     */
+    @GetMapping("/bundle")
+    public ResponseEntity<VideoBundle> getVideoBundle(@RequestParam String url) {
+        try {
+            return ResponseEntity.ok(youtubeService.getVideoBundle(url));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Downloads a YouTube video in the specified format.
      * <p>
@@ -98,20 +140,37 @@ public class VideoController {
     /**
      * Fetches the raw transcript segments from a YouTube video.
      * <p>
-     * Returns a list of {@link TranscriptSegment}, each with start/end times and text.
+     * Returns a list of {@link TranscriptSegment}, each with start/end times and text, as
+     * JSON by default. Clients sending <code>Accept: application/x-transcript</code> receive
+     * the compact binary {@link TranscriptCodec} encoding instead.
+     * </p>
+     * <p>
+     * <code>from</code>/<code>to</code> restrict the result to the segments overlapping that
+     * time range (a single instant if only <code>from</code> is given with <code>to</code> at
+     * or before it), and <code>cursor</code>/<code>limit</code> page through the result. See
+     * {@link #page(List, Double, Double, int, Integer, String)} for the response headers.
      * </p>
      *
-     * @param url the URL of the YouTube video
-     * @return a ResponseEntity containing the list of segments or an error status
+     * @param url    the URL of the YouTube video
+     * @param from   optional start of the time range in seconds
+     * @param to     optional end of the time range in seconds (exclusive)
+     * @param cursor the position in the (filtered) result to start from
+     * @param limit  optional maximum number of segments to return
+     * @param accept the Accept header of the request, if any
+     * @return a ResponseEntity containing the segments or an error status
      * @throws IOException          if fetching fails
      * @throws InterruptedException if the operation is interrupted
      */
     @GetMapping("/transcript")
-    public ResponseEntity<List<TranscriptSegment>> getTranscript(@RequestParam String url) throws IOException, InterruptedException {
+    public ResponseEntity<?> getTranscript(@RequestParam String url,
+                                           @RequestParam(required = false) Double from,
+                                           @RequestParam(required = false) Double to,
+                                           @RequestParam(defaultValue = "0") int cursor,
+                                           @RequestParam(required = false) Integer limit,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException, InterruptedException {
         try {
             List<TranscriptSegment> transcript = youtubeService.getTranscript(url);
-            System.out.println(transcript);
-            return ResponseEntity.ok(transcript);
+            return page(transcript, from, to, cursor, limit, accept);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -121,73 +180,336 @@ public class VideoController {
     /**
      * Asynchronously cleans and normalizes transcript segments.
      * <p>
-     * Removes filler words, restores punctuation, and preserves timecodes.
+     * Removes filler words, restores punctuation, and preserves timecodes. Accepts the same
+     * time range and paging parameters as <code>/transcript</code>. With <code>mode=fast</code>
+     * only fillers and repeated words are removed, locally and without the LLM; with
+     * <code>mode=structured</code> the LLM cleans segment by segment through JSON output,
+     * keeping segment boundaries exact.
      * </p>
      *
-     * @param url the URL of the YouTube video
+     * @param url    the URL of the YouTube video
+     * @param mode   <code>llm</code> (default), <code>structured</code> or <code>fast</code>
+     * @param from   optional start of the time range in seconds
+     * @param to     optional end of the time range in seconds (exclusive)
+     * @param cursor the position in the (filtered) result to start from
+     * @param limit  optional maximum number of segments to return
+     * @param accept the Accept header of the request, if any
      * @return a CompletableFuture yielding a ResponseEntity with cleaned segments
      * @throws IOException          if processing setup fails
      * @throws InterruptedException if the operation is interrupted
      */
     @GetMapping("/clean-transcript")
-    public CompletableFuture<ResponseEntity<List<TranscriptSegment>>> cleanTranscript(@RequestParam String url) throws IOException, InterruptedException {
-        return transcriptProcessingService.getCleanedTranscript(url)
-                .thenApply(cleanedTranscript -> ResponseEntity.ok(cleanedTranscript))
+    public CompletableFuture<ResponseEntity<?>> cleanTranscript(@RequestParam String url,
+                                                                @RequestParam(defaultValue = "llm") String mode,
+                                                                @RequestParam(required = false) Double from,
+                                                                @RequestParam(required = false) Double to,
+                                                                @RequestParam(defaultValue = "0") int cursor,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException, InterruptedException {
+        CleaningMode cleaningMode = CleaningMode.parse(mode);
+        if (cleaningMode == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(CleaningMode.USAGE));
+        }
+        if (cleaningMode == CleaningMode.FAST) {
+            try {
+                List<TranscriptSegment> cleanedTranscript = transcriptProcessingService.getFastCleanedTranscript(url);
+                return CompletableFuture.completedFuture(page(cleanedTranscript, from, to, cursor, limit, accept));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+            }
+        }
+
+        return transcriptProcessingService.getCleanedTranscript(url, cleaningMode == CleaningMode.STRUCTURED)
+                .<ResponseEntity<?>>thenApply(cleanedTranscript -> page(cleanedTranscript, from, to, cursor, limit, accept))
                 .exceptionally(ex -> {
                     ex.printStackTrace();
                     return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
                 });
     }
 
+    /**
+     * Streams the cleaned transcript as Server-Sent Events while it is being cleaned.
+     * <p>
+     * Emits <code>segments</code> events in transcript order, whose data is a JSON array of
+     * segments and whose id is the index of its first segment: one per cleaned chunk, or,
+     * with <code>mode=structured</code>, as soon as segments are parsed from the response.
+     * With <code>mode=fast</code> the locally cleaned transcript is sent as a single event.
+     * The stream ends with a <code>complete</code> event carrying the total segment count,
+     * or an <code>error</code> event if cleaning fails. Closing the connection cancels the
+     * remaining cleaning work.
+     * </p>
+     *
+     * @param url  the URL of the YouTube video
+     * @param mode <code>llm</code> (default), <code>structured</code> or <code>fast</code>
+     * @return the event stream, or 400 if the mode is unknown
+     */
+    @GetMapping(value = "/clean-transcript/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamCleanTranscript(@RequestParam String url,
+                                                            @RequestParam(defaultValue = "llm") String mode) {
+        CleaningMode cleaningMode = CleaningMode.parse(mode);
+        if (cleaningMode == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        AtomicInteger sent = new AtomicInteger();
+
+        TranscriptCleanerService.BatchListener listener = batch -> {
+            // A send to a closed connection throws, which cancels the remaining chunks
+            emitter.send(SseEmitter.event()
+                    .name("segments")
+                    .id(String.valueOf(sent.get()))
+                    .data(batch, MediaType.APPLICATION_JSON));
+            sent.addAndGet(batch.size());
+        };
+        CompletableFuture<Void> cleaning;
+        if (cleaningMode == CleaningMode.FAST) {
+            cleaning = transcriptProcessingService.getFastCleanedTranscriptAsync(url).thenAccept(cleaned -> {
+                try {
+                    listener.onBatch(CompactTranscript.of(cleaned));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } else {
+            cleaning = transcriptProcessingService.streamCleanedTranscript(url, cleaningMode == CleaningMode.STRUCTURED, listener);
+        }
+
+        cleaning.whenComplete((ignored, ex) -> {
+            try {
+                if (ex == null) {
+                    emitter.send(SseEmitter.event().name("complete").data(Map.of("segments", sent.get()), MediaType.APPLICATION_JSON));
+                } else {
+                    ex.printStackTrace();
+                    emitter.send(SseEmitter.event().name("error").data("Failed to clean transcript"));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client is gone; nothing left to tell it
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Generates a summary of the video transcript.
      * <p>
-     * Produces a concise text summary based on the full transcript.
+     * Produces a concise text summary based on the full transcript. The request is
+     * handled asynchronously: no thread waits while the model works. Long transcripts
+     * are summarized chunk by chunk; the chunk summaries are cached per video, so other
+     * lengths of the same video's summary only cost the final merge.
      * </p>
      *
-     * @param url the URL of the YouTube video
-     * @return a ResponseEntity containing the summary text or an error status
-     * @throws IOException          if retrieval or summarization fails
-     * @throws InterruptedException if the process is interrupted
+     * @param url    the URL of the YouTube video
+     * @param length <code>short</code>, <code>medium</code> (default) or <code>long</code>
+     * @return a future of a ResponseEntity containing the summary text, 503 if the model
+     *         is overloaded or unreachable, or 400 on any other error
      */
     @GetMapping("/summary")
-    public ResponseEntity<String> getSummary(@RequestParam String url) throws IOException, InterruptedException {
+    public CompletableFuture<ResponseEntity<String>> getSummary(@RequestParam String url,
+                                                                @RequestParam(defaultValue = "medium") String length) {
+        CompletableFuture<String> summary;
         try {
-            List<TranscriptSegment> transcript = youtubeService.getTranscript(url);
-            String summary = summaryGenerator.generateSummary(transcript);
-            return ResponseEntity.ok(summary);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            summary = summarizeAsync(url, SummaryGeneratorService.Length.parse(length));
+        } catch (IllegalArgumentException e) {
+            summary = CompletableFuture.failedFuture(e);
+        }
+        return summary
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return ResponseEntity.status(llmUnavailable(e) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_REQUEST).build();
+                });
+    }
+
+    /**
+     * Streams a summary of the video transcript as Server-Sent Events while the model writes it.
+     * <p>
+     * Emits <code>token</code> events whose data is the next piece of summary text, so the
+     * first words arrive after one model round trip rather than once the whole summary is
+     * done. The stream ends with a <code>complete</code> event carrying the full summary, or
+     * an <code>error</code> event if retrieval or summarization fails. Closing the connection
+     * stops the generation. Unlike <code>/summary</code> the work is not shared with
+     * concurrent requests, since each stream has its own client (the chunk summaries of a
+     * long transcript still are).
+     * </p>
+     *
+     * @param url    the URL of the YouTube video
+     * @param length <code>short</code>, <code>medium</code> (default) or <code>long</code>
+     * @return the event stream
+     */
+    @GetMapping(value = "/summary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSummary(@RequestParam String url, @RequestParam(defaultValue = "medium") String length) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+
+        CompletableFuture<String> streamed;
+        try {
+            String videoId = VideoIdResolver.resolve(url);
+            SummaryGeneratorService.Length summaryLength = SummaryGeneratorService.Length.parse(length);
+            streamed = youtubeService.getTranscriptAsync(url)
+                    .thenCompose(transcript -> summaryGenerator.generateSummaryStreamAsync(videoId, transcript, summaryLength, token -> {
+                        try {
+                            emitter.send(SseEmitter.event().name("token").data(token, MediaType.TEXT_PLAIN));
+                        } catch (IOException e) {
+                            // The client is gone; throwing stops the model's stream
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+        } catch (IllegalArgumentException e) {
+            streamed = CompletableFuture.failedFuture(e);
         }
+
+        streamed.whenComplete((summary, ex) -> {
+            try {
+                if (ex == null && !summary.isEmpty()) {
+                    emitter.send(SseEmitter.event().name("complete").data(summary, MediaType.TEXT_PLAIN));
+                } else {
+                    if (ex != null) {
+                        ex.printStackTrace();
+                    }
+                    emitter.send(SseEmitter.event().name("error").data("Failed to generate summary"));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client is gone; nothing left to tell it
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
     }
 
     /**
      * Generates a multiple-choice quiz from the video transcript.
      * <p>
-     * First cleans the transcript, then creates a quiz with the specified number
+     * First summarizes the transcript, then creates a quiz with the specified number
      * of questions using the {@link QuizGeneratorService}. Returns the quiz as JSON.
+     * Like the summary, the request is handled asynchronously.
      * </p>
      *
      * @param url          the URL of the YouTube video
      * @param numQuestions the number of quiz questions to generate (default 5)
-     * @return a ResponseEntity with the {@link Quiz} object or an error message
+     * @return a future of a ResponseEntity with the {@link Quiz} object or an error message,
+     *         with status 503 if the model is overloaded or unreachable
      */
     @GetMapping("/quiz")
-    public ResponseEntity<?> generateQuiz (@RequestParam String url, @RequestParam(defaultValue = "5") int numQuestions) {
+    public CompletableFuture<ResponseEntity<?>> generateQuiz (@RequestParam String url, @RequestParam(defaultValue = "5") int numQuestions) {
+        CompletableFuture<Quiz> quiz;
         try {
-            List<TranscriptSegment> transcript = youtubeService.getTranscript(url);
-            String summary = summaryGenerator.generateSummary(transcript);
-            Quiz quiz = quizGenerator.generateQuiz(summary, numQuestions);
+            quiz = inFlight.submitAsync(Artifact.QUIZ, VideoIdResolver.resolve(url), String.valueOf(numQuestions),
+                    () -> summarizeAsync(url, SummaryGeneratorService.Length.MEDIUM)
+                            .thenCompose(summary -> quizGenerator.generateQuizAsync(summary, numQuestions)));
+        } catch (IllegalArgumentException e) {
+            quiz = CompletableFuture.failedFuture(e);
+        }
 
-            return ResponseEntity.ok(quiz);
+        return quiz.<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    HttpStatus status = llmUnavailable(e) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.INTERNAL_SERVER_ERROR;
+                    return ResponseEntity.status(status).body("Erro ao gerar quiz.");
+                });
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro ao gerar quiz.");
+    /**
+     * Applies the time range and paging parameters to a transcript and renders it as JSON
+     * or, if requested, in the binary transcript encoding.
+     * <p>
+     * The response carries <code>X-Total-Count</code> (the number of segments matching the
+     * time range) and, when more segments follow the returned page, <code>X-Next-Cursor</code>
+     * with the cursor of the next page.
+     * </p>
+     *
+     * @param transcript the full transcript
+     * @param from       optional start of the time range in seconds
+     * @param to         optional end of the time range in seconds (exclusive)
+     * @param cursor     the position in the filtered result to start from
+     * @param limit      optional maximum number of segments to return
+     * @param accept     the Accept header of the request, if any
+     * @return the response, or 400 if the cursor or limit is invalid
+     */
+    private ResponseEntity<?> page(List<TranscriptSegment> transcript, Double from, Double to,
+                                   int cursor, Integer limit, String accept) {
+        CompactTranscript selected = CompactTranscript.of(transcript);
+        if (from != null || to != null) {
+            selected = selected.between(from != null ? from : Double.NEGATIVE_INFINITY,
+                    to != null ? to : Double.POSITIVE_INFINITY);
         }
+
+        int total = selected.size();
+        if (cursor < 0 || cursor > total || (limit != null && limit < 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        int end = limit == null ? total : (int) Math.min(total, (long) cursor + limit);
+        CompactTranscript page = selected.slice(cursor, end);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header("X-Total-Count", String.valueOf(total));
+        if (end < total) {
+            response.header("X-Next-Cursor", String.valueOf(end));
+        }
+        if (accept != null && accept.contains(TranscriptCodec.MEDIA_TYPE)) {
+            return response.contentType(MediaType.parseMediaType(TranscriptCodec.MEDIA_TYPE))
+                    .body(TranscriptCodec.encode(page));
+        }
+        return response.body(page);
     }
 
-}
+    /**
+     * Returns whether a failure comes from the LLM endpoint being overloaded or unreachable
+     * after all retries, i.e. whether the client should simply try again later.
+     *
+     * @param error the failure, possibly wrapped
+     * @return {@code true} if it is caused by an unavailable LLM
+     */
+    private static boolean llmUnavailable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LlmException llm) {
+                return llm.isUnavailable();
+            }
+        }
+        return false;
+    }
 
+    /**
+     * Produces the summary of a video, sharing one computation between all
+     * concurrent summary and quiz requests for the same video and length.
+     *
+     * @param url    the URL of the YouTube video
+     * @param length how long the summary should be
+     * @return a future of the summary text, failing if retrieval or summarization fails
+     */
+    private CompletableFuture<String> summarizeAsync(String url, SummaryGeneratorService.Length length) {
+        try {
+            String videoId = VideoIdResolver.resolve(url);
+            return inFlight.submitAsync(Artifact.SUMMARY, videoId, length.name(),
+                    () -> youtubeService.getTranscriptAsync(url)
+                            .thenCompose(transcript -> summaryGenerator.generateSummaryAsync(videoId, transcript, length)));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * The ways <code>/clean-transcript</code> and its stream can clean a transcript.
+     */
+    private enum CleaningMode {
+        LLM, STRUCTURED, FAST;
 
+        private static final String USAGE = "mode must be 'llm', 'structured' or 'fast'";
+
+        /**
+         * Parses the <code>mode</code> request parameter, ignoring case.
+         *
+         * @return the mode, or {@code null} if the value is none of them
+         */
+        private static CleaningMode parse(String value) {
+            for (CleaningMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(value.trim())) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+}
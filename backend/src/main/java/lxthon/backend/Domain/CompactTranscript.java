@@ -0,0 +1,754 @@
+package lxthon.backend.Domain;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Columnar, primitive-backed representation of a transcript.
+ * <p>
+ * Instead of one {@link TranscriptSegment} object and up to two {@link String}s per
+ * segment, a transcript is stored as:
+ * <ul>
+ *   <li>two <code>int[]</code> columns with start and end times in milliseconds;</li>
+ *   <li>one shared UTF-8 <code>byte[]</code> holding the text (and normalized text) of every segment;</li>
+ *   <li>offset arrays locating each segment's text inside that buffer.</li>
+ * </ul>
+ * For typical caption transcripts this takes roughly 40% of the heap of the equivalent
+ * <code>List&lt;TranscriptSegment&gt;</code> (see <code>CompactTranscriptTest</code>); the
+ * text bytes themselves, which {@link String} also stores one per Latin-1 character,
+ * are most of what remains.
+ * </p>
+ * <p>
+ * Instances are immutable. {@link #subList(int, int)} and {@link #slice(int, int)}
+ * return views sharing the same arrays, and {@link #views()} iterates with a single
+ * reusable flyweight, so neither copies any data. The class also implements
+ * <code>List&lt;TranscriptSegment&gt;</code> as an adapter for existing code: {@link #get(int)}
+ * materializes a fresh, independent bean, and JSON serialization produces exactly the
+ * array-of-segments shape of the REST API by writing the UTF-8 bytes straight from the buffer.
+ * </p>
+ */
+@JsonSerialize(using = CompactTranscript.Serializer.class)
+public final class CompactTranscript extends AbstractList<TranscriptSegment> implements RandomAccess {
+
+    private static final CompactTranscript EMPTY = new Builder(0).build();
+
+    private final int[] startMs;
+    private final int[] endMs;
+
+    /**
+     * UTF-8 text of all segments; segment {@code i}'s text is followed directly by its normalized text.
+     */
+    private final byte[] utf8;
+
+    /**
+     * Start of each segment's text in {@link #utf8}; one extra trailing entry marks the end of the buffer.
+     */
+    private final int[] textStart;
+
+    /**
+     * Start of each segment's normalized text (which ends at the next {@link #textStart}),
+     * or {@code null} when no segment has normalized text.
+     */
+    private final int[] normStart;
+
+    /**
+     * Segments whose normalized text is {@code null}; only meaningful when {@link #normStart} is set.
+     */
+    private final BitSet normMissing;
+
+    /**
+     * First segment index of this view in the shared arrays.
+     */
+    private final int from;
+
+    private final int size;
+
+    /**
+     * Lazily built interval index for time-range queries; see {@link #overlapping(double, double)}.
+     */
+    private volatile TimeIndex timeIndex;
+
+    private CompactTranscript(int[] startMs, int[] endMs, byte[] utf8, int[] textStart, int[] normStart,
+                              BitSet normMissing, int from, int size) {
+        this.startMs = startMs;
+        this.endMs = endMs;
+        this.utf8 = utf8;
+        this.textStart = textStart;
+        this.normStart = normStart;
+        this.normMissing = normMissing;
+        this.from = from;
+        this.size = size;
+    }
+
+    /**
+     * Returns an empty transcript.
+     *
+     * @return the shared empty instance
+     */
+    public static CompactTranscript empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Converts a list of segments to the compact form; returns the argument itself if it already is one.
+     *
+     * @param segments the segments to convert
+     * @return the compact transcript
+     */
+    public static CompactTranscript of(List<TranscriptSegment> segments) {
+        if (segments instanceof CompactTranscript compact) {
+            return compact;
+        }
+        Builder builder = new Builder(segments.size());
+        for (TranscriptSegment segment : segments) {
+            builder.add(segment.getStartTime(), segment.getEndTime(), segment.getText(), segment.getNormalizedText());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Assembles a transcript directly from decoded columns, taking ownership of the arrays.
+     * <p>
+     * {@code utf8} must hold, for every segment in order, its text immediately followed by
+     * its normalized text, which is the layout produced by iterating {@link #getTextBytes(int)}
+     * and {@link #getNormalizedTextBytes(int)}. Used by binary decoders to avoid re-encoding text.
+     * </p>
+     *
+     * @param startMs           start times in milliseconds
+     * @param endMs             end times in milliseconds
+     * @param utf8              the concatenated UTF-8 text
+     * @param textLengths       byte length of each segment's text
+     * @param normalizedLengths byte length of each segment's normalized text, -1 where absent;
+     *                          {@code null} if no segment has normalized text
+     * @return the compact transcript
+     * @throws IllegalArgumentException if the column sizes or lengths are inconsistent
+     */
+    public static CompactTranscript fromColumns(int[] startMs, int[] endMs, byte[] utf8,
+                                                int[] textLengths, int[] normalizedLengths) {
+        int count = startMs.length;
+        if (endMs.length != count || textLengths.length != count
+                || (normalizedLengths != null && normalizedLengths.length != count)) {
+            throw new IllegalArgumentException("Column lengths do not match");
+        }
+
+        int[] textStart = new int[count + 1];
+        int[] normStart = normalizedLengths == null ? null : new int[count];
+        BitSet normMissing = normalizedLengths == null ? null : new BitSet(count);
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            textStart[i] = (int) offset;
+            offset += textLengths[i];
+            if (normStart != null) {
+                normStart[i] = (int) offset;
+                if (normalizedLengths[i] < 0) {
+                    normMissing.set(i);
+                } else {
+                    offset += normalizedLengths[i];
+                }
+            }
+            if (textLengths[i] < 0 || offset > utf8.length) {
+                throw new IllegalArgumentException("Text lengths exceed the text buffer");
+            }
+        }
+        if (offset != utf8.length) {
+            throw new IllegalArgumentException("Text lengths do not cover the text buffer");
+        }
+        textStart[count] = utf8.length;
+        return new CompactTranscript(startMs, endMs, utf8, textStart, normStart, normMissing, 0, count);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Materializes segment {@code index} as a new, independent {@link TranscriptSegment}.
+     *
+     * @param index the segment index within this view
+     * @return a fresh bean; modifying it does not affect this transcript
+     */
+    @Override
+    public TranscriptSegment get(int index) {
+        checkIndex(index);
+        return new TranscriptSegment(getStartTime(index), getEndTime(index), getText(index), getNormalizedText(index));
+    }
+
+    /**
+     * Returns the start time of a segment in seconds.
+     *
+     * @param index the segment index within this view
+     * @return the start time in seconds
+     */
+    public double getStartTime(int index) {
+        checkIndex(index);
+        return startMs[from + index] / 1000.0;
+    }
+
+    /**
+     * Returns the end time of a segment in seconds.
+     *
+     * @param index the segment index within this view
+     * @return the end time in seconds
+     */
+    public double getEndTime(int index) {
+        checkIndex(index);
+        return endMs[from + index] / 1000.0;
+    }
+
+    /**
+     * Returns the start time of a segment in milliseconds.
+     *
+     * @param index the segment index within this view
+     * @return the start time in milliseconds
+     */
+    public int getStartMs(int index) {
+        checkIndex(index);
+        return startMs[from + index];
+    }
+
+    /**
+     * Returns the end time of a segment in milliseconds.
+     *
+     * @param index the segment index within this view
+     * @return the end time in milliseconds
+     */
+    public int getEndMs(int index) {
+        checkIndex(index);
+        return endMs[from + index];
+    }
+
+    /**
+     * Decodes the original text of a segment.
+     *
+     * @param index the segment index within this view
+     * @return the original text
+     */
+    public String getText(int index) {
+        checkIndex(index);
+        int i = from + index;
+        return new String(utf8, textStart[i], textEnd(i) - textStart[i], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the normalized text of a segment.
+     *
+     * @param index the segment index within this view
+     * @return the normalized text, or {@code null} if the segment has none
+     */
+    public String getNormalizedText(int index) {
+        checkIndex(index);
+        int i = from + index;
+        if (normStart == null || normMissing.get(i)) {
+            return null;
+        }
+        return new String(utf8, normStart[i], textStart[i + 1] - normStart[i], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a read-only view of a segment's UTF-8 text bytes without copying them.
+     *
+     * @param index the segment index within this view
+     * @return a read-only buffer positioned over the segment's text
+     */
+    public ByteBuffer getTextBytes(int index) {
+        checkIndex(index);
+        int i = from + index;
+        return ByteBuffer.wrap(utf8, textStart[i], textEnd(i) - textStart[i]).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of a segment's normalized UTF-8 text bytes without copying them.
+     *
+     * @param index the segment index within this view
+     * @return a read-only buffer positioned over the normalized text, or {@code null} if the segment has none
+     */
+    public ByteBuffer getNormalizedTextBytes(int index) {
+        checkIndex(index);
+        int i = from + index;
+        if (normStart == null || normMissing.get(i)) {
+            return null;
+        }
+        return ByteBuffer.wrap(utf8, normStart[i], textStart[i + 1] - normStart[i]).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns whether any segment in the shared buffer carries normalized text.
+     *
+     * @return true if normalized text is stored
+     */
+    public boolean hasNormalizedText() {
+        return normStart != null;
+    }
+
+    /**
+     * Joins the text of all segments in this view with the given separator, decoding
+     * straight from the shared buffer instead of materializing a bean per segment.
+     *
+     * @param separator  the separator placed between segments
+     * @param normalized whether to prefer the normalized text (falling back to the original when absent)
+     * @return the joined text
+     */
+    public String joinText(String separator, boolean normalized) {
+        if (size == 0) {
+            return "";
+        }
+        int first = from;
+        int last = from + size;
+        boolean useNormalized = normalized && normStart != null;
+
+        StringBuilder joined = new StringBuilder(textStart[last] - textStart[first] + size * separator.length());
+        for (int i = first; i < last; i++) {
+            if (i > first) {
+                joined.append(separator);
+            }
+            if (useNormalized && !normMissing.get(i)) {
+                joined.append(new String(utf8, normStart[i], textStart[i + 1] - normStart[i], StandardCharsets.UTF_8));
+            } else {
+                joined.append(new String(utf8, textStart[i], textEnd(i) - textStart[i], StandardCharsets.UTF_8));
+            }
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Finds the segments overlapping a time range.
+     * <p>
+     * Two binary searches bound the candidates, which are then scanned, so a query costs
+     * O(log n + w) for a window of w candidates. For captions, whose segments are short
+     * and follow one another, w is close to the number of matches. A single long segment
+     * early in the transcript keeps every later segment in the window, though, and then
+     * queries degrade to O(n).
+     * </p>
+     * <p>
+     * A segment overlaps {@code [fromSeconds, toSeconds)} if it starts before the end of the
+     * range and ends after its start. When {@code toSeconds <= fromSeconds} the range is a
+     * single instant and the segments being spoken at that moment are returned. The index
+     * behind this is built on the first query and reused afterwards.
+     * </p>
+     *
+     * @param fromSeconds the start of the range in seconds
+     * @param toSeconds   the end of the range in seconds (exclusive)
+     * @return the indices of the overlapping segments within this view, in ascending order
+     */
+    public int[] overlapping(double fromSeconds, double toSeconds) {
+        int fromMs = clampMillis(fromSeconds);
+        int toMs = Math.max(clampMillis(toSeconds), fromMs == Integer.MAX_VALUE ? fromMs : fromMs + 1);
+
+        TimeIndex index = timeIndex;
+        if (index == null) {
+            index = new TimeIndex();
+            timeIndex = index;
+        }
+        return index.query(fromMs, toMs);
+    }
+
+    /**
+     * Returns the segments overlapping a time range, as defined by {@link #overlapping(double, double)}.
+     * <p>
+     * When the matches form a contiguous run, which is the usual case for captions, the
+     * result is a zero-copy view; otherwise the matching segments are copied.
+     * </p>
+     *
+     * @param fromSeconds the start of the range in seconds
+     * @param toSeconds   the end of the range in seconds (exclusive)
+     * @return the overlapping segments in transcript order
+     */
+    public CompactTranscript between(double fromSeconds, double toSeconds) {
+        int[] matches = overlapping(fromSeconds, toSeconds);
+        if (matches.length == 0) {
+            return slice(0, 0);
+        }
+        int first = matches[0];
+        int last = matches[matches.length - 1];
+        if (last - first + 1 == matches.length) {
+            return slice(first, last + 1);
+        }
+        Builder builder = new Builder(matches.length);
+        for (int index : matches) {
+            builder.add(getStartTime(index), getEndTime(index), getText(index), getNormalizedText(index));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a view of the segments in {@code [fromIndex, toIndex)} sharing this transcript's arrays.
+     *
+     * @param fromIndex the first segment index (inclusive)
+     * @param toIndex   the last segment index (exclusive)
+     * @return a zero-copy view
+     */
+    public CompactTranscript slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Invalid slice [" + fromIndex + ", " + toIndex + ") of " + size);
+        }
+        return new CompactTranscript(startMs, endMs, utf8, textStart, normStart, normMissing, from + fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * Returns a zero-copy view of the segments in {@code [fromIndex, toIndex)}.
+     *
+     * @param fromIndex the first segment index (inclusive)
+     * @param toIndex   the last segment index (exclusive)
+     * @return a {@link CompactTranscript} view
+     */
+    @Override
+    public CompactTranscript subList(int fromIndex, int toIndex) {
+        return slice(fromIndex, toIndex);
+    }
+
+    /**
+     * Iterates over the segments with a single reusable {@link SegmentView}.
+     * <p>
+     * The view returned by each call to {@code next()} is the same object, repositioned;
+     * copy values out of it if they need to outlive the iteration step.
+     * </p>
+     *
+     * @return an iterable of flyweight views
+     */
+    public Iterable<SegmentView> views() {
+        return () -> new Iterator<>() {
+            private final SegmentView view = new SegmentView();
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public SegmentView next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                view.index = next++;
+                return view;
+            }
+        };
+    }
+
+    /**
+     * Returns the approximate heap footprint of the arrays backing this transcript.
+     * <p>
+     * Views share their parent's arrays, so this reports the full backing storage.
+     * </p>
+     *
+     * @return the estimated retained size in bytes
+     */
+    public long estimatedHeapBytes() {
+        long bytes = 48;
+        bytes += 16 + 4L * startMs.length;
+        bytes += 16 + 4L * endMs.length;
+        bytes += 16 + utf8.length;
+        bytes += 16 + 4L * textStart.length;
+        if (normStart != null) {
+            bytes += 16 + 4L * normStart.length;
+            bytes += 24 + normMissing.size() / 8;
+        }
+        return bytes;
+    }
+
+    private static int clampMillis(double seconds) {
+        double millis = Math.rint(seconds * 1000.0);
+        if (millis >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return millis <= Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) millis;
+    }
+
+    private int textEnd(int i) {
+        return normStart != null ? normStart[i] : textStart[i + 1];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+
+    /**
+     * Writes the segment's texts, copying the UTF-8 bytes straight into byte-oriented
+     * generators (the HTTP case) and decoding only for character-oriented ones.
+     */
+    private void writeText(JsonGenerator gen, int i, boolean rawUtf8) throws IOException {
+        gen.writeFieldName("text");
+        writeUtf8(gen, textStart[i], textEnd(i) - textStart[i], rawUtf8);
+        gen.writeFieldName("normalizedText");
+        if (normStart == null || normMissing.get(i)) {
+            gen.writeNull();
+        } else {
+            writeUtf8(gen, normStart[i], textStart[i + 1] - normStart[i], rawUtf8);
+        }
+    }
+
+    private void writeUtf8(JsonGenerator gen, int offset, int length, boolean rawUtf8) throws IOException {
+        if (rawUtf8) {
+            gen.writeUTF8String(utf8, offset, length);
+        } else {
+            gen.writeString(new String(utf8, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Interval index over the segments of this view.
+     * <p>
+     * Segments are ordered by start time (captions normally already are, in which case
+     * no permutation is stored) and a prefix maximum of the end times is kept alongside.
+     * Both arrays are monotonic, so the first candidate and the end of the candidates are
+     * found by binary search and only the segments in between are inspected. Segments in
+     * that window that ended before the range are skipped, not pruned, so the window is
+     * only as tight as the segments are short.
+     * </p>
+     */
+    private final class TimeIndex {
+
+        /**
+         * Local segment indices ordered by start time, or {@code null} if already in start order.
+         */
+        private final int[] order;
+
+        /**
+         * {@code maxEnd[k]} is the largest end time among the first {@code k + 1} segments in start order.
+         */
+        private final int[] maxEnd;
+
+        private TimeIndex() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = startMs[from + i - 1] <= startMs[from + i];
+            }
+            if (sorted) {
+                order = null;
+            } else {
+                Integer[] boxed = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    boxed[i] = i;
+                }
+                Arrays.sort(boxed, (a, b) -> Integer.compare(startMs[from + a], startMs[from + b]));
+                order = new int[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = boxed[i];
+                }
+            }
+
+            maxEnd = new int[size];
+            int max = Integer.MIN_VALUE;
+            for (int k = 0; k < size; k++) {
+                max = Math.max(max, endMs[from + local(k)]);
+                maxEnd[k] = max;
+            }
+        }
+
+        private int local(int k) {
+            return order == null ? k : order[k];
+        }
+
+        private int[] query(int fromMs, int toMs) {
+            // Candidates start before the range ends...
+            int hi = firstStartAtOrAfter(toMs);
+            // ...and are preceded (in start order) by at least one segment ending after the range starts
+            int lo = firstMaxEndAfter(fromMs);
+
+            int[] matches = new int[Math.max(hi - lo, 0)];
+            int count = 0;
+            for (int k = lo; k < hi; k++) {
+                int i = local(k);
+                if (endMs[from + i] > fromMs) {
+                    matches[count++] = i;
+                }
+            }
+            int[] result = Arrays.copyOf(matches, count);
+            if (order != null) {
+                Arrays.sort(result);
+            }
+            return result;
+        }
+
+        private int firstStartAtOrAfter(int ms) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (startMs[from + local(mid)] < ms) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int firstMaxEndAfter(int ms) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxEnd[mid] <= ms) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Reusable, read-only cursor over one segment of a {@link CompactTranscript}.
+     */
+    public final class SegmentView {
+        private int index;
+
+        private SegmentView() {}
+
+        public int getIndex() { return index; }
+        public double getStartTime() { return CompactTranscript.this.getStartTime(index); }
+        public double getEndTime() { return CompactTranscript.this.getEndTime(index); }
+        public int getStartMs() { return CompactTranscript.this.getStartMs(index); }
+        public int getEndMs() { return CompactTranscript.this.getEndMs(index); }
+        public String getText() { return CompactTranscript.this.getText(index); }
+        public String getNormalizedText() { return CompactTranscript.this.getNormalizedText(index); }
+        public ByteBuffer getTextBytes() { return CompactTranscript.this.getTextBytes(index); }
+    }
+
+    /**
+     * Incrementally builds a {@link CompactTranscript} without intermediate beans.
+     */
+    public static final class Builder {
+        private int[] startMs;
+        private int[] endMs;
+        private int[] textStart;
+        private int[] normStart;
+        private final BitSet normMissing = new BitSet();
+        private byte[] utf8;
+        private int length;
+        private int count;
+
+        /**
+         * Creates a builder sized for roughly the given number of segments.
+         *
+         * @param expectedSegments the expected segment count
+         */
+        public Builder(int expectedSegments) {
+            int capacity = Math.max(expectedSegments, 8);
+            startMs = new int[capacity];
+            endMs = new int[capacity];
+            textStart = new int[capacity + 1];
+            normStart = new int[capacity];
+            utf8 = new byte[capacity * 32];
+        }
+
+        /**
+         * Appends a segment.
+         *
+         * @param startTime      the start time in seconds
+         * @param endTime        the end time in seconds
+         * @param text           the original text (null is stored as empty)
+         * @param normalizedText the normalized text, or {@code null}
+         * @return this builder
+         */
+        public Builder add(double startTime, double endTime, String text, String normalizedText) {
+            if (count == startMs.length) {
+                int capacity = count * 2;
+                startMs = Arrays.copyOf(startMs, capacity);
+                endMs = Arrays.copyOf(endMs, capacity);
+                textStart = Arrays.copyOf(textStart, capacity + 1);
+                normStart = Arrays.copyOf(normStart, capacity);
+            }
+            startMs[count] = toMillis(startTime);
+            endMs[count] = toMillis(endTime);
+
+            textStart[count] = length;
+            append(text == null ? "" : text);
+            normStart[count] = length;
+            if (normalizedText == null) {
+                normMissing.set(count);
+            } else {
+                append(normalizedText);
+            }
+            count++;
+            return this;
+        }
+
+        /**
+         * Returns the number of segments added so far.
+         *
+         * @return the segment count
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Builds the transcript, trimming all arrays to their exact size.
+         *
+         * @return the immutable compact transcript
+         */
+        public CompactTranscript build() {
+            int[] starts = Arrays.copyOf(textStart, count + 1);
+            starts[count] = length;
+            boolean anyNormalized = normMissing.cardinality() < count;
+            return new CompactTranscript(
+                    Arrays.copyOf(startMs, count),
+                    Arrays.copyOf(endMs, count),
+                    Arrays.copyOf(utf8, length),
+                    starts,
+                    anyNormalized ? Arrays.copyOf(normStart, count) : null,
+                    anyNormalized ? (BitSet) normMissing.clone() : null,
+                    0,
+                    count);
+        }
+
+        private void append(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (length + bytes.length > utf8.length) {
+                utf8 = Arrays.copyOf(utf8, Math.max(utf8.length * 2, length + bytes.length));
+            }
+            System.arraycopy(bytes, 0, utf8, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private static int toMillis(double seconds) {
+            return (int) Math.round(seconds * 1000.0);
+        }
+    }
+
+    /**
+     * Serializes a transcript in the same JSON shape as a list of {@link TranscriptSegment} beans.
+     */
+    public static final class Serializer extends StdSerializer<CompactTranscript> {
+
+        public Serializer() {
+            super(CompactTranscript.class);
+        }
+
+        @Override
+        public void serialize(CompactTranscript transcript, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            boolean rawUtf8 = gen instanceof UTF8JsonGenerator;
+            gen.writeStartArray(transcript, transcript.size);
+            for (int index = 0; index < transcript.size; index++) {
+                int i = transcript.from + index;
+                gen.writeStartObject();
+                gen.writeNumberField("startTime", transcript.startMs[i] / 1000.0);
+                gen.writeNumberField("endTime", transcript.endMs[i] / 1000.0);
+                transcript.writeText(gen, i, rawUtf8);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
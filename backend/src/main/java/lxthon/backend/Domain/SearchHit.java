@@ -0,0 +1,60 @@
+package lxthon.backend.Domain;
+
+import java.util.List;
+
+/**
+ * A video matching a transcript search, with the moments where the query terms are spoken.
+ */
+public class SearchHit {
+    /**
+     * The canonical ID of the matching video.
+     */
+    private String videoId;
+
+    /**
+     * Which transcript matched: "raw" captions or the "cleaned" transcript.
+     */
+    private String source;
+
+    /**
+     * The relevance score; higher is better. Only meaningful relative to other hits of the same query.
+     */
+    private double score;
+
+    /**
+     * Start times in seconds of the segments mentioning the query, best matches first.
+     */
+    private List<Double> timestamps;
+
+    /**
+     * Default constructor for frameworks that require a no-arg constructor.
+     */
+    public SearchHit() {}
+
+    /**
+     * Constructs a SearchHit with all fields specified.
+     *
+     * @param videoId    the canonical video ID
+     * @param source     the transcript that matched
+     * @param score      the relevance score
+     * @param timestamps the segment start times in seconds
+     */
+    public SearchHit(String videoId, String source, double score, List<Double> timestamps) {
+        this.videoId = videoId;
+        this.source = source;
+        this.score = score;
+        this.timestamps = timestamps;
+    }
+
+    public String getVideoId() { return videoId; }
+    public void setVideoId(String videoId) { this.videoId = videoId; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public double getScore() { return score; }
+    public void setScore(double score) { this.score = score; }
+
+    public List<Double> getTimestamps() { return timestamps; }
+    public void setTimestamps(List<Double> timestamps) { this.timestamps = timestamps; }
+}
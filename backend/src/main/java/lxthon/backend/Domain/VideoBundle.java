@@ -0,0 +1,148 @@
+package lxthon.backend.Domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+
+/**
+ * Everything the application needs about a video, gathered by a single yt-dlp run.
+ * <p>
+ * Holds the typed metadata (title, duration, chapters, available caption languages)
+ * together with the parsed English transcript, plus the raw metadata JSON that the
+ * <code>/info</code> endpoint returns unchanged.
+ * </p>
+ */
+public class VideoBundle {
+
+    /**
+     * The canonical video ID.
+     */
+    private String videoId;
+
+    /**
+     * The video title.
+     */
+    private String title;
+
+    /**
+     * The video duration in seconds (0 if unknown, e.g. for live streams).
+     */
+    private double durationSeconds;
+
+    /**
+     * The chapters defined by the uploader, in order; empty if the video has none.
+     */
+    private List<Chapter> chapters;
+
+    /**
+     * Languages with uploader-provided subtitles.
+     */
+    private List<String> subtitleLanguages;
+
+    /**
+     * Languages with automatically generated (or auto-translated) captions.
+     */
+    private List<String> autoCaptionLanguages;
+
+    /**
+     * The parsed English transcript; empty if the video has no English captions.
+     */
+    private List<TranscriptSegment> segments;
+
+    /**
+     * The raw yt-dlp metadata JSON, excluded from serialization of the bundle itself.
+     */
+    @JsonIgnore
+    private String infoJson;
+
+    /**
+     * Default constructor for frameworks that require a no-arg constructor.
+     */
+    public VideoBundle() {}
+
+    /**
+     * Constructs a VideoBundle with all fields specified.
+     *
+     * @param videoId              the canonical video ID
+     * @param title                the video title
+     * @param durationSeconds      the duration in seconds
+     * @param chapters             the chapters of the video
+     * @param subtitleLanguages    languages with uploader-provided subtitles
+     * @param autoCaptionLanguages languages with automatic captions
+     * @param segments             the parsed English transcript
+     * @param infoJson             the raw yt-dlp metadata JSON
+     */
+    public VideoBundle(String videoId, String title, double durationSeconds, List<Chapter> chapters,
+                       List<String> subtitleLanguages, List<String> autoCaptionLanguages,
+                       List<TranscriptSegment> segments, String infoJson) {
+        this.videoId = videoId;
+        this.title = title;
+        this.durationSeconds = durationSeconds;
+        this.chapters = chapters;
+        this.subtitleLanguages = subtitleLanguages;
+        this.autoCaptionLanguages = autoCaptionLanguages;
+        this.segments = segments;
+        this.infoJson = infoJson;
+    }
+
+    public String getVideoId() { return videoId; }
+    public void setVideoId(String videoId) { this.videoId = videoId; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public double getDurationSeconds() { return durationSeconds; }
+    public void setDurationSeconds(double durationSeconds) { this.durationSeconds = durationSeconds; }
+
+    public List<Chapter> getChapters() { return chapters; }
+    public void setChapters(List<Chapter> chapters) { this.chapters = chapters; }
+
+    public List<String> getSubtitleLanguages() { return subtitleLanguages; }
+    public void setSubtitleLanguages(List<String> subtitleLanguages) { this.subtitleLanguages = subtitleLanguages; }
+
+    public List<String> getAutoCaptionLanguages() { return autoCaptionLanguages; }
+    public void setAutoCaptionLanguages(List<String> autoCaptionLanguages) { this.autoCaptionLanguages = autoCaptionLanguages; }
+
+    public List<TranscriptSegment> getSegments() { return segments; }
+    public void setSegments(List<TranscriptSegment> segments) { this.segments = segments; }
+
+    @JsonIgnore
+    public String getInfoJson() { return infoJson; }
+    public void setInfoJson(String infoJson) { this.infoJson = infoJson; }
+
+    /**
+     * A chapter of a video as defined by its uploader.
+     */
+    public static class Chapter {
+        private String title;
+        private double startTime;
+        private double endTime;
+
+        /**
+         * Default constructor for frameworks that require a no-arg constructor.
+         */
+        public Chapter() {}
+
+        /**
+         * Constructs a Chapter.
+         *
+         * @param title     the chapter title
+         * @param startTime the start time in seconds
+         * @param endTime   the end time in seconds
+         */
+        public Chapter(String title, double startTime, double endTime) {
+            this.title = title;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        public String getTitle() { return title; }
+        public void setTitle(String title) { this.title = title; }
+
+        public double getStartTime() { return startTime; }
+        public void setStartTime(double startTime) { this.startTime = startTime; }
+
+        public double getEndTime() { return endTime; }
+        public void setEndTime(double endTime) { this.endTime = endTime; }
+    }
+}
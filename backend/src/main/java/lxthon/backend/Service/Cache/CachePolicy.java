@@ -0,0 +1,78 @@
+package lxthon.backend.Service.Cache;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * How an LLM caller wants its responses cached by the {@link LlmResponseCache}.
+ * <p>
+ * Caching is opt-in: deterministic callers (summaries, quizzes) pass a policy with a
+ * time to live, while callers that want a fresh response every time (podcast scripts)
+ * pass {@link #NONE}.
+ * </p>
+ */
+public final class CachePolicy {
+
+    /**
+     * Never read from or write to the cache.
+     */
+    public static final CachePolicy NONE = new CachePolicy(Duration.ZERO, response -> false);
+
+    private final Duration ttl;
+
+    private final Predicate<String> cacheable;
+
+    private CachePolicy(Duration ttl, Predicate<String> cacheable) {
+        this.ttl = ttl;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Caches responses for the given time.
+     *
+     * @param ttl how long a cached response may be served; zero or negative disables caching
+     * @return the policy
+     */
+    public static CachePolicy ttl(Duration ttl) {
+        return ttl == null || ttl.isZero() || ttl.isNegative() ? NONE : new CachePolicy(ttl, response -> true);
+    }
+
+    /**
+     * Returns a policy that only caches responses passing {@code check}, e.g. ones that parse,
+     * so a malformed response is not served again until it expires.
+     *
+     * @param check decides whether a response may be cached
+     * @return the restricted policy
+     */
+    public CachePolicy onlyIf(Predicate<String> check) {
+        return isEnabled() ? new CachePolicy(ttl, cacheable.and(check)) : NONE;
+    }
+
+    /**
+     * Returns whether responses are cached at all.
+     *
+     * @return {@code true} unless this is {@link #NONE}
+     */
+    public boolean isEnabled() {
+        return this != NONE;
+    }
+
+    /**
+     * Returns how long a cached response may be served.
+     *
+     * @return the time to live
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Returns whether a response may be cached under this policy.
+     *
+     * @param response the complete response
+     * @return {@code true} if caching is enabled and the response passes any check
+     */
+    public boolean isCacheable(String response) {
+        return isEnabled() && cacheable.test(response);
+    }
+}
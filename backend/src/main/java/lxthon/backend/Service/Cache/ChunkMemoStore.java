@@ -0,0 +1,273 @@
+package lxthon.backend.Service.Cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier memo of LLM results for individual prompt chunks, keyed by a content hash.
+ * <p>
+ * Keys are SHA-256 digests of everything that determines the result (see
+ * {@link #key(String...)}), typically the model, a version of the prompt and the chunk
+ * text, so identical chunks from different videos (intros, sponsor reads, re-uploads)
+ * are only sent to the model once. Like {@link TranscriptCache}, hot entries live in an
+ * LRU map bounded by size and every entry is also written to a file; the number of files
+ * is bounded too, and the least recently used ones are pruned when it is exceeded.
+ * </p>
+ */
+@Service
+public class ChunkMemoStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkMemoStore.class);
+
+    private static final String FILE_SUFFIX = ".memo";
+
+    /**
+     * Fraction of the disk entries kept when pruning, so pruning does not run on every put.
+     */
+    private static final double PRUNE_TO = 0.9;
+
+    private final Path directory;
+
+    private final long maxMemoryBytes;
+
+    private final int maxDiskEntries;
+
+    /**
+     * Access-ordered map used as the in-memory LRU tier. Guarded by {@code this}.
+     */
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long memoryBytes;
+
+    private final AtomicInteger diskEntries = new AtomicInteger();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs the memo store.
+     *
+     * @param directory      the directory holding the on-disk tier (created if missing)
+     * @param maxMemoryBytes the approximate heap budget for the in-memory tier
+     * @param maxDiskEntries the maximum number of entries kept on disk
+     */
+    public ChunkMemoStore(@Value("${llm.memo.dir:${java.io.tmpdir}/lxthon-llm-memo}") String directory,
+                          @Value("${llm.memo.max-memory-bytes:16777216}") long maxMemoryBytes,
+                          @Value("${llm.memo.max-disk-entries:20000}") int maxDiskEntries) {
+        this.directory = Paths.get(directory);
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskEntries = Math.max(1, maxDiskEntries);
+
+        try {
+            Files.createDirectories(this.directory);
+            try (Stream<Path> files = Files.list(this.directory)) {
+                diskEntries.set((int) files.filter(ChunkMemoStore::isEntry).count());
+            }
+        } catch (IOException e) {
+            log.warn("Could not prepare chunk memo directory {}: {}", this.directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Derives a memo key from the parts that determine a result.
+     * <p>
+     * Parts are length-prefixed before hashing, so different splits of the same
+     * characters never collide.
+     * </p>
+     *
+     * @param parts e.g. the model, the prompt version and the chunk text
+     * @return the hex-encoded SHA-256 digest
+     */
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                digest.update((bytes.length + ":").getBytes(StandardCharsets.US_ASCII));
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Looks up a memoized result, checking memory first and then disk.
+     *
+     * @param key a key from {@link #key(String...)}
+     * @return the memoized result, or {@code null} if there is none
+     */
+    public String get(String key) {
+        synchronized (this) {
+            String value = memory.get(key);
+            if (value != null) {
+                memoryHits.incrementAndGet();
+                return value;
+            }
+        }
+
+        Path file = fileFor(key);
+        try {
+            String value = Files.readString(file, StandardCharsets.UTF_8);
+            // Refresh the timestamp pruning uses to find least recently used entries
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            diskHits.incrementAndGet();
+            putInMemory(key, value);
+            return value;
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Memoizes a result in both tiers.
+     *
+     * @param key   a key from {@link #key(String...)}
+     * @param value the result to memoize
+     */
+    public void put(String key, String value) {
+        putInMemory(key, value);
+
+        Path file = fileFor(key);
+        Path temp = null;
+        try {
+            boolean existed = Files.exists(file);
+            temp = Files.createTempFile(directory, "memo", ".tmp");
+            Files.writeString(temp, value, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!existed && diskEntries.incrementAndGet() > maxDiskEntries) {
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            log.warn("Could not persist chunk memo {}: {}", key, e.getMessage());
+        } finally {
+            deleteTemp(temp);
+        }
+    }
+
+    /**
+     * Returns hit/miss counters and the current size of both tiers.
+     *
+     * @return a map of statistic name to value
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memoryEntries", memory.size());
+        stats.put("memoryBytes", memoryBytes);
+        stats.put("diskEntries", diskEntries.get());
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private synchronized void putInMemory(String key, String value) {
+        long weight = weigh(value);
+        if (weight > maxMemoryBytes) {
+            return;
+        }
+
+        String previous = memory.put(key, value);
+        if (previous != null) {
+            memoryBytes -= weigh(previous);
+        }
+        memoryBytes += weight;
+
+        Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            Map.Entry<String, String> victim = eldest.next();
+            memoryBytes -= weigh(victim.getValue());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Deletes a temp file left behind by a failed write; a no-op once it has been moved.
+     */
+    private static void deleteTemp(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}: {}", temp, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until only {@link #PRUNE_TO} of the allowed entries remain.
+     */
+    private synchronized void pruneDisk() {
+        if (diskEntries.get() <= maxDiskEntries) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.filter(ChunkMemoStore::isEntry)
+                    .sorted(Comparator.comparing(ChunkMemoStore::lastModified))
+                    .toList();
+            int excess = entries.size() - (int) (maxDiskEntries * PRUNE_TO);
+            for (int i = 0; i < excess; i++) {
+                if (Files.deleteIfExists(entries.get(i))) {
+                    evictions.incrementAndGet();
+                }
+            }
+            diskEntries.set(entries.size() - Math.max(excess, 0));
+        } catch (IOException e) {
+            log.warn("Could not prune chunk memo directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    private static boolean isEntry(Path file) {
+        return file.getFileName().toString().endsWith(FILE_SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long weigh(String value) {
+        // Key string, map entry and the value's backing array
+        return 200 + 2L * value.length();
+    }
+}
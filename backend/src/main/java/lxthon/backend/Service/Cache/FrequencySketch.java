@@ -0,0 +1,105 @@
+package lxthon.backend.Service.Cache;
+
+/**
+ * Approximate, aging access-frequency counter used for TinyLFU cache admission.
+ * <p>
+ * A count-min sketch of 4-bit counters: each key increments one counter in each of four
+ * rows and its frequency is the smallest of the four, so collisions can only overestimate.
+ * After a sample of {@code 10 × width} increments every counter is halved, so the sketch
+ * reflects recent popularity rather than all-time counts. The whole sketch takes
+ * {@code 8 × width} bytes, independent of the number of distinct keys.
+ * </p>
+ * <p>
+ * Not thread-safe; callers synchronize.
+ * </p>
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0x97cb3127a1e2f5c3L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L, 0x9e3779b97f4a7c15L};
+
+    private static final long HALVE_MASK = 0x7777777777777777L;
+
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * Sixteen 4-bit counters per word.
+     */
+    private final long[] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * Creates a sketch sized for about {@code expectedEntries} distinct hot keys.
+     *
+     * @param expectedEntries the number of entries the cache is expected to hold
+     */
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(64, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+        this.table = new long[width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Returns the estimated recent access count of a key, at most 15.
+     *
+     * @param hash the key's hash code
+     * @return the estimated frequency
+     */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long h = spread(hash, row);
+            int shift = counterShift(h);
+            frequency = Math.min(frequency, (int) ((table[index(h)] >>> shift) & MAX_COUNT));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one access to a key, aging all counters once the sample is full.
+     *
+     * @param hash the key's hash code
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long h = spread(hash, row);
+            int index = index(h);
+            int shift = counterShift(h);
+            if (((table[index] >>> shift) & MAX_COUNT) < MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALVE_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static long spread(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> 32);
+    }
+
+    private int index(long h) {
+        return (int) h & mask;
+    }
+
+    private static int counterShift(long h) {
+        // The counter within the word comes from bits the index does not use
+        return (int) ((h >>> 40) & 15) << 2;
+    }
+}
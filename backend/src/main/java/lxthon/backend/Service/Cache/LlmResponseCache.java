@@ -0,0 +1,444 @@
+package lxthon.backend.Service.Cache;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache of complete LLM responses, keyed by a hash of the whole request.
+ * <p>
+ * The in-memory tier follows W-TinyLFU: new responses enter a small LRU window (1% of
+ * the byte budget, but room for a few responses at least); responses leaving the window only enter the main region if a
+ * {@link FrequencySketch} says they are requested more often than the main region's
+ * eviction victim. The main region is a segmented LRU whose protected segment (80%)
+ * holds responses hit at least twice, so one-off prompts and scans never push out the
+ * summaries and quizzes that are asked for again and again.
+ * </p>
+ * <p>
+ * Every response is also written to the optional disk tier, bounded by entry count like
+ * the {@link ChunkMemoStore}. Each entry carries the expiry its caller chose through a
+ * {@link CachePolicy}; expired entries are dropped on lookup. Disk reads and writes run
+ * on virtual threads, so lookups never block the HTTP client threads.
+ * </p>
+ */
+@Service
+public class LlmResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    private static final String FILE_SUFFIX = ".llm";
+
+    /**
+     * Fraction of the memory budget taken by the admission window.
+     */
+    private static final double WINDOW_SHARE = 0.01;
+
+    /**
+     * Typical responses the window holds at least, so new responses get a chance to be hit again.
+     */
+    private static final int MIN_WINDOW_ENTRIES = 16;
+
+    /**
+     * Fraction of the main region reserved for responses hit more than once.
+     */
+    private static final double PROTECTED_SHARE = 0.8;
+
+    /**
+     * Fraction of the disk entries kept when pruning, so pruning does not run on every put.
+     */
+    private static final double PRUNE_TO = 0.9;
+
+    /**
+     * Typical response size, used to size the frequency sketch.
+     */
+    private static final int TYPICAL_ENTRY_BYTES = 4096;
+
+    private final Path directory;
+
+    private final boolean diskEnabled;
+
+    private final int maxDiskEntries;
+
+    private final long windowMax;
+    private final long protectedMax;
+    private final long mainMax;
+
+    // The three regions, each access-ordered so the first entry is the least recently used. Guarded by this.
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(256, 0.75f, true);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+    private final FrequencySketch sketch;
+
+    private final ExecutorService diskExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger diskEntries = new AtomicInteger();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * Constructs the cache.
+     *
+     * @param directory      the directory holding the on-disk tier (created if missing)
+     * @param diskEnabled    whether responses are also kept on disk
+     * @param maxMemoryBytes the approximate heap budget for the in-memory tier
+     * @param maxDiskEntries the maximum number of entries kept on disk
+     */
+    public LlmResponseCache(@Value("${llm.cache.dir:${java.io.tmpdir}/lxthon-llm-cache}") String directory,
+                            @Value("${llm.cache.disk-enabled:true}") boolean diskEnabled,
+                            @Value("${llm.cache.max-memory-bytes:33554432}") long maxMemoryBytes,
+                            @Value("${llm.cache.max-disk-entries:10000}") int maxDiskEntries) {
+        this.directory = Paths.get(directory);
+        this.maxDiskEntries = Math.max(1, maxDiskEntries);
+        this.windowMax = Math.max(1, Math.max((long) (maxMemoryBytes * WINDOW_SHARE),
+                Math.min(maxMemoryBytes / 4, (long) MIN_WINDOW_ENTRIES * TYPICAL_ENTRY_BYTES)));
+        this.mainMax = Math.max(1, maxMemoryBytes - windowMax);
+        this.protectedMax = (long) (mainMax * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxMemoryBytes / TYPICAL_ENTRY_BYTES));
+
+        boolean usable = diskEnabled;
+        if (diskEnabled) {
+            try {
+                Files.createDirectories(this.directory);
+                try (Stream<Path> files = Files.list(this.directory)) {
+                    diskEntries.set((int) files.filter(LlmResponseCache::isEntry).count());
+                }
+            } catch (IOException e) {
+                log.warn("Could not prepare LLM cache directory {}, keeping responses in memory only: {}",
+                        this.directory, e.getMessage());
+                usable = false;
+            }
+        }
+        this.diskEnabled = usable;
+    }
+
+    /**
+     * Looks up a cached response, checking memory first and then disk.
+     *
+     * @param key a request hash, e.g. from {@link ChunkMemoStore#key(String...)}
+     * @return a future of the response, or of {@code null} if none is cached; completed
+     *         immediately unless the disk has to be read
+     */
+    public CompletableFuture<String> getAsync(String key) {
+        String value = getFromMemory(key);
+        if (value != null) {
+            memoryHits.incrementAndGet();
+            return CompletableFuture.completedFuture(value);
+        }
+        if (!diskEnabled) {
+            misses.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> getFromDisk(key), diskExecutor);
+    }
+
+    /**
+     * Caches a response in both tiers until {@code policy}'s time to live has passed.
+     *
+     * @param key    a request hash
+     * @param value  the complete response
+     * @param policy the caller's policy; nothing is cached if it is disabled or rejects the response
+     */
+    public void put(String key, String value, CachePolicy policy) {
+        if (value == null || value.isEmpty() || !policy.isCacheable(value)) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + policy.getTtl().toMillis();
+        putInMemory(key, new Entry(value, expiresAt));
+        if (diskEnabled) {
+            diskExecutor.execute(() -> writeToDisk(key, value, expiresAt));
+        }
+    }
+
+    /**
+     * Returns hit/miss counters, the hit rate and the current size of both tiers.
+     *
+     * @return a map of statistic name to value
+     */
+    public synchronized Map<String, Object> getStats() {
+        long hits = memoryHits.get() + diskHits.get();
+        long lookups = hits + misses.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memoryEntries", window.size() + probation.size() + protectedSegment.size());
+        stats.put("memoryBytes", windowBytes + probationBytes + protectedBytes);
+        stats.put("protectedEntries", protectedSegment.size());
+        stats.put("diskEntries", diskEnabled ? diskEntries.get() : 0);
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        stats.put("expired", expired.get());
+        stats.put("evictions", evictions.get());
+        stats.put("admissionRejections", rejections.get());
+        return stats;
+    }
+
+    /**
+     * Stops the disk executor when the application context shuts down, letting pending
+     * writes finish.
+     */
+    @PreDestroy
+    public void shutdown() {
+        diskExecutor.shutdown();
+        try {
+            if (!diskExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("LLM cache disk writes still pending at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized String getFromMemory(String key) {
+        sketch.increment(key.hashCode());
+
+        Entry entry = window.get(key);
+        if (entry == null) {
+            entry = protectedSegment.get(key);
+        }
+        if (entry == null) {
+            entry = probation.remove(key);
+            if (entry != null) {
+                // A second hit: promote, demoting the least recently used protected entries if full
+                probationBytes -= entry.weight;
+                protectedSegment.put(key, entry);
+                protectedBytes += entry.weight;
+                demoteProtected();
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            remove(key);
+            expired.incrementAndGet();
+            return null;
+        }
+        return entry.value;
+    }
+
+    private synchronized void putInMemory(String key, Entry entry) {
+        remove(key);
+        if (entry.weight > mainMax) {
+            return;
+        }
+
+        window.put(key, entry);
+        windowBytes += entry.weight;
+        Iterator<Map.Entry<String, Entry>> eldest = window.entrySet().iterator();
+        while (windowBytes > windowMax && eldest.hasNext()) {
+            Map.Entry<String, Entry> candidate = eldest.next();
+            eldest.remove();
+            windowBytes -= candidate.getValue().weight;
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * Moves an entry leaving the window into the main region if it is more popular than
+     * what it would displace (TinyLFU admission).
+     * <p>
+     * The candidate is compared once, with the main region's first victim, before anything
+     * is evicted: a rejected candidate leaves the main region untouched, and an admitted
+     * one evicts as many victims as its size requires.
+     * </p>
+     */
+    private void admit(String key, Entry candidate) {
+        if (probationBytes + protectedBytes + candidate.weight > mainMax) {
+            LinkedHashMap<String, Entry> region = probation.isEmpty() ? protectedSegment : probation;
+            String victim = region.keySet().iterator().next();
+            if (sketch.frequency(key.hashCode()) <= sketch.frequency(victim.hashCode())) {
+                rejections.incrementAndGet();
+                return;
+            }
+            while (probationBytes + protectedBytes + candidate.weight > mainMax) {
+                region = probation.isEmpty() ? protectedSegment : probation;
+                remove(region.keySet().iterator().next());
+                evictions.incrementAndGet();
+            }
+        }
+        probation.put(key, candidate);
+        probationBytes += candidate.weight;
+    }
+
+    private void demoteProtected() {
+        Iterator<Map.Entry<String, Entry>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedBytes > protectedMax && eldest.hasNext()) {
+            Map.Entry<String, Entry> demoted = eldest.next();
+            eldest.remove();
+            protectedBytes -= demoted.getValue().weight;
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationBytes += demoted.getValue().weight;
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = window.remove(key);
+        if (removed != null) {
+            windowBytes -= removed.weight;
+        }
+        removed = probation.remove(key);
+        if (removed != null) {
+            probationBytes -= removed.weight;
+        }
+        removed = protectedSegment.remove(key);
+        if (removed != null) {
+            protectedBytes -= removed.weight;
+        }
+    }
+
+    /**
+     * Reads an entry from disk: the first line holds its expiry in epoch milliseconds.
+     */
+    private String getFromDisk(String key) {
+        Path file = fileFor(key);
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            long expiresAt = Long.parseLong(content.substring(0, newline));
+            if (expiresAt <= System.currentTimeMillis()) {
+                if (Files.deleteIfExists(file)) {
+                    diskEntries.decrementAndGet();
+                }
+                expired.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            String value = content.substring(newline + 1);
+            // Refresh the timestamp pruning uses to find least recently used entries
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            diskHits.incrementAndGet();
+            putInMemory(key, new Entry(value, expiresAt));
+            return value;
+        } catch (IOException | RuntimeException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String value, long expiresAt) {
+        Path file = fileFor(key);
+        Path temp = null;
+        try {
+            boolean existed = Files.exists(file);
+            temp = Files.createTempFile(directory, "llm", ".tmp");
+            Files.writeString(temp, expiresAt + "\n" + value, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!existed && diskEntries.incrementAndGet() > maxDiskEntries) {
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            log.warn("Could not persist LLM response {}: {}", key, e.getMessage());
+        } finally {
+            deleteTemp(temp);
+        }
+    }
+
+    /**
+     * Deletes a temp file left behind by a failed write; a no-op once it has been moved.
+     */
+    private static void deleteTemp(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}: {}", temp, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until only {@link #PRUNE_TO} of the allowed entries remain.
+     */
+    private synchronized void pruneDisk() {
+        if (diskEntries.get() <= maxDiskEntries) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.filter(LlmResponseCache::isEntry)
+                    .sorted(Comparator.comparing(LlmResponseCache::lastModified))
+                    .toList();
+            int excess = entries.size() - (int) (maxDiskEntries * PRUNE_TO);
+            for (int i = 0; i < excess; i++) {
+                if (Files.deleteIfExists(entries.get(i))) {
+                    evictions.incrementAndGet();
+                }
+            }
+            diskEntries.set(entries.size() - Math.max(excess, 0));
+        } catch (IOException e) {
+            log.warn("Could not prune LLM cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    private static boolean isEntry(Path file) {
+        return file.getFileName().toString().endsWith(FILE_SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * A cached response with its expiry and approximate heap footprint.
+     */
+    private static final class Entry {
+        final String value;
+        final long expiresAt;
+        final long weight;
+
+        Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            // Key string, map entry and the value's backing array
+            this.weight = 250 + 2L * value.length();
+        }
+
+        boolean isExpired() {
+            return expiresAt <= System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package lxthon.backend.Service.Cache;
+
+import lxthon.backend.Domain.CompactTranscript;
+import lxthon.backend.Domain.TranscriptSegment;
+import lxthon.backend.Service.Codec.TranscriptCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache of raw transcripts keyed by canonical video ID.
+ * <p>
+ * Hot entries are kept in memory as {@link CompactTranscript}s in an access-ordered
+ * map that evicts the least recently used transcripts once their heap footprint
+ * exceeds the configured budget. Every transcript is also written to a file in the
+ * cache directory, in the compact binary {@link TranscriptCodec} format, so evicted
+ * entries and entries from previous runs are reloaded from disk instead of spawning
+ * yt-dlp again. The number of files is bounded, and the least recently used ones are
+ * pruned when it is exceeded.
+ * </p>
+ */
+@Service
+public class TranscriptCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptCache.class);
+
+    private static final String FILE_SUFFIX = ".lxtr";
+
+    /**
+     * Fraction of the disk entries kept when pruning, so pruning does not run on every put.
+     */
+    private static final double PRUNE_TO = 0.9;
+
+    private final Path directory;
+
+    private final long maxMemoryBytes;
+
+    private final int maxDiskEntries;
+
+    /**
+     * Access-ordered map used as the in-memory LRU tier. Guarded by {@code this}.
+     */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long memoryBytes;
+
+    private final AtomicInteger diskEntries = new AtomicInteger();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs the cache.
+     *
+     * @param directory      the directory holding the on-disk tier (created if missing)
+     * @param maxMemoryBytes the approximate heap budget for the in-memory tier
+     * @param maxDiskEntries the maximum number of transcripts kept on disk
+     */
+    public TranscriptCache(@Value("${transcript.cache.dir:${java.io.tmpdir}/lxthon-transcripts}") String directory,
+                           @Value("${transcript.cache.max-memory-bytes:67108864}") long maxMemoryBytes,
+                           @Value("${transcript.cache.max-disk-entries:5000}") int maxDiskEntries) {
+        this.directory = Paths.get(directory);
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskEntries = Math.max(1, maxDiskEntries);
+
+        try {
+            Files.createDirectories(this.directory);
+            try (Stream<Path> files = Files.list(this.directory)) {
+                diskEntries.set((int) files.filter(TranscriptCache::isEntry).count());
+            }
+        } catch (IOException e) {
+            log.warn("Could not prepare transcript cache directory {}: {}", this.directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Looks up the transcript for a video, checking memory first and then disk.
+     * <p>
+     * Disk hits are promoted back into the memory tier.
+     * </p>
+     *
+     * @param videoId the canonical video ID
+     * @return the cached, immutable transcript, or {@code null} if the video is not cached
+     */
+    public List<TranscriptSegment> get(String videoId) {
+        synchronized (this) {
+            Entry entry = memory.get(videoId);
+            if (entry != null) {
+                memoryHits.incrementAndGet();
+                return entry.segments;
+            }
+        }
+
+        CompactTranscript segments = readFromDisk(videoId);
+        if (segments == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        diskHits.incrementAndGet();
+        putInMemory(videoId, segments);
+        return segments;
+    }
+
+    /**
+     * Stores a transcript in both tiers.
+     *
+     * @param videoId  the canonical video ID
+     * @param segments the transcript segments to cache
+     * @return the immutable compact transcript that was stored
+     */
+    public List<TranscriptSegment> put(String videoId, List<TranscriptSegment> segments) {
+        CompactTranscript stored = CompactTranscript.of(segments);
+        putInMemory(videoId, stored);
+        writeToDisk(videoId, stored);
+        return stored;
+    }
+
+    /**
+     * Removes a video from both tiers.
+     *
+     * @param videoId the canonical video ID
+     */
+    public void invalidate(String videoId) {
+        synchronized (this) {
+            Entry removed = memory.remove(videoId);
+            if (removed != null) {
+                memoryBytes -= removed.weight;
+            }
+        }
+        try {
+            if (Files.deleteIfExists(fileFor(videoId))) {
+                diskEntries.decrementAndGet();
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete cached transcript {}: {}", videoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns hit/miss counters and the current size of both tiers.
+     *
+     * @return a map of statistic name to value
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memoryEntries", memory.size());
+        stats.put("memoryBytes", memoryBytes);
+        stats.put("maxMemoryBytes", maxMemoryBytes);
+        stats.put("diskEntries", diskEntries.get());
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private synchronized void putInMemory(String videoId, CompactTranscript segments) {
+        long weight = segments.estimatedHeapBytes();
+        if (weight > maxMemoryBytes) {
+            // Too large to keep hot; it will still be served from disk.
+            return;
+        }
+
+        Entry previous = memory.put(videoId, new Entry(segments, weight));
+        if (previous != null) {
+            memoryBytes -= previous.weight;
+        }
+        memoryBytes += weight;
+
+        Iterator<Map.Entry<String, Entry>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            memoryBytes -= victim.getValue().weight;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private CompactTranscript readFromDisk(String videoId) {
+        Path file = fileFor(videoId);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            CompactTranscript segments = TranscriptCodec.decode(Files.readAllBytes(file));
+            // Refresh the timestamp pruning uses to find least recently used entries
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return segments;
+        } catch (IOException e) {
+            log.warn("Discarding unreadable cached transcript {}: {}", file, e.getMessage());
+            try {
+                if (Files.deleteIfExists(file)) {
+                    diskEntries.decrementAndGet();
+                }
+            } catch (IOException ignored) {
+                // best effort
+            }
+            return null;
+        }
+    }
+
+    private void writeToDisk(String videoId, List<TranscriptSegment> segments) {
+        Path file = fileFor(videoId);
+        Path temp = null;
+        try {
+            boolean existed = Files.exists(file);
+            // Write to a temp file first so a crash never leaves a half-written entry behind
+            temp = Files.createTempFile(directory, videoId, ".tmp");
+            Files.write(temp, TranscriptCodec.encode(segments));
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!existed && diskEntries.incrementAndGet() > maxDiskEntries) {
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            log.warn("Could not persist transcript {} to disk: {}", videoId, e.getMessage());
+        } finally {
+            deleteTemp(temp);
+        }
+    }
+
+    /**
+     * Deletes a temp file left behind by a failed write; a no-op once it has been moved.
+     */
+    private static void deleteTemp(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}: {}", temp, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until only {@link #PRUNE_TO} of the allowed entries remain.
+     */
+    private synchronized void pruneDisk() {
+        if (diskEntries.get() <= maxDiskEntries) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.filter(TranscriptCache::isEntry)
+                    .sorted(Comparator.comparing(TranscriptCache::lastModified))
+                    .toList();
+            int excess = entries.size() - (int) (maxDiskEntries * PRUNE_TO);
+            for (int i = 0; i < excess; i++) {
+                if (Files.deleteIfExists(entries.get(i))) {
+                    evictions.incrementAndGet();
+                }
+            }
+            diskEntries.set(entries.size() - Math.max(excess, 0));
+        } catch (IOException e) {
+            log.warn("Could not prune transcript cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String videoId) {
+        return directory.resolve(videoId + FILE_SUFFIX);
+    }
+
+    private static boolean isEntry(Path file) {
+        return file.getFileName().toString().endsWith(FILE_SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * A memory-tier entry together with its estimated heap weight.
+     */
+    private static final class Entry {
+        private final CompactTranscript segments;
+        private final long weight;
+
+        private Entry(CompactTranscript segments, long weight) {
+            this.segments = segments;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package lxthon.backend.Service.Chunking;
+
+import lxthon.backend.Domain.CompactTranscript;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits transcripts and texts into chunks that fill, but do not overflow, the model's
+ * per-request token budget.
+ * <p>
+ * The budget for a chunk is derived from the model limits configured under
+ * <code>llm.*</code>, minus the fixed prompt around the chunk and the tokens reserved for
+ * the completion (see {@link #inputBudget(int, int, double)}). Chunks are packed greedily
+ * with whole segments; once a chunk is mostly full it is preferably closed after a segment
+ * ending a sentence, so the model does not see half a thought. Only a single segment that
+ * is larger than the budget on its own is split, at sentence and then word boundaries.
+ * Token counts come from {@link TokenEstimator}.
+ * </p>
+ * <p>
+ * {@link #planContentDefined(CompactTranscript, boolean, int)} instead cuts at segments
+ * chosen by a hash of their own text, so chunk boundaries depend on the content around
+ * them rather than on where the transcript starts. Two transcripts sharing a long run of
+ * segments then produce identical chunks for that run, which is what makes per-chunk
+ * memoization effective on re-uploads and partially overlapping videos.
+ * </p>
+ */
+@Service
+public class ChunkPlanner {
+
+    /**
+     * Fraction of the budget after which a sentence boundary is preferred as the chunk end.
+     */
+    private static final double SENTENCE_WINDOW = 0.75;
+
+    /**
+     * Fraction of the budget after which a content-defined anchor closes the chunk.
+     */
+    private static final double ANCHOR_WINDOW = 0.5;
+
+    /**
+     * On average one segment in this many is an anchor; must be a power of two.
+     */
+    private static final int ANCHOR_PERIOD = 16;
+
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?…])\\s+");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int contextWindowTokens;
+
+    private final int maxOutputTokens;
+
+    private final int maxChunkTokens;
+
+    /**
+     * Constructs the planner.
+     *
+     * @param contextWindowTokens the maximum prompt plus completion size of one request
+     * @param maxOutputTokens     the maximum completion size of one request
+     * @param maxChunkTokens      an upper bound for the transcript part of one request, to keep
+     *                            individual calls (and their retries) reasonably short
+     */
+    public ChunkPlanner(@Value("${llm.context-window-tokens:8000}") int contextWindowTokens,
+                        @Value("${llm.max-output-tokens:4000}") int maxOutputTokens,
+                        @Value("${llm.chunk.max-input-tokens:12000}") int maxChunkTokens) {
+        this.contextWindowTokens = contextWindowTokens;
+        this.maxOutputTokens = maxOutputTokens;
+        this.maxChunkTokens = maxChunkTokens;
+    }
+
+    /**
+     * Computes how many transcript tokens fit in one request.
+     * <p>
+     * The completion is modelled as {@code reservedOutputTokens} plus
+     * {@code outputPerInputToken} tokens per input token: roughly 1.0 for a cleaner that
+     * rewrites its input, 0 for a summary of fixed size.
+     * </p>
+     *
+     * @param promptOverheadTokens the tokens of the fixed instructions around the chunk
+     * @param reservedOutputTokens the completion tokens needed regardless of the chunk size
+     * @param outputPerInputToken  the completion tokens needed per chunk token
+     * @return the chunk budget in tokens, at least 1
+     */
+    public int inputBudget(int promptOverheadTokens, int reservedOutputTokens, double outputPerInputToken) {
+        double fromContext = (contextWindowTokens - promptOverheadTokens - reservedOutputTokens) / (1.0 + outputPerInputToken);
+        double fromOutput = outputPerInputToken > 0
+                ? (maxOutputTokens - reservedOutputTokens) / outputPerInputToken
+                : Double.MAX_VALUE;
+        return (int) Math.max(1, Math.min(maxChunkTokens, Math.min(fromContext, fromOutput)));
+    }
+
+    /**
+     * Packs the segments of a transcript into chunks of at most {@code budget} tokens.
+     *
+     * @param transcript the transcript to split
+     * @param normalized whether to use the normalized text where a segment has it
+     * @param budget     the maximum tokens per chunk, e.g. from {@link #inputBudget(int, int, double)}
+     * @return the chunks in transcript order; empty for an empty transcript
+     */
+    public List<Chunk> plan(CompactTranscript transcript, boolean normalized, int budget) {
+        return plan(transcript, normalized, budget, false);
+    }
+
+    /**
+     * Packs the segments of a transcript into chunks of at most {@code budget} tokens whose
+     * boundaries are content-defined: once a chunk is half full it ends after the next
+     * anchor segment, an anchor being a segment whose text hashes to a fixed residue.
+     * <p>
+     * After any insertion, removal or edit, the chunking re-synchronizes at the first
+     * anchor both versions reach, usually within one chunk, so the unchanged parts of a
+     * transcript keep producing the same chunks.
+     * </p>
+     *
+     * @param transcript the transcript to split
+     * @param normalized whether to use the normalized text where a segment has it
+     * @param budget     the maximum tokens per chunk
+     * @return the chunks in transcript order; empty for an empty transcript
+     */
+    public List<Chunk> planContentDefined(CompactTranscript transcript, boolean normalized, int budget) {
+        return plan(transcript, normalized, budget, true);
+    }
+
+    private List<Chunk> plan(CompactTranscript transcript, boolean normalized, int budget, boolean contentDefined) {
+        int count = transcript.size();
+        String[] texts = new String[count];
+        int[] prefixTokens = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            String normalizedText = normalized ? transcript.getNormalizedText(i) : null;
+            texts[i] = normalizedText != null ? normalizedText : transcript.getText(i);
+            // One extra token for the separator joining segments
+            prefixTokens[i + 1] = prefixTokens[i] + TokenEstimator.estimate(texts[i]) + 1;
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        int sentenceEnd = -1;
+        for (int i = 0; i < count; i++) {
+            int segmentTokens = prefixTokens[i + 1] - prefixTokens[i];
+            if (segmentTokens > budget) {
+                // Oversized segment: close the current chunk and split the segment on its own
+                if (start < i) {
+                    chunks.add(chunk(texts, prefixTokens, start, i));
+                }
+                for (String piece : planText(texts[i], budget)) {
+                    chunks.add(new Chunk(i, i + 1, piece, TokenEstimator.estimate(piece)));
+                }
+                start = i + 1;
+                sentenceEnd = -1;
+                continue;
+            }
+
+            if (prefixTokens[i + 1] - prefixTokens[start] > budget) {
+                int cut = sentenceEnd > start ? sentenceEnd : i;
+                chunks.add(chunk(texts, prefixTokens, start, cut));
+                start = cut;
+                sentenceEnd = -1;
+                if (start < i && prefixTokens[i + 1] - prefixTokens[start] > budget) {
+                    // The tail carried over from the sentence boundary still leaves no room
+                    chunks.add(chunk(texts, prefixTokens, start, i));
+                    start = i;
+                }
+            }
+            int filled = prefixTokens[i + 1] - prefixTokens[start];
+            if (contentDefined) {
+                if (isAnchor(texts[i]) && filled >= budget * ANCHOR_WINDOW) {
+                    chunks.add(chunk(texts, prefixTokens, start, i + 1));
+                    start = i + 1;
+                }
+            } else if (endsSentence(texts[i]) && filled >= budget * SENTENCE_WINDOW) {
+                sentenceEnd = i + 1;
+            }
+        }
+        if (start < count) {
+            chunks.add(chunk(texts, prefixTokens, start, count));
+        }
+        return chunks;
+    }
+
+    /**
+     * Splits free text into pieces of at most {@code budget} tokens, at sentence
+     * boundaries where possible and at word boundaries otherwise.
+     *
+     * @param text   the text to split
+     * @param budget the maximum tokens per piece
+     * @return the pieces in order; empty for blank text
+     */
+    public List<String> planText(String text, int budget) {
+        List<String> pieces = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return pieces;
+        }
+
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (String sentence : SENTENCE_BREAK.split(text.trim())) {
+            int tokens = TokenEstimator.estimate(sentence) + 1;
+            if (tokens > budget) {
+                // A sentence too long for any chunk: fall back to packing its words
+                for (String word : WHITESPACE.split(sentence)) {
+                    int wordTokens = TokenEstimator.estimate(word) + 1;
+                    if (currentTokens + wordTokens > budget && current.length() > 0) {
+                        pieces.add(current.toString());
+                        current.setLength(0);
+                        currentTokens = 0;
+                    }
+                    append(current, word);
+                    currentTokens += wordTokens;
+                }
+                continue;
+            }
+            if (currentTokens + tokens > budget && current.length() > 0) {
+                pieces.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            append(current, sentence);
+            currentTokens += tokens;
+        }
+        if (current.length() > 0) {
+            pieces.add(current.toString());
+        }
+        return pieces;
+    }
+
+    private static Chunk chunk(String[] texts, int[] prefixTokens, int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            // Segments emptied by pre-cleaning contribute nothing, not even a separator
+            if (!texts[i].isEmpty()) {
+                append(text, texts[i]);
+            }
+        }
+        return new Chunk(from, to, text.toString(), prefixTokens[to] - prefixTokens[from]);
+    }
+
+    private static void append(StringBuilder builder, String text) {
+        if (builder.length() > 0) {
+            builder.append(' ');
+        }
+        builder.append(text);
+    }
+
+    private static boolean isAnchor(String text) {
+        // String.hashCode is specified, so anchors are stable across runs and JVMs
+        int h = text.trim().toLowerCase(Locale.ROOT).hashCode();
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return (h & (ANCHOR_PERIOD - 1)) == 0;
+    }
+
+    private static boolean endsSentence(String text) {
+        for (int i = text.length() - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c) && c != '"' && c != '\'' && c != ')') {
+                return c == '.' || c == '!' || c == '?' || c == '…';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A planned chunk: a run of whole segments (or a piece of one oversized segment) and its text.
+     */
+    public static final class Chunk {
+        private final int fromSegment;
+        private final int toSegment;
+        private final String text;
+        private final int tokens;
+
+        /**
+         * Constructs a Chunk.
+         *
+         * @param fromSegment the first segment index (inclusive)
+         * @param toSegment   the last segment index (exclusive)
+         * @param text        the chunk text, segments joined by single spaces
+         * @param tokens      the estimated token count of the text
+         */
+        public Chunk(int fromSegment, int toSegment, String text, int tokens) {
+            this.fromSegment = fromSegment;
+            this.toSegment = toSegment;
+            this.text = text;
+            this.tokens = tokens;
+        }
+
+        public int getFromSegment() { return fromSegment; }
+        public int getToSegment() { return toSegment; }
+        public String getText() { return text; }
+        public int getTokens() { return tokens; }
+    }
+}
@@ -0,0 +1,70 @@
+package lxthon.backend.Service.Chunking;
+
+/**
+ * Local, dependency-free estimate of how many tokens a text takes in GPT-4o style
+ * byte-pair encodings.
+ * <p>
+ * The estimate mirrors how those tokenizers split text rather than dividing by a fixed
+ * characters-per-token ratio: a word (with its leading space) is one token up to about
+ * six letters and one more per further six; digits are grouped in threes; every
+ * punctuation or symbol character is its own token; each line break costs one; and
+ * non-ASCII letters, which take several bytes, add roughly one token per two characters.
+ * On English transcripts this errs slightly on the high side, which is the safe
+ * direction for budgeting prompts.
+ * </p>
+ */
+public final class TokenEstimator {
+
+    private static final int LETTERS_PER_TOKEN = 6;
+
+    private static final int DIGITS_PER_TOKEN = 3;
+
+    private TokenEstimator() {}
+
+    /**
+     * Estimates the token count of a text.
+     *
+     * @param text the text; {@code null} counts as empty
+     * @return the estimated number of tokens
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isLetter(c)) {
+                int letters = 0;
+                int nonAscii = 0;
+                while (i < length && Character.isLetter(text.charAt(i))) {
+                    if (text.charAt(i) > 0x7F) {
+                        nonAscii++;
+                    }
+                    letters++;
+                    i++;
+                }
+                tokens += (letters + LETTERS_PER_TOKEN - 1) / LETTERS_PER_TOKEN + (nonAscii + 1) / 2;
+            } else if (Character.isDigit(c)) {
+                int digits = 0;
+                while (i < length && Character.isDigit(text.charAt(i))) {
+                    digits++;
+                    i++;
+                }
+                tokens += (digits + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN;
+            } else if (c == '\n') {
+                tokens++;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                // Spaces merge into the following word
+                i++;
+            } else {
+                tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+}
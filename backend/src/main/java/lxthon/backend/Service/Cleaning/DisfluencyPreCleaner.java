@@ -0,0 +1,448 @@
+package lxthon.backend.Service.Cleaning;
+
+import lxthon.backend.Domain.CompactTranscript;
+import lxthon.backend.Domain.TranscriptSegment;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deterministic, in-process removal of disfluencies from transcript text.
+ * <p>
+ * All filler patterns are matched in a single pass with an Aho-Corasick automaton built
+ * once at startup, so the cost is linear in the text length regardless of how many
+ * patterns there are. Matches must fall on word boundaries. Hesitation sounds ("uh",
+ * "um") and caption markers ("[Music]") are always removed; phrase fillers ("you know",
+ * "I mean") only when set off by a comma, since without one they are usually meaningful
+ * ("if you know the answer"). Fillers that are also common content words ("like", "kind
+ * of") need a comma on both sides ("it was, like, huge"), so "a kind of fish, really"
+ * keeps its words. Immediately repeated words and short phrases ("I I think",
+ * "it was it was") are then collapsed to one occurrence.
+ * </p>
+ * <p>
+ * The result is used both to shrink the text sent to the LLM and, on its own, as the
+ * "fast" cleaning mode that needs no model at all.
+ * </p>
+ */
+@Service
+public class DisfluencyPreCleaner {
+
+    /**
+     * Hesitation sounds, removed wherever they appear as whole words.
+     */
+    private static final List<String> HESITATIONS = List.of(
+            "uh", "uhh", "uhm", "um", "umm", "hmm", "mm", "er", "erm", "ah", "eh");
+
+    /**
+     * Bracketed non-speech markers inserted by automatic captions.
+     */
+    private static final List<String> MARKERS = List.of(
+            "[music]", "[applause]", "[laughter]", "[laughs]", "[inaudible]", "[silence]", "[noise]", "[__]", "[ __ ]");
+
+    /**
+     * Phrase fillers, removed only when adjacent to a comma.
+     */
+    private static final List<String> PHRASES = List.of(
+            "you know", "i mean", "you see");
+
+    /**
+     * Fillers that are also ordinary words, removed only when set off by commas on both sides.
+     */
+    private static final List<String> AMBIGUOUS_PHRASES = List.of(
+            "sort of", "kind of", "like");
+
+    /**
+     * Words that are legitimately doubled in English and must not be collapsed.
+     */
+    private static final Set<String> LEGITIMATE_DOUBLES = Set.of("had", "that", "is", "do");
+
+    /**
+     * The longest repeated phrase, in words, that is collapsed.
+     */
+    private static final int MAX_REPEAT_WORDS = 3;
+
+    private final Automaton automaton;
+
+    private final AtomicLong segmentsCleaned = new AtomicLong();
+    private final AtomicLong fillersRemoved = new AtomicLong();
+    private final AtomicLong repeatsCollapsed = new AtomicLong();
+    private final AtomicLong charsIn = new AtomicLong();
+    private final AtomicLong charsOut = new AtomicLong();
+
+    /**
+     * Constructs the pre-cleaner and builds its pattern automaton.
+     */
+    public DisfluencyPreCleaner() {
+        List<String> patterns = new ArrayList<>();
+        List<Integer> commasNeeded = new ArrayList<>();
+        for (String hesitation : HESITATIONS) {
+            patterns.add(hesitation);
+            commasNeeded.add(0);
+        }
+        for (String marker : MARKERS) {
+            patterns.add(marker);
+            commasNeeded.add(0);
+        }
+        for (String phrase : PHRASES) {
+            patterns.add(phrase);
+            commasNeeded.add(1);
+        }
+        for (String phrase : AMBIGUOUS_PHRASES) {
+            patterns.add(phrase);
+            commasNeeded.add(2);
+        }
+        this.automaton = new Automaton(patterns, commasNeeded);
+    }
+
+    /**
+     * Removes fillers and collapses repeated words in a piece of text.
+     *
+     * @param text the raw text
+     * @return the cleaned text with normalized whitespace; empty if nothing but fillers remained
+     */
+    public String clean(String text) {
+        if (text == null || text.isBlank()) {
+            return "";
+        }
+        charsIn.addAndGet(text.length());
+
+        String withoutFillers = removeFillers(text);
+        String result = collapseRepeats(withoutFillers);
+
+        charsOut.addAndGet(result.length());
+        return result;
+    }
+
+    /**
+     * Cleans every segment of a transcript, keeping its timing.
+     *
+     * @param segments the raw transcript segments
+     * @return the segments with the original text and the pre-cleaned text as {@code normalizedText}
+     */
+    public List<TranscriptSegment> cleanTranscript(List<TranscriptSegment> segments) {
+        CompactTranscript transcript = CompactTranscript.of(segments);
+        CompactTranscript.Builder result = new CompactTranscript.Builder(transcript.size());
+        for (CompactTranscript.SegmentView segment : transcript.views()) {
+            result.add(segment.getStartTime(), segment.getEndTime(), segment.getText(), clean(segment.getText()));
+        }
+        segmentsCleaned.addAndGet(transcript.size());
+        return result.build();
+    }
+
+    /**
+     * Returns how much the pre-cleaner has removed so far.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("patterns", automaton.patternCount());
+        stats.put("segmentsCleaned", segmentsCleaned.get());
+        stats.put("fillersRemoved", fillersRemoved.get());
+        stats.put("repeatsCollapsed", repeatsCollapsed.get());
+        stats.put("charsIn", charsIn.get());
+        stats.put("charsOut", charsOut.get());
+        return stats;
+    }
+
+    private String removeFillers(String text) {
+        // Per-char lower-casing keeps offsets aligned with the original text
+        char[] lower = new char[text.length()];
+        for (int i = 0; i < lower.length; i++) {
+            lower[i] = Character.toLowerCase(text.charAt(i));
+        }
+
+        // For every start position, the end of the longest valid match starting there
+        int[] matchEnd = new int[lower.length];
+        Arrays.fill(matchEnd, -1);
+        boolean any = false;
+        int state = 0;
+        for (int i = 0; i < lower.length; i++) {
+            state = automaton.next(state, lower[i]);
+            for (int p = automaton.output(state); p >= 0; p = automaton.nextOutput(p)) {
+                int start = i + 1 - automaton.length(p);
+                if (isMatch(text, start, i + 1, automaton.commasNeeded(p)) && i + 1 > matchEnd[start]) {
+                    matchEnd[start] = i + 1;
+                    any = true;
+                }
+            }
+        }
+        if (!any) {
+            return normalizeSpacing(text, false);
+        }
+
+        StringBuilder out = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            if (matchEnd[i] < 0) {
+                out.append(text.charAt(i++));
+                continue;
+            }
+            i = matchEnd[i];
+            fillersRemoved.incrementAndGet();
+            // Drop the comma that set the filler off, so "so, um, yes" becomes "so, yes"
+            int next = skipSpaces(text, i);
+            if (next < text.length() && text.charAt(next) == ',') {
+                i = next + 1;
+            }
+        }
+        return normalizeSpacing(out.toString(), true);
+    }
+
+    /**
+     * Checks that a pattern occurrence is a whole word or phrase, and set off by at least
+     * {@code commasNeeded} commas: one on either side, or one on each side for two.
+     */
+    private static boolean isMatch(String text, int start, int end, int commasNeeded) {
+        if (start > 0 && isWordChar(text.charAt(start - 1)) && isWordChar(text.charAt(start))) {
+            return false;
+        }
+        if (end < text.length() && isWordChar(text.charAt(end)) && isWordChar(text.charAt(end - 1))) {
+            return false;
+        }
+        if (commasNeeded == 0) {
+            return true;
+        }
+        int before = start - 1;
+        while (before >= 0 && text.charAt(before) == ' ') {
+            before--;
+        }
+        int after = skipSpaces(text, end);
+        boolean commaBefore = before >= 0 && text.charAt(before) == ',';
+        boolean commaAfter = after < text.length() && text.charAt(after) == ',';
+        return commasNeeded == 1 ? commaBefore || commaAfter : commaBefore && commaAfter;
+    }
+
+    private String collapseRepeats(String text) {
+        if (text.isEmpty()) {
+            return text;
+        }
+        String[] words = text.split(" ");
+        String[] keys = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            keys[i] = comparisonKey(words[i]);
+        }
+
+        List<String> kept = new ArrayList<>(words.length);
+        int i = 0;
+        outer:
+        while (i < words.length) {
+            for (int n = MAX_REPEAT_WORDS; n >= 1; n--) {
+                if (repeatsAt(keys, i, n)) {
+                    // Skip the first copy; the second keeps any trailing punctuation
+                    repeatsCollapsed.incrementAndGet();
+                    i += n;
+                    continue outer;
+                }
+            }
+            kept.add(words[i++]);
+        }
+        return String.join(" ", kept);
+    }
+
+    private static boolean repeatsAt(String[] keys, int i, int n) {
+        if (i + 2 * n > keys.length) {
+            return false;
+        }
+        if (n == 1 && LEGITIMATE_DOUBLES.contains(keys[i])) {
+            return false;
+        }
+        for (int k = 0; k < n; k++) {
+            if (keys[i + k].isEmpty() || !keys[i + k].equals(keys[i + n + k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String comparisonKey(String word) {
+        StringBuilder key = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (isWordChar(c)) {
+                key.append(c);
+            }
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Collapses whitespace runs and removes spaces and punctuation left dangling by removals.
+     *
+     * @param removed whether fillers were removed, so leading punctuation is a leftover
+     */
+    private static String normalizeSpacing(String text, boolean removed) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+                    out.append(' ');
+                }
+            } else if (isPunctuation(c) && out.length() > 0 && out.charAt(out.length() - 1) == ' ') {
+                out.setCharAt(out.length() - 1, c);
+            } else if (isPunctuation(c) && out.length() == 0 && removed) {
+                // Punctuation that followed a removed leading filler
+            } else {
+                out.append(c);
+            }
+        }
+        int length = out.length();
+        while (length > 0 && (out.charAt(length - 1) == ' ' || out.charAt(length - 1) == ',')) {
+            length--;
+        }
+        return out.substring(0, length);
+    }
+
+    private static int skipSpaces(String text, int i) {
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '\'';
+    }
+
+    private static boolean isPunctuation(char c) {
+        return c == ',' || c == '.' || c == '!' || c == '?' || c == ';' || c == ':';
+    }
+
+    /**
+     * Aho-Corasick automaton over lower-case characters with precomputed transitions
+     * for every state and character seen in a pattern.
+     */
+    private static final class Automaton {
+
+        private final String[] patterns;
+        private final int[] commasNeeded;
+
+        /**
+         * Transitions keyed by {@code state << 16 | char}; characters absent from every pattern go to the root.
+         */
+        private final Map<Long, Integer> transitions = new HashMap<>();
+
+        /**
+         * First pattern ending at each state, or -1.
+         */
+        private int[] output;
+
+        /**
+         * Next pattern ending at the same position (a shorter suffix), or -1.
+         */
+        private final int[] nextOutput;
+
+        Automaton(List<String> patterns, List<Integer> commasNeeded) {
+            this.patterns = patterns.toArray(new String[0]);
+            this.commasNeeded = new int[this.patterns.length];
+            this.nextOutput = new int[this.patterns.length];
+            Arrays.fill(nextOutput, -1);
+
+            // Trie
+            Map<Long, Integer> trie = new HashMap<>();
+            List<Integer> terminal = new ArrayList<>();
+            terminal.add(-1);
+            for (int p = 0; p < this.patterns.length; p++) {
+                this.commasNeeded[p] = commasNeeded.get(p);
+                int state = 0;
+                for (char c : this.patterns[p].toCharArray()) {
+                    Integer next = trie.get(key(state, c));
+                    if (next == null) {
+                        next = terminal.size();
+                        terminal.add(-1);
+                        trie.put(key(state, c), next);
+                    }
+                    state = next;
+                }
+                terminal.set(state, p);
+            }
+
+            int states = terminal.size();
+            int[] fail = new int[states];
+            output = new int[states];
+            for (int s = 0; s < states; s++) {
+                output[s] = terminal.get(s);
+            }
+
+            // Breadth-first over the trie: fail links, output chains and the full transition function
+            char[] alphabet = alphabet(this.patterns);
+            List<Integer> queue = new ArrayList<>();
+            for (char c : alphabet) {
+                Integer child = trie.get(key(0, c));
+                if (child != null) {
+                    fail[child] = 0;
+                    transitions.put(key(0, c), child);
+                    queue.add(child);
+                }
+            }
+            for (int head = 0; head < queue.size(); head++) {
+                int state = queue.get(head);
+                int suffixOutput = output[fail[state]];
+                if (output[state] < 0) {
+                    output[state] = suffixOutput;
+                } else {
+                    nextOutput[output[state]] = suffixOutput;
+                }
+                for (char c : alphabet) {
+                    Integer child = trie.get(key(state, c));
+                    if (child != null) {
+                        fail[child] = next(fail[state], c);
+                        queue.add(child);
+                        transitions.put(key(state, c), child);
+                    } else {
+                        int target = next(fail[state], c);
+                        if (target != 0) {
+                            transitions.put(key(state, c), target);
+                        }
+                    }
+                }
+            }
+        }
+
+        int next(int state, char c) {
+            Integer target = transitions.get(key(state, c));
+            return target == null ? 0 : target;
+        }
+
+        int output(int state) {
+            return output[state];
+        }
+
+        int nextOutput(int pattern) {
+            return nextOutput[pattern];
+        }
+
+        int length(int pattern) {
+            return patterns[pattern].length();
+        }
+
+        int commasNeeded(int pattern) {
+            return commasNeeded[pattern];
+        }
+
+        int patternCount() {
+            return patterns.length;
+        }
+
+        private static long key(int state, char c) {
+            return ((long) state << 16) | c;
+        }
+
+        private static char[] alphabet(String[] patterns) {
+            StringBuilder chars = new StringBuilder();
+            for (String pattern : patterns) {
+                pattern.chars().filter(c -> chars.indexOf(String.valueOf((char) c)) < 0).forEach(c -> chars.append((char) c));
+            }
+            return chars.toString().toCharArray();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package lxthon.backend.Service.Cleaning;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental parser for structured cleaning responses of the form
+ * <code>{"segments": [{"id": 0, "text": "..."}, ...]}</code>.
+ * <p>
+ * Text is fed as it streams in from the model and parsed with Jackson's non-blocking
+ * parser, so every segment is reported the moment its object closes, without buffering
+ * or re-scanning the response. Any object carrying an integer <code>id</code> and a string
+ * <code>text</code> counts as a segment. Malformed input stops the parser: segments
+ * reported so far stand, and {@link #isComplete()} stays {@code false}.
+ * </p>
+ * <p>
+ * Instances are single-use and not thread-safe.
+ * </p>
+ */
+public final class SegmentJsonStreamParser {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Receives each parsed segment.
+     */
+    @FunctionalInterface
+    public interface SegmentListener {
+
+        /**
+         * Called once per segment object, in response order.
+         *
+         * @param id   the segment id as sent to the model
+         * @param text the cleaned text
+         */
+        void onSegment(int id, String text);
+    }
+
+    private final SegmentListener listener;
+
+    private final JsonParser parser;
+
+    private final ByteArrayFeeder feeder;
+
+    /**
+     * A high surrogate ending the previous piece, kept until its low half arrives.
+     */
+    private char pendingHighSurrogate;
+
+    private int depth;
+    private int id = -1;
+    private String text;
+
+    private boolean failed;
+    private boolean complete;
+    private int segments;
+
+    /**
+     * Creates a parser reporting to the given listener.
+     *
+     * @param listener receives the segments as they are parsed
+     */
+    public SegmentJsonStreamParser(SegmentListener listener) {
+        this.listener = listener;
+        try {
+            this.parser = FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create non-blocking JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Parses the next piece of the response.
+     *
+     * @param piece the text received since the last call
+     */
+    public void feed(String piece) {
+        if (failed || complete || piece == null || piece.isEmpty()) {
+            return;
+        }
+        StringBuilder chars = new StringBuilder(piece.length() + 1);
+        if (pendingHighSurrogate != 0) {
+            chars.append(pendingHighSurrogate);
+            pendingHighSurrogate = 0;
+        }
+        chars.append(piece);
+        // A surrogate pair split across pieces cannot be encoded until both halves are here
+        if (Character.isHighSurrogate(chars.charAt(chars.length() - 1))) {
+            pendingHighSurrogate = chars.charAt(chars.length() - 1);
+            chars.setLength(chars.length() - 1);
+        }
+
+        byte[] bytes = chars.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /**
+     * Signals the end of the response and parses whatever is still buffered.
+     */
+    public void end() {
+        if (failed || complete) {
+            return;
+        }
+        try {
+            feeder.endOfInput();
+            drain();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /**
+     * Returns whether a whole, well-formed JSON document has been parsed.
+     *
+     * @return {@code true} once the root value has closed without errors
+     */
+    public boolean isComplete() {
+        return complete && !failed;
+    }
+
+    /**
+     * Returns how many segments have been reported.
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segments;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    depth++;
+                    if (token == JsonToken.START_OBJECT) {
+                        id = -1;
+                        text = null;
+                    }
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    if (token == JsonToken.END_OBJECT && id >= 0 && text != null) {
+                        segments++;
+                        listener.onSegment(id, text);
+                        id = -1;
+                        text = null;
+                    }
+                    if (--depth == 0) {
+                        complete = true;
+                        return;
+                    }
+                }
+                case VALUE_NUMBER_INT -> {
+                    if ("id".equals(parser.currentName())) {
+                        id = parser.getIntValue();
+                    }
+                }
+                case VALUE_STRING -> {
+                    if ("text".equals(parser.currentName())) {
+                        text = parser.getText();
+                    }
+                }
+                default -> {
+                    // Field names and other values carry nothing we need
+                }
+            }
+        }
+    }
+}
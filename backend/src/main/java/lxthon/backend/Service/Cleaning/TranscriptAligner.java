@@ -0,0 +1,352 @@
+package lxthon.backend.Service.Cleaning;
+
+import lxthon.backend.Domain.CompactTranscript;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps cleaned text back onto the timed segments it was produced from.
+ * <p>
+ * Both texts are tokenized once into word ids from a shared dictionary (lower-case
+ * letters and digits only, so punctuation and capitalization changes still match). Each
+ * cleaned word is then matched monotonically against the source words: the nearest
+ * occurrence within a short look-ahead is taken if it is adjacent to the previous match
+ * or confirmed by the following cleaned word. Words the cleaner rewrote stay with the
+ * source position they replace, and after a run of misses (a dropped or reworded passage)
+ * a wider, stricter search re-anchors the alignment so errors never accumulate.
+ * </p>
+ * <p>
+ * Occurrences are looked up in a per-word position index, so alignment takes time and
+ * memory linear in the number of words; 100k-word transcripts align in tens of
+ * milliseconds.
+ * </p>
+ */
+public final class TranscriptAligner {
+
+    /**
+     * How many source words ahead of the current position a cleaned word is searched for.
+     */
+    private static final int LOOKAHEAD = 48;
+
+    /**
+     * Matches at most this far ahead are trusted without confirmation.
+     */
+    private static final int IMMEDIATE = 2;
+
+    /**
+     * How close to a candidate match the following cleaned words must occur to confirm it.
+     */
+    private static final int CONFIRM_GAP = 4;
+
+    /**
+     * Consecutive misses after which the wider re-anchoring search runs.
+     */
+    private static final int RESYNC_AFTER = 8;
+
+    /**
+     * How many source words ahead the re-anchoring search looks.
+     */
+    private static final int RESYNC_WINDOW = 4096;
+
+    /**
+     * Following cleaned words that must confirm a re-anchoring match.
+     */
+    private static final int RESYNC_CONFIRMATIONS = 2;
+
+    /**
+     * Token id of words not occurring in the source.
+     */
+    private static final int UNKNOWN = -1;
+
+    /**
+     * Token id of tokens without letters or digits, which attach to the previous word.
+     */
+    private static final int PUNCTUATION = -2;
+
+    private TranscriptAligner() {}
+
+    /**
+     * Splits cleaned text over the segments of the transcript it was cleaned from.
+     *
+     * @param source     the transcript the cleaned text was produced from
+     * @param normalized whether the cleaner saw the normalized text of the segments, where present
+     * @param cleaned    the cleaned text of the whole transcript
+     * @return the cleaned text of each segment, index-aligned with {@code source}; empty
+     *         where no cleaned word maps to a segment
+     */
+    public static String[] align(CompactTranscript source, boolean normalized, String cleaned) {
+        int segments = source.size();
+        String[] result = new String[segments];
+        Arrays.fill(result, "");
+        if (segments == 0 || cleaned == null || cleaned.isBlank()) {
+            return result;
+        }
+
+        Source words = Source.tokenize(source, normalized);
+        Cleaned target = Cleaned.tokenize(cleaned, words.dictionary);
+        int[] assigned = assign(words, target);
+
+        // Assignments are non-decreasing, so each segment's words are one contiguous run
+        StringBuilder text = new StringBuilder();
+        int current = assigned.length > 0 ? assigned[0] : 0;
+        for (int j = 0; j < assigned.length; j++) {
+            if (assigned[j] != current) {
+                result[current] = text.toString();
+                text.setLength(0);
+                current = assigned[j];
+            }
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(cleaned, target.start[j], target.end[j]);
+        }
+        result[current] = text.toString();
+        return result;
+    }
+
+    /**
+     * Assigns every cleaned token a source segment.
+     */
+    private static int[] assign(Source source, Cleaned target) {
+        int[] assigned = new int[target.count];
+        int next = 0;
+        int lastSegment = 0;
+        int misses = 0;
+
+        for (int j = 0; j < target.count; j++) {
+            int id = target.ids[j];
+            if (id == PUNCTUATION) {
+                assigned[j] = lastSegment;
+                continue;
+            }
+
+            int match = id == UNKNOWN ? -1 : find(source, target, j, next);
+            if (match < 0 && id != UNKNOWN && misses >= RESYNC_AFTER) {
+                match = resync(source, target, j, next);
+            }
+
+            int segment;
+            if (match >= 0) {
+                segment = source.segment[match];
+                next = match + 1;
+                misses = 0;
+            } else {
+                // A rewritten word most likely replaces the next unmatched source word
+                segment = next < source.count ? source.segment[next] : lastSegment;
+                misses++;
+            }
+            lastSegment = Math.max(lastSegment, segment);
+            assigned[j] = lastSegment;
+        }
+        return assigned;
+    }
+
+    private static int find(Source source, Cleaned target, int j, int from) {
+        int limit = Math.min(source.count, from + LOOKAHEAD);
+        int id = target.ids[j];
+        for (int k = source.firstOccurrence(id, from); k >= 0 && k < limit; k = source.nextOccurrence(id, k)) {
+            if (k - from <= IMMEDIATE || confirmed(source, target, j, k, 1)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    private static int resync(Source source, Cleaned target, int j, int from) {
+        int limit = Math.min(source.count, from + RESYNC_WINDOW);
+        int id = target.ids[j];
+        for (int k = source.firstOccurrence(id, from); k >= 0 && k < limit; k = source.nextOccurrence(id, k)) {
+            if (confirmed(source, target, j, k, RESYNC_CONFIRMATIONS)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks that the next {@code needed} words after cleaned token {@code j} follow source
+     * position {@code k} closely. The end of the cleaned text confirms trivially.
+     */
+    private static boolean confirmed(Source source, Cleaned target, int j, int k, int needed) {
+        int position = k + 1;
+        for (int q = j + 1; q < target.count && needed > 0; q++) {
+            int id = target.ids[q];
+            if (id == PUNCTUATION) {
+                continue;
+            }
+            int found = id == UNKNOWN ? -1 : source.firstOccurrence(id, position);
+            if (found < 0 || found >= position + CONFIRM_GAP) {
+                return false;
+            }
+            position = found + 1;
+            needed--;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the comparison key of the token {@code text[from, to)} to {@code key}.
+     */
+    private static void appendKey(StringBuilder key, CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                key.append(Character.toLowerCase(c));
+            }
+        }
+    }
+
+    /**
+     * Source words as dictionary ids, their segments and a position index per id.
+     */
+    private static final class Source {
+
+        final Map<String, Integer> dictionary = new HashMap<>();
+        int count;
+        int[] ids = new int[1024];
+        int[] segment = new int[1024];
+
+        /**
+         * Positions of each id in ascending order, grouped by id (compressed sparse rows).
+         */
+        int[] positions;
+        int[] offsets;
+
+        /**
+         * Rank of each position among the occurrences of its id.
+         */
+        int[] rank;
+
+        static Source tokenize(CompactTranscript transcript, boolean normalized) {
+            Source source = new Source();
+            StringBuilder key = new StringBuilder();
+            for (int s = 0; s < transcript.size(); s++) {
+                String normalizedText = normalized ? transcript.getNormalizedText(s) : null;
+                String text = normalizedText != null ? normalizedText : transcript.getText(s);
+                int i = 0;
+                while (i < text.length()) {
+                    while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                        i++;
+                    }
+                    int start = i;
+                    while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                        i++;
+                    }
+                    if (start == i) {
+                        break;
+                    }
+                    key.setLength(0);
+                    appendKey(key, text, start, i);
+                    if (key.length() > 0) {
+                        Integer id = source.dictionary.computeIfAbsent(key.toString(), k -> source.dictionary.size());
+                        source.add(id, s);
+                    }
+                }
+            }
+            source.index();
+            return source;
+        }
+
+        private void add(int id, int segmentIndex) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                segment = Arrays.copyOf(segment, count * 2);
+            }
+            ids[count] = id;
+            segment[count] = segmentIndex;
+            count++;
+        }
+
+        private void index() {
+            offsets = new int[dictionary.size() + 1];
+            for (int k = 0; k < count; k++) {
+                offsets[ids[k] + 1]++;
+            }
+            for (int id = 0; id < dictionary.size(); id++) {
+                offsets[id + 1] += offsets[id];
+            }
+            positions = new int[count];
+            rank = new int[count];
+            int[] fill = Arrays.copyOf(offsets, dictionary.size());
+            for (int k = 0; k < count; k++) {
+                int slot = fill[ids[k]]++;
+                positions[slot] = k;
+                rank[k] = slot;
+            }
+        }
+
+        /**
+         * Returns the first position of {@code id} at or after {@code from}, or -1.
+         */
+        int firstOccurrence(int id, int from) {
+            int low = offsets[id];
+            int high = offsets[id + 1];
+            int slot = Arrays.binarySearch(positions, low, high, from);
+            if (slot < 0) {
+                slot = -slot - 1;
+            }
+            return slot < high ? positions[slot] : -1;
+        }
+
+        /**
+         * Returns the next position of {@code id} after position {@code k}, which holds it, or -1.
+         */
+        int nextOccurrence(int id, int k) {
+            int slot = rank[k] + 1;
+            return slot < offsets[id + 1] ? positions[slot] : -1;
+        }
+    }
+
+    /**
+     * Whitespace-separated tokens of the cleaned text as offsets plus source dictionary ids.
+     */
+    private static final class Cleaned {
+
+        int count;
+        int[] start;
+        int[] end;
+        int[] ids;
+
+        static Cleaned tokenize(String text, Map<String, Integer> dictionary) {
+            Cleaned cleaned = new Cleaned();
+            int capacity = Math.max(16, text.length() / 5);
+            cleaned.start = new int[capacity];
+            cleaned.end = new int[capacity];
+            cleaned.ids = new int[capacity];
+
+            StringBuilder key = new StringBuilder();
+            int i = 0;
+            while (i < text.length()) {
+                while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                int from = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                if (from == i) {
+                    break;
+                }
+                key.setLength(0);
+                appendKey(key, text, from, i);
+                int id = key.length() == 0 ? PUNCTUATION : dictionary.getOrDefault(key.toString(), UNKNOWN);
+                cleaned.add(from, i, id);
+            }
+            return cleaned;
+        }
+
+        private void add(int from, int to, int id) {
+            if (count == ids.length) {
+                start = Arrays.copyOf(start, count * 2);
+                end = Arrays.copyOf(end, count * 2);
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            start[count] = from;
+            end[count] = to;
+            ids[count] = id;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package lxthon.backend.Service.Codec;
+
+import lxthon.backend.Domain.CompactTranscript;
+import lxthon.backend.Domain.TranscriptSegment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of transcripts, used for the on-disk transcript cache and
+ * offered by the API as <code>application/x-transcript</code>.
+ * <p>
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ *   magic        4 bytes  "LXTR"
+ *   version      1 byte   currently 1
+ *   flags        1 byte   bit 0: normalized text column present
+ *   count        number of segments
+ *   textBytes    total length of the text block
+ *   per segment:
+ *     startDelta   zigzag(startMs - previous startMs)
+ *     duration     zigzag(endMs - startMs)
+ *     textLength   byte length of the text
+ *     normLength   byte length of the normalized text + 1, 0 for none (only if flag bit 0 is set)
+ *   text block   UTF-8 text of each segment, each directly followed by its normalized text
+ * </pre>
+ * Timestamps are milliseconds; caption segments start a few seconds apart and last a few
+ * seconds, so each timestamp pair usually fits in three or four bytes instead of two
+ * decimal doubles. The text block has exactly the layout of {@link CompactTranscript}'s
+ * buffer, so decoding hands it over as is instead of decoding and re-encoding the text.
+ * </p>
+ */
+public final class TranscriptCodec {
+
+    /**
+     * The media type under which the API serves this encoding.
+     */
+    public static final String MEDIA_TYPE = "application/x-transcript";
+
+    private static final byte[] MAGIC = {'L', 'X', 'T', 'R'};
+
+    private static final int VERSION = 1;
+
+    private static final int FLAG_NORMALIZED = 1;
+
+    private TranscriptCodec() {}
+
+    /**
+     * Encodes a transcript.
+     *
+     * @param segments the transcript to encode
+     * @return the encoded bytes
+     */
+    public static byte[] encode(List<TranscriptSegment> segments) {
+        CompactTranscript transcript = CompactTranscript.of(segments);
+        int count = transcript.size();
+
+        boolean normalized = false;
+        long textBytes = 0;
+        for (int i = 0; i < count; i++) {
+            textBytes += transcript.getTextBytes(i).remaining();
+            ByteBuffer norm = transcript.getNormalizedTextBytes(i);
+            if (norm != null) {
+                normalized = true;
+                textBytes += norm.remaining();
+            }
+        }
+
+        Sink out = new Sink((int) Math.min(Integer.MAX_VALUE - 16, 16 + count * 8L + textBytes));
+        out.bytes(MAGIC);
+        out.u8(VERSION);
+        out.u8(normalized ? FLAG_NORMALIZED : 0);
+        out.varint(count);
+        out.varint((int) textBytes);
+
+        int previousStart = 0;
+        for (int i = 0; i < count; i++) {
+            int start = transcript.getStartMs(i);
+            out.varint(zigzag(start - previousStart));
+            out.varint(zigzag(transcript.getEndMs(i) - start));
+            previousStart = start;
+
+            out.varint(transcript.getTextBytes(i).remaining());
+            if (normalized) {
+                ByteBuffer norm = transcript.getNormalizedTextBytes(i);
+                out.varint(norm == null ? 0 : norm.remaining() + 1);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            out.buffer(transcript.getTextBytes(i));
+            if (normalized) {
+                ByteBuffer norm = transcript.getNormalizedTextBytes(i);
+                if (norm != null) {
+                    out.buffer(norm);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a transcript.
+     *
+     * @param data the encoded bytes
+     * @return the decoded, immutable transcript
+     * @throws IOException if the data is not a transcript, is truncated, or uses an unsupported version
+     */
+    public static CompactTranscript decode(byte[] data) throws IOException {
+        if (!isEncoded(data)) {
+            throw new IOException("Not an encoded transcript");
+        }
+        Source in = new Source(data, MAGIC.length);
+        int version = in.u8();
+        if (version != VERSION) {
+            throw new IOException("Unsupported transcript encoding version " + version);
+        }
+        boolean normalized = (in.u8() & FLAG_NORMALIZED) != 0;
+        int count = in.varint();
+        int textBytes = in.varint();
+        // Every segment takes at least three bytes; reject counts a corrupt header could inflate
+        if (count < 0 || textBytes < 0 || count > in.remaining() / 3) {
+            throw new IOException("Corrupt encoded transcript header");
+        }
+
+        int[] startMs = new int[count];
+        int[] endMs = new int[count];
+        int[] textLengths = new int[count];
+        int[] normLengths = normalized ? new int[count] : null;
+
+        int previousStart = 0;
+        for (int i = 0; i < count; i++) {
+            int start = previousStart + unzigzag(in.varint());
+            startMs[i] = start;
+            endMs[i] = start + unzigzag(in.varint());
+            previousStart = start;
+
+            textLengths[i] = in.varint();
+            if (normalized) {
+                normLengths[i] = in.varint() - 1;
+            }
+        }
+
+        byte[] utf8 = in.bytes(textBytes);
+        if (in.remaining() != 0) {
+            throw new IOException("Trailing bytes after encoded transcript");
+        }
+        try {
+            return CompactTranscript.fromColumns(startMs, endMs, utf8, textLengths, normLengths);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt encoded transcript: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks whether the given bytes start with the transcript encoding's magic number.
+     *
+     * @param data the bytes to check
+     * @return true if the data looks like an encoded transcript
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data.length > MAGIC.length && Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Growable output buffer.
+     */
+    private static final class Sink {
+        private byte[] buf;
+        private int pos;
+
+        private Sink(int capacity) {
+            buf = new byte[Math.max(capacity, 16)];
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        private void u8(int value) {
+            ensure(1);
+            buf[pos++] = (byte) value;
+        }
+
+        private void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        private void bytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, buf, pos, value.length);
+            pos += value.length;
+        }
+
+        private void buffer(ByteBuffer value) {
+            int length = value.remaining();
+            ensure(length);
+            value.get(buf, pos, length);
+            pos += length;
+        }
+
+        private byte[] toByteArray() {
+            return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+        }
+    }
+
+    /**
+     * Bounds-checked reader over the encoded bytes.
+     */
+    private static final class Source {
+        private final byte[] buf;
+        private int pos;
+
+        private Source(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        private int u8() throws IOException {
+            if (pos >= buf.length) {
+                throw new IOException("Truncated encoded transcript");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        private int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = u8();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in encoded transcript");
+        }
+
+        private byte[] bytes(int length) throws IOException {
+            if (length < 0 || length > buf.length - pos) {
+                throw new IOException("Truncated encoded transcript");
+            }
+            byte[] value = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return value;
+        }
+
+        private int remaining() {
+            return buf.length - pos;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package lxthon.backend.Service.Concurrency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many LLM requests are in flight at once, adapting the limit to what the
+ * endpoint can currently sustain (additive increase, multiplicative decrease).
+ * <p>
+ * Every request holds a {@link Permit} and reports how it ended. While requests succeed
+ * with healthy latency and the limit is actually being used, the limit grows by about one
+ * per limit's worth of completions. A request that is throttled, fails on the server or
+ * times out halves the limit; a latency spike (time per generated token well above the
+ * best recently seen) shrinks it by a tenth. Only requests started after the last
+ * decrease can cause another one, so a burst of failures from the same overload counts
+ * once. A {@code Retry-After} from the endpoint pauses all admissions for that long.
+ * </p>
+ * <p>
+ * Waiting for a permit blocks no thread; see {@link AsyncPermits}.
+ * </p>
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Factor applied to the limit on throttling, server errors and timeouts.
+     */
+    private static final double DROP_BACKOFF = 0.5;
+
+    /**
+     * Factor applied to the limit on a latency spike.
+     */
+    private static final double LATENCY_BACKOFF = 0.9;
+
+    /**
+     * How much the latency baseline may rise per sample, so it follows a lasting slowdown.
+     */
+    private static final double BASELINE_DRIFT = 0.01;
+
+    /**
+     * Requests are normalized per output token, but never over fewer than this many.
+     */
+    private static final int MIN_OUTPUT_TOKENS = 32;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double latencyTolerance;
+
+    private final AsyncPermits permits;
+
+    // Guarded by this
+    private double limit;
+    private double baselineNanosPerToken;
+    private long lastDecreaseNanos;
+    private long pausedUntilNanos;
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicLong latencyBackoffs = new AtomicLong();
+    private final AtomicLong pauses = new AtomicLong();
+
+    /**
+     * Constructs the limiter.
+     *
+     * @param initialLimit     the limit to start with
+     * @param minLimit         the limit never drops below this
+     * @param maxLimit         the limit never grows beyond this
+     * @param latencyTolerance how many times the baseline time per token counts as a latency spike
+     */
+    public AdaptiveConcurrencyLimiter(@Value("${llm.concurrency.initial-limit:4}") int initialLimit,
+                                      @Value("${llm.concurrency.min-limit:1}") int minLimit,
+                                      @Value("${llm.concurrency.max-limit:32}") int maxLimit,
+                                      @Value("${llm.concurrency.latency-tolerance:2.5}") double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = Math.max(1.0, latencyTolerance);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.permits = new AsyncPermits((int) limit);
+    }
+
+    /**
+     * Waits, without blocking, until a request may start.
+     *
+     * @return a future of the permit; the caller must end it through exactly one of
+     *         {@link Permit#success(int)}, {@link Permit#dropped()} or {@link Permit#ignore()}
+     */
+    public CompletableFuture<Permit> acquire() {
+        long pause;
+        synchronized (this) {
+            pause = pausedUntilNanos - System.nanoTime();
+        }
+        if (pause > 0) {
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(pause, TimeUnit.NANOSECONDS, Runnable::run))
+                    .thenCompose(ignored -> acquire());
+        }
+
+        CompletableFuture<Permit> granted = new CompletableFuture<>();
+        permits.submit(() -> {
+            CompletableFuture<Void> held = new CompletableFuture<>();
+            // A caller that stopped waiting never sees the permit, so it is handed back at once
+            if (!granted.complete(new Permit(held))) {
+                held.complete(null);
+            }
+            return held;
+        });
+        return granted;
+    }
+
+    /**
+     * Stops admitting new requests for the given time, as asked by the endpoint.
+     *
+     * @param retryAfter how long to pause
+     */
+    public void pause(Duration retryAfter) {
+        long until = System.nanoTime() + retryAfter.toNanos();
+        synchronized (this) {
+            if (until > pausedUntilNanos) {
+                pausedUntilNanos = until;
+                pauses.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the current limit, the in-flight and queued requests and how the limit moved.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("limit", (int) limit);
+            stats.put("baselineMillisPerToken", baselineNanosPerToken / 1e6);
+            stats.put("paused", pausedUntilNanos > System.nanoTime());
+        }
+        stats.put("inFlight", permits.getRunning());
+        stats.put("queued", permits.getQueued());
+        stats.put("successes", successes.get());
+        stats.put("drops", drops.get());
+        stats.put("latencyBackoffs", latencyBackoffs.get());
+        stats.put("pauses", pauses.get());
+        return stats;
+    }
+
+    /**
+     * Records a successful request.
+     *
+     * @return the new whole-number limit
+     */
+    private synchronized int onSuccess(long startNanos, long elapsedNanos, int outputTokens) {
+        successes.incrementAndGet();
+        double perToken = (double) elapsedNanos / Math.max(MIN_OUTPUT_TOKENS, outputTokens);
+        baselineNanosPerToken = baselineNanosPerToken == 0
+                ? perToken
+                : Math.min(perToken, baselineNanosPerToken * (1 + BASELINE_DRIFT));
+
+        if (perToken > baselineNanosPerToken * latencyTolerance) {
+            if (decrease(startNanos, LATENCY_BACKOFF)) {
+                latencyBackoffs.incrementAndGet();
+            }
+        } else if (permits.getRunning() + 1 >= limit / 2) {
+            // Only grow while the limit is what holds requests back
+            setLimit(limit + 1 / limit);
+        }
+        return (int) limit;
+    }
+
+    /**
+     * Records a request the endpoint could not serve.
+     *
+     * @return the new whole-number limit
+     */
+    private synchronized int onDropped(long startNanos) {
+        drops.incrementAndGet();
+        decrease(startNanos, DROP_BACKOFF);
+        return (int) limit;
+    }
+
+    /**
+     * Resizes the permits outside the lock: raising them may start waiting requests.
+     */
+    private void apply(int newLimit) {
+        if (newLimit != permits.getPermits()) {
+            permits.setPermits(newLimit);
+        }
+    }
+
+    /**
+     * Applies a multiplicative decrease unless one already happened after this request started.
+     */
+    private boolean decrease(long startNanos, double factor) {
+        if (startNanos < lastDecreaseNanos) {
+            return false;
+        }
+        lastDecreaseNanos = System.nanoTime();
+        setLimit(limit * factor);
+        return true;
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+    }
+
+    /**
+     * The right to have one request in flight.
+     */
+    public final class Permit {
+
+        private final CompletableFuture<Void> held;
+
+        private final long startNanos = System.nanoTime();
+
+        private Permit(CompletableFuture<Void> held) {
+            this.held = held;
+        }
+
+        /**
+         * Ends a request that completed normally.
+         *
+         * @param outputTokens the approximate number of tokens the response contained
+         */
+        public void success(int outputTokens) {
+            if (release()) {
+                apply(onSuccess(startNanos, System.nanoTime() - startNanos, outputTokens));
+            }
+        }
+
+        /**
+         * Ends a request the endpoint could not serve: throttled, server error or timeout.
+         */
+        public void dropped() {
+            if (release()) {
+                apply(onDropped(startNanos));
+            }
+        }
+
+        /**
+         * Ends a request whose outcome says nothing about the endpoint's capacity.
+         */
+        public void ignore() {
+            release();
+        }
+
+        private boolean release() {
+            return held.complete(null);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package lxthon.backend.Service.Concurrency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many asynchronous operations run at once without blocking any thread.
+ * <p>
+ * The non-blocking counterpart of a {@link java.util.concurrent.Semaphore}: operations
+ * beyond the limit are queued in arrival order and started as earlier ones complete.
+ * An operation whose future is cancelled while still queued is never started; one that is
+ * already running is cancelled in turn.
+ * </p>
+ */
+public class AsyncPermits {
+
+    // Guarded by this
+    private int permits;
+
+    private int running;
+    private final Queue<Pending<?>> queue = new ArrayDeque<>();
+
+    /**
+     * Creates the limiter.
+     *
+     * @param permits the maximum number of operations running at once
+     */
+    public AsyncPermits(int permits) {
+        this.permits = Math.max(1, permits);
+    }
+
+    /**
+     * Starts the operation now if a permit is free, or once one is.
+     *
+     * @param operation starts the operation and returns its future
+     * @param <T>       the result type
+     * @return a future of the operation's result
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+        Pending<T> pending = new Pending<>(operation);
+        synchronized (this) {
+            if (running >= permits) {
+                queue.add(pending);
+                return pending.result;
+            }
+            running++;
+        }
+        run(pending);
+        return pending.result;
+    }
+
+    /**
+     * Changes the number of operations allowed to run at once. Raising it starts queued
+     * operations right away; lowering it lets running operations finish, but starts no
+     * new ones until fewer than the new limit are running.
+     *
+     * @param permits the new limit, at least 1
+     */
+    public void setPermits(int permits) {
+        List<Pending<?>> started = new ArrayList<>();
+        synchronized (this) {
+            this.permits = Math.max(1, permits);
+            Pending<?> next;
+            while (running < this.permits && (next = poll()) != null) {
+                running++;
+                started.add(next);
+            }
+        }
+        started.forEach(this::run);
+    }
+
+    /**
+     * Returns the number of operations allowed to run at once.
+     *
+     * @return the current limit
+     */
+    public synchronized int getPermits() {
+        return permits;
+    }
+
+    /**
+     * Returns the number of operations currently running.
+     *
+     * @return the running operations
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the number of operations waiting for a permit.
+     *
+     * @return the queued operations
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Runs operations holding the caller's permit until one completes asynchronously; that
+     * one's callback then carries the permit on. Operations that complete immediately
+     * (e.g. cache hits) are handled in a loop rather than recursively.
+     */
+    private void run(Pending<?> pending) {
+        while (pending != null) {
+            if (!launch(pending)) {
+                return;
+            }
+            pending = next();
+        }
+    }
+
+    /**
+     * Starts an operation.
+     *
+     * @return {@code true} if it has already completed, so the permit is free again
+     */
+    private <T> boolean launch(Pending<T> pending) {
+        CompletableFuture<T> started;
+        try {
+            started = pending.operation.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        if (started.isDone()) {
+            settle(pending, started);
+            return true;
+        }
+        CompletableFuture<T> operation = started;
+        // Cancelling the caller's future cancels the running operation, freeing its permit sooner
+        pending.result.whenComplete((value, error) -> {
+            if (pending.result.isCancelled()) {
+                operation.cancel(true);
+            }
+        });
+        operation.whenComplete((value, error) -> {
+            settle(pending, operation);
+            run(next());
+        });
+        return false;
+    }
+
+    private static <T> void settle(Pending<T> pending, CompletableFuture<T> operation) {
+        operation.whenComplete((value, error) -> {
+            if (error != null) {
+                pending.result.completeExceptionally(error);
+            } else {
+                pending.result.complete(value);
+            }
+        });
+    }
+
+    /**
+     * Takes the next queued operation that is still wanted, or releases the permit if there is none.
+     */
+    private synchronized Pending<?> next() {
+        // After the limit was lowered, a completing operation gives its permit back
+        Pending<?> next = running > permits ? null : poll();
+        if (next == null) {
+            running--;
+        }
+        return next;
+    }
+
+    private Pending<?> poll() {
+        Pending<?> next;
+        do {
+            next = queue.poll();
+        } while (next != null && next.result.isDone());
+        return next;
+    }
+
+    private static final class Pending<T> {
+        final Supplier<CompletableFuture<T>> operation;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Pending(Supplier<CompletableFuture<T>> operation) {
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package lxthon.backend.Service.Concurrency;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Registry of in-flight computations that lets concurrent callers asking for the same
+ * artifact of the same video share a single computation ("single flight").
+ * <p>
+ * The first caller for a key becomes the leader and starts the work on a shared
+ * executor; every caller, leader included, receives its own dependent copy of the
+ * shared future. Cancelling or timing out one copy therefore never cancels the work
+ * the other callers are waiting on. The key is removed once the computation
+ * completes, so later requests start a fresh computation (or hit a cache).
+ * </p>
+ */
+@Service
+public class InFlightRequestRegistry {
+
+    /**
+     * The kinds of artifact that can be coalesced.
+     */
+    public enum Artifact {
+        RAW_TRANSCRIPT,
+        VIDEO_BUNDLE,
+        CLEANED_TRANSCRIPT,
+        CHUNK_SUMMARIES,
+        SUMMARY,
+        QUIZ,
+        PODCAST
+    }
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs shared computations; they mostly block on yt-dlp or the LLM, so virtual threads fit well.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    /**
+     * Returns a future for the given artifact, starting the computation only if no
+     * identical request is already in flight.
+     *
+     * @param artifact the kind of artifact being computed
+     * @param videoId  the canonical video ID
+     * @param variant  any parameters that change the result (e.g. number of quiz questions); may be empty
+     * @param work     the computation to run if this caller becomes the leader
+     * @param <T>      the result type
+     * @return a future owned by this caller; cancelling it does not affect other callers
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(Artifact artifact, String videoId, String variant, Callable<T> work) {
+        String key = artifact + ":" + videoId + ":" + (variant == null ? "" : variant);
+
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> shared = (CompletableFuture<T>) inFlight.putIfAbsent(key, created);
+
+        if (shared == null) {
+            shared = created;
+            leaders.incrementAndGet();
+            // Start outside of the map operation so a fast completion can remove its own key
+            executor.execute(() -> {
+                try {
+                    created.complete(work.call());
+                } catch (Throwable t) {
+                    created.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } else {
+            followers.incrementAndGet();
+        }
+
+        return shared.copy();
+    }
+
+    /**
+     * Like {@link #submit(Artifact, String, String, Callable)}, for work that is itself
+     * asynchronous: the leader starts it on its own thread and the shared future follows
+     * the returned future, so no executor thread waits for the result.
+     *
+     * @param artifact the kind of artifact being computed
+     * @param videoId  the canonical video ID
+     * @param variant  any parameters that change the result; may be empty
+     * @param work     starts the computation if this caller becomes the leader
+     * @param <T>      the result type
+     * @return a future owned by this caller; cancelling it does not affect other callers
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submitAsync(Artifact artifact, String videoId, String variant,
+                                                Supplier<CompletableFuture<T>> work) {
+        String key = artifact + ":" + videoId + ":" + (variant == null ? "" : variant);
+
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> shared = (CompletableFuture<T>) inFlight.putIfAbsent(key, created);
+
+        if (shared == null) {
+            shared = created;
+            leaders.incrementAndGet();
+            CompletableFuture<T> started;
+            try {
+                started = work.get();
+            } catch (Throwable t) {
+                started = CompletableFuture.failedFuture(t);
+            }
+            started.whenComplete((result, error) -> {
+                if (error != null) {
+                    created.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    created.complete(result);
+                }
+                inFlight.remove(key, created);
+            });
+        } else {
+            followers.incrementAndGet();
+        }
+
+        return shared.copy();
+    }
+
+    /**
+     * Blocking variant of {@link #submit(Artifact, String, String, Callable)} for callers
+     * on request threads.
+     * <p>
+     * If the calling thread is interrupted only its own copy is cancelled; the shared
+     * computation keeps running for the other callers. Checked {@link IOException}s and
+     * unchecked exceptions thrown by the computation are rethrown unchanged.
+     * </p>
+     *
+     * @param artifact the kind of artifact being computed
+     * @param videoId  the canonical video ID
+     * @param variant  any parameters that change the result; may be empty
+     * @param work     the computation to run if this caller becomes the leader
+     * @param <T>      the result type
+     * @return the shared result
+     * @throws IOException          if the computation failed with an I/O error
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    public <T> T join(Artifact artifact, String videoId, String variant, Callable<T> work)
+            throws IOException, InterruptedException {
+        CompletableFuture<T> mine = submit(artifact, videoId, variant, work);
+        try {
+            return mine.get();
+        } catch (InterruptedException e) {
+            mine.cancel(false);
+            throw e;
+        } catch (CancellationException e) {
+            throw new InterruptedException("Request for " + artifact + " of " + videoId + " was cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof InterruptedException interrupted) {
+                throw interrupted;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the number of running computations and how many callers were coalesced.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("leaders", leaders.get());
+        stats.put("coalescedFollowers", followers.get());
+        return stats;
+    }
+
+    /**
+     * Stops the shared executor when the application context shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
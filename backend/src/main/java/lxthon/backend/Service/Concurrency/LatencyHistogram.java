@@ -0,0 +1,109 @@
+package lxthon.backend.Service.Concurrency;
+
+import java.util.Arrays;
+
+/**
+ * Recent-latency distribution with log-scaled buckets, for percentile estimates.
+ * <p>
+ * Each bucket is 10% wider than the one before, so any percentile is known to within
+ * 10% from 1 ms up to 10 minutes with about 140 counters per window. Samples are kept in two
+ * windows: once the current window is older than the configured length it becomes the
+ * previous one and a fresh window starts, so estimates cover between one and two window
+ * lengths of history and follow a change in latency within that time.
+ * </p>
+ * <p>
+ * Not thread-safe; callers synchronize.
+ * </p>
+ */
+final class LatencyHistogram {
+
+    private static final double GROWTH = 1.1;
+
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+
+    private static final int BUCKETS = 1 + (int) Math.ceil(Math.log(10 * 60 * 1000) / LOG_GROWTH);
+
+    private final long windowNanos;
+
+    private long[] current = new long[BUCKETS];
+    private long[] previous = new long[BUCKETS];
+    private long currentCount;
+    private long previousCount;
+    private long windowStart;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param windowNanos how long a window collects samples before it is rotated out
+     */
+    LatencyHistogram(long windowNanos) {
+        this.windowNanos = windowNanos;
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(long nanos) {
+        rotate();
+        double millis = Math.max(1.0, nanos / 1e6);
+        current[Math.min(BUCKETS - 1, (int) (Math.log(millis) / LOG_GROWTH))]++;
+        currentCount++;
+    }
+
+    /**
+     * Returns the number of samples the estimates are based on.
+     *
+     * @return the sample count of both windows
+     */
+    long count() {
+        rotate();
+        return currentCount + previousCount;
+    }
+
+    /**
+     * Estimates a percentile of the recent latencies.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding that percentile, in nanoseconds, or
+     *         {@code -1} if there are no samples
+     */
+    long percentileNanos(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += current[i] + previous[i];
+            if (seen >= rank) {
+                return (long) (Math.pow(GROWTH, i + 1) * 1e6);
+            }
+        }
+        return (long) (Math.pow(GROWTH, BUCKETS) * 1e6);
+    }
+
+    private void rotate() {
+        long now = System.nanoTime();
+        long age = now - windowStart;
+        if (age < windowNanos) {
+            return;
+        }
+        if (age >= 2 * windowNanos) {
+            // Idle for more than a window: the previous window is stale as well
+            Arrays.fill(previous, 0);
+            previousCount = 0;
+        } else {
+            long[] recycled = previous;
+            previous = current;
+            previousCount = currentCount;
+            current = recycled;
+        }
+        Arrays.fill(current, 0);
+        currentCount = 0;
+        windowStart = now;
+    }
+}
@@ -0,0 +1,247 @@
+package lxthon.backend.Service.Concurrency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cuts the tail latency of LLM requests by hedging: if a request has not completed by a
+ * high percentile of recent latencies, an identical duplicate is sent and whichever
+ * completes first wins, the other being cancelled.
+ * <p>
+ * The trigger follows a {@link LatencyHistogram} of recent requests with the same key,
+ * such as the pipeline stage, so it adapts to each model and load without tuning, and fast
+ * requests of one kind never make slower ones look stalled. Samples are the latency of the
+ * primary copy, so hedging does not pull the percentile down; no hedging happens until
+ * enough samples exist. Hedges are paid for from a budget that every request tops up by the
+ * configured fraction, so duplicates never exceed that fraction of the traffic (plus a
+ * small burst). A stall only costs extra load when it is rare; if everything slows down,
+ * the percentile rises with it and hedges stay rare.
+ * </p>
+ */
+@Service
+public class RequestHedger {
+
+    /**
+     * How many hedges the budget may save up while no request stalls.
+     */
+    private static final double MAX_BUDGET = 5.0;
+
+    /**
+     * Hedging starts once the histogram holds this many samples.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private final boolean enabled;
+
+    private final double percentile;
+
+    private final double budgetPerRequest;
+
+    private final long minDelayNanos;
+
+    private final long windowNanos;
+
+    // Guarded by this
+    private final Map<String, LatencyHistogram> latencies = new HashMap<>();
+    private double budget;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    /**
+     * Constructs the hedger.
+     *
+     * @param enabled       whether requests are hedged at all
+     * @param percentile    the percentile of recent latencies after which a duplicate is sent
+     * @param budgetPercent the largest share of requests that may be duplicated, in percent
+     * @param minDelayMs    a duplicate is never sent earlier than this
+     * @param windowSeconds how long the latency histogram keeps a window of samples
+     */
+    public RequestHedger(@Value("${llm.hedge.enabled:true}") boolean enabled,
+                         @Value("${llm.hedge.percentile:95}") double percentile,
+                         @Value("${llm.hedge.budget-percent:5}") double budgetPercent,
+                         @Value("${llm.hedge.min-delay-ms:1000}") long minDelayMs,
+                         @Value("${llm.hedge.window-seconds:300}") long windowSeconds) {
+        this.enabled = enabled;
+        this.percentile = Math.min(99.9, Math.max(50.0, percentile));
+        this.budgetPerRequest = Math.max(0.0, budgetPercent) / 100.0;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minDelayMs));
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds));
+    }
+
+    /**
+     * Runs a request, sending a duplicate if it is slower than usual and the budget allows.
+     * <p>
+     * The first copy to succeed completes the returned future and the other copy is
+     * cancelled. If one copy fails while the other is still running, the other decides
+     * the outcome; the future fails only once no copy can succeed. Cancelling the future
+     * cancels both copies.
+     * </p>
+     *
+     * @param key       groups requests of comparable latency, e.g. the pipeline stage; each
+     *                  key has its own latency histogram and trigger
+     * @param primary   starts the request
+     * @param duplicate starts a duplicate, or returns {@code null} if none can be sent now
+     *                  (e.g. because it would have to wait for the rate limiter)
+     * @param <T>       the result type
+     * @return a future of the first successful result
+     */
+    public <T> CompletableFuture<T> hedge(String key, Supplier<CompletableFuture<T>> primary,
+                                          Supplier<CompletableFuture<T>> duplicate) {
+        requests.incrementAndGet();
+        LatencyHistogram histogram;
+        long delayNanos;
+        synchronized (this) {
+            budget = Math.min(MAX_BUDGET, budget + budgetPerRequest);
+            histogram = latencies.computeIfAbsent(key, k -> new LatencyHistogram(windowNanos));
+            long threshold = histogram.count() >= MIN_SAMPLES ? histogram.percentileNanos(percentile) : -1;
+            delayNanos = enabled && threshold >= 0 ? Math.max(minDelayNanos, threshold) : -1;
+        }
+
+        Hedge<T> hedge = new Hedge<>(histogram, System.nanoTime());
+        hedge.start(primary, false);
+        if (delayNanos >= 0 && !hedge.result.isDone()) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                if (!hedge.result.isDone() && takeBudget()) {
+                    hedges.incrementAndGet();
+                    hedge.start(duplicate, true);
+                }
+            });
+        }
+        return hedge.result;
+    }
+
+    /**
+     * Returns the current trigger delay per key, the budget and how often hedging happened and helped.
+     *
+     * @return a map of statistic name (per key: <code>&lt;key&gt;.&lt;statistic&gt;</code>) to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (this) {
+            new TreeMap<>(latencies).forEach((key, histogram) -> {
+                long samples = histogram.count();
+                stats.put(key + ".samples", samples);
+                stats.put(key + ".triggerMillis", samples >= MIN_SAMPLES
+                        ? Math.max(minDelayNanos, histogram.percentileNanos(percentile)) / 1_000_000 : -1);
+            });
+            stats.put("budget", budget);
+        }
+        stats.put("requests", requests.get());
+        stats.put("hedges", hedges.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("budgetExhausted", budgetExhausted.get());
+        return stats;
+    }
+
+    private synchronized boolean takeBudget() {
+        if (budget < 1.0) {
+            budgetExhausted.incrementAndGet();
+            return false;
+        }
+        budget -= 1.0;
+        return true;
+    }
+
+    private synchronized void record(LatencyHistogram histogram, long nanos) {
+        histogram.record(nanos);
+    }
+
+    /**
+     * The copies of one hedged request and its outcome.
+     */
+    private final class Hedge<T> {
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private final LatencyHistogram histogram;
+
+        private final long startNanos;
+
+        // Guarded by this
+        private CompletableFuture<T> first;
+        private CompletableFuture<T> second;
+        private int running;
+
+        Hedge(LatencyHistogram histogram, long startNanos) {
+            this.histogram = histogram;
+            this.startNanos = startNanos;
+            // Cancelling the request, or finishing it, stops any copy still running
+            result.whenComplete((value, error) -> cancelCopies());
+        }
+
+        void start(Supplier<CompletableFuture<T>> copy, boolean isDuplicate) {
+            CompletableFuture<T> future;
+            try {
+                future = copy.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            if (future == null) {
+                return;
+            }
+            synchronized (this) {
+                if (isDuplicate) {
+                    second = future;
+                } else {
+                    first = future;
+                }
+                running++;
+            }
+            if (result.isDone()) {
+                future.cancel(true);
+            }
+            future.whenComplete((value, error) -> settle(value, error, isDuplicate));
+        }
+
+        private void settle(T value, Throwable error, boolean isDuplicate) {
+            if (error == null) {
+                if (!isDuplicate) {
+                    // The primary's latency, whether or not a duplicate beat it
+                    record(histogram, System.nanoTime() - startNanos);
+                    result.complete(value);
+                } else if (result.complete(value)) {
+                    hedgeWins.incrementAndGet();
+                    // The primary is cancelled after running this long, already past the trigger
+                    record(histogram, System.nanoTime() - startNanos);
+                }
+                return;
+            }
+            boolean last;
+            synchronized (this) {
+                last = --running == 0;
+            }
+            // A duplicate that is merely scheduled does not keep a failed request alive
+            if (last) {
+                result.completeExceptionally(error);
+            }
+        }
+
+        private void cancelCopies() {
+            CompletableFuture<T> a;
+            CompletableFuture<T> b;
+            synchronized (this) {
+                a = first;
+                b = second;
+            }
+            if (a != null) {
+                a.cancel(true);
+            }
+            if (b != null) {
+                b.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package lxthon.backend.Service.Concurrency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared limiter keeping LLM traffic within a requests-per-minute and a tokens-per-minute budget.
+ * <p>
+ * Both budgets are token buckets that refill continuously and hold at most one minute's
+ * worth of allowance, so short bursts are allowed but the sustained rate never exceeds the
+ * configured limits. Callers reserve their share up front, letting the buckets go into debt,
+ * and then wait until the debt is repaid, either by sleeping or, through
+ * {@link #acquireAsync(int)}, on a timer without holding a thread. Waiting callers are
+ * served in arrival order and never spin.
+ * </p>
+ */
+@Service
+public class TokenBucketRateLimiter {
+
+    private final double requestCapacity;
+    private final double tokenCapacity;
+    private final double requestsPerNano;
+    private final double tokensPerNano;
+
+    // Guarded by this
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefill;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong waitedMillis = new AtomicLong();
+
+    /**
+     * Constructs the limiter with full buckets.
+     *
+     * @param requestsPerMinute the sustained request rate allowed
+     * @param tokensPerMinute   the sustained token rate allowed (prompt plus expected completion)
+     */
+    public TokenBucketRateLimiter(@Value("${llm.rate-limit.requests-per-minute:60}") double requestsPerMinute,
+                                  @Value("${llm.rate-limit.tokens-per-minute:200000}") double tokensPerMinute) {
+        if (requestsPerMinute <= 0 || tokensPerMinute <= 0) {
+            throw new IllegalArgumentException("Rate limits must be positive");
+        }
+        this.requestCapacity = requestsPerMinute;
+        this.tokenCapacity = tokensPerMinute;
+        this.requestsPerNano = requestsPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.tokensPerNano = tokensPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.availableRequests = requestCapacity;
+        this.availableTokens = tokenCapacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Blocks until one request of the given size fits within both budgets.
+     * <p>
+     * A request larger than the whole per-minute token budget is charged the full budget,
+     * so it waits for an empty minute instead of forever.
+     * </p>
+     *
+     * @param tokens the estimated number of tokens the request will consume
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void acquire(int tokens) throws InterruptedException {
+        long waitNanos = reserve(tokens);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #acquire(int)}: reserves the request's share now and
+     * returns a future that completes once it fits within both budgets.
+     * <p>
+     * No thread waits in the meantime; the future is completed by a timer.
+     * </p>
+     *
+     * @param tokens the estimated number of tokens the request will consume
+     * @return a future completing when the request may be sent
+     */
+    public CompletableFuture<Void> acquireAsync(int tokens) {
+        long waitNanos = reserve(tokens);
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, Runnable::run));
+    }
+
+    /**
+     * Charges one request of the given size only if both budgets can cover it right now,
+     * without going into debt. Meant for optional traffic, such as hedged duplicates, that
+     * must never delay the requests that are waiting their turn.
+     *
+     * @param tokens the estimated number of tokens the request will consume
+     * @return {@code true} if the request was admitted and may be sent at once
+     */
+    public boolean tryAcquire(int tokens) {
+        double charge = Math.min(Math.max(tokens, 0), tokenCapacity);
+        synchronized (this) {
+            refill(System.nanoTime());
+            if (availableRequests < 1 || availableTokens < charge) {
+                return false;
+            }
+            availableRequests -= 1;
+            availableTokens -= charge;
+        }
+        acquisitions.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the current allowance and how often callers had to wait.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            refill(System.nanoTime());
+            stats.put("availableRequests", Math.floor(availableRequests));
+            stats.put("availableTokens", Math.floor(availableTokens));
+        }
+        stats.put("requestsPerMinute", requestCapacity);
+        stats.put("tokensPerMinute", tokenCapacity);
+        stats.put("acquisitions", acquisitions.get());
+        stats.put("throttled", throttled.get());
+        stats.put("waitedMillis", waitedMillis.get());
+        return stats;
+    }
+
+    /**
+     * Charges one request of the given size and returns how long the caller must wait
+     * before sending it.
+     */
+    private long reserve(int tokens) {
+        long waitNanos;
+        synchronized (this) {
+            refill(System.nanoTime());
+            availableRequests -= 1;
+            availableTokens -= Math.min(Math.max(tokens, 0), tokenCapacity);
+            waitNanos = (long) Math.ceil(Math.max(
+                    availableRequests < 0 ? -availableRequests / requestsPerNano : 0,
+                    availableTokens < 0 ? -availableTokens / tokensPerNano : 0));
+        }
+        acquisitions.incrementAndGet();
+        if (waitNanos > 0) {
+            throttled.incrementAndGet();
+            waitedMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        }
+        return waitNanos;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            availableRequests = Math.min(requestCapacity, availableRequests + elapsed * requestsPerNano);
+            availableTokens = Math.min(tokenCapacity, availableTokens + elapsed * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
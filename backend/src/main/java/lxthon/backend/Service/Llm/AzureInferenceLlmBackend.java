@@ -0,0 +1,173 @@
+package lxthon.backend.Service.Llm;
+
+import com.azure.ai.inference.ChatCompletionsAsyncClient;
+import com.azure.ai.inference.ChatCompletionsClientBuilder;
+import com.azure.ai.inference.models.ChatCompletionsOptions;
+import com.azure.ai.inference.models.ChatCompletionsResponseFormatJsonSchema;
+import com.azure.ai.inference.models.ChatCompletionsResponseFormatJsonSchemaDefinition;
+import com.azure.ai.inference.models.ChatRequestUserMessage;
+import com.azure.core.credential.AzureKeyCredential;
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpHeaderName;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
+import com.azure.core.http.policy.FixedDelay;
+import com.azure.core.http.policy.RetryPolicy;
+import com.azure.core.util.BinaryData;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * {@link LlmBackend} calling an Azure AI Inference compatible endpoint, such as the
+ * GitHub Models inference endpoint.
+ * <p>
+ * Configures an asynchronous ChatCompletions client with the model's timeout and without the
+ * SDK's own retries, which would compound with the ones of
+ * {@link lxthon.backend.Service.OpenAIService}. Error responses are reported as
+ * {@link LlmBackendException}s carrying the status and any {@code Retry-After}.
+ * </p>
+ */
+public class AzureInferenceLlmBackend implements LlmBackend {
+
+    /**
+     * Azure-style companion of {@code Retry-After} with millisecond precision.
+     */
+    private static final HttpHeaderName RETRY_AFTER_MS = HttpHeaderName.fromString("retry-after-ms");
+
+    private final String model;
+
+    /**
+     * The asynchronous chat completions client.
+     */
+    private final ChatCompletionsAsyncClient client;
+
+    /**
+     * Constructs the backend.
+     *
+     * @param key      the API key
+     * @param endpoint the inference endpoint URL
+     * @param model    the model identifier to use for completions
+     * @param timeout  the read, write and response timeout of the HTTP client
+     * @throws IllegalStateException if the API key is missing or blank
+     */
+    public AzureInferenceLlmBackend(String key, String endpoint, String model, Duration timeout) {
+        if (key == null || key.isBlank()) {
+            throw new IllegalStateException("OPENAI_API_KEY is missing or blank.");
+        }
+        this.model = model;
+
+        HttpClient nettyClient = new NettyAsyncHttpClientBuilder()
+                .readTimeout(timeout)
+                .writeTimeout(timeout)
+                .responseTimeout(timeout)
+                .build();
+
+        this.client = new ChatCompletionsClientBuilder()
+                .credential(new AzureKeyCredential(key))
+                .endpoint(endpoint)
+                .httpClient(nettyClient)
+                .retryPolicy(new RetryPolicy(new FixedDelay(0, Duration.ZERO)))
+                .buildAsyncClient();
+    }
+
+    @Override
+    public CompletableFuture<String> complete(LlmRequest request) {
+        CompletableFuture<String> done = new CompletableFuture<>();
+        Disposable subscription = client.complete(options(request)).subscribe(completions -> {
+            if (completions == null || completions.getChoice() == null) {
+                done.complete("");
+                return;
+            }
+            String content = completions.getChoice().getMessage().getContent();
+            done.complete(content != null ? content : "");
+        }, error -> done.completeExceptionally(translate(error)), () -> done.complete(""));
+        // Stops the call on cancellation or timeout; a no-op once it has completed
+        done.whenComplete((result, error) -> subscription.dispose());
+        return done;
+    }
+
+    @Override
+    public CompletableFuture<String> stream(LlmRequest request, Consumer<String> onContent) {
+        CompletableFuture<String> done = new CompletableFuture<>();
+        StringBuilder content = new StringBuilder();
+        Disposable subscription = client.completeStream(options(request)).subscribe(update -> {
+            // The first update may carry no choices (e.g. content-filter results)
+            if (update.getChoices() == null || update.getChoices().isEmpty() || update.getChoice().getDelta() == null) {
+                return;
+            }
+            String piece = update.getChoice().getDelta().getContent();
+            if (piece != null && !piece.isEmpty()) {
+                content.append(piece);
+                onContent.accept(piece);
+            }
+        }, error -> done.completeExceptionally(translate(error)), () -> done.complete(content.toString()));
+        done.whenComplete((result, error) -> subscription.dispose());
+        return done;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    private ChatCompletionsOptions options(LlmRequest request) {
+        ChatCompletionsOptions options = new ChatCompletionsOptions(List.of(new ChatRequestUserMessage(request.getPrompt())));
+        options.setModel(model);
+        if (request.isJson()) {
+            Map<String, BinaryData> schemaData = new LinkedHashMap<>();
+            request.getSchema().forEach((name, value) -> schemaData.put(name, BinaryData.fromObject(value)));
+            options.setResponseFormat(new ChatCompletionsResponseFormatJsonSchema(
+                    new ChatCompletionsResponseFormatJsonSchemaDefinition(request.getSchemaName(), schemaData).setStrict(true)));
+        }
+        return options;
+    }
+
+    /**
+     * Turns an error response into an {@link LlmBackendException}; other failures pass unchanged.
+     */
+    private static Throwable translate(Throwable error) {
+        if (error instanceof HttpResponseException http && http.getResponse() != null) {
+            return new LlmBackendException(http.getResponse().getStatusCode(), retryAfterOf(http.getResponse()),
+                    http.getMessage(), http);
+        }
+        return error;
+    }
+
+    /**
+     * Reads how long the endpoint asked clients to wait, from {@code retry-after-ms} or
+     * {@code Retry-After} (seconds or an HTTP date).
+     *
+     * @return the wait, or {@code null} if the response carries none
+     */
+    private static Duration retryAfterOf(HttpResponse response) {
+        try {
+            String millis = response.getHeaderValue(RETRY_AFTER_MS);
+            if (millis != null && !millis.isBlank()) {
+                return Duration.ofMillis(Math.max(0, Long.parseLong(millis.trim())));
+            }
+            String value = response.getHeaderValue(HttpHeaderName.RETRY_AFTER);
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            value = value.trim();
+            if (value.chars().allMatch(Character::isDigit)) {
+                return Duration.ofSeconds(Long.parseLong(value));
+            }
+            Duration untilDate = Duration.between(Instant.now(),
+                    ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+            return untilDate.isNegative() ? Duration.ZERO : untilDate;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package lxthon.backend.Service.Llm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Transport that sends single requests to a language model.
+ * <p>
+ * Implementations make exactly one call per method invocation; rate limiting, adaptive
+ * concurrency, retries, hedging and caching are layered on top by
+ * {@link lxthon.backend.Service.OpenAIService}, so they apply the same way to every backend.
+ * Failures complete the returned future with an {@link LlmBackendException} when the
+ * model answered with an error status, or with any other exception (typically an
+ * {@link java.io.IOException}) when it could not be reached. Cancelling, or otherwise
+ * completing, the returned future stops the call.
+ * </p>
+ */
+public interface LlmBackend {
+
+    /**
+     * Sends a request and returns the whole response at once.
+     *
+     * @param request the request
+     * @return a future of the response text, empty if the model returned no content
+     */
+    CompletableFuture<String> complete(LlmRequest request);
+
+    /**
+     * Sends a request and forwards the response text as it is generated.
+     * <p>
+     * An exception thrown by {@code onContent} stops the stream and fails the future.
+     * </p>
+     *
+     * @param request   the request
+     * @param onContent receives each piece of the response text in order
+     * @return a future of the complete response text
+     */
+    CompletableFuture<String> stream(LlmRequest request, Consumer<String> onContent);
+
+    /**
+     * Returns the identifier of the model answering requests, e.g. for cache keys.
+     *
+     * @return the model identifier
+     */
+    String getModel();
+}
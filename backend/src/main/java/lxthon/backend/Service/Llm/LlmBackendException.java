@@ -0,0 +1,46 @@
+package lxthon.backend.Service.Llm;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Signals that an {@link LlmBackend} call was answered with an error status.
+ */
+public class LlmBackendException extends IOException {
+
+    private final int statusCode;
+
+    private final Duration retryAfter;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param statusCode the HTTP status of the response
+     * @param retryAfter how long the endpoint asked clients to wait, or {@code null}
+     * @param message    the error message
+     * @param cause      the transport's original exception, or {@code null}
+     */
+    public LlmBackendException(int statusCode, Duration retryAfter, String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the HTTP status of the response.
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns how long the endpoint asked clients to wait before trying again.
+     *
+     * @return the requested wait, or {@code null} if none was given
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,21 @@
+package lxthon.backend.Service.Llm;
+
+import java.time.Duration;
+
+/**
+ * Creates the {@link LlmBackend} serving a model, one per distinct endpoint, model and key.
+ */
+@FunctionalInterface
+public interface LlmBackendFactory {
+
+    /**
+     * Creates a backend.
+     *
+     * @param endpoint the inference endpoint URL
+     * @param model    the model identifier
+     * @param apiKey   the API key
+     * @param timeout  the longest a request to the model may take; the transport must not give up sooner
+     * @return the backend
+     */
+    LlmBackend create(String endpoint, String model, String apiKey, Duration timeout);
+}
@@ -0,0 +1,79 @@
+package lxthon.backend.Service.Llm;
+
+import java.util.Map;
+
+/**
+ * One prompt to send to an {@link LlmBackend}, with the response format it asks for.
+ */
+public final class LlmRequest {
+
+    private final String prompt;
+
+    private final String schemaName;
+
+    private final Map<String, Object> schema;
+
+    private LlmRequest(String prompt, String schemaName, Map<String, Object> schema) {
+        this.prompt = prompt;
+        this.schemaName = schemaName;
+        this.schema = schema;
+    }
+
+    /**
+     * Creates a request for a plain text response.
+     *
+     * @param prompt the user prompt
+     * @return the request
+     */
+    public static LlmRequest text(String prompt) {
+        return new LlmRequest(prompt, null, null);
+    }
+
+    /**
+     * Creates a request whose response must be a JSON document matching a schema.
+     *
+     * @param prompt     the user prompt
+     * @param schemaName a short name for the schema, as required by the API
+     * @param schema     the JSON schema of the response, as nested maps and lists; the root must be an object
+     * @return the request
+     */
+    public static LlmRequest json(String prompt, String schemaName, Map<String, Object> schema) {
+        return new LlmRequest(prompt, schemaName, schema);
+    }
+
+    /**
+     * Returns the user prompt.
+     *
+     * @return the prompt
+     */
+    public String getPrompt() {
+        return prompt;
+    }
+
+    /**
+     * Returns whether the response is constrained to a JSON schema.
+     *
+     * @return {@code true} for structured output
+     */
+    public boolean isJson() {
+        return schema != null;
+    }
+
+    /**
+     * Returns the name of the response schema.
+     *
+     * @return the schema name, or {@code null} for a text request
+     */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /**
+     * Returns the response schema.
+     *
+     * @return the schema, or {@code null} for a text request
+     */
+    public Map<String, Object> getSchema() {
+        return schema;
+    }
+}
@@ -0,0 +1,231 @@
+package lxthon.backend.Service.Llm;
+
+import lxthon.backend.Service.Concurrency.AdaptiveConcurrencyLimiter;
+import lxthon.backend.Service.Concurrency.TokenBucketRateLimiter;
+import lxthon.backend.config.OpenAIConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides which model, endpoint, timeout and limits serve each {@link LlmStage}.
+ * <p>
+ * Settings come from {@link OpenAIConfig}: the default <code>openai.*</code> ones, overridden
+ * per stage under <code>openai.stages.&lt;stage&gt;.*</code>. Stages resolving to the same
+ * endpoint, model and key share one {@link LlmBackend}, one {@link TokenBucketRateLimiter}
+ * and one {@link AdaptiveConcurrencyLimiter}, as providers limit traffic per model; the
+ * default model uses the application-wide limiter beans. A stage with a
+ * <code>max-concurrency</code> of its own gets a separate adaptive limit capped there, so
+ * it can neither starve nor be starved by the other stages on its model. A shared
+ * backend's HTTP timeouts are those of the slowest stage using it, so no stage timeout is
+ * cut short by the transport.
+ * </p>
+ */
+@Service
+public class LlmRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmRouter.class);
+
+    private final Map<LlmStage, Route> routes = new EnumMap<>(LlmStage.class);
+
+    /**
+     * Constructs the router, creating a backend per distinct endpoint, model and key.
+     *
+     * @param config              the default and per-stage settings
+     * @param backends            creates the backends
+     * @param defaultRateLimiter  the rate limiter of the default model
+     * @param defaultConcurrency  the adaptive concurrency limit of the default model
+     * @param requestsPerMinute   the request rate allowed per additional model
+     * @param tokensPerMinute     the token rate allowed per additional model
+     * @param initialLimit        the starting concurrency limit of additional limiters
+     * @param minLimit            the lowest concurrency limit of additional limiters
+     * @param maxLimit            the highest concurrency limit of additional models without a stage cap
+     * @param latencyTolerance    the latency spike factor of additional limiters
+     */
+    public LlmRouter(OpenAIConfig config, LlmBackendFactory backends,
+                     TokenBucketRateLimiter defaultRateLimiter, AdaptiveConcurrencyLimiter defaultConcurrency,
+                     @Value("${llm.rate-limit.requests-per-minute:60}") double requestsPerMinute,
+                     @Value("${llm.rate-limit.tokens-per-minute:200000}") double tokensPerMinute,
+                     @Value("${llm.concurrency.initial-limit:4}") int initialLimit,
+                     @Value("${llm.concurrency.min-limit:1}") int minLimit,
+                     @Value("${llm.concurrency.max-limit:32}") int maxLimit,
+                     @Value("${llm.concurrency.latency-tolerance:2.5}") double latencyTolerance) {
+        for (String key : config.getStages().keySet()) {
+            if (stageOf(key) == null) {
+                log.warn("Ignoring settings of unknown LLM stage '{}'", key);
+            }
+        }
+
+        Map<LlmStage, Settings> settingsByStage = new EnumMap<>(LlmStage.class);
+        // The transport of a shared model must allow the longest timeout of the stages using it
+        Map<String, Duration> longestTimeout = new HashMap<>();
+        for (LlmStage stage : LlmStage.values()) {
+            Settings settings = new Settings(config, config.getStages().getOrDefault(stage.getKey(), new OpenAIConfig.Stage()));
+            settingsByStage.put(stage, settings);
+            longestTimeout.merge(settings.modelKey(), settings.timeout, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        }
+
+        String defaultKey = modelKey(config.getEndpoint(), config.getModel(), config.getApiKey());
+        Map<String, Route> byModel = new HashMap<>();
+        for (LlmStage stage : LlmStage.values()) {
+            Settings settings = settingsByStage.get(stage);
+            String key = settings.modelKey();
+            Route shared = byModel.computeIfAbsent(key, k -> {
+                LlmBackend backend = backends.create(settings.endpoint, settings.model, settings.apiKey,
+                        longestTimeout.get(k));
+                return k.equals(defaultKey)
+                        ? new Route(backend, defaultRateLimiter, defaultConcurrency, null)
+                        : new Route(backend, new TokenBucketRateLimiter(requestsPerMinute, tokensPerMinute),
+                                new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencyTolerance), null);
+            });
+
+            AdaptiveConcurrencyLimiter concurrency = shared.concurrencyLimiter;
+            Integer cap = settings.maxConcurrency;
+            if (cap != null && cap > 0) {
+                concurrency = new AdaptiveConcurrencyLimiter(Math.min(initialLimit, cap), Math.min(minLimit, cap),
+                        cap, latencyTolerance);
+            }
+            routes.put(stage, new Route(shared.backend, shared.rateLimiter, concurrency, settings.timeout));
+            log.info("LLM stage {} uses {} (timeout {}s{})", stage.getKey(), settings.model, settings.timeout.toSeconds(),
+                    cap != null && cap > 0 ? ", at most " + cap + " in flight" : "");
+        }
+    }
+
+    /**
+     * Returns where and how requests of a stage are sent.
+     *
+     * @param stage the pipeline stage
+     * @return the stage's route
+     */
+    public Route route(LlmStage stage) {
+        return routes.get(stage);
+    }
+
+    /**
+     * Returns the model and current concurrency limit of every stage.
+     *
+     * @return a map of <code>&lt;stage&gt;.&lt;statistic&gt;</code> to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        routes.forEach((stage, route) -> {
+            Map<String, Object> concurrency = route.concurrencyLimiter.getStats();
+            stats.put(stage.getKey() + ".model", route.backend.getModel());
+            stats.put(stage.getKey() + ".timeoutSeconds", route.timeout.toSeconds());
+            stats.put(stage.getKey() + ".concurrencyLimit", concurrency.get("limit"));
+            stats.put(stage.getKey() + ".inFlight", concurrency.get("inFlight"));
+            stats.put(stage.getKey() + ".queued", concurrency.get("queued"));
+        });
+        return stats;
+    }
+
+    private static LlmStage stageOf(String key) {
+        for (LlmStage stage : LlmStage.values()) {
+            if (stage.getKey().equals(key)) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value.trim();
+    }
+
+    private static String modelKey(String endpoint, String model, String apiKey) {
+        return endpoint + "\n" + model + "\n" + apiKey;
+    }
+
+    /**
+     * A stage's settings with the defaults filled in.
+     */
+    private static final class Settings {
+
+        private final String endpoint;
+
+        private final String model;
+
+        private final String apiKey;
+
+        private final Duration timeout;
+
+        private final Integer maxConcurrency;
+
+        private Settings(OpenAIConfig config, OpenAIConfig.Stage stage) {
+            this.endpoint = orDefault(stage.getEndpoint(), config.getEndpoint());
+            this.model = orDefault(stage.getModel(), config.getModel());
+            this.apiKey = orDefault(stage.getApiKey(), config.getApiKey());
+            this.timeout = stage.getTimeout() != null ? stage.getTimeout() : config.getTimeout();
+            this.maxConcurrency = stage.getMaxConcurrency();
+        }
+
+        private String modelKey() {
+            return LlmRouter.modelKey(endpoint, model, apiKey);
+        }
+    }
+
+    /**
+     * The backend, limits and timeout serving one stage.
+     */
+    public static final class Route {
+
+        private final LlmBackend backend;
+
+        private final TokenBucketRateLimiter rateLimiter;
+
+        private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+        private final Duration timeout;
+
+        private Route(LlmBackend backend, TokenBucketRateLimiter rateLimiter,
+                      AdaptiveConcurrencyLimiter concurrencyLimiter, Duration timeout) {
+            this.backend = backend;
+            this.rateLimiter = rateLimiter;
+            this.concurrencyLimiter = concurrencyLimiter;
+            this.timeout = timeout;
+        }
+
+        /**
+         * Returns the transport of the stage's model.
+         *
+         * @return the backend
+         */
+        public LlmBackend getBackend() {
+            return backend;
+        }
+
+        /**
+         * Returns the rate limiter of the stage's model.
+         *
+         * @return the rate limiter
+         */
+        public TokenBucketRateLimiter getRateLimiter() {
+            return rateLimiter;
+        }
+
+        /**
+         * Returns the adaptive limit on the stage's requests in flight.
+         *
+         * @return the concurrency limiter, possibly shared with other stages on the same model
+         */
+        public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+            return concurrencyLimiter;
+        }
+
+        /**
+         * Returns how long a single completion of the stage may take.
+         *
+         * @return the timeout
+         */
+        public Duration getTimeout() {
+            return timeout;
+        }
+    }
+}
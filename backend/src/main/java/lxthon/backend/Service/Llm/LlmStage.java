@@ -0,0 +1,57 @@
+package lxthon.backend.Service.Llm;
+
+/**
+ * The pipeline stages that send requests to a language model.
+ * <p>
+ * Each stage can be routed to its own model, endpoint, timeout and concurrency limit
+ * through <code>openai.stages.&lt;key&gt;.*</code> (see {@link lxthon.backend.config.OpenAIConfig});
+ * stages without settings of their own use the default <code>openai.*</code> ones.
+ * </p>
+ */
+public enum LlmStage {
+
+    /**
+     * Ad-hoc prompts, e.g. from the test endpoints.
+     */
+    DEFAULT("default"),
+
+    /**
+     * Transcript cleaning: punctuation and filler removal, chunk by chunk.
+     */
+    CLEANER("cleaner"),
+
+    /**
+     * Partial summaries of the chunks of a transcript too long for one request.
+     */
+    CHUNK_SUMMARY("chunk-summary"),
+
+    /**
+     * The summary returned to the client.
+     */
+    SUMMARY("summary"),
+
+    /**
+     * Quiz generation.
+     */
+    QUIZ("quiz"),
+
+    /**
+     * Podcast script generation.
+     */
+    PODCAST("podcast");
+
+    private final String key;
+
+    LlmStage(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Returns the name of the stage in configuration properties and statistics.
+     *
+     * @return the kebab-case key
+     */
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,69 @@
+package lxthon.backend.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Signals that an LLM request failed for good: the endpoint kept throttling or failing
+ * after all retries, or answered with an error that retrying cannot fix.
+ */
+public class LlmException extends IOException {
+
+    private final int statusCode;
+
+    private final int attempts;
+
+    private final Duration retryAfter;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param statusCode the HTTP status of the last attempt, or 0 if it got no response
+     * @param attempts   how many attempts were made
+     * @param retryAfter how long the endpoint asked clients to wait, or {@code null}
+     * @param cause      the failure of the last attempt
+     */
+    public LlmException(int statusCode, int attempts, Duration retryAfter, Throwable cause) {
+        super("LLM request failed after " + attempts + (attempts == 1 ? " attempt" : " attempts")
+                + (statusCode > 0 ? " (HTTP " + statusCode + ")" : "") + ": " + cause.getMessage(), cause);
+        this.statusCode = statusCode;
+        this.attempts = attempts;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the HTTP status of the last attempt.
+     *
+     * @return the status code, or 0 if the last attempt got no response (e.g. a timeout)
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns how many attempts were made.
+     *
+     * @return the number of attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Returns how long the endpoint asked clients to wait before trying again.
+     *
+     * @return the requested wait, or {@code null} if none was given
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Returns whether the endpoint was overloaded or throttling rather than rejecting the request.
+     *
+     * @return {@code true} for throttling, server errors and timeouts
+     */
+    public boolean isUnavailable() {
+        return statusCode == 0 || statusCode == 429 || statusCode >= 500;
+    }
+}
@@ -1,109 +1,590 @@
 package lxthon.backend.Service;
 
+import lxthon.backend.Service.Cache.CachePolicy;
+import lxthon.backend.Service.Cache.ChunkMemoStore;
+import lxthon.backend.Service.Cache.LlmResponseCache;
+import lxthon.backend.Service.Chunking.TokenEstimator;
+import lxthon.backend.Service.Concurrency.AdaptiveConcurrencyLimiter;
+import lxthon.backend.Service.Concurrency.RequestHedger;
+import lxthon.backend.Service.Concurrency.TokenBucketRateLimiter;
+import lxthon.backend.Service.Llm.LlmBackend;
+import lxthon.backend.Service.Llm.LlmBackendException;
+import lxthon.backend.Service.Llm.LlmRequest;
+import lxthon.backend.Service.Llm.LlmRouter;
+import lxthon.backend.Service.Llm.LlmStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.Duration;
-import java.util.Arrays;
-import java.util.List;
-import com.azure.ai.inference.ChatCompletionsAsyncClient;
-import com.azure.ai.inference.ChatCompletionsClientBuilder;
-import com.azure.ai.inference.models.*;
-import com.azure.core.credential.AzureKeyCredential;
-import com.azure.core.http.HttpClient;
-import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 
 /**
- * Service for obtaining chat completions from an LLM via the GitHub AI/Inference endpoint.
+ * Service for obtaining chat completions from an LLM via the configured {@link LlmBackend}
+ * (the GitHub AI/Inference endpoint, or a local simulator for load tests).
  * <p>
- * Configures an asynchronous Azure ChatCompletions client with long timeouts and exposes
- * a synchronous wrapper method for fetching completions given a single prompt string.
+ * Every request belongs to an {@link LlmStage}, which the {@link LlmRouter} maps to a
+ * model, timeout and limits, so simple high-volume stages such as cleaning can use a
+ * smaller, faster model than the quality-critical ones. Overloads without a stage use
+ * {@link LlmStage#DEFAULT}.
+ * </p>
+ * <p>
+ * Completions are exposed as {@link CompletableFuture}s, so many calls can be in flight
+ * without holding a thread each; the blocking methods are thin adapters over them.
+ * Callers with deterministic prompts can pass a {@link CachePolicy} to have identical
+ * requests answered from the {@link LlmResponseCache}.
+ * </p>
+ * <p>
+ * Requests pass their route's {@link TokenBucketRateLimiter} and {@link AdaptiveConcurrencyLimiter},
+ * and throttled or failed requests are retried with backoff. A request that still fails
+ * completes its future with an {@link LlmException}.
  * </p>
  */
 @Service
 public class OpenAIService {
 
+    private static final Logger log = LoggerFactory.getLogger(OpenAIService.class);
+
+    /**
+     * Picks the backend, limits and timeout of each stage's requests.
+     */
+    private final LlmRouter router;
+
+    /**
+     * Sends a duplicate of a hedged request that is slower than usual.
+     */
+    private final RequestHedger hedger;
+
+    private final int maxAttempts;
+
+    private final Duration baseRetryDelay;
+
     /**
-     * The API key (injected as a JVM system property OPENAI_API_KEY).
+     * Upper bound of a backoff; a {@code Retry-After} longer than this fails the request instead.
      */
-    private final String key;
+    private final Duration maxRetryDelay;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
 
     /**
-     * The inference endpoint URL (e.g., GitHub AI Inference).
+     * Cache-key description of plain text responses with default generation parameters.
      */
-    private final String endpoint;
+    private static final String TEXT_FORMAT = "text";
+
+    private static final ObjectMapper CANONICAL_JSON = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
 
     /**
-     * The model identifier to use for completions.
+     * Complete responses of earlier identical requests, for callers that opt in.
      */
-    private final String model;
+    private final LlmResponseCache responseCache;
 
     /**
-     * The asynchronous chat completions client.
+     * Constructs the OpenAIService.
+     *
+     * @param router           the routes of the pipeline stages to their models and limits
+     * @param responseCache    the cache of complete responses, used by callers that opt in
+     * @param hedger           the hedger of latency-sensitive requests
+     * @param maxAttempts      how many times a request is tried before it fails
+     * @param baseRetryDelayMs the backoff ceiling after the first failed attempt, doubling per attempt
+     * @param maxRetryDelayMs  the largest backoff, and the longest {@code Retry-After} waited for
      */
-    private final ChatCompletionsAsyncClient client;
+    public OpenAIService(LlmRouter router, LlmResponseCache responseCache, RequestHedger hedger,
+                         @Value("${llm.retry.max-attempts:4}") int maxAttempts,
+                         @Value("${llm.retry.base-delay-ms:500}") long baseRetryDelayMs,
+                         @Value("${llm.retry.max-delay-ms:30000}") long maxRetryDelayMs) {
+        this.router = router;
+        this.responseCache = responseCache;
+        this.hedger = hedger;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseRetryDelay = Duration.ofMillis(Math.max(1, baseRetryDelayMs));
+        this.maxRetryDelay = Duration.ofMillis(Math.max(baseRetryDelayMs, maxRetryDelayMs));
+    }
 
     /**
-     * Constructs the OpenAIService by reading the {@code OPENAI_API_KEY} system property,
-     * configuring a Netty HTTP client with generous timeouts, and building an async
-     * ChatCompletions client pointed at the specified endpoint and model.
+     * Sends the given prompt to the configured model and returns the completion text.
      * <p>
-     * Throws an {@link IllegalStateException} if the API key is missing or blank.
+     * Blocking adapter over {@link #getChatCompletionAsync(String)} for callers that are
+     * already on a thread of their own.
      * </p>
+     *
+     * @param prompt the user prompt to send to the language model
+     * @return the completion text from the model, or an empty string if no content is received
+     * @throws IOException if the request failed for good or the calling thread is interrupted
      */
-    public OpenAIService() {
-        this.key = System.getProperty("OPENAI_API_KEY");
-        this.endpoint = "https://models.github.ai/inference";
-        this.model = "openai/gpt-4o";
-
-        if (this.key == null || this.key.isBlank()) {
-            throw new IllegalStateException("OPENAI_API_KEY is missing or blank.");
-        }
+    public String getChatCompletion(String prompt) throws IOException {
+        return await(getChatCompletionAsync(prompt));
+    }
 
-        HttpClient nettyClient = new NettyAsyncHttpClientBuilder()
-                .readTimeout(Duration.ofMinutes(5))
-                .writeTimeout(Duration.ofMinutes(5))
-                .responseTimeout(Duration.ofMinutes(5))
-                .build();
+    /**
+     * Sends the given prompt to the configured model without blocking.
+     * <p>
+     * Admission by the {@link TokenBucketRateLimiter} and the request itself are both
+     * asynchronous, so no thread is held while the call is queued or in flight. Each
+     * attempt times out after the stage's timeout (5 minutes by default); throttling,
+     * server errors and timeouts are retried.
+     * </p>
+     *
+     * @param prompt the user prompt to send to the language model
+     * @return a future of the completion text (empty if no content is received), failing
+     *         with an {@link LlmException} once the request cannot succeed
+     */
+    public CompletableFuture<String> getChatCompletionAsync(String prompt) {
+        return getChatCompletionAsync(prompt, CachePolicy.NONE);
+    }
 
-        this.client = new ChatCompletionsClientBuilder()
-                .credential(new AzureKeyCredential(key))
-                .endpoint(endpoint)
-                .httpClient(nettyClient)
-                .buildAsyncClient();
+    /**
+     * Like {@link #getChatCompletionAsync(String)}, serving and storing the response
+     * through the {@link LlmResponseCache} as {@code cache} allows.
+     *
+     * @param prompt the user prompt to send to the language model
+     * @param cache  how the caller wants the response cached
+     * @return a future of the completion text, failing with an {@link LlmException} once
+     *         the request cannot succeed; failures are never cached
+     */
+    public CompletableFuture<String> getChatCompletionAsync(String prompt, CachePolicy cache) {
+        return getChatCompletionAsync(prompt, cache, false);
     }
 
     /**
-     * Sends the given prompt to the configured model and returns the completion text.
+     * Like {@link #getChatCompletionAsync(String, CachePolicy)}, optionally hedging the
+     * request for callers that a client is waiting on.
      * <p>
-     * Wraps the async call in a blocking operation (up to 5 minutes) to simulate
-     * synchronous behavior. Returns an empty string on any error or if no content
-     * is received.
+     * A hedged attempt that runs longer than a high percentile of recent hedged requests
+     * of the same stage is duplicated and the first response wins (see {@link RequestHedger}). Duplicates
+     * are only sent if the rate limit has room for them at once, and they share the
+     * original attempt's concurrency permit, so they never delay other requests.
      * </p>
      *
      * @param prompt the user prompt to send to the language model
-     * @return the completion text from the model, or an empty string on failure
+     * @param cache  how the caller wants the response cached
+     * @param hedged whether a slow attempt may be duplicated
+     * @return a future of the completion text, failing with an {@link LlmException} once
+     *         the request cannot succeed; failures are never cached
+     */
+    public CompletableFuture<String> getChatCompletionAsync(String prompt, CachePolicy cache, boolean hedged) {
+        return getChatCompletionAsync(LlmStage.DEFAULT, prompt, cache, hedged);
+    }
+
+    /**
+     * Like {@link #getChatCompletionAsync(String, CachePolicy, boolean)}, sending the request
+     * to the model the {@link LlmRouter} assigns to {@code stage}.
+     *
+     * @param stage  the pipeline stage the request belongs to
+     * @param prompt the user prompt to send to the language model
+     * @param cache  how the caller wants the response cached
+     * @param hedged whether a slow attempt may be duplicated
+     * @return a future of the completion text, failing with an {@link LlmException} once
+     *         the request cannot succeed; failures are never cached
+     */
+    public CompletableFuture<String> getChatCompletionAsync(LlmStage stage, String prompt, CachePolicy cache, boolean hedged) {
+        LlmRouter.Route route = router.route(stage);
+        return cached(route, prompt, TEXT_FORMAT, cache, null, () -> complete(stage, route, prompt, hedged));
+    }
+
+    private CompletableFuture<String> complete(LlmStage stage, LlmRouter.Route route, String prompt, boolean hedged) {
+        LlmRequest request = LlmRequest.text(prompt);
+        Supplier<CompletableFuture<String>> attempt = () -> route.getBackend().complete(request)
+                .orTimeout(route.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        if (!hedged) {
+            return send(route, prompt, attempt, () -> true);
+        }
+        // The duplicate skips the queue or is not sent at all; it must not add to throttling
+        return send(route, prompt, () -> hedger.hedge(stage.getKey(), attempt,
+                () -> route.getRateLimiter().tryAcquire(estimateTokens(prompt)) ? attempt.get() : null), () -> true);
+    }
+
+    /**
+     * Sends the given prompt with a JSON-schema constraint on the response and streams
+     * the response text to {@code onContent} as it is generated.
+     * <p>
+     * Blocking adapter over {@link #getJsonChatCompletionAsync(String, String, Map, Consumer)}.
+     * </p>
+     *
+     * @param prompt     the user prompt to send to the language model
+     * @param schemaName a short name for the schema, as required by the API
+     * @param schema     the JSON schema of the response, as nested maps and lists
+     * @param onContent  receives each piece of the response text in order
+     * @return the complete response text
+     * @throws IOException if the request failed for good or the calling thread is interrupted
+     */
+    public String getJsonChatCompletion(String prompt, String schemaName, Map<String, Object> schema,
+                                        Consumer<String> onContent) throws IOException {
+        return await(getJsonChatCompletionAsync(prompt, schemaName, schema, onContent));
+    }
+
+    /**
+     * Sends the given prompt with a JSON-schema constraint on the response, without
+     * blocking, and streams the response text to {@code onContent} as it is generated.
+     * <p>
+     * Uses the endpoint's structured-output mode, so the completion is guaranteed to be a
+     * JSON document matching {@code schema} (the root must be an object). Admission and
+     * error handling are the same as for {@link #getChatCompletionAsync(String)}, except that
+     * a stream that already delivered pieces is not retried: they stand and the future
+     * fails with an {@link LlmException}. Cancelling the future stops the stream.
+     * </p>
+     *
+     * @param prompt     the user prompt to send to the language model
+     * @param schemaName a short name for the schema, as required by the API
+     * @param schema     the JSON schema of the response, as nested maps and lists
+     * @param onContent  receives each piece of the response text in order
+     * @return a future of the complete response text
      */
-    public String getChatCompletion(String prompt) {
-        List<ChatRequestMessage> chatMessages = Arrays.asList(
-                new ChatRequestUserMessage(prompt)
-        );
+    public CompletableFuture<String> getJsonChatCompletionAsync(String prompt, String schemaName,
+                                                                Map<String, Object> schema, Consumer<String> onContent) {
+        return getJsonChatCompletionAsync(prompt, schemaName, schema, CachePolicy.NONE, onContent);
+    }
 
-        ChatCompletionsOptions chatCompletionsOptions = new ChatCompletionsOptions(chatMessages);
-        chatCompletionsOptions.setModel(model);
+    /**
+     * Like {@link #getJsonChatCompletionAsync(String, String, Map, Consumer)}, serving and
+     * storing the response through the {@link LlmResponseCache} as {@code cache} allows.
+     * A cached response is passed to {@code onContent} in one piece.
+     *
+     * @param prompt     the user prompt to send to the language model
+     * @param schemaName a short name for the schema, as required by the API
+     * @param schema     the JSON schema of the response, as nested maps and lists
+     * @param cache      how the caller wants the response cached
+     * @param onContent  receives each piece of the response text in order
+     * @return a future of the complete response text
+     */
+    public CompletableFuture<String> getJsonChatCompletionAsync(String prompt, String schemaName, Map<String, Object> schema,
+                                                                CachePolicy cache, Consumer<String> onContent) {
+        return getJsonChatCompletionAsync(LlmStage.DEFAULT, prompt, schemaName, schema, cache, onContent);
+    }
 
+    /**
+     * Like {@link #getJsonChatCompletionAsync(String, String, Map, CachePolicy, Consumer)},
+     * sending the request to the model the {@link LlmRouter} assigns to {@code stage}.
+     *
+     * @param stage      the pipeline stage the request belongs to
+     * @param prompt     the user prompt to send to the language model
+     * @param schemaName a short name for the schema, as required by the API
+     * @param schema     the JSON schema of the response, as nested maps and lists
+     * @param cache      how the caller wants the response cached
+     * @param onContent  receives each piece of the response text in order
+     * @return a future of the complete response text
+     */
+    public CompletableFuture<String> getJsonChatCompletionAsync(LlmStage stage, String prompt, String schemaName,
+                                                                Map<String, Object> schema, CachePolicy cache,
+                                                                Consumer<String> onContent) {
+        String format;
         try {
-            // Mono blocking here to simulate sync behavior
-            ChatCompletions completions = client.complete(chatCompletionsOptions).block(Duration.ofMinutes(5));
+            // Sorted keys: the same schema must give the same cache key whatever its map implementation
+            format = "json_schema:" + schemaName + ":" + CANONICAL_JSON.writeValueAsString(schema);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-            if (completions == null || completions.getChoice() == null) {
-                return "";
+        LlmRouter.Route route = router.route(stage);
+        LlmRequest request = LlmRequest.json(prompt, schemaName, schema);
+        return cached(route, prompt, format, cache, onContent, () -> stream(route, request, onContent));
+    }
+
+    /**
+     * Sends the given prompt to the configured model without blocking and streams the
+     * completion text to {@code onContent} as it is generated.
+     * <p>
+     * Lets callers forward the first words of a long completion while the rest is still
+     * being generated. Admission, timeout and error handling are the same as for
+     * {@link #getJsonChatCompletionAsync(String, String, Map, Consumer)}; an exception
+     * thrown by {@code onContent} stops the stream. Cancelling the future stops the stream as well.
+     * </p>
+     *
+     * @param prompt    the user prompt to send to the language model
+     * @param onContent receives each piece of the completion text in order
+     * @return a future of the complete text, failing with an {@link LlmException} once
+     *         the request cannot succeed
+     */
+    public CompletableFuture<String> getChatCompletionStreamAsync(String prompt, Consumer<String> onContent) {
+        return getChatCompletionStreamAsync(prompt, CachePolicy.NONE, onContent);
+    }
+
+    /**
+     * Like {@link #getChatCompletionStreamAsync(String, Consumer)}, serving and storing the
+     * response through the {@link LlmResponseCache} as {@code cache} allows. Streamed and
+     * plain requests for the same prompt share cache entries; a cached response is passed
+     * to {@code onContent} in one piece.
+     *
+     * @param prompt    the user prompt to send to the language model
+     * @param cache     how the caller wants the response cached
+     * @param onContent receives each piece of the completion text in order
+     * @return a future of the complete text, failing with an {@link LlmException} once
+     *         the request cannot succeed
+     */
+    public CompletableFuture<String> getChatCompletionStreamAsync(String prompt, CachePolicy cache, Consumer<String> onContent) {
+        return getChatCompletionStreamAsync(LlmStage.DEFAULT, prompt, cache, onContent);
+    }
+
+    /**
+     * Like {@link #getChatCompletionStreamAsync(String, CachePolicy, Consumer)}, sending the
+     * request to the model the {@link LlmRouter} assigns to {@code stage}.
+     *
+     * @param stage     the pipeline stage the request belongs to
+     * @param prompt    the user prompt to send to the language model
+     * @param cache     how the caller wants the response cached
+     * @param onContent receives each piece of the completion text in order
+     * @return a future of the complete text, failing with an {@link LlmException} once
+     *         the request cannot succeed
+     */
+    public CompletableFuture<String> getChatCompletionStreamAsync(LlmStage stage, String prompt, CachePolicy cache,
+                                                                  Consumer<String> onContent) {
+        LlmRouter.Route route = router.route(stage);
+        return cached(route, prompt, TEXT_FORMAT, cache, onContent, () -> stream(route, LlmRequest.text(prompt), onContent));
+    }
+
+    /**
+     * Answers from the response cache if the policy allows and an entry exists, and
+     * otherwise sends the request and caches its (non-empty) response.
+     *
+     * @param route     the route of the request, whose model is part of the cache key
+     * @param prompt    the user prompt, part of the cache key
+     * @param format    the response format and any other generation parameters, part of the cache key
+     * @param cache     the caller's cache policy
+     * @param onContent receives a cached response in one piece; may be {@code null}
+     * @param request   sends the request
+     */
+    private CompletableFuture<String> cached(LlmRouter.Route route, String prompt, String format, CachePolicy cache,
+                                             Consumer<String> onContent, Supplier<CompletableFuture<String>> request) {
+        if (!cache.isEnabled()) {
+            return request.get();
+        }
+        String cacheKey = ChunkMemoStore.key(route.getBackend().getModel(), "user", prompt, format);
+        return responseCache.getAsync(cacheKey).thenCompose(hit -> {
+            if (hit != null) {
+                if (onContent != null) {
+                    onContent.accept(hit);
+                }
+                return CompletableFuture.completedFuture(hit);
             }
+            return request.get().thenApply(content -> {
+                responseCache.put(cacheKey, content, cache);
+                return content;
+            });
+        });
+    }
+
+    /**
+     * Streams a completion, forwarding each content delta. A failed stream is only retried
+     * if nothing has been forwarded yet, so {@code onContent} never sees text twice.
+     */
+    private CompletableFuture<String> stream(LlmRouter.Route route, LlmRequest request, Consumer<String> onContent) {
+        AtomicBoolean forwarded = new AtomicBoolean();
+        return send(route, request.getPrompt(), () -> route.getBackend().stream(request, piece -> {
+            forwarded.set(true);
+            onContent.accept(piece);
+        }).orTimeout(route.getTimeout().toMillis(), TimeUnit.MILLISECONDS), () -> !forwarded.get());
+    }
+
+    /**
+     * Sends a request once its route's rate limiter and adaptive concurrency limiter admit it,
+     * retrying throttling, server errors, timeouts and dropped connections with jittered
+     * exponential backoff.
+     * <p>
+     * Each attempt reports its outcome to the {@link AdaptiveConcurrencyLimiter}, and a
+     * {@code Retry-After} header pauses all admissions for the time asked. The backoff
+     * before attempt {@code n + 1} is uniformly random up to
+     * {@code min(max-delay, base-delay × 2^(n-1))} ("full jitter", so clients throttled
+     * together do not retry together), but never shorter than the endpoint asked for.
+     * Cancelling the returned future stops a running attempt where the transport allows
+     * and prevents further ones.
+     * </p>
+     *
+     * @param route    the route whose limiters admit the request
+     * @param prompt   the prompt, for the token estimate charged against the rate limit
+     * @param attempt  starts one attempt
+     * @param mayRetry whether another attempt is still acceptable after a failure
+     * @return a future of the response, failing with an {@link LlmException} once the
+     *         request cannot succeed
+     */
+    private CompletableFuture<String> send(LlmRouter.Route route, String prompt, Supplier<CompletableFuture<String>> attempt,
+                                           BooleanSupplier mayRetry) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<String>> current = new AtomicReference<>();
+        result.whenComplete((content, error) -> {
+            CompletableFuture<String> running = current.get();
+            if (result.isCancelled() && running != null) {
+                running.cancel(true);
+            }
+        });
+        send(route, prompt, attempt, mayRetry, 1, current, result);
+        return result;
+    }
+
+    private void send(LlmRouter.Route route, String prompt, Supplier<CompletableFuture<String>> attempt,
+                      BooleanSupplier mayRetry, int number, AtomicReference<CompletableFuture<String>> current,
+                      CompletableFuture<String> result) {
+        AdaptiveConcurrencyLimiter concurrencyLimiter = route.getConcurrencyLimiter();
+        route.getRateLimiter().acquireAsync(estimateTokens(prompt))
+                .thenCompose(admitted -> concurrencyLimiter.acquire())
+                .thenCompose(permit -> {
+                    CompletableFuture<String> call;
+                    if (result.isDone()) {
+                        call = CompletableFuture.failedFuture(new CancellationException());
+                    } else {
+                        try {
+                            call = attempt.get();
+                        } catch (RuntimeException e) {
+                            call = CompletableFuture.failedFuture(e);
+                        }
+                    }
+                    current.set(call);
+                    return call.whenComplete((content, error) -> {
+                        if (error == null) {
+                            permit.success(TokenEstimator.estimate(content));
+                        } else if (isOverload(unwrap(error))) {
+                            permit.dropped();
+                        } else {
+                            permit.ignore();
+                        }
+                    });
+                })
+                .whenComplete((content, error) -> {
+                    if (error == null) {
+                        result.complete(content);
+                        return;
+                    }
+                    Throwable cause = unwrap(error);
+                    int status = statusOf(cause);
+                    Duration retryAfter = retryAfterOf(cause);
+                    if (retryAfter != null) {
+                        concurrencyLimiter.pause(retryAfter.compareTo(maxRetryDelay) > 0 ? maxRetryDelay : retryAfter);
+                    }
+                    if (result.isDone()) {
+                        return;
+                    }
 
-            String content = completions.getChoice().getMessage().getContent();
-            return content != null ? content : "";
-        } catch (Exception e) {
-            System.err.println("Error calling OpenAI service: " + e.getMessage());
-            e.printStackTrace();
-            return "";
+                    boolean retryable = isOverload(cause) || status == 408 || cause instanceof IOException;
+                    boolean waitAcceptable = retryAfter == null || retryAfter.compareTo(maxRetryDelay) <= 0;
+                    if (number >= maxAttempts || !retryable || !waitAcceptable || !mayRetry.getAsBoolean()) {
+                        failures.incrementAndGet();
+                        log.warn("LLM request failed after {} attempt(s): {}", number, cause.toString());
+                        result.completeExceptionally(new LlmException(status, number, retryAfter, cause));
+                        return;
+                    }
+
+                    long ceiling = Math.min(maxRetryDelay.toMillis(), baseRetryDelay.toMillis() << Math.min(20, number - 1));
+                    long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                    if (retryAfter != null) {
+                        delay = Math.max(delay, retryAfter.toMillis());
+                    }
+                    retries.incrementAndGet();
+                    log.info("LLM request attempt {} failed ({}), retrying in {} ms", number, cause.toString(), delay);
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                            .execute(() -> send(route, prompt, attempt, mayRetry, number + 1, current, result));
+                });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
         }
+        return error;
+    }
+
+    private static int statusOf(Throwable error) {
+        return error instanceof LlmBackendException backendError ? backendError.getStatusCode() : 0;
+    }
+
+    /**
+     * Throttling, server errors and timeouts: signs the endpoint is at capacity.
+     */
+    private static boolean isOverload(Throwable error) {
+        int status = statusOf(error);
+        return status == 429 || status >= 500 || error instanceof TimeoutException;
+    }
+
+    private static Duration retryAfterOf(Throwable error) {
+        return error instanceof LlmBackendException backendError ? backendError.getRetryAfter() : null;
+    }
+
+    /**
+     * Returns retry and failure counts of LLM requests.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retries", retries.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    /**
+     * Returns the identifier of the model completions are requested from by default.
+     *
+     * @return the model identifier
+     */
+    public String getModel() {
+        return getModel(LlmStage.DEFAULT);
+    }
+
+    /**
+     * Returns the identifier of the model serving a pipeline stage, e.g. for memo keys
+     * that must change when the stage is routed to another model.
+     *
+     * @param stage the pipeline stage
+     * @return the model identifier
+     */
+    public String getModel(LlmStage stage) {
+        return router.route(stage).getBackend().getModel();
+    }
+
+    /**
+     * Waits for an asynchronous completion on behalf of a blocking caller.
+     *
+     * @param completion the pending completion
+     * @return its text
+     * @throws IOException if the request failed or the calling thread is interrupted
+     */
+    private static String await(CompletableFuture<String> completion) throws IOException {
+        try {
+            return completion.get();
+        } catch (InterruptedException e) {
+            completion.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the LLM");
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("LLM request failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Rough token cost of a request: the prompt as counted by the {@link TokenEstimator}
+     * the chunk budgets are planned with, plus as much again for a completion that
+     * rewrites or condenses it.
+     *
+     * @param prompt the prompt to send
+     * @return the estimated number of tokens charged against the rate limit
+     */
+    private static int estimateTokens(String prompt) {
+        return (int) Math.min(Integer.MAX_VALUE, 2L * TokenEstimator.estimate(prompt) + 1);
     }
 }
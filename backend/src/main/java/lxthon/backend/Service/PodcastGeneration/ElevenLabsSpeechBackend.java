@@ -0,0 +1,69 @@
+package lxthon.backend.Service.PodcastGeneration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * {@link SpeechBackend} calling the ElevenLabs text-to-speech API.
+ */
+public class ElevenLabsSpeechBackend implements SpeechBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(ElevenLabsSpeechBackend.class);
+
+    private final String apiKey;
+
+    /**
+     * Constructs the backend.
+     *
+     * @param apiKey the ElevenLabs API key, or {@code null} if none is configured
+     */
+    public ElevenLabsSpeechBackend(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public byte[] synthesize(String text, String voiceId) throws IOException, InterruptedException {
+        String requestBody = String.format("""
+            {
+                "text": "%s",
+                "model_id": "eleven_monolingual_v1",
+                "voice_settings": {
+                    "stability": 0.5,
+                    "similarity_boost": 0.5
+                }
+            }
+            """, text.replace("\"", "\\\"").replace("\n", "\\n"));
+
+        // CRIAR NOVO HttpClient A CADA CHAMADA (evita problemas de threading)
+        HttpClient client = HttpClient.newHttpClient();
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("https://api.elevenlabs.io/v1/text-to-speech/" + voiceId))
+                .header("Accept", "audio/mpeg")
+                .header("Content-Type", "application/json")
+                .header("xi-api-key", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .build();
+
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        if (response.statusCode() != 200) {
+            throw new IOException("ElevenLabs API call failed: " + response.statusCode() +
+                    " - " + new String(response.body()));
+        }
+
+        log.debug("Generated audio for text: {} characters", text.length());
+        return response.body();
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.trim().isEmpty();
+    }
+}
@@ -0,0 +1,65 @@
+package lxthon.backend.Service.PodcastGeneration;
+
+import java.time.Duration;
+
+/**
+ * Writes silent MP3 audio: valid MPEG-1 Layer III frames (128 kbit/s, 44.1 kHz, mono)
+ * whose side information is zero, so decoders play them as silence.
+ * <p>
+ * Used wherever real speech is unavailable (mock mode, the speech simulator, pauses
+ * between speakers): the result has the size and duration real speech would have, and
+ * concatenating such byte arrays yields a playable file.
+ * </p>
+ */
+public final class MpegAudio {
+
+    /**
+     * Bytes per frame at 128 kbit/s and 44.1 kHz without padding: 144 × 128000 / 44100.
+     */
+    private static final int FRAME_BYTES = 417;
+
+    /**
+     * Samples per Layer III frame divided by the sample rate.
+     */
+    private static final double FRAME_SECONDS = 1152.0 / 44100.0;
+
+    /**
+     * Frame sync, MPEG-1 Layer III without CRC; 128 kbit/s, 44.1 kHz; mono, original.
+     */
+    private static final byte[] HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0xC4};
+
+    /**
+     * Speaking rate used to estimate how long a text takes to read aloud.
+     */
+    private static final double WORDS_PER_SECOND = 2.5;
+
+    private MpegAudio() {
+    }
+
+    /**
+     * Returns silence of at least the given duration.
+     *
+     * @param duration how long the audio should play
+     * @return the MP3 frames
+     */
+    public static byte[] silence(Duration duration) {
+        int frames = Math.max(1, (int) Math.ceil(duration.toNanos() / 1e9 / FRAME_SECONDS));
+        byte[] audio = new byte[frames * FRAME_BYTES];
+        for (int frame = 0; frame < frames; frame++) {
+            System.arraycopy(HEADER, 0, audio, frame * FRAME_BYTES, HEADER.length);
+        }
+        return audio;
+    }
+
+    /**
+     * Estimates how long a text takes to read aloud, at about 150 words per minute.
+     *
+     * @param text the text
+     * @return the estimated duration, at least half a second
+     */
+    public static Duration speakingTime(String text) {
+        String trimmed = text.trim();
+        int words = trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length;
+        return Duration.ofMillis(Math.max(500, (long) (words / WORDS_PER_SECOND * 1000)));
+    }
+}
@@ -1,9 +1,17 @@
 package lxthon.backend.Service.PodcastGeneration;
 
 import lombok.NonNull;
+import lxthon.backend.Domain.CompactTranscript;
+import lxthon.backend.Service.Cache.CachePolicy;
+import lxthon.backend.Service.Chunking.ChunkPlanner;
 import lxthon.backend.Service.OpenAIService;
+import lxthon.backend.Service.SummaryGeneratorService;
 import lxthon.backend.Service.TranscriptCleanerService;
+import lxthon.backend.Service.VideoIdResolver;
 import lxthon.backend.Service.VideoService;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry;
+import lxthon.backend.Service.Llm.LlmStage;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry.Artifact;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
@@ -11,16 +19,24 @@ import org.slf4j.LoggerFactory;
 import lxthon.backend.Domain.TranscriptSegment;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Service
 public class PodcastService {
 
     private static final Logger log = LoggerFactory.getLogger(PodcastService.class);
 
+    // Para 2 minutos: ~300 palavras de output, a partir de ~150-180 palavras de conteúdo
+    private static final int SOURCE_TOKENS_FOR_2_MINUTES = 220;
+
+    // Silence written between speaker turns
+    private static final byte[] SPEAKER_PAUSE = MpegAudio.silence(Duration.ofMillis(300));
+
     @NonNull
     private final VideoService videoService;
 
@@ -33,14 +49,29 @@ public class PodcastService {
     @NonNull
     private final TranscriptCleanerService transcriptCleanerService;
 
+    @NonNull
+    private final InFlightRequestRegistry inFlight;
+
+    @NonNull
+    private final ChunkPlanner chunkPlanner;
+
+    @NonNull
+    private final SummaryGeneratorService summaryGenerator;
+
     public PodcastService(@NonNull VideoService videoService,
                           @NonNull OpenAIService openAIService,
                           @NotNull VideoToSpeechService videoToSpeechService,
-                          @NonNull TranscriptCleanerService transcriptCleanerService) {
+                          @NonNull TranscriptCleanerService transcriptCleanerService,
+                          @NonNull InFlightRequestRegistry inFlight,
+                          @NonNull ChunkPlanner chunkPlanner,
+                          @NonNull SummaryGeneratorService summaryGenerator) {
         this.videoService = videoService;
         this.openAIService = openAIService;
         this.videoToSpeechService = videoToSpeechService;
         this.transcriptCleanerService = transcriptCleanerService;
+        this.inFlight = inFlight;
+        this.chunkPlanner = chunkPlanner;
+        this.summaryGenerator = summaryGenerator;
     }
 
     /**
@@ -52,19 +83,43 @@ public class PodcastService {
      */
     public PodcastResult generatePodcastFromVideo(String videoUrl, String hostAName, String hostBName)
             throws IOException, InterruptedException {
+        // Concurrent requests for the same video and hosts share one generation
+        return inFlight.join(Artifact.PODCAST, VideoIdResolver.resolve(videoUrl), hostAName + "|" + hostBName,
+                () -> generatePodcast(videoUrl, hostAName, hostBName));
+    }
+
+    private PodcastResult generatePodcast(String videoUrl, String hostAName, String hostBName)
+            throws IOException, InterruptedException {
 
         log.info("Starting podcast generation for video: {}", videoUrl);
 
-        // Step 1: Extract and clean transcript
+        // Step 1: Extract transcript
         log.info("Step 1: Extracting transcript...");
         List<TranscriptSegment> rawTranscript = videoService.getTranscript(videoUrl);
 
-        log.info("Step 2: Cleaning transcript...");
-        List<TranscriptSegment> cleanedTranscript = transcriptCleanerService.cleanTranscript(rawTranscript);
+        String content;
+        if (summaryGenerator.isChunked(rawTranscript)) {
+            // Its first minutes would not represent a long video: condense all of it, reusing its cached chunk summaries
+            log.info("Step 2: Condensing long transcript from its chunk summaries...");
+            try {
+                content = summaryGenerator.generateSummaryAsync(VideoIdResolver.resolve(videoUrl), rawTranscript,
+                        SummaryGeneratorService.Length.SHORT).get();
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to summarize transcript", e.getCause());
+            }
+        } else {
+            log.info("Step 2: Cleaning transcript...");
+            content = firstTwoMinutes(transcriptCleanerService.cleanTranscript(rawTranscript));
+        }
 
         // Step 3: Generate podcast conversation script
         log.info("Step 3: Generating podcast script...");
-        String podcastScript = generatePodcastScript(cleanedTranscript, hostAName, hostBName);
+        String podcastScript;
+        try {
+            podcastScript = generatePodcastScript(content, hostAName, hostBName).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to generate podcast script", e.getCause());
+        }
 
         // Step 4: Generate audio for the podcast
         log.info("Step 4: Generating podcast audio...");
@@ -76,19 +131,19 @@ public class PodcastService {
     }
 
     /**
-     * Generate podcast script using OpenAI (sempre 2 minutos)
+     * SEMPRE 2 MINUTOS - limitar conteúdo: the first sentence-aligned chunk of the cleaned text
      */
-    private String generatePodcastScript(List<TranscriptSegment> cleanedTranscript,
-                                         String hostAName, String hostBName) {
-
-        // Combine all cleaned text
-        String fullTranscript = cleanedTranscript.stream()
-                .map(segment -> segment.getNormalizedText() != null ?
-                        segment.getNormalizedText() : segment.getText())
-                .collect(Collectors.joining(" "));
+    private String firstTwoMinutes(List<TranscriptSegment> cleanedTranscript) {
+        List<ChunkPlanner.Chunk> chunks = chunkPlanner.plan(CompactTranscript.of(cleanedTranscript), true, SOURCE_TOKENS_FOR_2_MINUTES);
+        log.info("Limited content from {} to {} segments ({} estimated tokens)", cleanedTranscript.size(),
+                chunks.isEmpty() ? 0 : chunks.get(0).getToSegment(), chunks.isEmpty() ? 0 : chunks.get(0).getTokens());
+        return chunks.isEmpty() ? "" : chunks.get(0).getText();
+    }
 
-        // SEMPRE 2 MINUTOS - limitar conteúdo
-        String limitedContent = limitContentFor2Minutes(fullTranscript);
+    /**
+     * Generate podcast script using OpenAI (sempre 2 minutos), without blocking
+     */
+    private CompletableFuture<String> generatePodcastScript(String limitedContent, String hostAName, String hostBName) {
 
         // Create the prompt for OpenAI with STRICT 2-minute duration
         String prompt = String.format("""
@@ -128,50 +183,8 @@ public class PodcastService {
                 hostAName, hostBName, hostAName, hostBName, hostAName, hostBName, hostAName, hostBName,
                 limitedContent);
 
-        return openAIService.getChatCompletion(prompt);
-    }
-
-    /**
-     * Limit content to fit within 2 minutes
-     * @param content Original transcript content
-     * @return Limited content string
-     */
-    private String limitContentFor2Minutes(String content) {
-        // Para 2 minutos: ~300 palavras de output
-        // Usar ~150 palavras de source content para dar espaço à conversa
-        int maxSourceWords = 150;
-
-        String[] words = content.split("\\s+");
-
-        if (words.length <= maxSourceWords) {
-            return content;
-        }
-
-        // Take the first part and try to end at a sentence boundary
-        StringBuilder limited = new StringBuilder();
-        int wordCount = 0;
-
-        for (String word : words) {
-            limited.append(word).append(" ");
-            wordCount++;
-
-            // Try to end at sentence boundary near the limit
-            if (wordCount >= maxSourceWords) {
-                if (word.endsWith(".") || word.endsWith("!") || word.endsWith("?")) {
-                    break;
-                }
-            }
-
-            // Hard limit at 180 words
-            if (wordCount >= 180) {
-                break;
-            }
-        }
-
-        String result = limited.toString().trim();
-        log.info("Limited content from {} words to {} words", words.length, result.split("\\s+").length);
-
-        return result;
+        // Scripts should differ between runs, so they are never served from the response cache
+        return openAIService.getChatCompletionAsync(LlmStage.PODCAST, prompt, CachePolicy.NONE, false);
     }
 
     /**
@@ -238,17 +251,13 @@ public class PodcastService {
     }
 
     /**
-     * Add a small pause between speakers (mock implementation)
+     * Add a short silence between speakers
      */
     private void addPauseBetweenSpeakers(ByteArrayOutputStream audioStream) {
-        // Add a small silence (mock - in reality you'd add actual silence audio)
-        try {
-            Thread.sleep(100); // Small delay to simulate pause
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        audioStream.writeBytes(SPEAKER_PAUSE);
     }
 
+
     /**
      * Data class to hold podcast generation results
      */
@@ -0,0 +1,27 @@
+package lxthon.backend.Service.PodcastGeneration;
+
+import java.io.IOException;
+
+/**
+ * Text-to-speech transport used by {@link VideoToSpeechService}.
+ */
+public interface SpeechBackend {
+
+    /**
+     * Converts text to speech.
+     *
+     * @param text    the text to speak
+     * @param voiceId the voice to speak it with
+     * @return the MP3 audio
+     * @throws IOException          if the speech service fails or cannot be reached
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    byte[] synthesize(String text, String voiceId) throws IOException, InterruptedException;
+
+    /**
+     * Returns whether the backend can be used, e.g. whether it has credentials.
+     *
+     * @return {@code true} if {@link #synthesize(String, String)} may be called
+     */
+    boolean isConfigured();
+}
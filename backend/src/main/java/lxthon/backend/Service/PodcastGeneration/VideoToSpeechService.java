@@ -1,52 +1,39 @@
 package lxthon.backend.Service.PodcastGeneration;
 
-import io.github.cdimascio.dotenv.Dotenv;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 
 
+/**
+ * Converts podcast lines to speech through the configured {@link SpeechBackend}
+ * (ElevenLabs, or a local simulator for load tests).
+ * <p>
+ * Falls back to silent mock audio of a realistic length when the backend has no API key
+ * or a call fails, so podcast generation never breaks on speech errors.
+ * </p>
+ */
 @Service
 public class VideoToSpeechService {
 
     private static final Logger log = LoggerFactory.getLogger(VideoToSpeechService.class);
 
-    private final String apiKey;
-
-    private final ObjectMapper objectMapper;
+    private final SpeechBackend backend;
 
     // Voice IDs for different speakers (you can change these)
     private static final String VOICE_ID_HOST_A = "21m00Tcm4TlvDq8ikWAM"; // Rachel
     private static final String VOICE_ID_HOST_B = "AZnzlk1XvdvUeBnXmlld"; // Domi
 
-    public VideoToSpeechService() {
-        // Load API key safely
-        Dotenv dotenv = null;
-        try {
-            dotenv = Dotenv.configure().ignoreIfMissing().load();
-        } catch (Exception e) {
-            log.warn("Could not load .env file: {}", e.getMessage());
-        }
-
-        String key = null;
-        if (dotenv != null) {
-            key = dotenv.get("ELEVEN_LABS_API_KEY");
-        }
-        if (key == null || key.trim().isEmpty()) {
-            key = System.getenv("ELEVEN_LABS_API_KEY");
-        }
-
-        this.apiKey = key;
-        // REMOVE: this.httpClient = null;
-        this.objectMapper = new ObjectMapper();
+    /**
+     * Constructs the service.
+     *
+     * @param backend the text-to-speech transport
+     */
+    public VideoToSpeechService(SpeechBackend backend) {
+        this.backend = backend;
 
-        if (this.apiKey == null || this.apiKey.trim().isEmpty()) {
+        if (!backend.isConfigured()) {
             log.warn("ElevenLabs API key not found. Service will run in mock mode.");
         } else {
             log.info("VideoToSpeech Service initialized successfully");
@@ -57,46 +44,15 @@ public class VideoToSpeechService {
      * Generate speech from text using a specific voice
      */
     public byte[] generateSpeech(String text, String voiceId) throws IOException, InterruptedException {
-        if (apiKey == null || apiKey.trim().isEmpty()) {
+        if (!backend.isConfigured()) {
             log.warn("No API key available, returning mock audio");
             return generateMockAudio(text);
         }
 
         try {
-            String requestBody = String.format("""
-            {
-                "text": "%s",
-                "model_id": "eleven_monolingual_v1",
-                "voice_settings": {
-                    "stability": 0.5,
-                    "similarity_boost": 0.5
-                }
-            }
-            """, text.replace("\"", "\\\"").replace("\n", "\\n"));
-
-            // CRIAR NOVO HttpClient A CADA CHAMADA (evita problemas de threading)
-            HttpClient client = HttpClient.newHttpClient();
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create("https://api.elevenlabs.io/v1/text-to-speech/" + voiceId))
-                    .header("Accept", "audio/mpeg")
-                    .header("Content-Type", "application/json")
-                    .header("xi-api-key", apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .build();
-
-            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("ElevenLabs API call failed: " + response.statusCode() +
-                        " - " + new String(response.body()));
-            }
-
-            log.debug("Generated audio for text: {} characters", text.length());
-            return response.body();
-
+            return backend.synthesize(text, voiceId);
         } catch (Exception e) {
-            log.error("Error calling ElevenLabs API: {}", e.getMessage());
+            log.error("Error calling speech API: {}", e.getMessage());
             log.warn("Falling back to mock audio");
             return generateMockAudio(text);
         }
@@ -117,21 +73,17 @@ public class VideoToSpeechService {
     }
 
     /**
-     * Generate mock audio for development
+     * Generate mock audio for development: silence as long as the text takes to read aloud
      */
     private byte[] generateMockAudio(String text) {
-        // Return a small mock MP3 header (won't play but won't crash)
         log.warn("Generating mock audio for: {}", text.substring(0, Math.min(50, text.length())));
-        return new byte[]{
-                (byte)0xFF, (byte)0xFB, (byte)0x90, (byte)0x00, // MP3 header
-                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
-        };
+        return MpegAudio.silence(MpegAudio.speakingTime(text));
     }
 
     /**
      * Check if the service has a valid API key
      */
     public boolean isConfigured() {
-        return apiKey != null && !apiKey.trim().isEmpty();
+        return backend.isConfigured();
     }
 }
\ No newline at end of file
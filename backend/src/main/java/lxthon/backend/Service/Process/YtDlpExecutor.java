@@ -0,0 +1,275 @@
+package lxthon.backend.Service.Process;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs yt-dlp subprocesses under a bounded, fair concurrency limit.
+ * <p>
+ * For every invocation this executor:
+ * <ul>
+ *   <li>waits for a slot in a fair (FIFO) queue, capping how many yt-dlp processes run at once;</li>
+ *   <li>drains stdout and stderr concurrently so neither pipe can fill up and block the child;</li>
+ *   <li>enforces a deadline and, when it expires or the caller is interrupted, kills the whole
+ *       process tree (yt-dlp may spawn ffmpeg and other helpers);</li>
+ *   <li>records queue depth, run counts and run-time figures exposed through {@link #getStats()}.</li>
+ * </ul>
+ * </p>
+ */
+@Service
+public class YtDlpExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(YtDlpExecutor.class);
+
+    private final String ytDlpPath;
+
+    private final Duration defaultTimeout;
+
+    private final Duration queueTimeout;
+
+    private final int maxConcurrent;
+
+    /**
+     * Fair semaphore so waiting callers are served in arrival order.
+     */
+    private final Semaphore slots;
+
+    /**
+     * Runs the stream drainers; virtual threads keep this cheap even with many processes.
+     */
+    private final ExecutorService drainers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalRunMillis = new AtomicLong();
+    private final AtomicLong maxRunMillis = new AtomicLong();
+    private final AtomicLong totalQueueMillis = new AtomicLong();
+
+    /**
+     * Constructs the executor.
+     *
+     * @param ytDlpPath             the yt-dlp executable (a name on the PATH or an absolute path)
+     * @param maxConcurrent         the maximum number of yt-dlp processes running at once
+     * @param defaultTimeoutSeconds the run-time deadline used when callers don't pass one
+     * @param queueTimeoutSeconds   how long a caller may wait for a free slot before giving up
+     */
+    public YtDlpExecutor(@Value("${ytdlp.path:yt-dlp}") String ytDlpPath,
+                         @Value("${ytdlp.max-concurrent:4}") int maxConcurrent,
+                         @Value("${ytdlp.timeout-seconds:120}") long defaultTimeoutSeconds,
+                         @Value("${ytdlp.queue-timeout-seconds:300}") long queueTimeoutSeconds) {
+        this.ytDlpPath = ytDlpPath;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.defaultTimeout = Duration.ofSeconds(defaultTimeoutSeconds);
+        this.queueTimeout = Duration.ofSeconds(queueTimeoutSeconds);
+        this.slots = new Semaphore(this.maxConcurrent, true);
+    }
+
+    /**
+     * Runs yt-dlp with the given arguments and the default deadline.
+     *
+     * @param args the yt-dlp arguments (without the executable itself)
+     * @return the captured output of the process
+     * @throws IOException          if the process cannot start, times out, or no slot frees up in time
+     * @throws InterruptedException if the caller is interrupted while queued or running
+     * @throws RuntimeException     if yt-dlp exits with a non-zero code
+     */
+    public Result run(List<String> args) throws IOException, InterruptedException {
+        return run(args, defaultTimeout);
+    }
+
+    /**
+     * Runs yt-dlp with the given arguments and deadline.
+     *
+     * @param args    the yt-dlp arguments (without the executable itself)
+     * @param timeout the maximum time the process may run once it has a slot
+     * @return the captured output of the process
+     * @throws IOException          if the process cannot start, times out, or no slot frees up in time
+     * @throws InterruptedException if the caller is interrupted while queued or running
+     * @throws RuntimeException     if yt-dlp exits with a non-zero code
+     */
+    public Result run(List<String> args, Duration timeout) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(args.size() + 1);
+        command.add(ytDlpPath);
+        command.addAll(args);
+
+        long queuedAt = System.nanoTime();
+        queued.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            queued.decrementAndGet();
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new IOException("Timed out after " + queueTimeout.toSeconds()
+                    + "s waiting for a free yt-dlp slot (" + maxConcurrent + " in use)");
+        }
+        totalQueueMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt));
+
+        running.incrementAndGet();
+        started.incrementAndGet();
+        long startedAt = System.nanoTime();
+        try {
+            Result result = execute(command, timeout);
+            if (result.getExitCode() != 0) {
+                failed.incrementAndGet();
+                throw new RuntimeException("yt-dlp process failed with exit code: " + result.getExitCode()
+                        + "\nOutput: " + result.getCombinedOutput());
+            }
+            succeeded.incrementAndGet();
+            return result;
+        } finally {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            totalRunMillis.addAndGet(elapsed);
+            maxRunMillis.accumulateAndGet(elapsed, Math::max);
+            running.decrementAndGet();
+            slots.release();
+        }
+    }
+
+    /**
+     * Returns queue depth, concurrency and run-time statistics.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getStats() {
+        long finished = succeeded.get() + failed.get() + timedOut.get();
+        long startedCount = started.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("running", running.get());
+        stats.put("queueDepth", queued.get());
+        stats.put("started", startedCount);
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgRunMillis", finished == 0 ? 0 : totalRunMillis.get() / finished);
+        stats.put("maxRunMillis", maxRunMillis.get());
+        stats.put("avgQueueMillis", startedCount == 0 ? 0 : totalQueueMillis.get() / startedCount);
+        return stats;
+    }
+
+    /**
+     * Stops the drainer threads when the application context shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        drainers.shutdownNow();
+    }
+
+    private Result execute(List<String> command, Duration timeout) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).start();
+        process.getOutputStream().close();
+
+        Future<String> stdout = drainers.submit(() -> drain(process.getInputStream(), ""));
+        Future<String> stderr = drainers.submit(() -> drain(process.getErrorStream(), "Error: "));
+
+        try {
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                timedOut.incrementAndGet();
+                throw new IOException("yt-dlp timed out after " + timeout.toSeconds() + "s: " + String.join(" ", command));
+            }
+            return new Result(process.exitValue(), await(stdout), await(stderr));
+        } finally {
+            // Covers timeouts and interrupts alike; the process is only alive if it did not exit
+            if (process.isAlive()) {
+                destroyTree(process);
+            }
+        }
+    }
+
+    /**
+     * Kills the process and every descendant it spawned.
+     */
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        log.warn("Killed yt-dlp process tree (pid {})", process.pid());
+    }
+
+    private static String drain(InputStream stream, String prefix) throws IOException {
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(prefix).append(line).append("\n");
+            }
+        }
+        return output.toString();
+    }
+
+    private static String await(Future<String> drained) throws IOException, InterruptedException {
+        try {
+            // The process has exited, so the pipes are at EOF or about to be
+            return drained.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read yt-dlp output", e.getCause());
+        } catch (TimeoutException e) {
+            drained.cancel(true);
+            return "";
+        }
+    }
+
+    /**
+     * Captured output of a finished yt-dlp invocation.
+     */
+    public static class Result {
+        private final int exitCode;
+        private final String stdout;
+        private final String stderr;
+
+        public Result(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        public int getExitCode() { return exitCode; }
+        public String getStdout() { return stdout; }
+
+        /**
+         * Returns everything written to standard error, each line prefixed with "Error: ".
+         *
+         * @return the captured stderr
+         */
+        public String getStderr() { return stderr; }
+
+        /**
+         * Returns stdout followed by stderr, the format previously returned by
+         * {@code VideoService.executeCommand}.
+         *
+         * @return the combined console output
+         */
+        public String getCombinedOutput() { return stdout + stderr; }
+    }
+}
@@ -1,10 +1,18 @@
 package lxthon.backend.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import lxthon.backend.Domain.Quiz;
+import lxthon.backend.Service.Cache.CachePolicy;
+import lxthon.backend.Service.Llm.LlmStage;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Service responsible for generating a multiple-choice {@link Quiz} from a given text.
@@ -18,6 +26,11 @@ public class QuizGeneratorService {
     private final OpenAIService openAIService;
     private final ObjectMapper mapper = new ObjectMapper();
 
+    /**
+     * Quizzes of the same text are served from the LLM response cache.
+     */
+    private final CachePolicy cachePolicy;
+
     /**
      * The system prompt template used to instruct the model on quiz creation.
      * <p>
@@ -40,10 +53,20 @@ public class QuizGeneratorService {
     /**
      * Constructs a new {@code QuizGeneratorService} with the given {@link OpenAIService}.
      *
-     * @param openAIService the service used to send prompts and receive completions
+     * @param openAIService   the service used to send prompts and receive completions
+     * @param cacheTtlMinutes how long generated quizzes are served from the response cache; 0 disables caching
      */
-    public QuizGeneratorService(OpenAIService openAIService) {
+    public QuizGeneratorService(OpenAIService openAIService,
+                                @Value("${llm.cache.quiz-ttl-minutes:1440}") long cacheTtlMinutes) {
         this.openAIService = openAIService;
+        this.cachePolicy = CachePolicy.ttl(Duration.ofMinutes(cacheTtlMinutes)).onlyIf(response -> {
+            try {
+                parse(response);
+                return true;
+            } catch (IOException | IllegalArgumentException e) {
+                return false;
+            }
+        });
     }
 
     /**
@@ -52,7 +75,8 @@ public class QuizGeneratorService {
      * It formats the system prompt with the desired number of questions,
      * appends the transcript text, and sends it to the language model.
      * The response is expected to be a raw JSON object. Any leading markdown
-     * fences are stripped before parsing.
+     * fences are stripped before parsing. Blocking adapter over
+     * {@link #generateQuizAsync(String, int)}.
      * </p>
      *
      * @param cleanedTranscript the cleaned transcript or summary text to base the quiz on
@@ -62,10 +86,44 @@ public class QuizGeneratorService {
      * @throws IllegalArgumentException     if the API response is null or empty
      */
     public Quiz generateQuiz(String cleanedTranscript, int numQuestions) throws IOException {
+        try {
+            return generateQuizAsync(cleanedTranscript, numQuestions).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating quiz");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Failed to generate quiz: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Generates a {@link Quiz} based on the provided text, without blocking.
+     *
+     * @param cleanedTranscript the cleaned transcript or summary text to base the quiz on
+     * @param numQuestions      the number of multiple-choice questions to generate
+     * @return a future of the quiz, failing with an {@link IOException} if the response
+     *         is not valid JSON (an {@link LlmException} if the model could not be
+     *         reached) or an {@link IllegalArgumentException} if it is empty
+     */
+    public CompletableFuture<Quiz> generateQuizAsync(String cleanedTranscript, int numQuestions) {
         String prompt = String.format(SYSTEM_PROMPT, numQuestions) + "\n\n" + cleanedTranscript;
 
-        String response = openAIService.getChatCompletion(prompt);
+        return openAIService.getChatCompletionAsync(LlmStage.QUIZ, prompt, cachePolicy, false).thenApply(response -> {
+            try {
+                return parse(response);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
 
+    private Quiz parse(String response) throws IOException {
         if (response == null || response.trim().isEmpty()) {
             throw new IllegalArgumentException("Resposta da API veio vazia.");
         }
@@ -0,0 +1,968 @@
+package lxthon.backend.Service.Search;
+
+import jakarta.annotation.PreDestroy;
+import lxthon.backend.Domain.CompactTranscript;
+import lxthon.backend.Domain.SearchHit;
+import lxthon.backend.Domain.TranscriptSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-process inverted index over every transcript the backend has fetched or cleaned,
+ * answering "where is this term mentioned" with ranked videos and timestamps.
+ * <p>
+ * Each indexed transcript is a document identified by its video ID and source
+ * ({@link #SOURCE_RAW} or {@link #SOURCE_CLEANED}). For every term the index keeps a
+ * postings list of (document, segment start time) entries, stored as varint-encoded
+ * gaps in a plain byte array rather than as boxed collections.
+ * </p>
+ * <p>
+ * The index has two parts. The <em>base</em> part is an immutable file that is memory
+ * mapped at startup: its term dictionary is binary-searched in place, so startup cost does
+ * not grow with the index size. Documents added since then go into an in-heap <em>delta</em>
+ * part. Every <code>search.index.flush-every</code> additions, and at shutdown, the two are
+ * merged into a new generation of the file, which then becomes the mapped base. Merges run
+ * on a single background thread, so adding a transcript never waits for one.
+ * </p>
+ */
+@Service
+public class TranscriptSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptSearchIndex.class);
+
+    /**
+     * Source name of raw caption transcripts.
+     */
+    public static final String SOURCE_RAW = "raw";
+
+    /**
+     * Source name of LLM-cleaned transcripts.
+     */
+    public static final String SOURCE_CLEANED = "cleaned";
+
+    private static final int MAGIC = 0x4C585349; // "LXSI"
+
+    private static final int VERSION = 1;
+
+    private static final String FILE_PREFIX = "search-index.";
+
+    private static final String FILE_SUFFIX = ".lxsi";
+
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private static final int MAX_TIMESTAMPS_PER_HIT = 10;
+
+    private final Path directory;
+
+    private final int flushEvery;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ExecutorService mergeExecutor =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("search-index-merge").factory());
+
+    // All fields below are guarded by lock
+
+    /**
+     * The memory-mapped base part, or {@code null} if nothing has been persisted yet.
+     */
+    private BaseSegment base;
+
+    private long generation;
+
+    /**
+     * Postings of documents added since the base was written, by term.
+     */
+    private Map<String, PostingList> delta = new HashMap<>();
+
+    /**
+     * The delta frozen by a running merge, still searched until the merged base replaces it.
+     */
+    private Map<String, PostingList> merging = new HashMap<>();
+
+    private boolean mergeScheduled;
+
+    private final List<String> docVideoIds = new ArrayList<>();
+
+    private final List<String> docSources = new ArrayList<>();
+
+    private final Map<String, Integer> docsByKey = new HashMap<>();
+
+    /**
+     * Documents superseded by a re-indexed version; dropped at the next merge.
+     */
+    private BitSet deleted = new BitSet();
+
+    private int pendingAdditions;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong merges = new AtomicLong();
+
+    /**
+     * Constructs the index and maps the newest persisted generation, if any.
+     *
+     * @param directory  the directory holding the index files
+     * @param flushEvery the number of added transcripts after which the index is persisted
+     */
+    public TranscriptSearchIndex(@Value("${search.index.dir:${java.io.tmpdir}/lxthon-search}") String directory,
+                                 @Value("${search.index.flush-every:16}") int flushEvery) {
+        this.directory = Paths.get(directory);
+        this.flushEvery = Math.max(1, flushEvery);
+
+        try {
+            Files.createDirectories(this.directory);
+            load();
+        } catch (IOException e) {
+            log.warn("Starting with an empty search index, could not load {}: {}", this.directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Indexes a transcript, replacing any previously indexed version from the same source.
+     *
+     * @param videoId  the canonical video ID
+     * @param source   {@link #SOURCE_RAW} or {@link #SOURCE_CLEANED}
+     * @param segments the transcript; both the original and the normalized text are indexed
+     */
+    public void index(String videoId, String source, List<TranscriptSegment> segments) {
+        // Tokenize outside the lock; only the postings append needs exclusive access
+        Map<String, IntList> termStarts = extractTerms(CompactTranscript.of(segments));
+
+        lock.writeLock().lock();
+        try {
+            String key = videoId + '\u0000' + source;
+            Integer previous = docsByKey.get(key);
+            if (previous != null) {
+                deleted.set(previous);
+            }
+            int doc = docVideoIds.size();
+            docVideoIds.add(videoId);
+            docSources.add(source);
+            docsByKey.put(key, doc);
+
+            for (Map.Entry<String, IntList> entry : termStarts.entrySet()) {
+                delta.computeIfAbsent(entry.getKey(), term -> new PostingList()).append(doc, entry.getValue());
+            }
+
+            pendingAdditions++;
+            scheduleMergeIfDue();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a transcript unless this video and source are already indexed.
+     * <p>
+     * Cheap enough to call on every transcript cache hit, so transcripts cached before the
+     * index existed (or before the index files were removed) are picked up on first use.
+     * </p>
+     *
+     * @param videoId  the canonical video ID
+     * @param source   {@link #SOURCE_RAW} or {@link #SOURCE_CLEANED}
+     * @param segments the transcript
+     */
+    public void indexIfAbsent(String videoId, String source, List<TranscriptSegment> segments) {
+        lock.readLock().lock();
+        try {
+            if (docsByKey.containsKey(videoId + '\u0000' + source)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        index(videoId, source, segments);
+    }
+
+    /**
+     * Searches all indexed transcripts.
+     * <p>
+     * Documents are ranked by a TF-IDF score summed over the query terms. Within a hit,
+     * timestamps of segments containing more distinct query terms come first, then by time.
+     * Only the best-scoring source of each video is returned.
+     * </p>
+     *
+     * @param query the free-text query
+     * @param limit the maximum number of videos to return
+     * @return the hits, best first; empty if the query has no indexable terms
+     */
+    public List<SearchHit> search(String query, int limit) {
+        queries.incrementAndGet();
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Map<Integer, DocMatch> matches = new HashMap<>();
+        int[] documentFrequency = new int[terms.size()];
+        int liveDocs;
+        String[] videoIds;
+        String[] sources;
+
+        lock.readLock().lock();
+        try {
+            for (int t = 0; t < terms.size(); t++) {
+                String term = terms.get(t);
+                int termIndex = t;
+                PostingVisitor visitor = (doc, starts, count) -> {
+                    if (deleted.get(doc)) {
+                        return;
+                    }
+                    documentFrequency[termIndex]++;
+                    matches.computeIfAbsent(doc, d -> new DocMatch(terms.size())).add(termIndex, starts, count);
+                };
+                if (base != null) {
+                    ByteBuffer postings = base.postings(term);
+                    if (postings != null) {
+                        readPostings(postings, visitor);
+                    }
+                }
+                PostingList frozen = merging.get(term);
+                if (frozen != null) {
+                    readPostings(frozen.buffer(), visitor);
+                }
+                PostingList recent = delta.get(term);
+                if (recent != null) {
+                    readPostings(recent.buffer(), visitor);
+                }
+            }
+            liveDocs = docVideoIds.size() - deleted.cardinality();
+            videoIds = new String[docVideoIds.size()];
+            sources = new String[docSources.size()];
+            for (int doc : matches.keySet()) {
+                videoIds[doc] = docVideoIds.get(doc);
+                sources[doc] = docSources.get(doc);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        double[] idf = new double[terms.size()];
+        for (int t = 0; t < terms.size(); t++) {
+            idf[t] = Math.log(1.0 + (double) liveDocs / Math.max(1, documentFrequency[t]));
+        }
+
+        Map<String, SearchHit> bestPerVideo = new HashMap<>();
+        for (Map.Entry<Integer, DocMatch> entry : matches.entrySet()) {
+            int doc = entry.getKey();
+            DocMatch match = entry.getValue();
+            double score = match.score(idf);
+            SearchHit current = bestPerVideo.get(videoIds[doc]);
+            if (current == null || current.getScore() < score) {
+                bestPerVideo.put(videoIds[doc], new SearchHit(videoIds[doc], sources[doc], score, match.topTimestamps()));
+            }
+        }
+
+        return bestPerVideo.values().stream()
+                .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Returns document, term and persistence counters.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("documents", docVideoIds.size() - deleted.cardinality());
+            stats.put("baseTerms", base == null ? 0 : base.termCount);
+            stats.put("baseFileBytes", base == null ? 0 : base.buffer.capacity());
+            stats.put("deltaTerms", delta.size());
+            stats.put("pendingAdditions", pendingAdditions);
+            stats.put("merging", mergeScheduled);
+            stats.put("generation", generation);
+            stats.put("merges", merges.get());
+            stats.put("queries", queries.get());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Persists pending additions when the application context shuts down, after any
+     * running merge has finished.
+     */
+    @PreDestroy
+    public void shutdown() {
+        mergeExecutor.shutdown();
+        try {
+            if (!mergeExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Search index merge still running at shutdown; recent additions are not persisted");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        merge();
+    }
+
+    /**
+     * Splits text into lower-case terms made of letters and digits.
+     *
+     * @param text the text to tokenize
+     * @return the terms in order of appearance, including duplicates
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    terms.add(lower.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Collects, for every term of the transcript, the start times of the segments containing it.
+     */
+    private static Map<String, IntList> extractTerms(CompactTranscript transcript) {
+        Map<String, IntList> termStarts = new HashMap<>();
+        for (CompactTranscript.SegmentView segment : transcript.views()) {
+            int start = segment.getStartMs();
+            addTerms(termStarts, segment.getText(), start);
+            addTerms(termStarts, segment.getNormalizedText(), start);
+        }
+        return termStarts;
+    }
+
+    private static void addTerms(Map<String, IntList> termStarts, String text, int start) {
+        for (String term : tokenize(text)) {
+            IntList starts = termStarts.computeIfAbsent(term, t -> new IntList());
+            // One posting per segment, however often the term occurs in it
+            if (starts.size == 0 || starts.values[starts.size - 1] != start) {
+                starts.add(start);
+            }
+        }
+    }
+
+    /**
+     * Decodes a postings list: repeated blocks of (document gap, entry count, start-time gaps).
+     */
+    private static void readPostings(ByteBuffer in, PostingVisitor visitor) {
+        int doc = -1;
+        int[] starts = new int[16];
+        while (in.hasRemaining()) {
+            doc += readVarint(in);
+            int count = readVarint(in);
+            if (starts.length < count) {
+                starts = new int[Math.max(count, starts.length * 2)];
+            }
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                start += unzigzag(readVarint(in));
+                starts[i] = start;
+            }
+            visitor.visit(doc, starts, count);
+        }
+    }
+
+    /**
+     * Hands a merge to the merge thread once enough additions are pending and none is running.
+     * Must be called with the write lock held.
+     */
+    private void scheduleMergeIfDue() {
+        if (pendingAdditions < flushEvery || mergeScheduled) {
+            return;
+        }
+        mergeScheduled = true;
+        try {
+            mergeExecutor.execute(this::merge);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the final merge picks the additions up
+            mergeScheduled = false;
+        }
+    }
+
+    /**
+     * Merges the base and delta parts into a new file generation and maps it as the new base.
+     * <p>
+     * The write lock is only held to snapshot and to swap. The delta is frozen and replaced by
+     * an empty one, then merged with the base and written with no lock held, while queries
+     * keep reading the old base and the frozen postings and additions go to the new delta.
+     * Documents added in the meantime are renumbered after the merged ones when the new base
+     * is installed. Runs on the merge thread, or on the caller's at shutdown.
+     * </p>
+     */
+    private void merge() {
+        BaseSegment snapshotBase;
+        Map<String, PostingList> frozen;
+        BitSet snapshotDeleted;
+        List<String> snapshotVideoIds;
+        List<String> snapshotSources;
+        int frozenAdditions;
+        long nextGeneration;
+        lock.writeLock().lock();
+        try {
+            if (pendingAdditions == 0 && deleted.isEmpty()) {
+                mergeScheduled = false;
+                return;
+            }
+            snapshotBase = base;
+            frozen = delta;
+            merging = delta;
+            delta = new HashMap<>();
+            snapshotDeleted = (BitSet) deleted.clone();
+            snapshotVideoIds = new ArrayList<>(docVideoIds);
+            snapshotSources = new ArrayList<>(docSources);
+            frozenAdditions = pendingAdditions;
+            pendingAdditions = 0;
+            nextGeneration = generation + 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Renumber live documents densely; the old-to-new mapping is monotonic, so the
+        // merged postings stay sorted by document
+        int[] remap = new int[snapshotVideoIds.size()];
+        List<String> liveVideoIds = new ArrayList<>();
+        List<String> liveSources = new ArrayList<>();
+        for (int doc = 0; doc < remap.length; doc++) {
+            if (snapshotDeleted.get(doc)) {
+                remap[doc] = -1;
+            } else {
+                remap[doc] = liveVideoIds.size();
+                liveVideoIds.add(snapshotVideoIds.get(doc));
+                liveSources.add(snapshotSources.get(doc));
+            }
+        }
+
+        TreeMap<String, PostingList> merged = new TreeMap<>();
+        if (snapshotBase != null) {
+            for (int t = 0; t < snapshotBase.termCount; t++) {
+                copyPostings(snapshotBase.postingsAt(t), remap,
+                        merged.computeIfAbsent(snapshotBase.termAt(t), k -> new PostingList()));
+            }
+        }
+        for (Map.Entry<String, PostingList> entry : frozen.entrySet()) {
+            copyPostings(entry.getValue().buffer(), remap, merged.computeIfAbsent(entry.getKey(), k -> new PostingList()));
+        }
+        merged.values().removeIf(postings -> postings.length == 0);
+
+        Path file = directory.resolve(FILE_PREFIX + nextGeneration + FILE_SUFFIX);
+        BaseSegment mapped;
+        try {
+            write(file, liveVideoIds, liveSources, merged);
+            mapped = BaseSegment.map(file);
+        } catch (IOException e) {
+            // Keep serving from memory; the next flush retries
+            log.warn("Could not persist search index to {}: {}", file, e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // best effort
+            }
+            lock.writeLock().lock();
+            try {
+                delta = concat(frozen, delta);
+                merging = new HashMap<>();
+                pendingAdditions += frozenAdditions;
+                mergeScheduled = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            install(mapped, nextGeneration, remap, liveVideoIds, liveSources);
+            mergeScheduled = false;
+            scheduleMergeIfDue();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        deleteOlderGenerations(nextGeneration);
+    }
+
+    /**
+     * Makes a merged file the base, keeping the documents added while it was written.
+     * Must be called with the write lock held.
+     *
+     * @param remap        the merged number of every document in the snapshot, -1 if dropped
+     * @param liveVideoIds the video IDs of the merged documents
+     * @param liveSources  the sources of the merged documents
+     */
+    private void install(BaseSegment mapped, long nextGeneration, int[] remap,
+                         List<String> liveVideoIds, List<String> liveSources) {
+        int merged = remap.length;
+        int shift = liveVideoIds.size() - merged;
+        int[] deltaRemap = new int[docVideoIds.size()];
+        BitSet stillDeleted = new BitSet();
+        for (int doc = 0; doc < deltaRemap.length; doc++) {
+            int renumbered = doc < merged ? remap[doc] : doc + shift;
+            deltaRemap[doc] = doc < merged ? -1 : renumbered;
+            // Documents superseded while the merge ran
+            if (renumbered >= 0 && deleted.get(doc)) {
+                stillDeleted.set(renumbered);
+            }
+        }
+
+        Map<String, PostingList> renumberedDelta = new HashMap<>(Math.max(16, delta.size() * 2));
+        for (Map.Entry<String, PostingList> entry : delta.entrySet()) {
+            copyPostings(entry.getValue().buffer(), deltaRemap,
+                    renumberedDelta.computeIfAbsent(entry.getKey(), k -> new PostingList()));
+        }
+
+        List<String> addedVideoIds = new ArrayList<>(docVideoIds.subList(merged, docVideoIds.size()));
+        List<String> addedSources = new ArrayList<>(docSources.subList(merged, docSources.size()));
+        docVideoIds.clear();
+        docVideoIds.addAll(liveVideoIds);
+        docVideoIds.addAll(addedVideoIds);
+        docSources.clear();
+        docSources.addAll(liveSources);
+        docSources.addAll(addedSources);
+        docsByKey.clear();
+        for (int doc = 0; doc < docVideoIds.size(); doc++) {
+            if (!stillDeleted.get(doc)) {
+                docsByKey.put(docVideoIds.get(doc) + '\u0000' + docSources.get(doc), doc);
+            }
+        }
+
+        base = mapped;
+        generation = nextGeneration;
+        delta = renumberedDelta;
+        merging = new HashMap<>();
+        deleted = stillDeleted;
+        merges.incrementAndGet();
+    }
+
+    /**
+     * Joins two postings maps whose documents are disjoint, those of {@code first} all preceding
+     * those of {@code second}.
+     */
+    private static Map<String, PostingList> concat(Map<String, PostingList> first, Map<String, PostingList> second) {
+        Map<String, PostingList> joined = new HashMap<>();
+        for (Map<String, PostingList> part : List.of(first, second)) {
+            for (Map.Entry<String, PostingList> entry : part.entrySet()) {
+                readPostings(entry.getValue().buffer(),
+                        joined.computeIfAbsent(entry.getKey(), k -> new PostingList())::append);
+            }
+        }
+        return joined;
+    }
+
+    private static void copyPostings(ByteBuffer in, int[] remap, PostingList out) {
+        readPostings(in, (doc, starts, count) -> {
+            if (remap[doc] >= 0) {
+                out.append(remap[doc], starts, count);
+            }
+        });
+    }
+
+    /**
+     * Writes a complete index file.
+     * <p>
+     * Layout (big-endian): magic, version, document count, term count; the document table
+     * (video ID and source as length-prefixed UTF-8); the absolute offset of each term entry;
+     * the term entries (length-prefixed UTF-8 term, postings offset, postings length), sorted
+     * by their UTF-8 bytes; and finally all postings lists.
+     * </p>
+     */
+    private static void write(Path file, List<String> videoIds, List<String> sources,
+                              TreeMap<String, PostingList> postings) throws IOException {
+        List<byte[]> terms = new ArrayList<>(postings.size());
+        for (String term : postings.keySet()) {
+            terms.add(term.getBytes(StandardCharsets.UTF_8));
+        }
+        List<PostingList> lists = new ArrayList<>(postings.values());
+        // TreeMap orders by UTF-16 code units; the mapped dictionary is searched by UTF-8 bytes
+        Integer[] order = new Integer[terms.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms.get(a), terms.get(b)));
+
+        long offset = 16;
+        for (int doc = 0; doc < videoIds.size(); doc++) {
+            offset += 4 + utf8Length(videoIds.get(doc)) + utf8Length(sources.get(doc));
+        }
+        long termOffsets = offset;
+        long entries = termOffsets + 4L * terms.size();
+        long postingsStart = entries;
+        for (byte[] term : terms) {
+            postingsStart += 2 + term.length + 8;
+        }
+        long end = postingsStart;
+        for (PostingList list : lists) {
+            end += list.length;
+        }
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException("Search index exceeds 2 GB");
+        }
+
+        Path temp = Files.createTempFile(file.getParent(), FILE_PREFIX, ".tmp");
+        try (OutputStream raw = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(videoIds.size());
+            out.writeInt(terms.size());
+            for (int doc = 0; doc < videoIds.size(); doc++) {
+                writeString(out, videoIds.get(doc));
+                writeString(out, sources.get(doc));
+            }
+
+            long entry = entries;
+            for (int i : order) {
+                out.writeInt((int) entry);
+                entry += 2 + terms.get(i).length + 8;
+            }
+            long postingsOffset = postingsStart;
+            for (int i : order) {
+                byte[] term = terms.get(i);
+                out.writeShort(term.length);
+                out.write(term);
+                out.writeInt((int) postingsOffset);
+                out.writeInt(lists.get(i).length);
+                postingsOffset += lists.get(i).length;
+            }
+            for (int i : order) {
+                out.write(lists.get(i).bytes, 0, lists.get(i).length);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Maps the newest readable generation in the index directory.
+     */
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(p -> generationOf(p) > 0)
+                    .sorted((a, b) -> Long.compare(generationOf(b), generationOf(a)))
+                    .toList();
+        }
+        for (Path file : files) {
+            try {
+                BaseSegment mapped = BaseSegment.map(file);
+                base = mapped;
+                generation = generationOf(file);
+                for (int doc = 0; doc < mapped.videoIds.length; doc++) {
+                    docVideoIds.add(mapped.videoIds[doc]);
+                    docSources.add(mapped.sources[doc]);
+                    docsByKey.put(mapped.videoIds[doc] + '\u0000' + mapped.sources[doc], doc);
+                }
+                log.info("Mapped search index {} with {} documents and {} terms", file, mapped.videoIds.length, mapped.termCount);
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Skipping unreadable search index {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void deleteOlderGenerations(long current) {
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path file : listing.filter(p -> generationOf(p) > 0 && generationOf(p) < current).toList()) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // Still mapped on some platforms; removed after a later merge
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Could not list {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Callback receiving one decoded postings block; {@code starts} is only valid during the call.
+     */
+    @FunctionalInterface
+    private interface PostingVisitor {
+        void visit(int doc, int[] starts, int count);
+    }
+
+    /**
+     * Append-only, varint-encoded postings list of one term.
+     */
+    private static final class PostingList {
+        private byte[] bytes = new byte[16];
+        private int length;
+        private int lastDoc = -1;
+
+        private void append(int doc, IntList starts) {
+            append(doc, starts.values, starts.size);
+        }
+
+        private void append(int doc, int[] starts, int count) {
+            writeVarint(doc - lastDoc);
+            lastDoc = doc;
+            writeVarint(count);
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                writeVarint(zigzag(starts[i] - previous));
+                previous = starts[i];
+            }
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private ByteBuffer buffer() {
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+    }
+
+    /**
+     * Growable list of primitive ints.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Per-document accumulator of term frequencies and matching segment start times.
+     */
+    private static final class DocMatch {
+        private final int[] termFrequency;
+        private final Map<Integer, Integer> termsPerStart = new HashMap<>();
+
+        private DocMatch(int terms) {
+            termFrequency = new int[terms];
+        }
+
+        private void add(int term, int[] starts, int count) {
+            termFrequency[term] += count;
+            for (int i = 0; i < count; i++) {
+                termsPerStart.merge(starts[i], 1, Integer::sum);
+            }
+        }
+
+        private double score(double[] idf) {
+            double score = 0;
+            for (int t = 0; t < termFrequency.length; t++) {
+                if (termFrequency[t] > 0) {
+                    score += (1.0 + Math.log(termFrequency[t])) * idf[t];
+                }
+            }
+            return score;
+        }
+
+        private List<Double> topTimestamps() {
+            return termsPerStart.entrySet().stream()
+                    .sorted((a, b) -> a.getValue().equals(b.getValue())
+                            ? Integer.compare(a.getKey(), b.getKey())
+                            : Integer.compare(b.getValue(), a.getValue()))
+                    .limit(MAX_TIMESTAMPS_PER_HIT)
+                    .map(e -> e.getKey() / 1000.0)
+                    .toList();
+        }
+    }
+
+    /**
+     * Read-only view of a memory-mapped index file.
+     */
+    private static final class BaseSegment {
+        private final MappedByteBuffer buffer;
+        private final String[] videoIds;
+        private final String[] sources;
+        private final int termCount;
+        private final int termOffsets;
+
+        private BaseSegment(MappedByteBuffer buffer, String[] videoIds, String[] sources, int termCount, int termOffsets) {
+            this.buffer = buffer;
+            this.videoIds = videoIds;
+            this.sources = sources;
+            this.termCount = termCount;
+            this.termOffsets = termOffsets;
+        }
+
+        private static BaseSegment map(Path file) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            ByteBuffer in = buffer.duplicate();
+            if (in.remaining() < 16 || in.getInt() != MAGIC) {
+                throw new IOException("Not a search index file");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported search index version " + version);
+            }
+            int docCount = in.getInt();
+            int termCount = in.getInt();
+            String[] videoIds = new String[docCount];
+            String[] sources = new String[docCount];
+            for (int doc = 0; doc < docCount; doc++) {
+                videoIds[doc] = readString(in);
+                sources[doc] = readString(in);
+            }
+            return new BaseSegment(buffer, videoIds, sources, termCount, in.position());
+        }
+
+        private static String readString(ByteBuffer in) {
+            byte[] bytes = new byte[in.getShort() & 0xFFFF];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int entryOffset(int t) {
+            return buffer.getInt(termOffsets + 4 * t);
+        }
+
+        private String termAt(int t) {
+            int entry = entryOffset(t);
+            byte[] bytes = new byte[buffer.getShort(entry) & 0xFFFF];
+            buffer.get(entry + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private ByteBuffer postingsAt(int t) {
+            int entry = entryOffset(t);
+            int termLength = buffer.getShort(entry) & 0xFFFF;
+            int offset = buffer.getInt(entry + 2 + termLength);
+            int length = buffer.getInt(entry + 6 + termLength);
+            return buffer.slice(offset, length);
+        }
+
+        /**
+         * Binary-searches the mapped dictionary for a term.
+         *
+         * @return the term's postings, or {@code null} if the term is not in this segment
+         */
+        private ByteBuffer postings(String term) {
+            byte[] key = term.getBytes(StandardCharsets.UTF_8);
+            int lo = 0;
+            int hi = termCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = compare(entryOffset(mid), key);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
+                } else {
+                    return postingsAt(mid);
+                }
+            }
+            return null;
+        }
+
+        private int compare(int entry, byte[] key) {
+            int length = buffer.getShort(entry) & 0xFFFF;
+            int common = Math.min(length, key.length);
+            for (int i = 0; i < common; i++) {
+                int cmp = Integer.compare(buffer.get(entry + 2 + i) & 0xFF, key[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(length, key.length);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package lxthon.backend.Service.Simulation;
+
+import lxthon.backend.Service.Llm.LlmBackend;
+import lxthon.backend.Service.Llm.LlmBackendException;
+import lxthon.backend.Service.Llm.LlmRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-process {@link LlmBackend} for load and regression tests, needing no API key or network.
+ * <p>
+ * Responses come from {@link SimulatedResponses}, so every pipeline gets deterministic,
+ * parseable output; latencies, server errors and throttling (429 with
+ * {@code Retry-After}) follow a {@link SimulationProfile}. Streams deliver their first
+ * piece after a quarter of the latency and the rest evenly over the remainder, a few
+ * words at a time. No thread is held while a request is "in flight".
+ * </p>
+ */
+public class SimulatedLlmBackend implements LlmBackend {
+
+    /**
+     * Share of a stream's latency before its first piece arrives.
+     */
+    private static final double TIME_TO_FIRST_PIECE = 0.25;
+
+    /**
+     * Characters per streamed piece, about a few tokens.
+     */
+    private static final int PIECE_LENGTH = 12;
+
+    private final SimulationProfile profile;
+
+    private final String model;
+
+    /**
+     * Constructs the simulator.
+     *
+     * @param profile the latencies and failure rates to simulate
+     * @param model   the model being stood in for, reported as <code>simulator/&lt;model&gt;</code>
+     */
+    public SimulatedLlmBackend(SimulationProfile profile, String model) {
+        this.profile = profile;
+        this.model = "simulator/" + model;
+    }
+
+    @Override
+    public CompletableFuture<String> complete(LlmRequest request) {
+        SimulationProfile.Outcome outcome = profile.next(request.getPrompt());
+        CompletableFuture<String> done = new CompletableFuture<>();
+        after(outcome.getLatencyNanos(), () -> {
+            if (outcome.isSuccess()) {
+                done.complete(SimulatedResponses.respond(request));
+            } else {
+                done.completeExceptionally(failure(outcome));
+            }
+        });
+        return done;
+    }
+
+    @Override
+    public CompletableFuture<String> stream(LlmRequest request, Consumer<String> onContent) {
+        SimulationProfile.Outcome outcome = profile.next(request.getPrompt());
+        CompletableFuture<String> done = new CompletableFuture<>();
+        long firstPiece = (long) (outcome.getLatencyNanos() * TIME_TO_FIRST_PIECE);
+        if (!outcome.isSuccess()) {
+            // Errors arrive before any content, as with a real endpoint
+            after(firstPiece, () -> done.completeExceptionally(failure(outcome)));
+            return done;
+        }
+
+        String response = SimulatedResponses.respond(request);
+        List<String> pieces = split(response);
+        long interval = (outcome.getLatencyNanos() - firstPiece) / Math.max(1, pieces.size());
+        after(firstPiece, () -> deliver(pieces, 0, interval, onContent, response, done));
+        return done;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Delivers one piece and schedules the next, until the stream ends or is cancelled.
+     */
+    private void deliver(List<String> pieces, int index, long interval, Consumer<String> onContent,
+                         String response, CompletableFuture<String> done) {
+        if (done.isDone()) {
+            return;
+        }
+        if (index == pieces.size()) {
+            done.complete(response);
+            return;
+        }
+        try {
+            onContent.accept(pieces.get(index));
+        } catch (RuntimeException e) {
+            done.completeExceptionally(e);
+            return;
+        }
+        after(interval, () -> deliver(pieces, index + 1, interval, onContent, response, done));
+    }
+
+    private static List<String> split(String response) {
+        List<String> pieces = new ArrayList<>();
+        for (int i = 0; i < response.length(); i += PIECE_LENGTH) {
+            pieces.add(response.substring(i, Math.min(response.length(), i + PIECE_LENGTH)));
+        }
+        return pieces;
+    }
+
+    private static LlmBackendException failure(SimulationProfile.Outcome outcome) {
+        return new LlmBackendException(outcome.getStatus(), outcome.getRetryAfter(),
+                "Simulated HTTP " + outcome.getStatus(), null);
+    }
+
+    private static void after(long nanos, Runnable action) {
+        if (nanos <= 0) {
+            CompletableFuture.runAsync(action);
+        } else {
+            CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS).execute(action);
+        }
+    }
+}
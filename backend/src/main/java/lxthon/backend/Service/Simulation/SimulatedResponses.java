@@ -0,0 +1,268 @@
+package lxthon.backend.Service.Simulation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lxthon.backend.Service.Llm.LlmRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Produces deterministic, well-formed responses to the prompts this application sends.
+ * <p>
+ * The kind of response is recognized from the prompt (quiz, podcast script, summary,
+ * text cleaning) or, for structured output, from the schema, and is built from the text
+ * the prompt carries, so the same prompt always gets the same response and every
+ * pipeline can parse what it gets. Responses are plausible in shape and size, not in
+ * meaning.
+ * </p>
+ */
+final class SimulatedResponses {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Pattern QUIZ = Pattern.compile("create a quiz with (\\d+) multiple-choice questions");
+
+    private static final Pattern HOST = Pattern.compile("^\\s*-\\s*([^:\\n]+):", Pattern.MULTILINE);
+
+    private static final Pattern SEGMENT_MARKERS = Pattern.compile("\\[/?SEG\\d+]");
+
+    private static final Pattern FILLERS = Pattern.compile(
+            "(?i)\\b(?:um+|uh+|er|ah|eh|you know|i mean|like)\\b,?\\s*");
+
+    private static final Pattern REPEATED_WORDS = Pattern.compile("(?i)\\b(\\w+)(?:\\s+\\1\\b)+");
+
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+
+    /**
+     * Words per podcast line, within the 15-25 words the script prompt asks for.
+     */
+    private static final int WORDS_PER_LINE = 18;
+
+    private static final int PODCAST_LINES = 8;
+
+    private static final int MAX_KEYWORDS = 200;
+
+    private SimulatedResponses() {
+    }
+
+    /**
+     * Returns the response to a request.
+     *
+     * @param request the request
+     * @return the response text
+     */
+    static String respond(LlmRequest request) {
+        String prompt = request.getPrompt();
+        if (request.isJson()) {
+            return respondJson(prompt, request.getSchema());
+        }
+        Matcher quiz = QUIZ.matcher(prompt);
+        if (quiz.find()) {
+            return quiz(Integer.parseInt(quiz.group(1)), after(prompt, "\n\n", true));
+        }
+        if (prompt.contains("podcast conversation")) {
+            return podcast(prompt);
+        }
+        if (prompt.contains("Transcript:\n")) {
+            return summary(after(prompt, "Transcript:\n", false));
+        }
+        if (prompt.contains("Partial summaries:\n")) {
+            return summary(after(prompt, "Partial summaries:\n", false));
+        }
+        if (prompt.contains("Text to clean:\n")) {
+            return clean(after(prompt, "Text to clean:\n", false));
+        }
+        return "Simulated response to a prompt of " + words(prompt).size() + " words.";
+    }
+
+    /**
+     * Removes segment markers, fillers and repeated words, like a cleaning model would.
+     */
+    static String clean(String text) {
+        String cleaned = SEGMENT_MARKERS.matcher(text).replaceAll(" ");
+        cleaned = FILLERS.matcher(cleaned).replaceAll("");
+        cleaned = REPEATED_WORDS.matcher(cleaned).replaceAll("$1");
+        cleaned = cleaned.replaceAll("\\s+", " ").trim();
+        return capitalize(cleaned);
+    }
+
+    private static String respondJson(String prompt, Map<String, Object> schema) {
+        ObjectNode response;
+        if (properties(schema).containsKey("segments")) {
+            response = segments(prompt);
+        } else {
+            response = (ObjectNode) instanceOf(schema);
+        }
+        return response.toString();
+    }
+
+    /**
+     * Echoes the segments of a structured cleaning prompt, each cleaned, with its id.
+     */
+    private static ObjectNode segments(String prompt) {
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode segments = response.putArray("segments");
+        int start = prompt.lastIndexOf("\n[");
+        if (start < 0) {
+            return response;
+        }
+        try {
+            for (JsonNode segment : MAPPER.readTree(prompt.substring(start + 1))) {
+                segments.addObject()
+                        .put("id", segment.path("id").asInt())
+                        .put("text", clean(segment.path("text").asText()));
+            }
+        } catch (Exception e) {
+            // Not a segment array after all: answer with no segments, as a confused model might
+        }
+        return response;
+    }
+
+    private static String quiz(int questions, String text) {
+        List<String> words = keywords(text);
+        ObjectNode quiz = MAPPER.createObjectNode();
+        quiz.put("title", "Quiz: " + capitalize(String.join(" ", words.subList(0, Math.min(3, words.size())))));
+        ArrayNode list = quiz.putArray("questions");
+        for (int i = 0; i < questions; i++) {
+            String subject = pick(words, i * 4, "topic " + (i + 1));
+            ObjectNode question = list.addObject();
+            question.put("id", i + 1);
+            question.put("question", "What does the text say about \"" + subject + "\"?");
+            ArrayNode choices = question.putArray("choices");
+            for (int c = 0; c < 4; c++) {
+                choices.add("Option " + (char) ('A' + c) + ": " + pick(words, i * 4 + c + 1, "answer " + (c + 1)));
+            }
+            question.put("correctIndex", Math.floorMod((subject + i).hashCode(), 4));
+        }
+        return quiz.toString();
+    }
+
+    private static String podcast(String prompt) {
+        List<String> hosts = new ArrayList<>();
+        Matcher host = HOST.matcher(after(prompt, "HOSTS:", false));
+        while (hosts.size() < 2 && host.find()) {
+            hosts.add(host.group(1).trim());
+        }
+        while (hosts.size() < 2) {
+            hosts.add(hosts.isEmpty() ? "Alex" : "Sam");
+        }
+
+        String content = after(prompt, "CONTENT TO TRANSFORM:", false);
+        int end = content.indexOf("Generate a SHORT");
+        List<String> words = words(end >= 0 ? content.substring(0, end) : content);
+        if (words.isEmpty()) {
+            words = List.of("this", "video", "has", "no", "transcript");
+        }
+
+        StringBuilder script = new StringBuilder();
+        for (int line = 0; line < PODCAST_LINES; line++) {
+            List<String> turn = new ArrayList<>(WORDS_PER_LINE);
+            for (int w = 0; w < WORDS_PER_LINE; w++) {
+                turn.add(words.get((line * WORDS_PER_LINE + w) % words.size()));
+            }
+            String dialogue = capitalize(String.join(" ", turn)).replaceAll("[.,;:!?]+$", "");
+            script.append(hosts.get(line % 2)).append(": ")
+                    .append(dialogue).append(line % 2 == 0 ? ".\n" : "?\n");
+        }
+        return script.toString().trim();
+    }
+
+    /**
+     * Keeps the leading sentences of the cleaned text, about a fifth of it and at most 150 words.
+     */
+    private static String summary(String text) {
+        String cleaned = clean(text);
+        int budget = Math.max(20, Math.min(150, words(cleaned).size() / 5));
+        StringBuilder summary = new StringBuilder();
+        int used = 0;
+        for (String sentence : SENTENCE_END.split(cleaned)) {
+            List<String> sentenceWords = words(sentence);
+            if (used + sentenceWords.size() > budget) {
+                if (used == 0) {
+                    // Unpunctuated captions are one long "sentence"
+                    summary.append(String.join(" ", sentenceWords.subList(0, budget))).append('.');
+                }
+                break;
+            }
+            summary.append(sentence).append(' ');
+            used += sentenceWords.size();
+        }
+        return summary.toString().trim();
+    }
+
+    /**
+     * Builds a minimal instance of a JSON schema: one element per array, defaults for scalars.
+     */
+    private static JsonNode instanceOf(Object schema) {
+        if (!(schema instanceof Map<?, ?> map)) {
+            return MAPPER.getNodeFactory().nullNode();
+        }
+        Object type = map.get("type");
+        if ("object".equals(type)) {
+            ObjectNode node = MAPPER.createObjectNode();
+            properties(map).forEach((name, property) -> node.set(name, instanceOf(property)));
+            return node;
+        }
+        if ("array".equals(type)) {
+            ArrayNode node = MAPPER.createArrayNode();
+            node.add(instanceOf(map.get("items")));
+            return node;
+        }
+        if ("integer".equals(type) || "number".equals(type)) {
+            return MAPPER.getNodeFactory().numberNode(0);
+        }
+        if ("boolean".equals(type)) {
+            return MAPPER.getNodeFactory().booleanNode(false);
+        }
+        return MAPPER.getNodeFactory().textNode("simulated");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> properties(Map<?, ?> schema) {
+        Object properties = schema.get("properties");
+        return properties instanceof Map<?, ?> map ? (Map<String, Object>) map : Map.of();
+    }
+
+    private static String after(String text, String marker, boolean last) {
+        int index = last ? text.lastIndexOf(marker) : text.indexOf(marker);
+        return index < 0 ? text : text.substring(index + marker.length());
+    }
+
+    private static List<String> words(String text) {
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? List.of() : Arrays.asList(trimmed.split("\\s+"));
+    }
+
+    /**
+     * Returns up to {@value #MAX_KEYWORDS} distinct words of at least four letters, in order of appearance.
+     */
+    private static List<String> keywords(String text) {
+        Set<String> keywords = new LinkedHashSet<>();
+        for (String word : words(text.replaceAll("[^\\p{L}\\p{Nd}\\s]", " "))) {
+            if (word.length() >= 4) {
+                keywords.add(word.toLowerCase());
+                if (keywords.size() == MAX_KEYWORDS) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(keywords);
+    }
+
+    private static String pick(List<String> words, int index, String fallback) {
+        return words.isEmpty() ? fallback : words.get(index % words.size());
+    }
+
+    private static String capitalize(String text) {
+        return text.isEmpty() ? text : Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+}
@@ -0,0 +1,44 @@
+package lxthon.backend.Service.Simulation;
+
+import lxthon.backend.Service.PodcastGeneration.MpegAudio;
+import lxthon.backend.Service.PodcastGeneration.SpeechBackend;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process {@link SpeechBackend} for load and regression tests, needing no API key or network.
+ * <p>
+ * Returns silent MP3 frames as long as the text would take to read aloud, after a
+ * latency drawn from a {@link SimulationProfile}; server errors and throttling surface
+ * as {@link IOException}s, like the real API's error statuses.
+ * </p>
+ */
+public class SimulatedSpeechBackend implements SpeechBackend {
+
+    private final SimulationProfile profile;
+
+    /**
+     * Constructs the simulator.
+     *
+     * @param profile the latencies and failure rates to simulate
+     */
+    public SimulatedSpeechBackend(SimulationProfile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public byte[] synthesize(String text, String voiceId) throws IOException, InterruptedException {
+        SimulationProfile.Outcome outcome = profile.next(voiceId + ":" + text);
+        TimeUnit.NANOSECONDS.sleep(outcome.getLatencyNanos());
+        if (!outcome.isSuccess()) {
+            throw new IOException("Simulated speech API call failed: " + outcome.getStatus());
+        }
+        return MpegAudio.silence(MpegAudio.speakingTime(text));
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+}
@@ -0,0 +1,187 @@
+package lxthon.backend.Service.Simulation;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How a simulated external service behaves: its latency distribution, error and
+ * throttling rates, and its rate limit.
+ * <p>
+ * Latencies follow a log-normal distribution fitted to the configured median and p99,
+ * which matches the long right tail of real model and speech APIs. Outcomes are
+ * reproducible: each one is drawn from a generator seeded with the profile's seed, the
+ * request's content and how many times that content was requested before, so the same
+ * sequence of requests sees the same latencies and failures in every run, whatever the
+ * interleaving. Only the rate limit depends on wall-clock time.
+ * </p>
+ */
+public final class SimulationProfile {
+
+    /**
+     * The p99 of a standard normal distribution.
+     */
+    private static final double Z_99 = 2.3263;
+
+    /**
+     * Number of per-content call counters; contents sharing one only share a sequence.
+     */
+    private static final int SEQUENCES = 4096;
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final double medianNanos;
+
+    private final double sigma;
+
+    private final long maxNanos;
+
+    private final double errorRate;
+
+    private final double throttleRate;
+
+    private final int requestsPerMinute;
+
+    private final long seed;
+
+    private final AtomicInteger[] sequences = new AtomicInteger[SEQUENCES];
+
+    // Guarded by this
+    private long windowStart = System.nanoTime();
+    private int windowRequests;
+
+    /**
+     * Creates a profile.
+     *
+     * @param medianLatencyMs   the median latency
+     * @param p99LatencyMs      the 99th percentile latency; at least the median
+     * @param errorRate         the share of requests failing with a server error, from 0 to 1
+     * @param throttleRate      the share of requests throttled at random, from 0 to 1
+     * @param requestsPerMinute requests beyond this many per minute are throttled; 0 for no limit
+     * @param seed              the seed making runs reproducible
+     */
+    public SimulationProfile(long medianLatencyMs, long p99LatencyMs, double errorRate, double throttleRate,
+                             int requestsPerMinute, long seed) {
+        this.medianNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, medianLatencyMs));
+        double p99Nanos = Math.max(medianNanos, TimeUnit.MILLISECONDS.toNanos(Math.max(0, p99LatencyMs)));
+        this.sigma = medianNanos > 0 ? Math.log(p99Nanos / medianNanos) / Z_99 : 0;
+        this.maxNanos = (long) (10 * p99Nanos);
+        this.errorRate = Math.min(1.0, Math.max(0.0, errorRate));
+        this.throttleRate = Math.min(1.0, Math.max(0.0, throttleRate));
+        this.requestsPerMinute = Math.max(0, requestsPerMinute);
+        this.seed = seed;
+        for (int i = 0; i < SEQUENCES; i++) {
+            sequences[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Draws the outcome of one request.
+     *
+     * @param content what the request asks for, e.g. the prompt or the text to speak
+     * @return the outcome
+     */
+    public Outcome next(String content) {
+        int hash = content.hashCode();
+        int call = sequences[hash & (SEQUENCES - 1)].getAndIncrement();
+        SplittableRandom random = new SplittableRandom(seed ^ mix(hash) ^ mix(call + 0x9e3779b9L));
+
+        long latency = medianNanos == 0 ? 0
+                : (long) Math.min(maxNanos, medianNanos * Math.exp(sigma * random.nextGaussian()));
+
+        Duration limited = rateLimit();
+        if (limited != null) {
+            // A real endpoint rejects over-limit requests at once
+            return new Outcome(0, 429, limited);
+        }
+        double draw = random.nextDouble();
+        if (draw < throttleRate) {
+            return new Outcome(latency / 10, 429, Duration.ofSeconds(1));
+        }
+        if (draw < throttleRate + errorRate) {
+            return new Outcome(latency, 503, null);
+        }
+        return new Outcome(latency, 200, null);
+    }
+
+    /**
+     * Counts a request against the per-minute limit.
+     *
+     * @return how long until the limit resets if the request exceeds it, otherwise {@code null}
+     */
+    private synchronized Duration rateLimit() {
+        if (requestsPerMinute == 0) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - windowStart >= WINDOW_NANOS) {
+            windowStart = now;
+            windowRequests = 0;
+        }
+        if (++windowRequests <= requestsPerMinute) {
+            return null;
+        }
+        return Duration.ofNanos(WINDOW_NANOS - (now - windowStart));
+    }
+
+    private static long mix(long value) {
+        long z = value * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 31)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 29);
+    }
+
+    /**
+     * The simulated outcome of one request.
+     */
+    public static final class Outcome {
+
+        private final long latencyNanos;
+
+        private final int status;
+
+        private final Duration retryAfter;
+
+        Outcome(long latencyNanos, int status, Duration retryAfter) {
+            this.latencyNanos = latencyNanos;
+            this.status = status;
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * Returns how long the request takes before it succeeds or fails.
+         *
+         * @return the latency in nanoseconds
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        /**
+         * Returns the HTTP status the request ends with.
+         *
+         * @return 200, 429 (throttled) or 503 (server error)
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns whether the request succeeds.
+         *
+         * @return {@code true} for status 200
+         */
+        public boolean isSuccess() {
+            return status == 200;
+        }
+
+        /**
+         * Returns how long a throttled client is asked to wait.
+         *
+         * @return the wait, or {@code null} if none is given
+         */
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
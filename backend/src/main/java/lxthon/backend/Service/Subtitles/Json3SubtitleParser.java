@@ -0,0 +1,202 @@
+package lxthon.backend.Service.Subtitles;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lxthon.backend.Domain.TranscriptSegment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Single-pass streaming parser for YouTube <code>json3</code> subtitle files.
+ * <p>
+ * Walks the token stream of the file with a Jackson {@link JsonParser} and emits a
+ * {@link TranscriptSegment} as soon as each element of the <code>events</code> array
+ * closes, without building a DOM for the document or the individual events. Only
+ * <code>tStartMs</code>, <code>dDurationMs</code> and <code>segs[].utf8</code> are read;
+ * every other field is skipped at the token level.
+ * </p>
+ * <p>
+ * The output matches the previous <code>org.json</code> based implementation: events
+ * without <code>segs</code> or without non-blank text are dropped, times are converted to
+ * seconds, and the end time is 0 when an event has no duration.
+ * </p>
+ */
+public final class Json3SubtitleParser {
+
+    /**
+     * Shared factory; {@link JsonFactory} is thread-safe once configured.
+     */
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private Json3SubtitleParser() {}
+
+    /**
+     * Parses a json3 subtitle file into a list of segments.
+     *
+     * @param file the subtitle file written by yt-dlp
+     * @return the parsed segments in file order
+     * @throws IOException if the file cannot be read or is not valid json3
+     */
+    public static List<TranscriptSegment> parse(File file) throws IOException {
+        List<TranscriptSegment> segments = new ArrayList<>();
+        try (JsonParser parser = FACTORY.createParser(file)) {
+            parse(parser, segments::add);
+        }
+        return segments;
+    }
+
+    /**
+     * Parses json3 subtitles from a stream into a list of segments.
+     *
+     * @param in the json3 document (not closed by this method)
+     * @return the parsed segments in document order
+     * @throws IOException if the stream cannot be read or is not valid json3
+     */
+    public static List<TranscriptSegment> parse(InputStream in) throws IOException {
+        List<TranscriptSegment> segments = new ArrayList<>();
+        parse(in, segments::add);
+        return segments;
+    }
+
+    /**
+     * Parses json3 subtitles from a stream, handing each segment to the consumer as soon
+     * as its event has been read.
+     *
+     * @param in       the json3 document (not closed by this method)
+     * @param consumer receives every non-empty segment in document order
+     * @throws IOException if the stream cannot be read or is not valid json3
+     */
+    public static void parse(InputStream in, Consumer<TranscriptSegment> consumer) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            parse(parser, consumer);
+        }
+    }
+
+    private static void parse(JsonParser parser, Consumer<TranscriptSegment> consumer) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected json3 subtitle object");
+        }
+
+        boolean sawEvents = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("events".equals(field) && value == JsonToken.START_ARRAY) {
+                sawEvents = true;
+                parseEvents(parser, consumer);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (!sawEvents) {
+            throw new JsonParseException(parser, "json3 subtitle object has no 'events' array");
+        }
+    }
+
+    private static void parseEvents(JsonParser parser, Consumer<TranscriptSegment> consumer) throws IOException {
+        // Reused across events; only materialized into a String when an event has text
+        StringBuilder text = new StringBuilder(128);
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            double startMs = 0;
+            double durationMs = 0;
+            boolean hasStart = false;
+            boolean hasDuration = false;
+            boolean hasSegs = false;
+            text.setLength(0);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "tStartMs" -> {
+                        hasStart = value.isNumeric();
+                        startMs = hasStart ? parser.getValueAsDouble() : 0;
+                    }
+                    case "dDurationMs" -> {
+                        hasDuration = value.isNumeric();
+                        durationMs = hasDuration ? parser.getValueAsDouble() : 0;
+                    }
+                    case "segs" -> {
+                        if (value == JsonToken.START_ARRAY) {
+                            hasSegs = true;
+                            appendSegs(parser, text);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (!hasSegs) {
+                continue;
+            }
+
+            String finalText = text.toString().trim();
+            if (finalText.isEmpty()) {
+                continue;
+            }
+
+            double startTime = hasStart ? startMs / 1000.0 : 0;
+            double endTime = hasDuration ? startTime + durationMs / 1000.0 : 0;
+
+            TranscriptSegment segment = new TranscriptSegment();
+            segment.setStartTime(startTime);
+            segment.setEndTime(endTime);
+            segment.setText(finalText);
+            consumer.accept(segment);
+        }
+    }
+
+    private static void appendSegs(JsonParser parser, StringBuilder text) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("utf8".equals(field) && value == JsonToken.VALUE_STRING) {
+                    appendIfNotBlank(parser, text);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the current string value unless it is blank, reading straight from the
+     * parser's character buffer so blank fragments (the common "\n" separators) never
+     * allocate a String.
+     */
+    private static void appendIfNotBlank(JsonParser parser, StringBuilder text) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        for (int i = offset; i < offset + length; i++) {
+            if (chars[i] > ' ') {
+                text.append(chars, offset, length);
+                return;
+            }
+        }
+    }
+}
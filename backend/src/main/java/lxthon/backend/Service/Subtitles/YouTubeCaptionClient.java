@@ -0,0 +1,195 @@
+package lxthon.backend.Service.Subtitles;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lxthon.backend.Domain.TranscriptSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pure Java client that fetches YouTube auto-generated captions without launching yt-dlp.
+ * <p>
+ * It loads the watch page, extracts the embedded <code>ytInitialPlayerResponse</code>,
+ * picks the English caption track (auto-generated first, as yt-dlp's
+ * <code>--write-auto-sub --sub-lang en</code> does) and downloads it in json3 format,
+ * which is then parsed with {@link Json3SubtitleParser}. All requests go through the
+ * application's shared, pooled {@link HttpClient}.
+ * </p>
+ * <p>
+ * The base URL is configurable (<code>transcript.native.base-url</code>) so the client
+ * can be pointed at a local HTTP stub serving recorded pages and caption files.
+ * </p>
+ */
+@Service
+public class YouTubeCaptionClient {
+
+    private static final Logger log = LoggerFactory.getLogger(YouTubeCaptionClient.class);
+
+    private static final String PLAYER_RESPONSE_MARKER = "ytInitialPlayerResponse";
+
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0 Safari/537.36";
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final String baseUrl;
+
+    private final Duration timeout;
+
+    /**
+     * Constructs the client.
+     *
+     * @param httpClient     the shared HTTP client
+     * @param baseUrl        the YouTube origin (or a stub standing in for it)
+     * @param timeoutSeconds the per-request timeout
+     */
+    public YouTubeCaptionClient(HttpClient httpClient,
+                                @Value("${transcript.native.base-url:https://www.youtube.com}") String baseUrl,
+                                @Value("${transcript.native.timeout-seconds:15}") long timeoutSeconds) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+    }
+
+    /**
+     * Fetches the English captions of a YouTube video.
+     *
+     * @param videoId the 11-character YouTube video ID
+     * @return the parsed segments, or an empty list if the video has no English caption track
+     * @throws IOException          if a request fails or the page/caption format is not recognised
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public List<TranscriptSegment> fetchTranscript(String videoId) throws IOException, InterruptedException {
+        String watchPage = getString(baseUrl + "/watch?v=" + videoId + "&hl=en");
+        JsonNode playerResponse = extractPlayerResponse(watchPage);
+
+        String trackUrl = selectEnglishTrack(playerResponse.path("captions")
+                .path("playerCaptionsTracklistRenderer").path("captionTracks"));
+        if (trackUrl == null) {
+            log.info("No English caption track advertised for video {}", videoId);
+            return Collections.emptyList();
+        }
+
+        HttpResponse<InputStream> response = httpClient.send(
+                request(absolute(trackUrl) + "&fmt=json3"), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Caption download failed with HTTP " + response.statusCode());
+            }
+            return Json3SubtitleParser.parse(body);
+        }
+    }
+
+    private String getString(String url) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request(url), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + url + " failed with HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private HttpRequest request(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Language", "en-US,en;q=0.9")
+                // Skips the EU consent interstitial, which has no player response
+                .header("Cookie", "CONSENT=YES+1")
+                .GET()
+                .build();
+    }
+
+    private String absolute(String url) {
+        return url.startsWith("/") ? baseUrl + url : url;
+    }
+
+    /**
+     * Locates the <code>ytInitialPlayerResponse = {...};</code> assignment in the watch page
+     * and parses the object literal, which is plain JSON.
+     */
+    private JsonNode extractPlayerResponse(String html) throws IOException {
+        int marker = html.indexOf(PLAYER_RESPONSE_MARKER);
+        while (marker >= 0) {
+            int start = html.indexOf('{', marker);
+            int equals = html.indexOf('=', marker);
+            if (start > 0 && equals > 0 && equals < start && html.substring(equals + 1, start).isBlank()) {
+                int end = findObjectEnd(html, start);
+                if (end > start) {
+                    return mapper.readTree(html.substring(start, end + 1));
+                }
+            }
+            marker = html.indexOf(PLAYER_RESPONSE_MARKER, marker + PLAYER_RESPONSE_MARKER.length());
+        }
+        throw new IOException("Watch page does not contain a player response");
+    }
+
+    /**
+     * Returns the index of the brace closing the object that opens at {@code start},
+     * skipping braces inside string literals.
+     */
+    private static int findObjectEnd(String text, int start) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks the best English track: auto-generated "en", then manual "en", then any regional "en-*".
+     */
+    private static String selectEnglishTrack(JsonNode tracks) {
+        String manual = null;
+        String regional = null;
+        for (JsonNode track : tracks) {
+            String language = track.path("languageCode").asText("");
+            String url = track.path("baseUrl").asText(null);
+            if (url == null) {
+                continue;
+            }
+            boolean auto = "asr".equals(track.path("kind").asText(""));
+            if (language.equals("en")) {
+                if (auto) {
+                    return url;
+                }
+                if (manual == null) {
+                    manual = url;
+                }
+            } else if (language.startsWith("en-") && regional == null) {
+                regional = url;
+            }
+        }
+        return manual != null ? manual : regional;
+    }
+}
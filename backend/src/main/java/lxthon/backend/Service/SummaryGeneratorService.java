@@ -1,24 +1,106 @@
 package lxthon.backend.Service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import lxthon.backend.Domain.CompactTranscript;
 import lxthon.backend.Domain.TranscriptSegment;
+import lxthon.backend.Service.Cache.CachePolicy;
+import lxthon.backend.Service.Cache.ChunkMemoStore;
+import lxthon.backend.Service.Cache.LlmResponseCache;
+import lxthon.backend.Service.Chunking.ChunkPlanner;
+import lxthon.backend.Service.Chunking.TokenEstimator;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry.Artifact;
+import lxthon.backend.Service.Llm.LlmStage;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 /**
  * Service responsible for generating a concise summary from a list of transcript segments.
  * <p>
- * It concatenates the raw transcript text, sends it to the language model with a prompt
- * instructing it to produce only the summary text, and returns the trimmed result.
+ * A transcript that fits in one request is sent to the language model with a prompt
+ * instructing it to produce only the summary text. Longer transcripts are summarized
+ * map-reduce style: the {@link ChunkPlanner} splits them along segment boundaries, the
+ * chunks are summarized concurrently, and the partial summaries are merged, group by
+ * group and again concurrently, until one request can merge them all. Each round shrinks
+ * the text several-fold, so latency grows with the logarithm of the transcript length.
+ * </p>
+ * <p>
+ * The chunk summaries of a video are cached as a whole in the {@link LlmResponseCache},
+ * so summaries of every {@link Length}, including the short one the podcast script is
+ * written from, are built from the same map phase.
  * </p>
  */
 @Service
-public class SummaryGeneratorService {      
+public class SummaryGeneratorService {
+    private static final Logger log = LoggerFactory.getLogger(SummaryGeneratorService.class);
+
     private final OpenAIService openAIService;
+    private final ChunkPlanner chunkPlanner;
+    private final LlmResponseCache responseCache;
+    private final InFlightRequestRegistry inFlight;
     private final ObjectMapper mapper = new ObjectMapper();
 
+    // Completion tokens reserved for a summary, whatever the size of its input
+    private static final int SUMMARY_OUTPUT_RESERVE = 1024;
+
+    // Upper bound on merge rounds for extremely long transcripts
+    private static final int MAX_REDUCE_ROUNDS = 3;
+
+    // Bump when the chunk summary prompt or chunking changes, to stop serving the old per-video entries
+    private static final String CHUNK_SUMMARIES_VERSION = "chunk-summaries-v1";
+
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {};
+
+    /**
+     * How long a summary should be. All lengths share the chunk summaries of a video;
+     * only the final request differs.
+     */
+    public enum Length {
+        SHORT("Keep the summary to a single paragraph of at most 80 words."),
+        MEDIUM(""),
+        LONG("Write a detailed summary of several paragraphs, covering each main topic in the order it is discussed.");
+
+        private final String instruction;
+
+        Length(String instruction) {
+            this.instruction = instruction;
+        }
+
+        /**
+         * Parses a length from a request parameter, ignoring case.
+         *
+         * @param value <code>short</code>, <code>medium</code> or <code>long</code>
+         * @return the length
+         * @throws IllegalArgumentException if the value is none of them
+         */
+        public static Length parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * The maximum transcript tokens per summary request, given the model limits and prompt size.
+     */
+    private final int chunkBudget;
+
+    /**
+     * Summaries are deterministic enough to be served from the LLM response cache.
+     */
+    private final CachePolicy cachePolicy;
+
     /**
      * The system prompt used to instruct the model to produce a summary.
      * <p>
@@ -26,21 +108,46 @@ public class SummaryGeneratorService {
      * without additional formatting or explanation.
      * </p>
      */
-    private static final String SYSTEM_PROMPT = 
+    private static final String SYSTEM_PROMPT =
         "You are a professional content summarizer. Given a transcript text, " +
         "create a comprehensive summary that captures the main points and key ideas. " +
         "The summary should be well-structured, clear, and maintain the original context. " +
         "Focus on the most important information while being concise. " +
         "Return ONLY the summary text, without any additional formatting or explanations.";
 
+    /**
+     * The prompt used to merge the summaries of consecutive parts of one transcript.
+     */
+    private static final String MERGE_PROMPT =
+        "You are a professional content summarizer. Given summaries of consecutive parts of one transcript, " +
+        "in order, combine them into a single summary of the whole that captures the main points and key ideas. " +
+        "Remove repetition between parts and keep the original order of topics. " +
+        "Return ONLY the summary text, without any additional formatting or explanations.";
+
+    private static final String TRANSCRIPT_LABEL = "\n\nTranscript:\n";
+
+    private static final String SUMMARIES_LABEL = "\n\nPartial summaries:\n";
 
     /**
      * Constructs a new {@code SummaryGeneratorService} using the provided {@link OpenAIService}.
      *
-     * @param openAIService the service used to send prompts and receive completions
+     * @param openAIService   the service used to send prompts and receive completions
+     * @param chunkPlanner    the planner splitting transcripts that exceed one request's token budget
+     * @param responseCache   the cache holding the chunk summaries of each video
+     * @param inFlight        the registry sharing one map phase between concurrent requests for a video
+     * @param cacheTtlMinutes how long generated summaries are served from the response cache; 0 disables caching
      */
-    public SummaryGeneratorService(OpenAIService openAIService) {
+    public SummaryGeneratorService(OpenAIService openAIService, ChunkPlanner chunkPlanner,
+                                   LlmResponseCache responseCache, InFlightRequestRegistry inFlight,
+                                   @Value("${llm.cache.summary-ttl-minutes:10080}") long cacheTtlMinutes) {
         this.openAIService = openAIService;
+        this.cachePolicy = CachePolicy.ttl(Duration.ofMinutes(cacheTtlMinutes));
+        this.chunkPlanner = chunkPlanner;
+        this.responseCache = responseCache;
+        this.inFlight = inFlight;
+        int promptOverhead = Math.max(TokenEstimator.estimate(prompt(SYSTEM_PROMPT, Length.LONG, TRANSCRIPT_LABEL, "")),
+                TokenEstimator.estimate(prompt(MERGE_PROMPT, Length.LONG, SUMMARIES_LABEL, "")));
+        this.chunkBudget = chunkPlanner.inputBudget(promptOverhead, SUMMARY_OUTPUT_RESERVE, 0);
     }
 
     /**
@@ -50,21 +157,244 @@ public class SummaryGeneratorService {
      * into a single string, and sends the combined text to the AI service
      * with the summarization prompt. Returns the resulting summary.
      * </p>
+     * <p>
+     * Blocking adapter over {@link #generateSummaryAsync(List)}.
+     * </p>
      *
      * @param segments the list of {@link TranscriptSegment} to summarize
      * @return a concise summary string produced by the AI
      * @throws IOException if an error occurs during prompt processing or response handling
      */
     public String generateSummary(List<TranscriptSegment> segments) throws IOException {
-        // Extract all normalizedText segments and join them into a single string
-        String fullTranscript = segments.stream()
-            .map(TranscriptSegment::getText)
-            .collect(Collectors.joining("\n"));
-        
-        // Create the prompt with the full transcript
-        String prompt = SYSTEM_PROMPT + "\n\nTranscript:\n" + fullTranscript;
-        
-        // Get the summary from the AI service
-        return openAIService.getChatCompletion(prompt).trim();
-    }
-} 
\ No newline at end of file
+        try {
+            return generateSummaryAsync(segments).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating summary");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to generate summary: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Generates a text summary based on the list of transcript segments, without blocking.
+     * <p>
+     * Transcripts too long for one request are split by the {@link ChunkPlanner};
+     * the chunks are summarized concurrently and the partial summaries are then
+     * merged. Without a video ID the chunk summaries are not cached per video.
+     * </p>
+     *
+     * @param segments the list of {@link TranscriptSegment} to summarize
+     * @return a future of the summary
+     */
+    public CompletableFuture<String> generateSummaryAsync(List<TranscriptSegment> segments) {
+        return generateSummaryStreamAsync(null, segments, Length.MEDIUM, null);
+    }
+
+    /**
+     * Generates a summary of a video's transcript of the given length, without blocking.
+     *
+     * @param videoId  the canonical video ID, under which the chunk summaries are cached
+     * @param segments the video's transcript
+     * @param length   how long the summary should be
+     * @return a future of the summary
+     */
+    public CompletableFuture<String> generateSummaryAsync(String videoId, List<TranscriptSegment> segments, Length length) {
+        return generateSummaryStreamAsync(videoId, segments, length, null);
+    }
+
+    /**
+     * Generates a text summary like {@link #generateSummaryAsync(List)} and streams the
+     * summary text to {@code onToken} while the model writes it.
+     *
+     * @param segments the list of {@link TranscriptSegment} to summarize
+     * @param onToken  receives each piece of the summary in order, or {@code null} not to stream
+     * @return a future of the complete summary
+     */
+    public CompletableFuture<String> generateSummaryStreamAsync(List<TranscriptSegment> segments, Consumer<String> onToken) {
+        return generateSummaryStreamAsync(null, segments, Length.MEDIUM, onToken);
+    }
+
+    /**
+     * Generates a summary of the given length and streams the summary text to
+     * {@code onToken} while the model writes it.
+     * <p>
+     * For transcripts too long for one request only the final merge streams; the
+     * partial summaries before it are not forwarded.
+     * </p>
+     *
+     * @param videoId  the canonical video ID, under which the chunk summaries are cached,
+     *                 or {@code null} not to cache them
+     * @param segments the video's transcript
+     * @param length   how long the summary should be
+     * @param onToken  receives each piece of the summary in order, or {@code null} not to stream
+     * @return a future of the complete summary
+     */
+    public CompletableFuture<String> generateSummaryStreamAsync(String videoId, List<TranscriptSegment> segments,
+                                                                Length length, Consumer<String> onToken) {
+        CompactTranscript transcript = CompactTranscript.of(segments);
+        List<ChunkPlanner.Chunk> chunks = chunkPlanner.plan(transcript, false, chunkBudget);
+        if (chunks.size() <= 1) {
+            // Fits in one request: join all segments into a single string
+            return summarize(LlmStage.SUMMARY, prompt(SYSTEM_PROMPT, length, TRANSCRIPT_LABEL,
+                    transcript.joinText("\n", false)), cachePolicy, onToken);
+        }
+
+        // Too long for one request: summarize each chunk, then merge the summaries
+        return chunkSummaries(videoId, chunks).thenCompose(partials -> reduce(partials, 0, length, onToken));
+    }
+
+    /**
+     * Returns whether a transcript is too long for one summary request, so that its
+     * summaries are merged from chunk summaries.
+     *
+     * @param segments the transcript
+     * @return {@code true} if it is split into several chunks
+     */
+    public boolean isChunked(List<TranscriptSegment> segments) {
+        return chunkPlanner.plan(CompactTranscript.of(segments), false, chunkBudget).size() > 1;
+    }
+
+    /**
+     * The map phase: summarizes all chunks concurrently, answering from and filling the
+     * per-video cache entry when a video ID is given. The individual chunk requests are
+     * then not cached themselves, as the entry already holds all their responses.
+     */
+    private CompletableFuture<List<String>> chunkSummaries(String videoId, List<ChunkPlanner.Chunk> chunks) {
+        if (videoId == null || !cachePolicy.isEnabled()) {
+            return summarizeChunks(chunks, cachePolicy);
+        }
+
+        // The chunk texts are part of the key, so a changed transcript or chunking is not served stale summaries
+        String[] keyParts = new String[chunks.size() + 3];
+        keyParts[0] = openAIService.getModel(LlmStage.CHUNK_SUMMARY);
+        keyParts[1] = CHUNK_SUMMARIES_VERSION;
+        keyParts[2] = videoId;
+        for (int i = 0; i < chunks.size(); i++) {
+            keyParts[i + 3] = chunks.get(i).getText();
+        }
+        String cacheKey = ChunkMemoStore.key(keyParts);
+
+        return inFlight.submitAsync(Artifact.CHUNK_SUMMARIES, videoId, cacheKey,
+                () -> responseCache.getAsync(cacheKey).thenCompose(hit -> {
+                    List<String> cached = decode(hit);
+                    if (cached != null && cached.size() == chunks.size()) {
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    return summarizeChunks(chunks, CachePolicy.NONE).thenApply(partials -> {
+                        String encoded = partials.stream().noneMatch(String::isEmpty) ? encode(partials) : null;
+                        if (encoded != null) {
+                            responseCache.put(cacheKey, encoded, cachePolicy);
+                        }
+                        return partials;
+                    });
+                }));
+    }
+
+    private CompletableFuture<List<String>> summarizeChunks(List<ChunkPlanner.Chunk> chunks, CachePolicy cache) {
+        List<CompletableFuture<String>> partials = new ArrayList<>(chunks.size());
+        for (ChunkPlanner.Chunk chunk : chunks) {
+            partials.add(summarize(LlmStage.CHUNK_SUMMARY,
+                    prompt(SYSTEM_PROMPT, Length.MEDIUM, TRANSCRIPT_LABEL, chunk.getText()), cache, null));
+        }
+        return joinAll(partials);
+    }
+
+    /**
+     * The reduce phase: merges the partial summaries in one request if they fit, and
+     * otherwise merges groups of them concurrently and recurses on the results.
+     */
+    private CompletableFuture<String> reduce(List<String> partials, int round, Length length, Consumer<String> onToken) {
+        String joined = String.join("\n\n", partials);
+        List<String> groups = chunkPlanner.planText(joined, chunkBudget);
+        if (groups.size() > 1 && round >= MAX_REDUCE_ROUNDS) {
+            log.warn("Partial summaries still exceed one request after {} merge rounds ({} groups); truncating them",
+                    round, groups.size());
+            joined = truncate(partials);
+            groups = List.of(joined);
+        }
+        if (groups.size() <= 1) {
+            return summarize(LlmStage.SUMMARY, prompt(MERGE_PROMPT, length, SUMMARIES_LABEL, joined), cachePolicy, onToken);
+        }
+        List<CompletableFuture<String>> merged = new ArrayList<>(groups.size());
+        for (String group : groups) {
+            merged.add(summarize(LlmStage.CHUNK_SUMMARY, prompt(MERGE_PROMPT, Length.MEDIUM, SUMMARIES_LABEL, group),
+                    cachePolicy, null));
+        }
+        return joinAll(merged).thenCompose(results -> reduce(results, round + 1, length, onToken));
+    }
+
+    /**
+     * Shortens every partial summary to an equal share of the request budget, so the final
+     * merge still covers the whole video.
+     */
+    private String truncate(List<String> partials) {
+        // Each separator costs about a token
+        int share = Math.max(1, (chunkBudget - partials.size()) / partials.size());
+        List<String> heads = new ArrayList<>(partials.size());
+        for (String partial : partials) {
+            List<String> pieces = chunkPlanner.planText(partial, share);
+            if (!pieces.isEmpty()) {
+                heads.add(pieces.get(0));
+            }
+        }
+        String joined = String.join("\n\n", heads);
+        // Guards against estimates that don't add up, e.g. a single word longer than a share
+        List<String> fitted = chunkPlanner.planText(joined, chunkBudget);
+        return fitted.size() <= 1 ? joined : fitted.get(0);
+    }
+
+    /**
+     * Sends one prompt to the model.
+     *
+     * @param stage   {@link LlmStage#SUMMARY} for the summary returned to the client,
+     *                {@link LlmStage#CHUNK_SUMMARY} for a partial one
+     * @param prompt  the complete prompt
+     * @param cache   whether the response is cached on its own
+     * @param onToken receives the summary as it is generated, or {@code null}
+     * @return a future of the trimmed summary
+     */
+    private CompletableFuture<String> summarize(LlmStage stage, String prompt, CachePolicy cache, Consumer<String> onToken) {
+        // Get the summary from the AI service; a client is waiting, so a stalled call is hedged
+        CompletableFuture<String> summary = onToken == null
+                ? openAIService.getChatCompletionAsync(stage, prompt, cache, true)
+                : openAIService.getChatCompletionStreamAsync(stage, prompt, cache, onToken);
+        return summary.thenApply(String::trim);
+    }
+
+    private static String prompt(String instructions, Length length, String label, String text) {
+        // The medium prompt is left unchanged, so summaries cached before lengths existed stay valid
+        String lengthInstruction = length.instruction.isEmpty() ? "" : " " + length.instruction;
+        return instructions + lengthInstruction + label + text;
+    }
+
+    private static CompletableFuture<List<String>> joinAll(List<CompletableFuture<String>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            List<String> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<String> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    private String encode(List<String> partials) {
+        try {
+            return mapper.writeValueAsString(partials);
+        } catch (JsonProcessingException e) {
+            // A list of strings always serializes; the caller skips caching otherwise
+            return null;
+        }
+    }
+
+    private List<String> decode(String cached) {
+        if (cached == null) {
+            return null;
+        }
+        try {
+            return mapper.readValue(cached, STRING_LIST);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+}
@@ -1,19 +1,52 @@
 package lxthon.backend.Service;
 
+import jakarta.annotation.PreDestroy;
 import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import lxthon.backend.Domain.CompactTranscript;
+import lxthon.backend.Service.Cache.ChunkMemoStore;
+import lxthon.backend.Service.Cache.CachePolicy;
+import lxthon.backend.Service.Chunking.ChunkPlanner;
+import lxthon.backend.Service.Cleaning.DisfluencyPreCleaner;
+import lxthon.backend.Service.Cleaning.SegmentJsonStreamParser;
+import lxthon.backend.Service.Cleaning.TranscriptAligner;
+import lxthon.backend.Service.Chunking.TokenEstimator;
+import lxthon.backend.Service.Llm.LlmStage;
+import lxthon.backend.Service.Concurrency.AsyncPermits;
 import lxthon.backend.Domain.TranscriptSegment;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Service that cleans and normalizes raw transcript segments by delegating to an LLM.
  * <p>
  * Uses a context‐aware prompt to remove filler words, restore punctuation,
  * normalize terms, and preserve the original timecodes. Supports both
- * single‐chunk and multi‐chunk processing for large transcripts.
+ * single‐chunk and multi‐chunk processing for large transcripts; chunks are
+ * cleaned concurrently through the asynchronous API of {@link OpenAIService}, paced by
+ * its rate limiter, so chunks waiting on the model hold no thread.
+ * Obvious fillers are stripped locally by the {@link DisfluencyPreCleaner} first,
+ * so the model is not paid to remove them.
+ * </p>
+ * <p>
+ * In structured mode segments are instead sent as compact JSON and returned under a
+ * JSON-schema constraint, one cleaned text per segment id; the streamed response is
+ * parsed incrementally by the {@link SegmentJsonStreamParser}.
  * </p>
  */
 @Service
@@ -23,47 +56,151 @@ public class TranscriptCleanerService {
     private final OpenAIService openAIService;
 
     /**
-     * The system prompt instructing the model how to clean each segment.
+     * The instructions preceding each chunk of segments sent for structured cleaning.
      * <p>
-     * Specifies removal of disfluencies, restoration of punctuation,
-     * normalization of numbers/terms, and preservation of timecodes.
+     * Segments are sent as a compact JSON array of ids and texts (no timecodes), and the
+     * model must return one cleaned object per id, so segment boundaries survive cleaning.
      * </p>
      */
-    @NonNull
-    private static final String SYSTEM_PROMPT =
+    private static final String STRUCTURED_PROMPT =
             "You are a deterministic, context-aware transcript cleaner. " +
-                    "Given an array of raw transcript segments (each with 'startTime', 'endTime' and 'text'), you must:\n" +
-                    "1. Remove filler words and disfluencies (e.g., 'um', 'uh', 'you know', 'like').\n" +
-                    "2. Restore proper punctuation, capitalization, and paragraph breaks.\n" +
+                    "You are given a JSON array of consecutive transcript segments, each with an 'id' and its 'text'. For every segment:\n" +
+                    "1. Remove filler words and disfluencies (e.g., 'um', 'uh', 'you know', 'like'), repeated words and false starts.\n" +
+                    "2. Restore proper punctuation and capitalization, reading the segments as one continuous text.\n" +
                     "3. Normalize numbers, dates, acronyms and special terms consistently.\n" +
-                    "4. Preserve original meaning and non-verbal markers.\n" +
-                    "5. Do NOT modify timecodes.\n" +
-                    "Return ONLY a JSON array of TranscriptSegment objects with the same structure, but with normalizedText filled. Do not include any other text or formatting.";
+                    "4. Preserve original meaning.\n" +
+                    "5. Keep every segment separate: return exactly one object per input segment, with the same 'id', in the same order. Never move words between segments.\n" +
+                    "Respond with {\"segments\": [{\"id\": ..., \"text\": ...}, ...]}.\n\n" +
+                    "Segments:\n";
+
+    /**
+     * JSON schema the structured cleaning response must follow.
+     */
+    private static final Map<String, Object> SEGMENTS_SCHEMA = Map.of(
+            "type", "object",
+            "properties", Map.of("segments", Map.of(
+                    "type", "array",
+                    "items", Map.of(
+                            "type", "object",
+                            "properties", Map.of(
+                                    "id", Map.of("type", "integer"),
+                                    "text", Map.of("type", "string")),
+                            "required", List.of("id", "text"),
+                            "additionalProperties", false))),
+            "required", List.of("segments"),
+            "additionalProperties", false);
+
+    /**
+     * Version of {@link #STRUCTURED_PROMPT} used in memo keys.
+     */
+    private static final String STRUCTURED_PROMPT_VERSION = ChunkMemoStore.key(STRUCTURED_PROMPT);
 
     @NonNull
     private final ObjectMapper mapper = new ObjectMapper();
 
-    // Maximum number of segments to process in one API call
-    private static final int MAX_SEGMENTS_PER_CHUNK = 50;
+    /**
+     * The instructions preceding each chunk of text sent for cleaning.
+     */
+    private static final String CLEANING_PROMPT =
+            "You are a transcript cleaner focused on removing verbal disfluencies.\n\n" +
+            "CRITICALLY IMPORTANT:\n" +
+            "1. Remove ALL filler words including:\n" +
+            "   - 'uh', 'um', 'er', 'ah', 'eh'\n" +
+            "   - 'like', 'you know', 'I mean'\n" +
+            "   - Repeated words and false starts\n\n" +
+
+            "2. DO NOT include ANY markers, tags, or special formatting in your response.\n" +
+            "   - Remove any [SEGx] or [/SEGx] markers if present\n" +
+            "   - Return ONLY the cleaned text\n\n" +
+
+            "Example: \"I um actually uh wanted to like you know see if uh we could...\" → \"I actually wanted to see if we could...\"\n\n" +
+
+            "Also fix grammar/punctuation and normalize formatting.\n\n" +
+
+            "Text to clean:\n";
+
+    /**
+     * Version of {@link #CLEANING_PROMPT} used in memo keys; any change to the prompt invalidates memoized chunks.
+     */
+    private static final String CLEANING_PROMPT_VERSION = ChunkMemoStore.key(CLEANING_PROMPT);
+
+    // Completion tokens kept free on top of the cleaned text, which is about as long as its input
+    private static final int CLEANING_OUTPUT_RESERVE = 64;
+
+    private final ChunkPlanner chunkPlanner;
 
-    // Maximum number of characters per chunk
-    private static final int CHARS_PER_CHUNK = 4000;
+    private final ChunkMemoStore chunkMemo;
+
+    private final DisfluencyPreCleaner preCleaner;
+
+    /**
+     * The maximum transcript tokens per cleaning request, given the model limits and prompt size.
+     */
+    private final int chunkBudget;
+
+    /**
+     * The maximum transcript tokens per structured cleaning request. The JSON framing of each
+     * segment ({"id":12,"text":""}), in the request and again in the response, costs about
+     * as much as the text of a typical caption segment, so this is half the plain budget.
+     */
+    private final int structuredChunkBudget;
+
+    /**
+     * Runs memo lookups and writes, which touch the disk, off the HTTP client's threads.
+     */
+    private final ExecutorService memoExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Bounds how many chunks are being cleaned at once, across all transcripts.
+     */
+    private final AsyncPermits chunkPermits;
 
     /**
      * Constructs a new TranscriptCleanerService.
      *
      * @param openAIService the service used to send prompts to the LLM
+     * @param chunkPlanner  the planner splitting transcripts into token-budgeted chunks
+     * @param chunkMemo     the memo of previously cleaned chunks
+     * @param preCleaner    the local filler remover applied before chunking
+     * @param parallelism   the maximum number of chunks cleaned concurrently
      */
-    public TranscriptCleanerService(OpenAIService openAIService) {
+    public TranscriptCleanerService(OpenAIService openAIService,
+                                    ChunkPlanner chunkPlanner,
+                                    ChunkMemoStore chunkMemo,
+                                    DisfluencyPreCleaner preCleaner,
+                                    @Value("${llm.cleaning.parallelism:4}") int parallelism) {
         this.openAIService = openAIService;
+        this.chunkPlanner = chunkPlanner;
+        this.chunkMemo = chunkMemo;
+        this.preCleaner = preCleaner;
+        this.chunkBudget = chunkPlanner.inputBudget(TokenEstimator.estimate(CLEANING_PROMPT), CLEANING_OUTPUT_RESERVE, 1.0);
+        this.structuredChunkBudget = chunkPlanner.inputBudget(TokenEstimator.estimate(STRUCTURED_PROMPT), CLEANING_OUTPUT_RESERVE, 1.0) / 2;
+        this.chunkPermits = new AsyncPermits(parallelism);
+    }
+
+    /**
+     * Receives cleaned segments progressively, in transcript order.
+     */
+    @FunctionalInterface
+    public interface BatchListener {
+
+        /**
+         * Called with each run of cleaned segments, as soon as it and every segment before it are done.
+         *
+         * @param batch consecutive cleaned segments with original timecodes: a whole chunk in
+         *              text mode, as many segments as have been parsed in structured mode
+         * @throws IOException if the batch cannot be delivered; cleaning is then cancelled
+         */
+        void onBatch(CompactTranscript batch) throws IOException;
     }
 
     /**
      * Cleans and normalizes the given list of transcript segments.
      * <p>
-     * If the number of segments exceeds {@link #MAX_SEGMENTS_PER_CHUNK}, it
-     * can be adapted to split into chunks and reassemble, but here it sends
-     * the entire list at once.
+     * The transcript is split by the {@link ChunkPlanner} into as few chunks as the
+     * model's token budget allows, along segment boundaries; the chunks are cleaned
+     * concurrently and the cleaned words are aligned back onto the segments they came
+     * from by the {@link TranscriptAligner}.
      * </p>
      *
      * @param segments the raw transcript segments to clean
@@ -71,166 +208,382 @@ public class TranscriptCleanerService {
      * @throws IOException if parsing the LLM response fails
      */
     public List<TranscriptSegment> cleanTranscript(List<TranscriptSegment> segments) throws IOException {
-        // Step 1: Extract all text without markers
-        StringBuilder fullText = new StringBuilder();
-        for (TranscriptSegment segment : segments) {
-            fullText.append(segment.getText()).append(" ");
+        return cleanTranscript(segments, false);
+    }
+
+    /**
+     * Cleans and normalizes the given list of transcript segments, optionally in structured mode.
+     * <p>
+     * In structured mode the segments are sent to the model as a JSON array of ids and texts
+     * and come back, under a JSON-schema constraint, as one cleaned text per id. Segment
+     * boundaries therefore never have to be reconstructed, and timecodes are never sent.
+     * </p>
+     *
+     * @param segments   the raw transcript segments to clean
+     * @param structured whether to clean segment by segment through structured JSON output
+     * @return a list of TranscriptSegment with {@code normalizedText} populated
+     * @throws IOException if cleaning fails
+     */
+    public List<TranscriptSegment> cleanTranscript(List<TranscriptSegment> segments, boolean structured) throws IOException {
+        CompactTranscript.Builder result = new CompactTranscript.Builder(segments.size());
+        cleanTranscript(segments, structured, batch -> {
+            for (CompactTranscript.SegmentView segment : batch.views()) {
+                result.add(segment.getStartTime(), segment.getEndTime(), segment.getText(), segment.getNormalizedText());
+            }
+        });
+        return result.build();
+    }
+
+    /**
+     * Cleans the given transcript segments and hands them to {@code listener} progressively.
+     * <p>
+     * Works like {@link #cleanTranscript(List, boolean)}, but segments are delivered as soon
+     * as they and all earlier segments are cleaned: chunk by chunk in text mode, and element
+     * by element of the streamed JSON response in structured mode. The first segments are
+     * thus available after one LLM round trip instead of after the whole transcript.
+     * </p>
+     *
+     * @param segments   the raw transcript segments to clean
+     * @param structured whether to clean segment by segment through structured JSON output
+     * @param listener   receives the cleaned segments in order
+     * @throws IOException if cleaning a chunk or delivering a batch fails; the remaining
+     *                     chunks are then cancelled
+     */
+    public void cleanTranscript(List<TranscriptSegment> segments, boolean structured, BatchListener listener) throws IOException {
+        // Step 1: Load the segments into the columnar form the planner and aligner work on
+        CompactTranscript transcript = CompactTranscript.of(segments);
+
+        // Strip fillers, caption markers and repeated words locally; the LLM only sees what is left
+        CompactTranscript preCleaned = CompactTranscript.of(preCleaner.cleanTranscript(segments));
+
+        if (structured) {
+            cleanStructured(transcript, preCleaned, listener);
+            return;
         }
-        String allText = fullText.toString();
         
-        // Step 2: Split text into chunks by character count
-        List<String> textChunks = new ArrayList<>();
-        for (int i = 0; i < allText.length(); i += CHARS_PER_CHUNK) {
-            int end = Math.min(i + CHARS_PER_CHUNK, allText.length());
-            
-            // Adjust end to avoid breaking in the middle of a word
-            if (end < allText.length()) {
-                int spacePos = allText.lastIndexOf(" ", end);
-                if (spacePos > i) {
-                    end = spacePos + 1;
+        // Step 2: Pack whole segments into chunks that fill the model's token budget; content-defined
+        // boundaries keep shared passages (intros, re-uploads) chunked identically, so their memo hits
+        List<ChunkPlanner.Chunk> chunks = chunkPlanner.planContentDefined(preCleaned, true, chunkBudget);
+        
+        // Step 3: Clean the text chunks concurrently
+        List<CompletableFuture<String>> futures = submitChunks(chunks);
+
+        try {
+            int c = 0;
+            while (c < chunks.size()) {
+                ChunkPlanner.Chunk chunk = chunks.get(c);
+                StringBuilder cleanedChunk = new StringBuilder(await(futures.get(c++)));
+                // An oversized segment is split into several chunks covering the same single segment
+                while (c < chunks.size() && chunks.get(c).getFromSegment() == chunk.getFromSegment()
+                        && chunks.get(c).getToSegment() == chunk.getToSegment()) {
+                    cleanedChunk.append(' ').append(await(futures.get(c++)));
                 }
+
+                // Step 4: Align the cleaned words with the segments they came from, keeping the original timecodes
+                String[] cleanedSegments = TranscriptAligner.align(
+                        preCleaned.slice(chunk.getFromSegment(), chunk.getToSegment()), true, cleanedChunk.toString());
+                listener.onBatch(batch(transcript, chunk.getFromSegment(), cleanedSegments, 0, cleanedSegments.length));
             }
-            
-            textChunks.add(allText.substring(i, end));
+        } catch (IOException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
         }
-        
-        // Step 3: Clean each text chunk
-        StringBuilder cleanedFullText = new StringBuilder();
-        for (String chunk : textChunks) {
-            String cleanedChunk = cleanTextChunk(chunk);
-            cleanedFullText.append(cleanedChunk).append(" ");
-            
-            // Add delay between API calls
+    }
+
+    /**
+     * Structured mode: cleans each chunk as a JSON array of segments and delivers every
+     * segment as soon as its element of the streamed response has been parsed.
+     */
+    private void cleanStructured(CompactTranscript transcript, CompactTranscript preCleaned,
+                                 BatchListener listener) throws IOException {
+        List<ChunkPlanner.Chunk> chunks = new ArrayList<>();
+        for (ChunkPlanner.Chunk chunk : chunkPlanner.planContentDefined(preCleaned, true, structuredChunkBudget)) {
+            ChunkPlanner.Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            // A segment too large for one chunk is still sent whole; it cannot be split in this mode
+            if (last == null || last.getFromSegment() != chunk.getFromSegment() || last.getToSegment() != chunk.getToSegment()) {
+                chunks.add(chunk);
+            }
+        }
+
+        List<BlockingQueue<ParsedSegment>> parsed = new ArrayList<>(chunks.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(chunks.size());
+        for (ChunkPlanner.Chunk chunk : chunks) {
+            BlockingQueue<ParsedSegment> queue = new LinkedBlockingQueue<>();
+            parsed.add(queue);
+            CompletableFuture<Void> future = chunkPermits.submit(() -> cleanStructuredChunkAsync(preCleaned, chunk, queue));
+            // Whether it succeeded, failed or was cancelled, the chunk ends
+            future.whenComplete((result, error) -> queue.add(ParsedSegment.END));
+            futures.add(future);
+        }
+
+        try {
+            for (int c = 0; c < chunks.size(); c++) {
+                deliverStructuredChunk(transcript, preCleaned, chunks.get(c), parsed.get(c), futures.get(c), listener);
+            }
+        } catch (IOException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * Delivers the segments of one structured chunk in order while they are being parsed.
+     * Segments the model skipped keep their locally pre-cleaned text.
+     */
+    private static void deliverStructuredChunk(CompactTranscript transcript, CompactTranscript preCleaned,
+                                               ChunkPlanner.Chunk chunk, BlockingQueue<ParsedSegment> queue,
+                                               Future<Void> future, BatchListener listener) throws IOException {
+        int from = chunk.getFromSegment();
+        String[] cleaned = new String[chunk.getToSegment() - from];
+        for (int i = 0; i < cleaned.length; i++) {
+            // Segments emptied by pre-cleaning were not sent
+            if (preCleanedText(preCleaned, from + i).isEmpty()) {
+                cleaned[i] = "";
+            }
+        }
+
+        List<ParsedSegment> received = new ArrayList<>();
+        int next = 0;
+        boolean finished = false;
+        while (!finished) {
+            received.clear();
             try {
-                Thread.sleep(1000);
+                received.add(queue.take());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while cleaning transcript chunks");
+            }
+            queue.drainTo(received);
+
+            for (ParsedSegment segment : received) {
+                if (segment == ParsedSegment.END) {
+                    finished = true;
+                } else if (segment.id >= 0 && segment.id < cleaned.length && cleaned[segment.id] == null) {
+                    cleaned[segment.id] = segment.text.trim();
+                }
+            }
+            if (finished) {
+                await(future);
+                for (int i = 0; i < cleaned.length; i++) {
+                    if (cleaned[i] == null) {
+                        cleaned[i] = preCleanedText(preCleaned, from + i);
+                    }
+                }
+            }
+
+            int ready = next;
+            while (ready < cleaned.length && cleaned[ready] != null) {
+                ready++;
+            }
+            if (ready > next) {
+                listener.onBatch(batch(transcript, from, cleaned, next, ready));
+                next = ready;
             }
         }
-        
-        // Step 4: Split cleaned text back into segments based on word proportion
-        String cleanedText = cleanedFullText.toString().trim();
-        String[] originalWords = allText.split("\\s+");
-        String[] cleanedWords = cleanedText.split("\\s+");
-        
-        // Calculate ratio of cleaned words to original words
-        double ratio = (double) cleanedWords.length / originalWords.length;
-        
-        List<TranscriptSegment> result = new ArrayList<>();
-        int currentWordIndex = 0;
-        
-        for (TranscriptSegment originalSegment : segments) {
-            int originalWordCount = originalSegment.getText().split("\\s+").length;
-            int estimatedCleanedWordCount = (int) Math.round(originalWordCount * ratio);
-            estimatedCleanedWordCount = Math.max(1, Math.min(estimatedCleanedWordCount, 
-                                             cleanedWords.length - currentWordIndex));
-            
-            // Create cleaned segment text
-            StringBuilder segmentText = new StringBuilder();
-            for (int i = 0; i < estimatedCleanedWordCount && currentWordIndex < cleanedWords.length; i++) {
-                if (i > 0) segmentText.append(" ");
-                segmentText.append(cleanedWords[currentWordIndex++]);
+    }
+
+    /**
+     * Sends one structured chunk to the model (or replays its memoized response) and
+     * queues every segment as soon as the parser has read it.
+     */
+    private CompletableFuture<Void> cleanStructuredChunkAsync(CompactTranscript preCleaned, ChunkPlanner.Chunk chunk,
+                                                              BlockingQueue<ParsedSegment> queue) {
+        String input;
+        try {
+            input = segmentsJson(preCleaned, chunk);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (input == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        SegmentJsonStreamParser parser = new SegmentJsonStreamParser((id, text) -> queue.add(new ParsedSegment(id, text)));
+
+        // Identical chunks seen before (in this or another video) are not sent again
+        String memoKey = ChunkMemoStore.key(openAIService.getModel(LlmStage.CLEANER), STRUCTURED_PROMPT_VERSION, input);
+        return CompletableFuture.supplyAsync(() -> chunkMemo.get(memoKey), memoExecutor).thenCompose(memoized -> {
+            if (memoized != null) {
+                parser.feed(memoized);
+                parser.end();
+                return CompletableFuture.completedFuture(null);
             }
-            
-            // Create new segment with cleaned text
-            TranscriptSegment newSegment = new TranscriptSegment();
-            newSegment.setStartTime(originalSegment.getStartTime());
-            newSegment.setEndTime(originalSegment.getEndTime());
-            newSegment.setText(originalSegment.getText());
-            newSegment.setNormalizedText(segmentText.toString());
-            result.add(newSegment);
+            return openAIService.getJsonChatCompletionAsync(LlmStage.CLEANER, STRUCTURED_PROMPT + input,
+                    "cleaned_segments", SEGMENTS_SCHEMA, CachePolicy.NONE, parser::feed).thenAcceptAsync(response -> {
+                parser.end();
+
+                // A failed or truncated response is not memoized; its missing segments fall back to the pre-cleaned text
+                if (parser.isComplete()) {
+                    chunkMemo.put(memoKey, response);
+                } else {
+                    System.err.println("Incomplete structured cleaning response: got " + parser.getSegmentCount()
+                            + " of " + (chunk.getToSegment() - chunk.getFromSegment()) + " segments");
+                }
+            }, memoExecutor).exceptionally(error -> {
+                // The LLM gave up (after its retries): the chunk degrades to the pre-cleaned text
+                LlmException failure = llmFailure(error);
+                System.err.println("Structured cleaning failed, keeping pre-cleaned text: " + failure.getMessage());
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Returns the {@link LlmException} behind a failed chunk, rethrowing any other failure
+     * (e.g. cancellation) unchanged.
+     */
+    private static LlmException llmFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof LlmException failure) {
+            return failure;
         }
-        
-        return result;
-    }
-
-    private String cleanTextChunk(String chunk) throws IOException {
-        String prompt = "You are a transcript cleaner focused on removing verbal disfluencies.\n\n" +
-                       "CRITICALLY IMPORTANT:\n" +
-                       "1. Remove ALL filler words including:\n" +
-                       "   - 'uh', 'um', 'er', 'ah', 'eh'\n" +
-                       "   - 'like', 'you know', 'I mean'\n" +
-                       "   - Repeated words and false starts\n\n" +
-                       
-                       "2. DO NOT include ANY markers, tags, or special formatting in your response.\n" +
-                       "   - Remove any [SEGx] or [/SEGx] markers if present\n" +
-                       "   - Return ONLY the cleaned text\n\n" +
-                       
-                       "Example: \"I um actually uh wanted to like you know see if uh we could...\" → \"I actually wanted to see if we could...\"\n\n" +
-                       
-                       "Also fix grammar/punctuation and normalize formatting.\n\n" +
-                       
-                       "Text to clean:\n" + chunk;
-        
-        String cleanedText = openAIService.getChatCompletion(prompt);
-        
-        // Post-process to remove any remaining markers
-        return cleanedText.replaceAll("\\[SEG\\d+\\]|\\[/SEG\\d+\\]", "").trim();
+        throw error instanceof CompletionException completion ? completion : new CompletionException(cause);
     }
 
     /**
-     * Processes a chunk of segments by sending JSON‐serialized segments to the LLM
-     * and parsing back the cleaned JSON array.
+     * Serializes the non-empty segments of a chunk as a compact JSON array of chunk-local ids and texts.
      *
-     * @param chunk the sublist of segments to process
-     * @return the cleaned sublist of TranscriptSegment objects
-     * @throws IOException if JSON parsing of the LLM response fails
-     */
-    private List<TranscriptSegment> processChunk(List<TranscriptSegment> chunk) throws IOException {
-        // Serialize the chunk to JSON
-        String segmentsJson = mapper.writeValueAsString(chunk);
-
-        // Build the prompt
-        StringBuilder prompt = new StringBuilder();
-        prompt.append(SYSTEM_PROMPT).append("\n\n");
-        prompt.append("Raw transcript segments (JSON array):\n");
-        prompt.append(segmentsJson).append("\n\n");
-        prompt.append("Return ONLY the cleaned array in the same JSON format, with 'normalizedText' filled for each segment. Do not include any other text or formatting.");
-
-        // Get the cleaned transcript from the AI
-        String aiResponse = openAIService.getChatCompletion(prompt.toString()).trim();
-
-        // Extract the JSON array from the response
-        String jsonArray = extractJsonArray(aiResponse);
-        
+     * @return the JSON array, or {@code null} if every segment is empty
+     */
+    private String segmentsJson(CompactTranscript preCleaned, ChunkPlanner.Chunk chunk) throws IOException {
+        StringWriter json = new StringWriter();
+        int written = 0;
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(json)) {
+            generator.writeStartArray();
+            for (int i = chunk.getFromSegment(); i < chunk.getToSegment(); i++) {
+                String text = preCleanedText(preCleaned, i);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeNumberField("id", i - chunk.getFromSegment());
+                generator.writeStringField("text", text);
+                generator.writeEndObject();
+                written++;
+            }
+            generator.writeEndArray();
+        }
+        return written == 0 ? null : json.toString();
+    }
+
+    private static String preCleanedText(CompactTranscript preCleaned, int index) {
+        String text = preCleaned.getNormalizedText(index);
+        return text != null ? text : "";
+    }
+
+    /**
+     * Builds a batch of cleaned segments with the original text and timecodes.
+     *
+     * @param transcript the original transcript
+     * @param offset     the transcript index of {@code cleaned[0]}
+     * @param cleaned    the cleaned texts
+     * @param from       the first cleaned text to include
+     * @param to         the end of the cleaned texts to include (exclusive)
+     */
+    private static CompactTranscript batch(CompactTranscript transcript, int offset, String[] cleaned, int from, int to) {
+        CompactTranscript.Builder batch = new CompactTranscript.Builder(to - from);
+        for (int i = from; i < to; i++) {
+            int index = offset + i;
+            batch.add(transcript.getStartTime(index), transcript.getEndTime(index), transcript.getText(index), cleaned[i]);
+        }
+        return batch.build();
+    }
+
+    /**
+     * Starts cleaning all chunks, at most {@code llm.cleaning.parallelism} at a time.
+     *
+     * @param chunks the planned chunks
+     * @return futures of the cleaned chunk texts, index-aligned with {@code chunks}
+     */
+    private List<CompletableFuture<String>> submitChunks(List<ChunkPlanner.Chunk> chunks) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(chunks.size());
+        for (ChunkPlanner.Chunk chunk : chunks) {
+            futures.add(chunkPermits.submit(() -> cleanTextChunkAsync(chunk.getText())));
+        }
+        return futures;
+    }
+
+    /**
+     * Waits for one chunk to be cleaned.
+     *
+     * @param future the chunk's future
+     * @param <T>    the chunk result type
+     * @return the chunk result
+     * @throws IOException if cleaning the chunk failed or the caller was interrupted
+     */
+    private static <T> T await(Future<T> future) throws IOException {
         try {
-            // Parse the AI's response back into a list of TranscriptSegment objects
-            List<TranscriptSegment> cleanedSegments = mapper.readValue(
-                jsonArray,
-                mapper.getTypeFactory().constructCollectionType(List.class, TranscriptSegment.class)
-            );
-            return cleanedSegments;
-        } catch (Exception e) {
-            System.err.println("Failed to parse AI response for chunk: " + aiResponse);
-            throw new IOException("Failed to parse AI response: " + e.getMessage(), e);
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while cleaning transcript chunks");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to clean transcript chunk: " + e.getCause().getMessage(), e.getCause());
         }
     }
 
     /**
-     * Extracts the first JSON array substring from the LLM response.
-     * <p>
-     * Strips markdown fences and locates the array boundaries '[' ... ']'.
-     * </p>
+     * Returns how many chunks are being cleaned and how many wait for a free slot.
      *
-     * @param response the raw text response from the LLM
-     * @return a valid JSON array string
-     * @throws IllegalArgumentException if no valid JSON array is found
-     */
-    private String extractJsonArray(String response) {
-        // Remove any markdown code block markers
-        response = response.replaceAll("```json\\s*", "")
-                         .replaceAll("```\\s*", "")
-                         .trim();
-
-        // Find the first '[' and last ']'
-        int start = response.indexOf('[');
-        int end = response.lastIndexOf(']');
-        
-        if (start == -1 || end == -1 || end <= start) {
-            throw new IllegalArgumentException("No valid JSON array found in response: " + response);
+     * @return the running and queued chunk counts
+     */
+    public Map<String, Object> getStats() {
+        return Map.of("runningChunks", chunkPermits.getRunning(), "queuedChunks", chunkPermits.getQueued());
+    }
+
+    /**
+     * Stops the memo executor when the application context shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        memoExecutor.shutdownNow();
+    }
+
+    /**
+     * A segment parsed from a structured response, identified by its chunk-local id.
+     */
+    private static final class ParsedSegment {
+
+        /**
+         * Marks the end of a chunk's segments, whether or not its cleaning succeeded.
+         */
+        static final ParsedSegment END = new ParsedSegment(-1, "");
+
+        final int id;
+        final String text;
+
+        ParsedSegment(int id, String text) {
+            this.id = id;
+            this.text = text;
         }
-        
-        return response.substring(start, end + 1);
     }
-}
 
+    private CompletableFuture<String> cleanTextChunkAsync(String chunk) {
+        // Identical chunks seen before (in this or another video) are not sent again
+        String memoKey = ChunkMemoStore.key(openAIService.getModel(LlmStage.CLEANER), CLEANING_PROMPT_VERSION, chunk);
+        return CompletableFuture.supplyAsync(() -> chunkMemo.get(memoKey), memoExecutor).thenCompose(memoized -> {
+            if (memoized != null) {
+                return CompletableFuture.completedFuture(memoized);
+            }
+
+            String prompt = CLEANING_PROMPT + chunk;
+
+            return openAIService.getChatCompletionAsync(LlmStage.CLEANER, prompt, CachePolicy.NONE, false).thenApplyAsync(cleanedText -> {
+                // Post-process to remove any remaining markers
+                String result = cleanedText.replaceAll("\\[SEG\\d+\\]|\\[/SEG\\d+\\]", "").trim();
+
+                if (!result.isEmpty()) {
+                    chunkMemo.put(memoKey, result);
+                }
+                return result;
+            }, memoExecutor).exceptionally(error -> {
+                // The LLM gave up (after its retries): keep the pre-cleaned chunk rather than fail the transcript
+                LlmException failure = llmFailure(error);
+                System.err.println("Cleaning failed, keeping pre-cleaned text: " + failure.getMessage());
+                return chunk;
+            });
+        });
+    }
+}
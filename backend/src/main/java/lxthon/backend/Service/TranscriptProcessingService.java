@@ -1,11 +1,18 @@
 package lxthon.backend.Service;
 
-import org.springframework.scheduling.annotation.Async;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
+import lxthon.backend.Domain.CompactTranscript;
 import lxthon.backend.Domain.TranscriptSegment;
+import lxthon.backend.Service.Cleaning.DisfluencyPreCleaner;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry.Artifact;
+import lxthon.backend.Service.Search.TranscriptSearchIndex;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service that orchestrates transcript extraction and cleaning for YouTube videos.
@@ -19,17 +26,34 @@ public class TranscriptProcessingService {
     
     private final VideoService youtubeService;
     private final TranscriptCleanerService transcriptCleanerService;
+    private final InFlightRequestRegistry inFlight;
+    private final TranscriptSearchIndex searchIndex;
+    private final DisfluencyPreCleaner preCleaner;
+
+    /**
+     * Runs streamed cleanings, which block on the LLM for their whole duration.
+     */
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     /**
      * Constructs a new TranscriptProcessingService.
      *
      * @param youtubeService            the service used to fetch raw transcripts
      * @param transcriptCleanerService  the service used to clean and normalize transcripts
+     * @param inFlight                  the registry used to coalesce concurrent cleanings of the same video
+     * @param searchIndex               the full-text index cleaned transcripts are added to
+     * @param preCleaner                the local filler remover backing the fast cleaning mode
      */
     public TranscriptProcessingService(VideoService youtubeService, 
-                                     TranscriptCleanerService transcriptCleanerService) {
+                                     TranscriptCleanerService transcriptCleanerService,
+                                     InFlightRequestRegistry inFlight,
+                                     TranscriptSearchIndex searchIndex,
+                                     DisfluencyPreCleaner preCleaner) {
         this.youtubeService = youtubeService;
         this.transcriptCleanerService = transcriptCleanerService;
+        this.inFlight = inFlight;
+        this.searchIndex = searchIndex;
+        this.preCleaner = preCleaner;
     }
 
     /**
@@ -40,27 +64,111 @@ public class TranscriptProcessingService {
      * <ol>
      *   <li>Fetch raw transcript segments from {@link VideoService}.</li>
      *   <li>Clean and normalize them with {@link TranscriptCleanerService}.</li>
+     *   <li>Add the cleaned transcript to the {@link TranscriptSearchIndex}.</li>
      *   <li>Return a {@link CompletableFuture} wrapping the cleaned list.</li>
      * </ol>
+     * Concurrent requests for the same video share one cleaning run through the
+     * {@link InFlightRequestRegistry}; each caller gets its own future, so cancelling
+     * it does not stop the shared work.
      * </p>
      *
      * @param url the YouTube video URL to process
      * @return a CompletableFuture containing the list of cleaned {@link TranscriptSegment} objects
-     * @throws IOException          if fetching or parsing the transcript fails
-     * @throws InterruptedException if the YouTube retrieval is interrupted
      */
-    @Async
-    public CompletableFuture<List<TranscriptSegment>> getCleanedTranscript(String url)
-            throws IOException, InterruptedException {
+    public CompletableFuture<List<TranscriptSegment>> getCleanedTranscript(String url) {
+        return getCleanedTranscript(url, false);
+    }
+
+    /**
+     * Like {@link #getCleanedTranscript(String)}, optionally cleaning in structured mode,
+     * where segments go to the model as JSON and keep their boundaries.
+     *
+     * @param url        the YouTube video URL to process
+     * @param structured whether to clean segment by segment through structured JSON output
+     * @return a CompletableFuture containing the list of cleaned {@link TranscriptSegment} objects
+     */
+    public CompletableFuture<List<TranscriptSegment>> getCleanedTranscript(String url, boolean structured) {
+        String videoId = VideoIdResolver.resolve(url);
+
+        return inFlight.submit(Artifact.CLEANED_TRANSCRIPT, videoId, structured ? "structured" : "", () -> {
+            // Step 1: Extract raw transcript from YouTube
+            List<TranscriptSegment> rawTranscript = youtubeService.getTranscript(url);
+
+            // Step 2: Clean the transcript using AI
+            List<TranscriptSegment> cleaned = transcriptCleanerService.cleanTranscript(rawTranscript, structured);
+
+            // Step 3: Make the cleaned wording searchable
+            searchIndex.index(videoId, TranscriptSearchIndex.SOURCE_CLEANED, cleaned);
+            return cleaned;
+        });
+    }
+
+    /**
+     * Extracts and cleans the transcript of a YouTube video, delivering the cleaned
+     * segments as they complete: chunk by chunk, or segment by segment in structured mode.
+     * <p>
+     * Unlike {@link #getCleanedTranscript(String)} the work is not shared with concurrent
+     * callers, since each stream has its own listener. Once every batch has been
+     * delivered the cleaned transcript is added to the {@link TranscriptSearchIndex}.
+     * </p>
+     *
+     * @param url        the YouTube video URL to process
+     * @param structured whether to clean segment by segment through structured JSON output
+     * @param listener   receives the cleaned segments in transcript order
+     * @return a CompletableFuture completing once the last batch has been delivered, or
+     *         exceptionally if fetching, cleaning or delivering fails
+     */
+    public CompletableFuture<Void> streamCleanedTranscript(String url, boolean structured,
+                                                           TranscriptCleanerService.BatchListener listener) {
+        String videoId = VideoIdResolver.resolve(url);
+        CompletableFuture<Void> done = new CompletableFuture<>();
 
-        // Step 1: Extract raw transcript from YouTube
-        List<TranscriptSegment> rawTranscript = youtubeService.getTranscript(url);
+        streamExecutor.execute(() -> {
+            try {
+                List<TranscriptSegment> rawTranscript = youtubeService.getTranscript(url);
 
-        // Step 2: Clean the transcript using AI
-        List<TranscriptSegment> cleanedTranscript = transcriptCleanerService.cleanTranscript(rawTranscript);
+                // Keep a compact copy of what was sent, for the search index
+                CompactTranscript.Builder cleaned = new CompactTranscript.Builder(rawTranscript.size());
+                transcriptCleanerService.cleanTranscript(rawTranscript, structured, batch -> {
+                    listener.onBatch(batch);
+                    for (CompactTranscript.SegmentView segment : batch.views()) {
+                        cleaned.add(segment.getStartTime(), segment.getEndTime(), segment.getText(), segment.getNormalizedText());
+                    }
+                });
 
-        // Step 3: Wrap the result in a CompletableFuture
-        return CompletableFuture.completedFuture(cleanedTranscript);
+                searchIndex.index(videoId, TranscriptSearchIndex.SOURCE_CLEANED, cleaned.build());
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Cleans the transcript of a YouTube video locally, without the LLM.
+     * <p>
+     * Only fillers, caption markers and repeated words are removed; punctuation and
+     * wording are left as captioned. Takes milliseconds once the raw transcript is cached.
+     * </p>
+     *
+     * @param url the YouTube video URL
+     * @return the segments with {@code normalizedText} holding the locally cleaned text
+     * @throws IOException          if fetching the transcript fails
+     * @throws InterruptedException if the retrieval is interrupted
+     */
+    public List<TranscriptSegment> getFastCleanedTranscript(String url) throws IOException, InterruptedException {
+        return preCleaner.cleanTranscript(youtubeService.getTranscript(url));
+    }
+
+    /**
+     * Like {@link #getFastCleanedTranscript(String)}, but returns at once.
+     *
+     * @param url the YouTube video URL
+     * @return a future of the locally cleaned segments
+     */
+    public CompletableFuture<List<TranscriptSegment>> getFastCleanedTranscriptAsync(String url) {
+        return youtubeService.getTranscriptAsync(url).thenApply(preCleaner::cleanTranscript);
     }
 
     /**
@@ -75,4 +183,12 @@ public class TranscriptProcessingService {
     public List<TranscriptSegment> getRawTranscript (String url) throws IOException, InterruptedException {
         return youtubeService.getTranscript(url);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Stops running streamed cleanings when the application context shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,157 @@
+package lxthon.backend.Service;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class that maps the many URL shapes a YouTube video can be shared under
+ * to one canonical video identifier.
+ * <p>
+ * Recognised forms include <code>youtube.com/watch?v=ID</code>, <code>youtu.be/ID</code>,
+ * <code>youtube.com/shorts/ID</code>, <code>/embed/ID</code>, <code>/live/ID</code>,
+ * <code>m.</code> and <code>music.</code> hosts, missing protocols and any extra query
+ * parameters (timestamps, playlists, tracking). URLs that are not recognised as YouTube
+ * are keyed by a hash of the trimmed URL so they can still be cached safely.
+ * </p>
+ */
+public final class VideoIdResolver {
+
+    /**
+     * YouTube video IDs are 11 characters from the URL-safe base64 alphabet.
+     */
+    private static final Pattern VIDEO_ID = Pattern.compile("^[A-Za-z0-9_-]{11}$");
+
+    /**
+     * Matches the <code>v</code> parameter inside a query string.
+     */
+    private static final Pattern V_PARAM = Pattern.compile("(?:^|&)v=([A-Za-z0-9_-]{11})(?:&|$)");
+
+    /**
+     * Matches path-style IDs such as <code>/shorts/ID</code> or <code>/embed/ID</code>.
+     */
+    private static final Pattern PATH_ID = Pattern.compile("^/(?:shorts|embed|live|v|e)/([A-Za-z0-9_-]{11})(?:[/?#].*)?$");
+
+    private VideoIdResolver() {}
+
+    /**
+     * Resolves the canonical identifier for the given video URL.
+     *
+     * @param url the video URL in any supported form (or a bare 11-character video ID)
+     * @return the YouTube video ID, or <code>url-&lt;hash&gt;</code> for URLs that are not YouTube videos
+     * @throws IllegalArgumentException if the URL is null or blank
+     */
+    public static String resolve(String url) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("Video URL is missing or blank.");
+        }
+
+        String trimmed = url.trim();
+        String youtubeId = extractYoutubeId(trimmed);
+        if (youtubeId != null) {
+            return youtubeId;
+        }
+
+        return "url-" + sha256(trimmed).substring(0, 32);
+    }
+
+    /**
+     * Returns whether the given identifier is a YouTube video ID (as opposed to a hashed fallback key).
+     *
+     * @param videoId the identifier returned by {@link #resolve(String)}
+     * @return true if it is an 11-character YouTube video ID
+     */
+    public static boolean isYoutubeId(String videoId) {
+        return videoId != null && VIDEO_ID.matcher(videoId).matches();
+    }
+
+    /**
+     * Builds the URL that should be handed to yt-dlp for a resolved video.
+     * <p>
+     * YouTube IDs are turned into a clean <code>watch?v=</code> URL so every variant of
+     * the same video produces an identical command line; anything else is returned with
+     * an <code>https://</code> prefix added when the protocol is missing.
+     * </p>
+     *
+     * @param url     the URL as supplied by the client
+     * @param videoId the identifier returned by {@link #resolve(String)}
+     * @return the URL to pass to yt-dlp
+     */
+    public static String canonicalUrl(String url, String videoId) {
+        if (isYoutubeId(videoId)) {
+            return "https://www.youtube.com/watch?v=" + videoId;
+        }
+        String trimmed = url.trim();
+        if (!trimmed.startsWith("http://") && !trimmed.startsWith("https://")) {
+            return "https://" + trimmed;
+        }
+        return trimmed;
+    }
+
+    private static String extractYoutubeId(String url) {
+        if (VIDEO_ID.matcher(url).matches()) {
+            return url;
+        }
+
+        String withProtocol = url.startsWith("http://") || url.startsWith("https://") ? url : "https://" + url;
+        URI uri;
+        try {
+            uri = URI.create(withProtocol);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        String host = uri.getHost();
+        if (host == null) {
+            return null;
+        }
+        host = host.toLowerCase();
+        if (host.startsWith("www.")) {
+            host = host.substring(4);
+        }
+
+        String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+
+        if (host.equals("youtu.be")) {
+            String id = path.startsWith("/") ? path.substring(1) : path;
+            int slash = id.indexOf('/');
+            if (slash >= 0) {
+                id = id.substring(0, slash);
+            }
+            return VIDEO_ID.matcher(id).matches() ? id : null;
+        }
+
+        if (!host.equals("youtube.com") && !host.endsWith(".youtube.com")
+                && !host.equals("youtube-nocookie.com") && !host.endsWith(".youtube-nocookie.com")) {
+            return null;
+        }
+
+        String query = uri.getRawQuery();
+        if (query != null) {
+            Matcher v = V_PARAM.matcher(query);
+            if (v.find()) {
+                return v.group(1);
+            }
+        }
+
+        Matcher p = PATH_ID.matcher(path);
+        if (p.matches()) {
+            return p.group(1);
+        }
+
+        return null;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
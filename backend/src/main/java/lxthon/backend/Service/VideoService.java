@@ -1,22 +1,35 @@
 package lxthon.backend.Service;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.nio.file.Files;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import java.time.Duration;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import lxthon.backend.Domain.TranscriptSegment;
+import lxthon.backend.Domain.VideoBundle;
+import lxthon.backend.Service.Cache.TranscriptCache;
+import lxthon.backend.Service.Search.TranscriptSearchIndex;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry.Artifact;
+import lxthon.backend.Service.Process.YtDlpExecutor;
+import lxthon.backend.Service.Subtitles.Json3SubtitleParser;
+import lxthon.backend.Service.Subtitles.YouTubeCaptionClient;
 
 /**
  * Service for interacting with YouTube videos via yt-dlp:
@@ -25,23 +38,91 @@ import lxthon.backend.Domain.TranscriptSegment;
  *   <li>Fetch metadata (JSON dump) for a video.</li>
  *   <li>Extract auto-generated English subtitles and parse them into {@link TranscriptSegment} objects.</li>
  * </ul>
+ * Transcripts are cached per canonical video ID in a {@link TranscriptCache}, so repeated
+ * requests for the same video (under any URL variant) skip yt-dlp entirely. Metadata and
+ * subtitles are fetched together in a single yt-dlp run and kept as a {@link VideoBundle}.
  */
 @Service
 public class VideoService {
+
+    private static final Logger log = LoggerFactory.getLogger(VideoService.class);
     
-    private final String ytDlpPath;
+    private final YtDlpExecutor ytDlp;
+
+    private final TranscriptCache transcriptCache;
+
+    private final InFlightRequestRegistry inFlight;
+
+    private final TranscriptSearchIndex searchIndex;
+
+    private final YouTubeCaptionClient captionClient;
+
+    /**
+     * Whether the native caption client is tried before yt-dlp.
+     */
+    private final boolean nativeCaptionsEnabled;
+
+    private final AtomicLong nativeFetches = new AtomicLong();
+    private final AtomicLong nativeMillis = new AtomicLong();
+    private final AtomicLong nativeFallbacks = new AtomicLong();
+    private final AtomicLong ytDlpFetches = new AtomicLong();
+    private final AtomicLong ytDlpMillis = new AtomicLong();
+
+    /**
+     * Recently fetched bundles, kept so the metadata and transcript of a video share one
+     * yt-dlp run. Bounded by entry count since the raw metadata JSON can be large.
+     */
+    private final LinkedHashMap<String, TimedBundle> bundleCache;
+
+    private final Duration bundleTtl;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Deadline for full video downloads, which take far longer than metadata or subtitle fetches.
+     */
+    private final Duration downloadTimeout;
 
     /**
-     * Constructs a VideoService using a default yt-dlp executable path.
+     * Constructs a VideoService.
      * <p>
-     * You can override this path by modifying the constructor or
-     * loading from configuration in application.properties.
+     * The yt-dlp executable path, concurrency limit and deadlines are configured through
+     * the <code>ytdlp.*</code> properties in application.properties.
      * </p>
+     *
+     * @param ytDlp                  the executor that runs yt-dlp processes
+     * @param transcriptCache        the cache consulted before extracting subtitles
+     * @param inFlight               the registry used to coalesce concurrent extractions of the same video
+     * @param captionClient          the pure Java caption client used by the native transcript backend
+     * @param searchIndex            the full-text index every fetched transcript is added to
+     * @param transcriptBackend      <code>native</code> to try the caption client before yt-dlp, <code>yt-dlp</code> otherwise
+     * @param downloadTimeoutSeconds the deadline for {@link #downloadVideo(String, String)}
+     * @param bundleCacheSize        the number of video bundles kept in memory
+     * @param bundleTtlMinutes       how long a bundle's metadata is considered fresh
      */
-    public VideoService() {
-        // You can configure this in application.properties
-        this.ytDlpPath = "yt-dlp"; // If yt-dlp is in PATH
-        // Or use absolute path like: "C:\\path\\to\\yt-dlp.exe" for Windows
+    public VideoService(YtDlpExecutor ytDlp,
+                        TranscriptCache transcriptCache,
+                        InFlightRequestRegistry inFlight,
+                        YouTubeCaptionClient captionClient,
+                        TranscriptSearchIndex searchIndex,
+                        @Value("${transcript.backend:native}") String transcriptBackend,
+                        @Value("${ytdlp.download-timeout-seconds:1800}") long downloadTimeoutSeconds,
+                        @Value("${video.bundle.cache-size:64}") int bundleCacheSize,
+                        @Value("${video.bundle.ttl-minutes:60}") long bundleTtlMinutes) {
+        this.ytDlp = ytDlp;
+        this.transcriptCache = transcriptCache;
+        this.inFlight = inFlight;
+        this.captionClient = captionClient;
+        this.searchIndex = searchIndex;
+        this.nativeCaptionsEnabled = "native".equalsIgnoreCase(transcriptBackend.trim());
+        this.downloadTimeout = Duration.ofSeconds(downloadTimeoutSeconds);
+        this.bundleTtl = Duration.ofMinutes(bundleTtlMinutes);
+        this.bundleCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TimedBundle> eldest) {
+                return size() > bundleCacheSize;
+            }
+        };
     }
 
     /**
@@ -55,16 +136,19 @@ public class VideoService {
      */
     public String downloadVideo(String url, String format) throws IOException, InterruptedException {
         List<String> command = new ArrayList<>();
-        command.add(ytDlpPath);
         command.add(url);
         command.add("-f");
         command.add(format != null ? format : "best");
         
-        return executeCommand(command);
+        return ytDlp.run(command, downloadTimeout).getCombinedOutput();
     }
 
     /**
      * Retrieves metadata for the specified YouTube video as a JSON string.
+     * <p>
+     * Served from the video's {@link VideoBundle}, so it shares its yt-dlp run with
+     * the transcript.
+     * </p>
      *
      * @param url the YouTube video URL
      * @return a JSON dump of video metadata (title, duration, formats, etc.)
@@ -72,39 +156,219 @@ public class VideoService {
      * @throws InterruptedException if the metadata fetch is interrupted
      */
     public String getVideoInfo(String url) throws IOException, InterruptedException {
-        List<String> command = new ArrayList<>();
-        command.add(ytDlpPath);
-        command.add(url);
-        command.add("--dump-json");
-        
-        return executeCommand(command);
+        return getVideoBundle(url).getInfoJson();
+    }
+
+    /**
+     * Retrieves the metadata, chapters, caption languages and English transcript of a
+     * video, running yt-dlp at most once per video while the bundle is cached.
+     *
+     * @param url the YouTube video URL
+     * @return the video bundle
+     * @throws IOException          if an I/O error occurs during execution
+     * @throws InterruptedException if the extraction is interrupted
+     */
+    public VideoBundle getVideoBundle(String url) throws IOException, InterruptedException {
+        String videoId = VideoIdResolver.resolve(url);
+        return getVideoBundle(videoId, VideoIdResolver.canonicalUrl(url, videoId));
+    }
+
+    private VideoBundle getVideoBundle(String videoId, String canonicalUrl) throws IOException, InterruptedException {
+        VideoBundle cached = getCachedBundle(videoId);
+        if (cached != null) {
+            return cached;
+        }
+
+        return inFlight.join(Artifact.VIDEO_BUNDLE, videoId, "", () -> {
+            VideoBundle fresh = getCachedBundle(videoId);
+            if (fresh != null) {
+                return fresh;
+            }
+
+            Extraction extraction = extractBundle(videoId, canonicalUrl);
+            VideoBundle bundle = extraction.bundle;
+            if (!bundle.getSegments().isEmpty()) {
+                bundle.setSegments(storeTranscript(videoId, bundle.getSegments()));
+            }
+            if (extraction.subtitlesFetched) {
+                // A failed subtitle download is retried on the next request rather than cached as "no captions"
+                synchronized (bundleCache) {
+                    bundleCache.put(videoId, new TimedBundle(bundle, System.currentTimeMillis()));
+                }
+            }
+            return bundle;
+        });
+    }
+
+    private VideoBundle getCachedBundle(String videoId) {
+        synchronized (bundleCache) {
+            TimedBundle timed = bundleCache.get(videoId);
+            if (timed == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - timed.fetchedAt > bundleTtl.toMillis()) {
+                // Stream URLs and view counts in the metadata go stale
+                bundleCache.remove(videoId);
+                return null;
+            }
+            return timed.bundle;
+        }
     }
 
     /**
      * Extracts auto-generated English subtitles from the video and converts
      * them into a list of {@link TranscriptSegment}.
+     * <p>
+     * The URL is first resolved to its canonical video ID; if a transcript for that
+     * ID is cached (in memory or on disk) it is returned without running yt-dlp.
+     * Concurrent misses for the same video share a single extraction, and non-empty
+     * results are added to the cache.
+     * </p>
      *
      * @param url the YouTube video URL
-     * @return a list of TranscriptSegment objects with start/end times and text
+     * @return an unmodifiable list of TranscriptSegment objects with start/end times and text
      * @throws IOException          if reading or parsing subtitle files fails
      * @throws InterruptedException if the subtitle extraction process is interrupted
      */
     public List<TranscriptSegment> getTranscript(String url) throws IOException, InterruptedException {
-        // Ensure URL has proper protocol
-        if (!url.startsWith("http://") && !url.startsWith("https://")) {
-            url = "https://" + url;
+        String videoId = VideoIdResolver.resolve(url);
+
+        List<TranscriptSegment> cached = transcriptCache.get(videoId);
+        if (cached != null) {
+            searchIndex.indexIfAbsent(videoId, TranscriptSearchIndex.SOURCE_RAW, cached);
+            return cached;
         }
-        
+
+        String canonicalUrl = VideoIdResolver.canonicalUrl(url, videoId);
+        return inFlight.join(Artifact.RAW_TRANSCRIPT, videoId, "", () -> loadTranscript(videoId, canonicalUrl));
+    }
+
+    /**
+     * Like {@link #getTranscript(String)}, but returns at once: cache hits complete
+     * immediately, misses complete when the shared extraction does.
+     *
+     * @param url the YouTube video URL
+     * @return a future of the transcript segments, failing as {@link #getTranscript(String)} would throw
+     */
+    public CompletableFuture<List<TranscriptSegment>> getTranscriptAsync(String url) {
+        String videoId;
+        try {
+            videoId = VideoIdResolver.resolve(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        List<TranscriptSegment> cached = transcriptCache.get(videoId);
+        if (cached != null) {
+            searchIndex.indexIfAbsent(videoId, TranscriptSearchIndex.SOURCE_RAW, cached);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        String canonicalUrl = VideoIdResolver.canonicalUrl(url, videoId);
+        return inFlight.submit(Artifact.RAW_TRANSCRIPT, videoId, "", () -> loadTranscript(videoId, canonicalUrl));
+    }
+
+    /**
+     * Fetches and caches a transcript on behalf of all coalesced callers.
+     */
+    private List<TranscriptSegment> loadTranscript(String videoId, String canonicalUrl) throws IOException, InterruptedException {
+        // A previous leader may have filled the cache while this request was queued
+        List<TranscriptSegment> fresh = transcriptCache.get(videoId);
+        if (fresh != null) {
+            return fresh;
+        }
+
+        return fetchTranscript(videoId, canonicalUrl);
+    }
+
+    /**
+     * Caches a freshly fetched, non-empty transcript and adds it to the search index.
+     * Every fetched transcript passes through here exactly once.
+     *
+     * @return the cached form of the segments
+     */
+    private List<TranscriptSegment> storeTranscript(String videoId, List<TranscriptSegment> segments) {
+        List<TranscriptSegment> stored = transcriptCache.put(videoId, segments);
+        searchIndex.index(videoId, TranscriptSearchIndex.SOURCE_RAW, stored);
+        return stored;
+    }
+
+    /**
+     * Returns per-backend fetch counts and average latencies, so the native caption
+     * client can be compared with the yt-dlp path on live traffic. yt-dlp figures count
+     * process runs only, not bundles served from the cache.
+     *
+     * @return a map of statistic name to value
+     */
+    public Map<String, Object> getTranscriptBackendStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nativeEnabled", nativeCaptionsEnabled);
+        stats.put("nativeFetches", nativeFetches.get());
+        stats.put("nativeAvgMillis", nativeFetches.get() == 0 ? 0 : nativeMillis.get() / nativeFetches.get());
+        stats.put("nativeFallbacks", nativeFallbacks.get());
+        stats.put("ytDlpFetches", ytDlpFetches.get());
+        stats.put("ytDlpAvgMillis", ytDlpFetches.get() == 0 ? 0 : ytDlpMillis.get() / ytDlpFetches.get());
+        return stats;
+    }
+
+    /**
+     * Fetches a transcript from the configured backend and stores it.
+     * <p>
+     * When <code>transcript.backend=native</code> and the video is on YouTube, the
+     * {@link YouTubeCaptionClient} is tried first; otherwise the transcript comes from
+     * the video's {@link VideoBundle}, so the yt-dlp run also serves later metadata requests.
+     * Bundles store their own transcript when they are extracted. Empty transcripts are
+     * not cached, as captions are often published some time after upload.
+     * </p>
+     */
+    private List<TranscriptSegment> fetchTranscript(String videoId, String url) throws IOException, InterruptedException {
+        if (nativeCaptionsEnabled && VideoIdResolver.isYoutubeId(videoId)) {
+            long start = System.nanoTime();
+            try {
+                List<TranscriptSegment> segments = captionClient.fetchTranscript(videoId);
+                if (!segments.isEmpty()) {
+                    nativeFetches.incrementAndGet();
+                    nativeMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return storeTranscript(videoId, segments);
+                }
+                log.debug("Native caption client found no English track, falling back to yt-dlp: {}", videoId);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Native caption client failed, falling back to yt-dlp: {}", e.getMessage());
+            }
+            nativeFallbacks.incrementAndGet();
+        }
+
+        return getVideoBundle(videoId, url).getSegments();
+    }
+
+    /**
+     * Runs yt-dlp once to write the metadata JSON and the auto-generated English
+     * subtitles of a video into a temporary directory, and parses both into a bundle.
+     * <p>
+     * A subtitle download failure does not fail the extraction as long as the metadata
+     * was written: the bundle is returned with no segments and marked as incomplete.
+     * </p>
+     *
+     * @param videoId the canonical video ID
+     * @param url     the URL to hand to yt-dlp
+     * @return the bundle; its segment list is empty if the video has no English subtitles
+     *         or they could not be downloaded
+     * @throws IOException          if reading or parsing the written files fails
+     * @throws InterruptedException if the extraction process is interrupted
+     */
+    private Extraction extractBundle(String videoId, String url) throws IOException, InterruptedException {
         // Create a temporary directory
-        File tempDir = Files.createTempDirectory("yt-dlp-subtitles").toFile();
-        System.out.println("Creating transcript files in directory: " + tempDir.getAbsolutePath());
+        File tempDir = Files.createTempDirectory("yt-dlp-bundle").toFile();
+        log.debug("Creating bundle files in directory: {}", tempDir.getAbsolutePath());
         
         try {           
-            // Try to get English subtitles
+            // Metadata and English subtitles in one run
             List<String> command = new ArrayList<>();
-            command.add(ytDlpPath);
             command.add(url);
             command.add("--skip-download");
+            command.add("--ignore-errors");
+            command.add("--write-info-json");
+            command.add("--no-write-playlist-metafiles");
             command.add("--write-auto-sub");
             command.add("--sub-lang");
             command.add("en");
@@ -113,44 +377,57 @@ public class VideoService {
             command.add("--output");
             command.add(tempDir.getAbsolutePath() + File.separator + "%(id)s.%(ext)s");
             
-            System.out.println("Executing command: " + String.join(" ", command));
+            log.debug("Executing command: {}", String.join(" ", command));
             
             // Execute the command
-            String output = executeCommand(command);
-            System.out.println("yt-dlp output: " + output);
-            
-            // Find the JSON file
-            File[] allFiles = tempDir.listFiles();
-            System.out.println("All files in temp directory: " + Arrays.toString(allFiles));
-            
-            File[] jsonFiles = tempDir.listFiles((dir, name) -> name.endsWith(".json"));
-            
-            if (jsonFiles == null || jsonFiles.length == 0) {
-                // Try to find any subtitle file
-                File[] subFiles = tempDir.listFiles((dir, name) -> 
-                    name.contains(".en.json") || name.endsWith(".json"));
-                
-                if (subFiles != null && subFiles.length > 0) {
-                    jsonFiles = subFiles;
-                } else {
-                    System.out.println("No subtitles found for video: " + url);
-                    return Collections.emptyList();
+            boolean subtitlesFetched = true;
+            RuntimeException failure = null;
+            long start = System.nanoTime();
+            try {
+                String output = ytDlp.run(command).getCombinedOutput();
+                log.debug("yt-dlp output: {}", output);
+            } catch (RuntimeException e) {
+                // With --ignore-errors yt-dlp still exits non-zero when only the subtitles failed
+                subtitlesFetched = false;
+                failure = e;
+            } finally {
+                ytDlpFetches.incrementAndGet();
+                ytDlpMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+            File[] infoFiles = tempDir.listFiles((dir, name) -> name.endsWith(".info.json"));
+            if (infoFiles == null || infoFiles.length == 0) {
+                if (failure != null) {
+                    throw failure;
                 }
+                throw new IOException("yt-dlp did not write metadata for video: " + url);
             }
-            
-            File subtitleFile = jsonFiles[0];
-            System.out.println("Processing subtitle file: " + subtitleFile.getName() + " (size: " + subtitleFile.length() + " bytes)");
-            
-            if (subtitleFile.length() == 0) {
-                System.out.println("Subtitle file is empty for video: " + url);
-                return Collections.emptyList();
+            String infoJson = Files.readString(infoFiles[0].toPath());
+
+            // Subtitles are written as <id>.en.json3 (older yt-dlp versions may use .json)
+            File[] subFiles = tempDir.listFiles((dir, name) ->
+                    name.contains(".en.") && (name.endsWith(".json3") || name.endsWith(".json"))
+                            && !name.endsWith(".info.json"));
+
+            List<TranscriptSegment> segments;
+            if (!subtitlesFetched) {
+                log.warn("yt-dlp failed to fetch subtitles, returning metadata only for video: {}", url);
+                log.debug("yt-dlp failure", failure);
+                segments = Collections.emptyList();
+            } else if (subFiles == null || subFiles.length == 0) {
+                log.debug("No subtitles found for video: {}", url);
+                segments = Collections.emptyList();
+            } else if (subFiles[0].length() == 0) {
+                log.debug("Subtitle file is empty for video: {}", url);
+                segments = Collections.emptyList();
+            } else {
+                File subtitleFile = subFiles[0];
+                log.debug("Processing subtitle file: {} (size: {} bytes)", subtitleFile.getName(), subtitleFile.length());
+                segments = Json3SubtitleParser.parse(subtitleFile);
+                log.debug("Successfully extracted {} transcript segments", segments.size());
             }
-            
-            // Parse the JSON file
-            List<TranscriptSegment> segments = parseJsonSubtitleFile(subtitleFile);
-            
-            System.out.println("Successfully extracted " + segments.size() + " transcript segments");
-            return segments;
+
+            return new Extraction(toBundle(videoId, infoJson, segments), subtitlesFetched);
             
         } finally {
             // Clean up temp directory
@@ -163,98 +440,65 @@ public class VideoService {
                 }
                 tempDir.delete();
             } catch (Exception e) {
-                System.out.println("Warning: Could not clean up temp files: " + e.getMessage());
+                log.warn("Could not clean up temp files: {}", e.getMessage());
             }
         }
     }
 
     /**
-     * Parses a yt-dlp-generated subtitle JSON file into TranscriptSegment objects.
-     *
-     * @param jsonFile the subtitle JSON file
-     * @return a list of TranscriptSegment with startTime, endTime, and text
-     * @throws IOException if file reading or JSON parsing fails
+     * Reads the typed fields out of yt-dlp's metadata JSON.
      */
-    private List<TranscriptSegment> parseJsonSubtitleFile(File jsonFile) throws IOException {
-        List<TranscriptSegment> segments = new ArrayList<>();
-        
-        try (FileReader reader = new FileReader(jsonFile)) {
-            JSONObject jsonSubtitles = new JSONObject(new JSONTokener(reader));
-            JSONArray events = jsonSubtitles.getJSONArray("events");
-            
-            for (int i = 0; i < events.length(); i++) {
-                JSONObject event = events.getJSONObject(i);
-                
-                // Skip events without text segments
-                if (!event.has("segs")) {
-                    continue;
-                }
-                
-                // Extract start and end times (in milliseconds)
-                double startTime = event.has("tStartMs") ? 
-                        event.getDouble("tStartMs") / 1000.0 : 0;
-                double endTime = event.has("dDurationMs") ? 
-                        startTime + (event.getDouble("dDurationMs") / 1000.0) : 0;
-                
-                // Extract text from segments
-                StringBuilder textBuilder = new StringBuilder();
-                JSONArray segs = event.getJSONArray("segs");
-                
-                for (int j = 0; j < segs.length(); j++) {
-                    JSONObject seg = segs.getJSONObject(j);
-                    if (seg.has("utf8")) {
-                        String text = seg.getString("utf8");
-                        if (text != null && !text.trim().isEmpty()) {
-                            textBuilder.append(text);
-                        }
-                    }
-                }
-                
-                String finalText = textBuilder.toString().trim();
-                if (!finalText.isEmpty()) {
-                    TranscriptSegment segment = new TranscriptSegment();
-                    segment.setStartTime(startTime);
-                    segment.setEndTime(endTime);
-                    segment.setText(finalText);
-                    segments.add(segment);
-                }
-            }
+    private VideoBundle toBundle(String videoId, String infoJson, List<TranscriptSegment> segments) throws IOException {
+        JsonNode info = mapper.readTree(infoJson);
+
+        List<VideoBundle.Chapter> chapters = new ArrayList<>();
+        for (JsonNode chapter : info.path("chapters")) {
+            chapters.add(new VideoBundle.Chapter(
+                    chapter.path("title").asText(""),
+                    chapter.path("start_time").asDouble(0),
+                    chapter.path("end_time").asDouble(0)));
         }
-        
-        return segments;
+
+        return new VideoBundle(
+                videoId,
+                info.path("title").asText(""),
+                info.path("duration").asDouble(0),
+                chapters,
+                fieldNames(info.path("subtitles")),
+                fieldNames(info.path("automatic_captions")),
+                segments,
+                infoJson);
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
     }
 
     /**
-     * Executes the given command line, capturing both standard and error output.
-     *
-     * @param command the list of command and arguments to run
-     * @return the combined console output
-     * @throws IOException          if an I/O error occurs
-     * @throws InterruptedException if the process is interrupted
+     * A freshly extracted bundle, and whether its subtitles were fetched without error.
      */
-    private String executeCommand(List<String> command) throws IOException, InterruptedException {
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        Process process = processBuilder.start();
-        
-        // Read the output
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        StringBuilder output = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            output.append(line).append("\n");
-        }
-        
-        // Read any errors
-        BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-        while ((line = errorReader.readLine()) != null) {
-            output.append("Error: ").append(line).append("\n");
+    private static final class Extraction {
+        private final VideoBundle bundle;
+        private final boolean subtitlesFetched;
+
+        private Extraction(VideoBundle bundle, boolean subtitlesFetched) {
+            this.bundle = bundle;
+            this.subtitlesFetched = subtitlesFetched;
         }
-        
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("yt-dlp process failed with exit code: " + exitCode + "\nOutput: " + output);
+    }
+
+    /**
+     * A cached bundle together with the time it was fetched.
+     */
+    private static final class TimedBundle {
+        private final VideoBundle bundle;
+        private final long fetchedAt;
+
+        private TimedBundle(VideoBundle bundle, long fetchedAt) {
+            this.bundle = bundle;
+            this.fetchedAt = fetchedAt;
         }
-        
-        return output.toString();
     }
-} 
+}
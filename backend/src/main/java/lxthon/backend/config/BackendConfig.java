@@ -0,0 +1,93 @@
+package lxthon.backend.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import lxthon.backend.Service.Llm.AzureInferenceLlmBackend;
+import lxthon.backend.Service.Llm.LlmBackendFactory;
+import lxthon.backend.Service.PodcastGeneration.ElevenLabsSpeechBackend;
+import lxthon.backend.Service.PodcastGeneration.SpeechBackend;
+import lxthon.backend.Service.Simulation.SimulatedLlmBackend;
+import lxthon.backend.Service.Simulation.SimulatedSpeechBackend;
+import lxthon.backend.Service.Simulation.SimulationProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration choosing the external services the backend talks to.
+ * <p>
+ * <code>llm.backend</code> and <code>tts.backend</code> select the real APIs (the
+ * default) or the in-process simulators, which need no API keys or network and answer
+ * deterministically with configurable latency, errors and throttling, for offline load
+ * and regression tests. All the LLM client-side machinery (rate limiting, adaptive
+ * concurrency, retries, hedging, caching) runs unchanged on top of either.
+ * </p>
+ */
+@Configuration
+public class BackendConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(BackendConfig.class);
+
+    /**
+     * Creates the factory of language model transports, one per model that
+     * {@link lxthon.backend.Service.Llm.LlmRouter} routes a pipeline stage to.
+     *
+     * @param backend           <code>openai</code> for the configured inference endpoints, <code>simulator</code> for the simulator
+     * @param medianLatencyMs   the simulator's median latency per request
+     * @param p99LatencyMs      the simulator's 99th percentile latency per request
+     * @param errorRate         the share of simulated requests failing with a server error
+     * @param throttleRate      the share of simulated requests throttled at random
+     * @param requestsPerMinute the simulator's rate limit per model, 0 for none
+     * @param seed              the seed making simulated runs reproducible
+     * @return the factory
+     */
+    @Bean
+    public LlmBackendFactory llmBackendFactory(@Value("${llm.backend:openai}") String backend,
+                                               @Value("${simulator.llm.latency-median-ms:1500}") long medianLatencyMs,
+                                               @Value("${simulator.llm.latency-p99-ms:8000}") long p99LatencyMs,
+                                               @Value("${simulator.llm.error-rate:0.0}") double errorRate,
+                                               @Value("${simulator.llm.throttle-rate:0.0}") double throttleRate,
+                                               @Value("${simulator.llm.requests-per-minute:0}") int requestsPerMinute,
+                                               @Value("${simulator.seed:42}") long seed) {
+        if ("simulator".equalsIgnoreCase(backend.trim())) {
+            log.warn("Using the simulated LLM backend; responses are synthetic");
+            return (endpoint, model, apiKey, timeout) -> new SimulatedLlmBackend(new SimulationProfile(medianLatencyMs,
+                    p99LatencyMs, errorRate, throttleRate, requestsPerMinute, seed), model);
+        }
+        return (endpoint, model, apiKey, timeout) -> new AzureInferenceLlmBackend(apiKey, endpoint, model, timeout);
+    }
+
+    /**
+     * Creates the text-to-speech transport.
+     *
+     * @param backend           <code>elevenlabs</code> for the ElevenLabs API, <code>simulator</code> for the simulator
+     * @param dotenv            the <code>.env</code> variables, checked for <code>ELEVEN_LABS_API_KEY</code>
+     * @param medianLatencyMs   the simulator's median latency per line of speech
+     * @param p99LatencyMs      the simulator's 99th percentile latency per line of speech
+     * @param errorRate         the share of simulated requests failing with a server error
+     * @param throttleRate      the share of simulated requests throttled
+     * @param requestsPerMinute the simulator's rate limit, 0 for none
+     * @param seed              the seed making simulated runs reproducible
+     * @return the transport
+     */
+    @Bean
+    public SpeechBackend speechBackend(@Value("${tts.backend:elevenlabs}") String backend, Dotenv dotenv,
+                                       @Value("${simulator.tts.latency-median-ms:700}") long medianLatencyMs,
+                                       @Value("${simulator.tts.latency-p99-ms:3000}") long p99LatencyMs,
+                                       @Value("${simulator.tts.error-rate:0.0}") double errorRate,
+                                       @Value("${simulator.tts.throttle-rate:0.0}") double throttleRate,
+                                       @Value("${simulator.tts.requests-per-minute:0}") int requestsPerMinute,
+                                       @Value("${simulator.seed:42}") long seed) {
+        if ("simulator".equalsIgnoreCase(backend.trim())) {
+            log.warn("Using the simulated speech backend; audio is silent");
+            return new SimulatedSpeechBackend(new SimulationProfile(medianLatencyMs, p99LatencyMs,
+                    errorRate, throttleRate, requestsPerMinute, seed));
+        }
+        String key = dotenv.get("ELEVEN_LABS_API_KEY");
+        if (key == null || key.trim().isEmpty()) {
+            key = System.getenv("ELEVEN_LABS_API_KEY");
+        }
+        return new ElevenLabsSpeechBackend(key);
+    }
+}
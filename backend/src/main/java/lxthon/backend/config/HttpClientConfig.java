@@ -0,0 +1,35 @@
+package lxthon.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Spring configuration providing the application's shared JDK {@link HttpClient}.
+ * <p>
+ * A single client keeps one connection pool (and HTTP/2 sessions) for all outbound
+ * calls, instead of paying connection and TLS setup on every request. The client is
+ * thread-safe and meant to be injected wherever plain HTTP calls are made.
+ * </p>
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Creates the shared {@link HttpClient}.
+     *
+     * @param connectTimeoutSeconds the TCP/TLS connect timeout
+     * @return a pooled HTTP client that prefers HTTP/2 and follows normal redirects
+     */
+    @Bean
+    public HttpClient httpClient(@Value("${http.client.connect-timeout-seconds:10}") long connectTimeoutSeconds) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .build();
+    }
+}
@@ -3,11 +3,17 @@ package lxthon.backend.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Configuration properties for connecting to the OpenAI API.
  * <p>
  * Reads properties prefixed with <code>openai</code> from <code>application.properties</code>
- * or environment variables. Provides the API key, endpoint URL, and model identifier.
+ * or environment variables. Provides the API key, endpoint URL, model identifier and
+ * request timeout, and per pipeline stage (see {@link lxthon.backend.Service.Llm.LlmStage})
+ * optional overrides of them, e.g. <code>openai.stages.cleaner.model=openai/gpt-4o-mini</code>.
  * </p>
  */
 @Configuration
@@ -26,21 +32,35 @@ public class OpenAIConfig {
      * The base URL for the OpenAI API endpoint.
      * <p>
      * Corresponds to the property <code>openai.endpoint</code>.
-     * Example: <code>https://api.openai.com/v1/chat/completions</code>
+     * Defaults to the GitHub Models inference endpoint.
      * </p>
      */
-    private String endpoint;
+    private String endpoint = "https://models.github.ai/inference";
 
     /**
      * The identifier of the model to use for completions.
      * <p>
      * Corresponds to the property <code>openai.model</code>.
-     * Example: <code>gpt-4</code> or <code>gpt-4-o-mini</code>.
+     * Example: <code>openai/gpt-4o</code> (the default) or <code>openai/gpt-4o-mini</code>.
      * </p>
      */
-    private String model;
+    private String model = "openai/gpt-4o";
 
+    /**
+     * How long a single completion may take, including streaming.
+     * <p>
+     * Corresponds to the property <code>openai.timeout</code>, e.g. <code>5m</code>.
+     * </p>
+     */
+    private Duration timeout = Duration.ofMinutes(5);
 
+    /**
+     * Overrides per pipeline stage, keyed by {@link lxthon.backend.Service.Llm.LlmStage#getKey()}.
+     * <p>
+     * Corresponds to the properties <code>openai.stages.&lt;stage&gt;.*</code>.
+     * </p>
+     */
+    private Map<String, Stage> stages = new LinkedHashMap<>();
 
     /**
      * Returns the configured API key.
@@ -95,4 +115,162 @@ public class OpenAIConfig {
     public void setModel(String model) {
         this.model = model;
     }
+
+    /**
+     * Returns the default request timeout.
+     *
+     * @return the timeout of a single completion
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the default request timeout.
+     *
+     * @param timeout the timeout to set
+     */
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the overrides per pipeline stage.
+     *
+     * @return the stage settings keyed by stage key
+     */
+    public Map<String, Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Sets the overrides per pipeline stage.
+     *
+     * @param stages the stage settings keyed by stage key
+     */
+    public void setStages(Map<String, Stage> stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * Settings of one pipeline stage; each one left unset falls back to the default.
+     */
+    public static class Stage {
+
+        /**
+         * The API key, if the stage's endpoint needs a different one.
+         */
+        private String apiKey;
+
+        /**
+         * The endpoint URL, if the stage uses a different one.
+         */
+        private String endpoint;
+
+        /**
+         * The model identifier, e.g. a smaller, faster model for simple tasks.
+         */
+        private String model;
+
+        /**
+         * How long a single completion of the stage may take.
+         */
+        private Duration timeout;
+
+        /**
+         * The most requests of the stage in flight at once. When set, the stage gets an
+         * adaptive concurrency limit of its own instead of sharing its model's.
+         */
+        private Integer maxConcurrency;
+
+        /**
+         * Returns the stage's API key.
+         *
+         * @return the API key, or {@code null} to use the default
+         */
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        /**
+         * Sets the stage's API key.
+         *
+         * @param apiKey the API key to set
+         */
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        /**
+         * Returns the stage's endpoint URL.
+         *
+         * @return the endpoint URL, or {@code null} to use the default
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * Sets the stage's endpoint URL.
+         *
+         * @param endpoint the endpoint URL to set
+         */
+        public void setEndpoint(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Returns the stage's model identifier.
+         *
+         * @return the model ID, or {@code null} to use the default
+         */
+        public String getModel() {
+            return model;
+        }
+
+        /**
+         * Sets the stage's model identifier.
+         *
+         * @param model the model ID to set
+         */
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        /**
+         * Returns the stage's request timeout.
+         *
+         * @return the timeout, or {@code null} to use the default
+         */
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        /**
+         * Sets the stage's request timeout.
+         *
+         * @param timeout the timeout to set
+         */
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        /**
+         * Returns the stage's own concurrency limit.
+         *
+         * @return the maximum requests in flight, or {@code null} to share the model's limit
+         */
+        public Integer getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        /**
+         * Sets the stage's own concurrency limit.
+         *
+         * @param maxConcurrency the maximum requests in flight
+         */
+        public void setMaxConcurrency(Integer maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
 }
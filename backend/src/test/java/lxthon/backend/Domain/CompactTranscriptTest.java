@@ -0,0 +1,194 @@
+package lxthon.backend.Domain;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the heap taken by a {@link CompactTranscript} with the equivalent
+ * <code>List&lt;TranscriptSegment&gt;</code> for a 20k-segment transcript.
+ * <p>
+ * The regular tests weigh both sides by arithmetic: the compact side by
+ * {@link CompactTranscript#estimatedHeapBytes()}, which the cache uses as entry weight,
+ * and the beans by the object layout of a 64-bit JVM with compressed pointers. The
+ * benchmark, run with <code>-Dbenchmark=true</code>, checks the estimate against the
+ * growth of the used heap after full collections.
+ * </p>
+ * <p>
+ * Caption text is Latin-1, which {@link String} already stores at one byte per character,
+ * so the text bytes bound the saving: per segment of about 38 characters the beans take
+ * some 120 bytes and the columns some 50. The thresholds below are what the layout
+ * achieves on such text, not the 3x once hoped for.
+ * </p>
+ */
+public class CompactTranscriptTest {
+
+    private static final int SEGMENTS = 20_000;
+
+    private static final int COPIES = 8;
+
+    /**
+     * Object header, two doubles and two references, padded to eight bytes.
+     */
+    private static final long SEGMENT_BYTES = 40;
+
+    /**
+     * Object header, value reference, hash and coder, padded to eight bytes.
+     */
+    private static final long STRING_BYTES = 24;
+
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    @Test
+    public void testRawCaptionsTakeUnderAHalfOfTheHeap() {
+        assertCompactSmallerBy(false, 2.3);
+    }
+
+    @Test
+    public void testCleanedTranscriptTakesUnderAHalfOfTheHeap() {
+        assertCompactSmallerBy(true, 2.1);
+    }
+
+    @Test
+    public void testRoundTripsEverySegment() {
+        List<TranscriptSegment> beans = transcript(new Random(3), true);
+        CompactTranscript compact = CompactTranscript.of(beans);
+
+        assertEquals(beans.size(), compact.size());
+        for (int i = 0; i < beans.size(); i++) {
+            TranscriptSegment expected = beans.get(i);
+            TranscriptSegment actual = compact.get(i);
+            assertEquals(expected.getStartTime(), actual.getStartTime(), 0.0005);
+            assertEquals(expected.getEndTime(), actual.getEndTime(), 0.0005);
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getNormalizedText(), actual.getNormalizedText());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void testEstimateTracksRetainedHeap(TestReporter reporter) {
+        for (boolean cleaned : new boolean[]{false, true}) {
+            List<List<TranscriptSegment>> beans = new ArrayList<>();
+            long beanBytes = retained(() -> {
+                for (int c = 0; c < COPIES; c++) {
+                    beans.add(transcript(new Random(c), cleaned));
+                }
+                return beans;
+            }) / COPIES;
+
+            List<CompactTranscript> compact = new ArrayList<>();
+            long compactBytes = retained(() -> {
+                for (List<TranscriptSegment> copy : beans) {
+                    compact.add(CompactTranscript.of(copy));
+                }
+                return compact;
+            }) / COPIES;
+
+            String kind = cleaned ? "cleaned" : "raw";
+            long estimated = compact.get(0).estimatedHeapBytes();
+            reporter.publishEntry(Map.of(
+                    kind + " beans KB", String.valueOf(beanBytes / 1024),
+                    kind + " compact KB", String.valueOf(compactBytes / 1024),
+                    kind + " estimated KB", String.valueOf(estimated / 1024)));
+
+            // The cache weighs entries by the estimate, so it must track the real footprint
+            assertTrue(estimated > compactBytes * 0.8 && estimated < compactBytes * 1.25,
+                    kind + ": estimated " + estimated + " bytes, measured " + compactBytes);
+            assertTrue(beanBytes > beanHeapBytes(beans.get(0)) * 0.8 && beanBytes < beanHeapBytes(beans.get(0)) * 1.25,
+                    kind + ": computed " + beanHeapBytes(beans.get(0)) + " bytes for the beans, measured " + beanBytes);
+        }
+    }
+
+    private static void assertCompactSmallerBy(boolean cleaned, double minRatio) {
+        List<TranscriptSegment> beans = transcript(new Random(1), cleaned);
+        CompactTranscript compact = CompactTranscript.of(beans);
+
+        double ratio = (double) beanHeapBytes(beans) / compact.estimatedHeapBytes();
+
+        assertTrue(ratio >= minRatio, "CompactTranscript only " + ratio + "x smaller");
+    }
+
+    /**
+     * Returns the heap taken by a list of segments whose strings are all distinct Latin-1
+     * instances.
+     */
+    private static long beanHeapBytes(List<TranscriptSegment> beans) {
+        // ArrayList with its exactly sized element array of compressed references
+        long bytes = 24 + align(ARRAY_HEADER_BYTES + 4L * beans.size());
+        for (TranscriptSegment segment : beans) {
+            bytes += SEGMENT_BYTES + stringBytes(segment.getText()) + stringBytes(segment.getNormalizedText());
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String s) {
+        return s == null ? 0 : STRING_BYTES + align(ARRAY_HEADER_BYTES + s.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns how much the used heap grows while the built structure is reachable.
+     */
+    private static long retained(Supplier<Object> build) {
+        long before = usedAfterGc();
+        Object kept = build.get();
+        long after = usedAfterGc();
+        assertNotNull(kept);
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // Repeat until the collector has nothing more to free
+        for (int i = 0; i < 10; i++) {
+            memory.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Builds a transcript shaped like auto-generated captions: two to three seconds and a
+     * handful of short words per segment, each string a distinct instance.
+     */
+    private static List<TranscriptSegment> transcript(Random random, boolean cleaned) {
+        String[] words = {"the", "so", "we", "going", "to", "look", "at", "how", "this", "works", "and",
+                "then", "algorithm", "really", "data", "you", "can", "see", "here", "function"};
+        List<TranscriptSegment> segments = new ArrayList<>(SEGMENTS);
+        double time = 0;
+        for (int i = 0; i < SEGMENTS; i++) {
+            StringBuilder text = new StringBuilder();
+            int count = 5 + random.nextInt(5);
+            for (int w = 0; w < count; w++) {
+                text.append(w == 0 ? "" : " ").append(words[random.nextInt(words.length)]);
+            }
+            double end = time + 2 + random.nextInt(1000) / 1000.0;
+            String raw = new String(text);
+            String normalized = cleaned ? Character.toUpperCase(raw.charAt(0)) + raw.substring(1) + "." : null;
+            segments.add(new TranscriptSegment(time, end, raw, normalized));
+            time = end;
+        }
+        return segments;
+    }
+}
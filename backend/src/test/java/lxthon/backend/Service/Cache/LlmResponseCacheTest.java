@@ -0,0 +1,138 @@
+package lxthon.backend.Service.Cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Admission, scan resistance and disk writes of {@link LlmResponseCache}.
+ * <p>
+ * Responses are about 2 KB each, so the 1 MB memory tier holds some 450 of them:
+ * a hot set of 200 fits, while each scan of 1,000 one-off prompts is more than twice
+ * what the tier can hold and would flush the hot set out of a plain LRU cache.
+ * </p>
+ */
+public class LlmResponseCacheTest {
+
+    private static final long MAX_MEMORY_BYTES = 1 << 20;
+
+    private static final int HOT_KEYS = 200;
+
+    private static final int SCAN_PER_ROUND = 1_000;
+
+    private static final CachePolicy POLICY = CachePolicy.ttl(Duration.ofHours(1));
+
+    private static final String RESPONSE = "x".repeat(1_000);
+
+    @Test
+    public void testHotSetSurvivesScans() throws Exception {
+        LlmResponseCache cache = new LlmResponseCache("unused", false, MAX_MEMORY_BYTES, 100);
+
+        int hotLookups = 0;
+        int hotHits = 0;
+        int scanned = 0;
+        for (int round = 0; round < 50; round++) {
+            for (int k = 0; k < HOT_KEYS; k++) {
+                boolean hit = lookupOrPut(cache, "hot-" + k);
+                // The first rounds fill the cache and build up the hot set's frequencies
+                if (round >= 5) {
+                    hotLookups++;
+                    hotHits += hit ? 1 : 0;
+                }
+            }
+            for (int s = 0; s < SCAN_PER_ROUND; s++) {
+                lookupOrPut(cache, "scan-" + scanned++);
+            }
+        }
+
+        double hitRate = (double) hotHits / hotLookups;
+        assertTrue(hitRate >= 0.99, "hot set hit rate " + hitRate + ", stats " + cache.getStats());
+    }
+
+    @Test
+    public void testRejectedCandidatesEvictNothing() throws Exception {
+        LlmResponseCache cache = new LlmResponseCache("unused", false, MAX_MEMORY_BYTES, 100);
+        for (int round = 0; round < 5; round++) {
+            for (int k = 0; k < HOT_KEYS; k++) {
+                lookupOrPut(cache, "hot-" + k);
+            }
+        }
+        long evictionsBefore = stat(cache, "evictions");
+        long rejectionsBefore = stat(cache, "admissionRejections");
+
+        for (int s = 0; s < SCAN_PER_ROUND; s++) {
+            lookupOrPut(cache, "scan-" + s);
+        }
+
+        assertTrue(stat(cache, "admissionRejections") > rejectionsBefore, cache.getStats().toString());
+        assertEquals(evictionsBefore, stat(cache, "evictions"), cache.getStats().toString());
+        for (int k = 0; k < HOT_KEYS; k++) {
+            assertNotNull(cache.getAsync("hot-" + k).get(), "hot-" + k);
+        }
+    }
+
+    @Test
+    public void testFailedDiskWriteLeavesNoTempFile() throws Exception {
+        Path directory = Files.createTempDirectory("llm-cache-test");
+        LlmResponseCache cache = new LlmResponseCache(directory.toString(), true, MAX_MEMORY_BYTES, 100);
+        try {
+            // A non-empty directory where the entry file should go makes the move fail
+            Path blocked = Files.createDirectory(directory.resolve("blocked.llm"));
+            Files.writeString(blocked.resolve("occupant"), "");
+
+            cache.put("blocked", RESPONSE, POLICY);
+            cache.put("written", RESPONSE, POLICY);
+            awaitFile(directory.resolve("written.llm"));
+            cache.shutdown();
+
+            try (Stream<Path> files = Files.list(directory)) {
+                List<String> names = files.map(file -> file.getFileName().toString()).sorted().toList();
+                assertEquals(List.of("blocked.llm", "written.llm"), names);
+            }
+        } finally {
+            cache.shutdown();
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Looks a key up the way OpenAIService does, caching the response on a miss.
+     *
+     * @return whether the lookup hit
+     */
+    private static boolean lookupOrPut(LlmResponseCache cache, String key) throws Exception {
+        if (cache.getAsync(key).get() != null) {
+            return true;
+        }
+        cache.put(key, RESPONSE, POLICY);
+        return false;
+    }
+
+    private static long stat(LlmResponseCache cache, String name) {
+        Map<String, Object> stats = cache.getStats();
+        return ((Number) stats.get(name)).longValue();
+    }
+
+    private static void awaitFile(Path file) throws InterruptedException {
+        for (int i = 0; i < 500 && !Files.exists(file); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file), file + " was never written");
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
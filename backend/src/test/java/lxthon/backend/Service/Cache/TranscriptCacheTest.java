@@ -0,0 +1,109 @@
+package lxthon.backend.Service.Cache;
+
+import lxthon.backend.Domain.TranscriptSegment;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Disk tier of {@link TranscriptCache}: pruning of least recently used files and cleanup
+ * after failed writes.
+ * <p>
+ * The memory budget is a single byte, so every lookup goes to disk.
+ * </p>
+ */
+public class TranscriptCacheTest {
+
+    private static final List<TranscriptSegment> SEGMENTS = List.of(
+            new TranscriptSegment(0, 2.5, "so today we look at", null),
+            new TranscriptSegment(2.5, 5, "binary search trees", null));
+
+    @Test
+    public void testPrunesLeastRecentlyUsedFiles() throws Exception {
+        Path directory = Files.createTempDirectory("transcript-cache-test");
+        try {
+            TranscriptCache cache = new TranscriptCache(directory.toString(), 1, 10);
+            for (int i = 0; i < 10; i++) {
+                cache.put("video" + i, SEGMENTS);
+                // File times are too coarse to order writes this close together
+                Files.setLastModifiedTime(directory.resolve("video" + i + ".lxtr"), FileTime.fromMillis(1_000_000L * (i + 1)));
+            }
+            // A disk hit makes the oldest file the most recently used
+            assertNotNull(cache.get("video0"));
+
+            cache.put("video10", SEGMENTS);
+
+            assertEquals(List.of("video0", "video10", "video3", "video4", "video5", "video6", "video7", "video8", "video9"),
+                    entries(directory));
+            assertEquals(9, cache.getStats().get("diskEntries"));
+            assertNull(cache.get("video1"));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testCountsExistingFilesOnStartup() throws Exception {
+        Path directory = Files.createTempDirectory("transcript-cache-test");
+        try {
+            TranscriptCache first = new TranscriptCache(directory.toString(), 1, 10);
+            for (int i = 0; i < 10; i++) {
+                first.put("video" + i, SEGMENTS);
+            }
+
+            TranscriptCache second = new TranscriptCache(directory.toString(), 1, 10);
+            assertEquals(10, second.getStats().get("diskEntries"));
+            second.put("video10", SEGMENTS);
+
+            assertEquals(9, entries(directory).size());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testFailedDiskWriteLeavesNoTempFile() throws Exception {
+        Path directory = Files.createTempDirectory("transcript-cache-test");
+        try {
+            TranscriptCache cache = new TranscriptCache(directory.toString(), 1 << 20, 10);
+            // A non-empty directory where the entry file should go makes the move fail
+            Path blocked = Files.createDirectory(directory.resolve("blocked.lxtr"));
+            Files.writeString(blocked.resolve("occupant"), "");
+
+            cache.put("blocked", SEGMENTS);
+
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(List.of("blocked.lxtr"), files.map(file -> file.getFileName().toString()).toList());
+            }
+            // The memory tier still serves it
+            assertEquals(2, cache.get("blocked").size());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static List<String> entries(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".lxtr"))
+                    .map(name -> name.substring(0, name.length() - ".lxtr".length()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package lxthon.backend.Service.Cleaning;
+
+import lxthon.backend.Domain.CompactTranscript;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Correctness and speed of {@link TranscriptAligner} on a synthetic 100k-word transcript
+ * put through a simulated cleaner that drops, rewrites, recases and punctuates words and
+ * drops whole passages, keeping track of the segment every surviving word came from.
+ * <p>
+ * The timing benchmark only runs with <code>-Dbenchmark=true</code>.
+ * </p>
+ */
+public class TranscriptAlignerTest {
+
+    private static final int SOURCE_WORDS = 100_000;
+
+    private static final int VOCABULARY = 3_000;
+
+    @Test
+    public void testAlignsUnchangedTextOntoItsSegments() {
+        CompactTranscript source = new CompactTranscript.Builder(3)
+                .add(0, 2, "so today we", null)
+                .add(2, 4, "talk about", null)
+                .add(4, 6, "binary search trees", null)
+                .build();
+
+        String[] aligned = TranscriptAligner.align(source, false, "So today we talk about binary search trees.");
+
+        assertEquals("So today we", aligned[0]);
+        assertEquals("talk about", aligned[1]);
+        assertEquals("binary search trees.", aligned[2]);
+    }
+
+    @Test
+    public void testDroppedSegmentsGetEmptyText() {
+        CompactTranscript source = new CompactTranscript.Builder(3)
+                .add(0, 2, "first part here", null)
+                .add(2, 4, "um uh you know", null)
+                .add(4, 6, "second part there", null)
+                .build();
+
+        String[] aligned = TranscriptAligner.align(source, false, "First part here. Second part there.");
+
+        assertEquals("First part here.", aligned[0]);
+        assertEquals("", aligned[1]);
+        assertEquals("Second part there.", aligned[2]);
+    }
+
+    @Test
+    public void testAlignsDropsRewritesAndDroppedPassages() {
+        Synthetic synthetic = Synthetic.generate(new Random(7));
+
+        String[] aligned = TranscriptAligner.align(synthetic.source, false, synthetic.cleaned);
+
+        int[] found = segmentOfEachWord(aligned, synthetic.expected.length);
+        int exact = 0;
+        int offByOne = 0;
+        for (int j = 0; j < found.length; j++) {
+            int error = Math.abs(found[j] - synthetic.expected[j]);
+            if (error == 0) {
+                exact++;
+            } else if (error == 1) {
+                offByOne++;
+            }
+        }
+        double exactShare = (double) exact / found.length;
+        double farShare = (double) (found.length - exact - offByOne) / found.length;
+
+        assertTrue(exactShare >= 0.99, "too few words on their own segment: " + exactShare);
+        // Words right after a dropped passage stay inside it until the alignment re-anchors
+        assertTrue(farShare <= 0.01, "too many words more than one segment off: " + farShare);
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void testAligns100kWordsInLinearTime(TestReporter reporter) {
+        Synthetic synthetic = Synthetic.generate(new Random(11));
+
+        // Warm up the JIT before measuring
+        for (int i = 0; i < 3; i++) {
+            TranscriptAligner.align(synthetic.source, false, synthetic.cleaned);
+        }
+        int runs = 5;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            TranscriptAligner.align(synthetic.source, false, synthetic.cleaned);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long bestMillis = best / 1_000_000;
+        reporter.publishEntry(Map.of(
+                "segments", String.valueOf(synthetic.source.size()),
+                "best milliseconds", String.valueOf(bestMillis)));
+
+        // Tens of milliseconds on a laptop; the bound only catches quadratic regressions
+        assertTrue(bestMillis < 2_000, "alignment took " + bestMillis + " ms");
+    }
+
+    /**
+     * Recovers the segment of each cleaned word from the aligned per-segment texts.
+     */
+    private static int[] segmentOfEachWord(String[] aligned, int words) {
+        int[] segments = new int[words];
+        int j = 0;
+        for (int s = 0; s < aligned.length; s++) {
+            if (aligned[s].isEmpty()) {
+                continue;
+            }
+            for (String ignored : aligned[s].split(" ")) {
+                segments[j++] = s;
+            }
+        }
+        assertEquals(words, j, "aligned texts lost or gained words");
+        return segments;
+    }
+
+    /**
+     * A source transcript, its simulated cleaning and the true segment of every cleaned word.
+     */
+    private static final class Synthetic {
+        private final CompactTranscript source;
+        private final String cleaned;
+        private final int[] expected;
+
+        private Synthetic(CompactTranscript source, String cleaned, int[] expected) {
+            this.source = source;
+            this.cleaned = cleaned;
+            this.expected = expected;
+        }
+
+        static Synthetic generate(Random random) {
+            // Zipf-like word frequencies, so common words recur every few positions as in speech
+            String[] vocabulary = new String[VOCABULARY];
+            for (int i = 0; i < VOCABULARY; i++) {
+                vocabulary[i] = word(i);
+            }
+            double[] cumulative = new double[VOCABULARY];
+            double total = 0;
+            for (int i = 0; i < VOCABULARY; i++) {
+                total += 1.0 / (i + 1);
+                cumulative[i] = total;
+            }
+
+            CompactTranscript.Builder source = new CompactTranscript.Builder(SOURCE_WORDS / 8);
+            StringBuilder cleaned = new StringBuilder();
+            List<Integer> expected = new ArrayList<>();
+            int words = 0;
+            int segment = 0;
+            int droppedPassage = 0;
+            while (words < SOURCE_WORDS) {
+                int length = 5 + random.nextInt(8);
+                StringBuilder text = new StringBuilder();
+                for (int w = 0; w < length; w++, words++) {
+                    String word = vocabulary[pick(cumulative, total, random)];
+                    text.append(w == 0 ? "" : " ").append(word);
+
+                    if (droppedPassage == 0 && random.nextDouble() < 0.0005) {
+                        droppedPassage = 150;
+                    }
+                    if (droppedPassage > 0) {
+                        droppedPassage--;
+                        continue;
+                    }
+                    double roll = random.nextDouble();
+                    if (roll < 0.08) {
+                        continue;
+                    }
+                    String out = word;
+                    if (roll < 0.11) {
+                        out = "rewritten" + random.nextInt(1000);
+                    } else if (roll < 0.21) {
+                        out = Character.toUpperCase(word.charAt(0)) + word.substring(1) + (random.nextBoolean() ? "," : ".");
+                    }
+                    if (cleaned.length() > 0) {
+                        cleaned.append(' ');
+                    }
+                    cleaned.append(out);
+                    expected.add(segment);
+                }
+                source.add(segment * 3.0, segment * 3.0 + 3.0, text.toString(), null);
+                segment++;
+            }
+
+            int[] expectedSegments = new int[expected.size()];
+            for (int j = 0; j < expectedSegments.length; j++) {
+                expectedSegments[j] = expected.get(j);
+            }
+            return new Synthetic(source.build(), cleaned.toString(), expectedSegments);
+        }
+
+        private static int pick(double[] cumulative, double total, Random random) {
+            double target = random.nextDouble() * total;
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * A distinct pronounceable word per index.
+         */
+        private static String word(int index) {
+            String consonants = "bdfgklmnprstvz";
+            String vowels = "aeiou";
+            StringBuilder word = new StringBuilder();
+            int n = index;
+            do {
+                word.append(consonants.charAt(n % consonants.length()));
+                n /= consonants.length();
+                word.append(vowels.charAt(n % vowels.length()));
+                n /= vowels.length();
+            } while (n > 0);
+            return word.toString();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package lxthon.backend.Service.Codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lxthon.backend.Domain.CompactTranscript;
+import lxthon.backend.Domain.TranscriptSegment;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trips, size and rejection of malformed input for {@link TranscriptCodec}.
+ * <p>
+ * The benchmark comparing decoding with Jackson binding only runs with
+ * <code>-Dbenchmark=true</code>.
+ * </p>
+ */
+public class TranscriptCodecTest {
+
+    private static final String[] WORDS = {
+            "so", "today", "we", "look", "at", "binary", "search", "trees", "and", "why",
+            "rotations", "keep", "them", "balanced", "café", "naïve", "日本語", "🌳"
+    };
+
+    @Test
+    public void testRoundTripsRawTranscript() throws IOException {
+        List<TranscriptSegment> segments = transcript(new Random(1), 2_000, false);
+
+        assertSameSegments(segments, TranscriptCodec.decode(TranscriptCodec.encode(segments)));
+    }
+
+    @Test
+    public void testRoundTripsNormalizedTextWhereSomeSegmentsHaveNone() throws IOException {
+        List<TranscriptSegment> segments = transcript(new Random(2), 2_000, true);
+        segments.get(0).setNormalizedText(null);
+        segments.get(17).setNormalizedText("");
+
+        CompactTranscript decoded = TranscriptCodec.decode(TranscriptCodec.encode(segments));
+
+        assertSameSegments(segments, decoded);
+        assertNull(decoded.get(0).getNormalizedText());
+        assertEquals("", decoded.get(17).getNormalizedText());
+    }
+
+    @Test
+    public void testRoundTripsUnorderedAndZeroLengthSegments() throws IOException {
+        // Negative start deltas and durations exercise the zigzag encoding
+        List<TranscriptSegment> segments = List.of(
+                new TranscriptSegment(10.5, 12.0, "later", null),
+                new TranscriptSegment(3.25, 3.25, "earlier, no duration", null),
+                new TranscriptSegment(7.0, 0, "end before start", null),
+                new TranscriptSegment(7200.001, 7205.999, "", null));
+
+        assertSameSegments(segments, TranscriptCodec.decode(TranscriptCodec.encode(segments)));
+    }
+
+    @Test
+    public void testRoundTripsEmptyTranscript() throws IOException {
+        assertEquals(0, TranscriptCodec.decode(TranscriptCodec.encode(List.of())).size());
+    }
+
+    @Test
+    public void testIsUnderHalfTheJsonSize() throws IOException {
+        List<TranscriptSegment> segments = transcript(new Random(3), 5_000, false);
+
+        int json = new ObjectMapper().writeValueAsBytes(segments).length;
+        int binary = TranscriptCodec.encode(segments).length;
+
+        assertTrue(binary * 2 < json, "binary " + binary + " bytes, JSON " + json + " bytes");
+    }
+
+    @Test
+    public void testRejectsEveryTruncation() {
+        byte[] encoded = TranscriptCodec.encode(transcript(new Random(4), 50, true));
+
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThrows(IOException.class, () -> TranscriptCodec.decode(truncated), "prefix of " + length + " bytes");
+        }
+    }
+
+    @Test
+    public void testRejectsTrailingBytes() {
+        byte[] encoded = TranscriptCodec.encode(transcript(new Random(5), 50, false));
+
+        assertThrows(IOException.class, () -> TranscriptCodec.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+    }
+
+    @Test
+    public void testRejectsWrongMagic() {
+        byte[] encoded = TranscriptCodec.encode(transcript(new Random(6), 10, false));
+        encoded[0] = '{';
+
+        assertFalse(TranscriptCodec.isEncoded(encoded));
+        assertThrows(IOException.class, () -> TranscriptCodec.decode(encoded));
+    }
+
+    @Test
+    public void testRejectsOtherVersions() {
+        byte[] encoded = TranscriptCodec.encode(transcript(new Random(7), 10, false));
+
+        for (int version : new int[]{0, 2, 255}) {
+            encoded[4] = (byte) version;
+            IOException e = assertThrows(IOException.class, () -> TranscriptCodec.decode(encoded));
+            assertTrue(e.getMessage().contains("version " + version), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRejectsInflatedSegmentCount() {
+        // magic, version 1, no flags, count 2^28 in a five-byte varint, no text
+        byte[] header = {'L', 'X', 'T', 'R', 1, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0};
+
+        assertThrows(IOException.class, () -> TranscriptCodec.decode(header));
+    }
+
+    @Test
+    public void testRejectsOverlongVarint() {
+        byte[] header = {'L', 'X', 'T', 'R', 1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+
+        assertThrows(IOException.class, () -> TranscriptCodec.decode(header));
+    }
+
+    @Test
+    public void testCorruptBytesFailWithIOExceptionOnly() {
+        byte[] encoded = TranscriptCodec.encode(transcript(new Random(8), 200, true));
+        Random random = new Random(9);
+
+        for (int trial = 0; trial < 2_000; trial++) {
+            byte[] corrupt = encoded.clone();
+            // Keep the magic and version so the corruption reaches the body
+            int position = 5 + random.nextInt(corrupt.length - 5);
+            corrupt[position] = (byte) random.nextInt(256);
+            try {
+                TranscriptCodec.decode(corrupt);
+            } catch (IOException expected) {
+                // rejected
+            } catch (RuntimeException e) {
+                fail("byte " + position + " set to " + (corrupt[position] & 0xFF) + " threw " + e);
+            }
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void testDecodesFasterThanJacksonBinding(TestReporter reporter) throws IOException {
+        List<TranscriptSegment> segments = transcript(new Random(10), 5_000, false);
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] json = mapper.writeValueAsBytes(segments);
+        byte[] binary = TranscriptCodec.encode(segments);
+        TypeReference<List<TranscriptSegment>> type = new TypeReference<>() {};
+
+        int runs = 500;
+        long jacksonNanos = 0;
+        long codecNanos = 0;
+        // The first half warms up both paths
+        for (int i = 0; i < 2 * runs; i++) {
+            long start = System.nanoTime();
+            assertEquals(segments.size(), mapper.readValue(json, type).size());
+            long middle = System.nanoTime();
+            assertEquals(segments.size(), TranscriptCodec.decode(binary).size());
+            long end = System.nanoTime();
+            if (i >= runs) {
+                jacksonNanos += middle - start;
+                codecNanos += end - middle;
+            }
+        }
+
+        double speedup = (double) jacksonNanos / codecNanos;
+        reporter.publishEntry(Map.of(
+                "jackson microseconds", String.valueOf(jacksonNanos / runs / 1000),
+                "codec microseconds", String.valueOf(codecNanos / runs / 1000),
+                "speedup", String.format("%.1f", speedup)));
+        assertTrue(speedup > 3, String.format("decoding is only %.1fx faster", speedup));
+    }
+
+    private static void assertSameSegments(List<TranscriptSegment> expected, CompactTranscript actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TranscriptSegment e = expected.get(i);
+            TranscriptSegment a = actual.get(i);
+            // Timestamps are kept to the millisecond
+            assertEquals(e.getStartTime(), a.getStartTime(), 0.0005, "start of segment " + i);
+            assertEquals(e.getEndTime(), a.getEndTime(), 0.0005, "end of segment " + i);
+            assertEquals(e.getText(), a.getText(), "text of segment " + i);
+            assertEquals(e.getNormalizedText(), a.getNormalizedText(), "normalized text of segment " + i);
+        }
+    }
+
+    /**
+     * Builds caption-like segments a few seconds apart, with timestamps that are not
+     * whole milliseconds.
+     */
+    private static List<TranscriptSegment> transcript(Random random, int size, boolean normalized) {
+        List<TranscriptSegment> segments = new ArrayList<>(size);
+        double start = 0;
+        for (int i = 0; i < size; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 3 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    text.append(' ');
+                }
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            double end = start + 1 + random.nextInt(4000) / 1000.0;
+            String norm = normalized ? text.toString().toLowerCase() : null;
+            segments.add(new TranscriptSegment(start, end, text.toString(), norm));
+            start += random.nextInt(3000) / 1000.0 + 0.0004;
+        }
+        return segments;
+    }
+}
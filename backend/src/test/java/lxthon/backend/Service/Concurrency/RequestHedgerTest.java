@@ -0,0 +1,65 @@
+package lxthon.backend.Service.Concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link RequestHedger} triggers hedges from the latencies of requests with
+ * the same key only.
+ */
+public class RequestHedgerTest {
+
+    @Test
+    public void testFastKeyDoesNotTriggerHedgesOfSlowKey() throws Exception {
+        RequestHedger hedger = new RequestHedger(true, 95, 100, 0, 300);
+        for (int i = 0; i < 30; i++) {
+            hedger.hedge("chunk-summary", () -> after(5, "chunk"), () -> fail("fast chunk requests are never hedged")).get();
+        }
+
+        AtomicInteger duplicates = new AtomicInteger();
+        // Slower than every chunk-summary sample, but summary has no history of its own yet
+        assertEquals("summary", hedger.hedge("summary", () -> after(200, "summary"), () -> {
+            duplicates.incrementAndGet();
+            return after(1, "duplicate");
+        }).get());
+
+        assertEquals(0, duplicates.get());
+        Map<String, Object> stats = hedger.getStats();
+        assertEquals(30L, stats.get("chunk-summary.samples"));
+        assertEquals(1L, stats.get("summary.samples"));
+    }
+
+    @Test
+    public void testSlowRequestOfSameKeyIsHedged() throws Exception {
+        RequestHedger hedger = new RequestHedger(true, 95, 100, 0, 300);
+        for (int i = 0; i < 30; i++) {
+            hedger.hedge("summary", () -> after(5, "fast"), () -> null).get();
+        }
+
+        AtomicInteger duplicates = new AtomicInteger();
+        assertEquals("duplicate", hedger.hedge("summary", () -> after(5_000, "stalled"), () -> {
+            duplicates.incrementAndGet();
+            return after(1, "duplicate");
+        }).get(2, TimeUnit.SECONDS));
+
+        assertEquals(1, duplicates.get());
+        // The stalled primary is recorded as well, at the time it was cancelled
+        for (int i = 0; i < 100 && !Long.valueOf(31).equals(hedger.getStats().get("summary.samples")); i++) {
+            Thread.sleep(10);
+        }
+        Map<String, Object> stats = hedger.getStats();
+        assertEquals(31L, stats.get("summary.samples"));
+        assertEquals(1L, stats.get("hedgeWins"));
+    }
+
+    private static CompletableFuture<String> after(long millis, String value) {
+        return CompletableFuture.supplyAsync(() -> value,
+                CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+    }
+}
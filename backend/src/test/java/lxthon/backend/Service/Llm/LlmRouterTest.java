@@ -0,0 +1,77 @@
+package lxthon.backend.Service.Llm;
+
+import lxthon.backend.Service.Concurrency.AdaptiveConcurrencyLimiter;
+import lxthon.backend.Service.Concurrency.TokenBucketRateLimiter;
+import lxthon.backend.Service.Simulation.SimulatedLlmBackend;
+import lxthon.backend.Service.Simulation.SimulationProfile;
+import lxthon.backend.config.OpenAIConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link LlmRouter} hands every backend a transport timeout no shorter than
+ * the timeout of any stage routed to it.
+ */
+public class LlmRouterTest {
+
+    @Test
+    public void testSharedBackendGetsTheLongestStageTimeout() {
+        OpenAIConfig config = config();
+        config.getStages().put("summary", stage(null, Duration.ofMinutes(12)));
+        config.getStages().put("quiz", stage(null, Duration.ofSeconds(30)));
+        Map<String, Duration> created = new HashMap<>();
+
+        LlmRouter router = router(config, created);
+
+        assertEquals(Map.of("openai/gpt-4o", Duration.ofMinutes(12)), created);
+        assertEquals(Duration.ofMinutes(12), router.route(LlmStage.SUMMARY).getTimeout());
+        assertEquals(Duration.ofSeconds(30), router.route(LlmStage.QUIZ).getTimeout());
+        assertEquals(Duration.ofMinutes(5), router.route(LlmStage.PODCAST).getTimeout());
+        assertSame(router.route(LlmStage.SUMMARY).getBackend(), router.route(LlmStage.QUIZ).getBackend());
+    }
+
+    @Test
+    public void testEachModelGetsTheTimeoutOfItsOwnStages() {
+        OpenAIConfig config = config();
+        config.getStages().put("cleaner", stage("openai/gpt-4o-mini", Duration.ofSeconds(45)));
+        config.getStages().put("chunk-summary", stage("openai/gpt-4o-mini", Duration.ofSeconds(90)));
+        Map<String, Duration> created = new HashMap<>();
+
+        LlmRouter router = router(config, created);
+
+        assertEquals(Map.of("openai/gpt-4o", Duration.ofMinutes(5), "openai/gpt-4o-mini", Duration.ofSeconds(90)),
+                created);
+        assertEquals(Duration.ofSeconds(45), router.route(LlmStage.CLEANER).getTimeout());
+    }
+
+    private static OpenAIConfig config() {
+        OpenAIConfig config = new OpenAIConfig();
+        config.setEndpoint("https://models.example.test/inference");
+        config.setModel("openai/gpt-4o");
+        config.setApiKey("test-key");
+        config.setTimeout(Duration.ofMinutes(5));
+        config.setStages(new HashMap<>());
+        return config;
+    }
+
+    private static OpenAIConfig.Stage stage(String model, Duration timeout) {
+        OpenAIConfig.Stage stage = new OpenAIConfig.Stage();
+        stage.setModel(model);
+        stage.setTimeout(timeout);
+        return stage;
+    }
+
+    private static LlmRouter router(OpenAIConfig config, Map<String, Duration> created) {
+        LlmBackendFactory backends = (endpoint, model, apiKey, timeout) -> {
+            assertNull(created.put(model, timeout), "second backend for " + model);
+            return new SimulatedLlmBackend(new SimulationProfile(1, 1, 0, 0, 0, 1), model);
+        };
+        return new LlmRouter(config, backends, new TokenBucketRateLimiter(60, 200_000),
+                new AdaptiveConcurrencyLimiter(4, 1, 32, 2.5), 60, 200_000, 4, 1, 32, 2.5);
+    }
+}
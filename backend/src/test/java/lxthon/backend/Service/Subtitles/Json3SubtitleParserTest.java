@@ -0,0 +1,288 @@
+package lxthon.backend.Service.Subtitles;
+
+import lxthon.backend.Domain.TranscriptSegment;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link Json3SubtitleParser} produces exactly the segments of the
+ * <code>org.json</code> implementation it replaced in <code>VideoService</code>.
+ * <p>
+ * The reference parser below is that implementation. Both run on the recorded
+ * track under <code>captions/</code> and on a generated multi-MB json3 file that mixes
+ * in every irregularity seen in real tracks: window-only events, <code>"\n"</code>
+ * append events, missing durations and start times, segments without text and
+ * non-ASCII text.
+ * </p>
+ * <p>
+ * The benchmark comparing their throughput and allocation per MB only runs with
+ * <code>-Dbenchmark=true</code>.
+ * </p>
+ */
+public class Json3SubtitleParserTest {
+
+    private static final int EVENTS = 40_000;
+
+    private static final int BENCHMARK_RUNS = 10;
+
+    private static Path largeTrack;
+
+    @BeforeAll
+    public static void writeLargeTrack() throws IOException {
+        largeTrack = Files.createTempFile("json3-parser-test", ".json3");
+        writeTrack(largeTrack, new Random(7));
+    }
+
+    @AfterAll
+    public static void deleteLargeTrack() throws IOException {
+        Files.deleteIfExists(largeTrack);
+    }
+
+    @Test
+    public void testMatchesOrgJsonOnRecordedTrack() throws Exception {
+        File file = Paths.get(Json3SubtitleParserTest.class.getResource("/captions/abcDEF12345.en.json3").toURI()).toFile();
+
+        List<TranscriptSegment> expected = parseWithOrgJson(file);
+        assertEquals(4, expected.size());
+        assertSameSegments(expected, Json3SubtitleParser.parse(file));
+    }
+
+    @Test
+    public void testMatchesOrgJsonOnMultiMegabyteTrack() throws IOException {
+        assertTrue(Files.size(largeTrack) > 4 * 1024 * 1024, "fixture is only " + Files.size(largeTrack) + " bytes");
+
+        List<TranscriptSegment> expected = parseWithOrgJson(largeTrack.toFile());
+        assertTrue(expected.size() > EVENTS / 2, "only " + expected.size() + " segments");
+        assertSameSegments(expected, Json3SubtitleParser.parse(largeTrack.toFile()));
+    }
+
+    @Test
+    public void testStreamingOverloadsMatchFileParse() throws IOException {
+        List<TranscriptSegment> expected = Json3SubtitleParser.parse(largeTrack.toFile());
+
+        try (InputStream in = Files.newInputStream(largeTrack)) {
+            assertSameSegments(expected, Json3SubtitleParser.parse(in));
+        }
+
+        List<TranscriptSegment> streamed = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(largeTrack)) {
+            Json3SubtitleParser.parse(in, streamed::add);
+        }
+        assertSameSegments(expected, streamed);
+    }
+
+    @Test
+    public void testRejectsDocumentWithoutEvents() throws IOException {
+        Path file = Files.createTempFile("json3-parser-test", ".json3");
+        try {
+            Files.writeString(file, "{\"wireMagic\": \"pb3\", \"pens\": [{}]}");
+            Json3SubtitleParser.parse(file.toFile());
+            fail("A document without an events array must not parse");
+        } catch (IOException expected) {
+            // yt-dlp wrote something other than json3
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void testStreamingParserIsFasterAndAllocatesLess(TestReporter reporter) throws IOException {
+        File file = largeTrack.toFile();
+        double megabytes = file.length() / (1024.0 * 1024.0);
+
+        ParserRun orgJson = measure(() -> parseWithOrgJson(file), megabytes);
+        ParserRun streaming = measure(() -> Json3SubtitleParser.parse(file), megabytes);
+
+        Map<String, String> report = new LinkedHashMap<>();
+        report.put("org.json MB/s", String.format("%.1f", orgJson.megabytesPerSecond));
+        report.put("org.json allocated MB per MB", String.format("%.1f", orgJson.allocatedPerMegabyte / (1024 * 1024)));
+        report.put("streaming MB/s", String.format("%.1f", streaming.megabytesPerSecond));
+        report.put("streaming allocated MB per MB", String.format("%.1f", streaming.allocatedPerMegabyte / (1024 * 1024)));
+        reporter.publishEntry(report);
+
+        assertTrue(streaming.megabytesPerSecond > 2 * orgJson.megabytesPerSecond, report.toString());
+        assertTrue(streaming.allocatedPerMegabyte * 3 < orgJson.allocatedPerMegabyte, report.toString());
+    }
+
+    private static void assertSameSegments(List<TranscriptSegment> expected, List<TranscriptSegment> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TranscriptSegment e = expected.get(i);
+            TranscriptSegment a = actual.get(i);
+            assertEquals(e.getStartTime(), a.getStartTime(), 0.0, "start of segment " + i);
+            assertEquals(e.getEndTime(), a.getEndTime(), 0.0, "end of segment " + i);
+            assertEquals(e.getText(), a.getText(), "text of segment " + i);
+        }
+    }
+
+    /**
+     * Parses the file repeatedly after a warm-up, timing the runs and counting the bytes
+     * this thread allocates during them.
+     */
+    private static ParserRun measure(Parse parse, double megabytes) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < BENCHMARK_RUNS; i++) {
+            parse.run();
+        }
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_RUNS; i++) {
+            parse.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        return new ParserRun(BENCHMARK_RUNS * megabytes / seconds, allocated / (BENCHMARK_RUNS * megabytes));
+    }
+
+    private interface Parse {
+        List<TranscriptSegment> run() throws IOException;
+    }
+
+    private record ParserRun(double megabytesPerSecond, double allocatedPerMegabyte) {}
+
+    /**
+     * The <code>org.json</code> parser previously in <code>VideoService</code>, reading
+     * the file as UTF-8 rather than in the platform charset.
+     */
+    private static List<TranscriptSegment> parseWithOrgJson(File jsonFile) throws IOException {
+        List<TranscriptSegment> segments = new ArrayList<>();
+
+        try (FileReader reader = new FileReader(jsonFile, StandardCharsets.UTF_8)) {
+            JSONObject jsonSubtitles = new JSONObject(new JSONTokener(reader));
+            JSONArray events = jsonSubtitles.getJSONArray("events");
+
+            for (int i = 0; i < events.length(); i++) {
+                JSONObject event = events.getJSONObject(i);
+
+                // Skip events without text segments
+                if (!event.has("segs")) {
+                    continue;
+                }
+
+                // Extract start and end times (in milliseconds)
+                double startTime = event.has("tStartMs") ?
+                        event.getDouble("tStartMs") / 1000.0 : 0;
+                double endTime = event.has("dDurationMs") ?
+                        startTime + (event.getDouble("dDurationMs") / 1000.0) : 0;
+
+                // Extract text from segments
+                StringBuilder textBuilder = new StringBuilder();
+                JSONArray segs = event.getJSONArray("segs");
+
+                for (int j = 0; j < segs.length(); j++) {
+                    JSONObject seg = segs.getJSONObject(j);
+                    if (seg.has("utf8")) {
+                        String text = seg.getString("utf8");
+                        if (text != null && !text.trim().isEmpty()) {
+                            textBuilder.append(text);
+                        }
+                    }
+                }
+
+                String finalText = textBuilder.toString().trim();
+                if (!finalText.isEmpty()) {
+                    TranscriptSegment segment = new TranscriptSegment();
+                    segment.setStartTime(startTime);
+                    segment.setEndTime(endTime);
+                    segment.setText(finalText);
+                    segments.add(segment);
+                }
+            }
+        }
+
+        return segments;
+    }
+
+    private static final String[] WORDS = {
+            "the", "tree", "is", "balanced", "so", "um", "we", "rotate", "left", "node",
+            "height", "café", "naïve", "O(log n)", "\"quoted\"", "back\\slash", "tab\tbed",
+            "ünïcödé", "日本語", "emoji 🌳", "<i>", "&amp;", "x\u00a0y"
+    };
+
+    /**
+     * Writes an automatic-caption track in YouTube's json3 layout.
+     */
+    private static void writeTrack(Path file, Random random) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n  \"wireMagic\": \"pb3\",\n  \"pens\": [ {  } ],\n");
+            out.write("  \"wsWinStyles\": [ {  }, { \"mhModeHint\": 2, \"juJustifCode\": 0, \"sdScrollDir\": 3 } ],\n");
+            out.write("  \"wpWinPositions\": [ {  }, { \"apPoint\": 6, \"ahHorPos\": 20, \"avVerPos\": 100 } ],\n");
+            out.write("  \"events\": [ ");
+
+            long t = 0;
+            for (int i = 0; i < EVENTS; i++) {
+                if (i > 0) {
+                    out.write(", ");
+                }
+                out.write("{\n    ");
+                int kind = random.nextInt(20);
+                if (kind == 0) {
+                    // Window definition, no segs
+                    out.write("\"tStartMs\": " + t + ", \"dDurationMs\": " + (5000 + random.nextInt(5000))
+                            + ", \"id\": 1, \"wpWinPosId\": 1, \"wsWinStyleId\": 1");
+                } else if (kind <= 4) {
+                    // Line break appended to the previous caption
+                    out.write("\"tStartMs\": " + t + ", \"dDurationMs\": " + random.nextInt(3000)
+                            + ", \"wWinId\": 1, \"aAppend\": 1, \"segs\": [ { \"utf8\": \"\\n\" } ]");
+                } else {
+                    if (kind != 5) {
+                        out.write("\"tStartMs\": " + t + ", ");
+                    }
+                    if (kind != 6) {
+                        out.write("\"dDurationMs\": " + (500 + random.nextInt(6000)) + ", ");
+                    }
+                    out.write("\"wWinId\": 1,\n    \"segs\": [ ");
+                    int words = 1 + random.nextInt(12);
+                    for (int w = 0; w < words; w++) {
+                        if (w > 0) {
+                            out.write(", ");
+                        }
+                        if (random.nextInt(15) == 0) {
+                            out.write("{ \"tOffsetMs\": " + w * 240 + " }");
+                            continue;
+                        }
+                        String word = random.nextInt(25) == 0 ? "   " : WORDS[random.nextInt(WORDS.length)];
+                        out.write("{ \"utf8\": " + JSONObject.quote(w == 0 ? word : " " + word));
+                        if (w > 0) {
+                            out.write(", \"tOffsetMs\": " + w * 240);
+                        }
+                        out.write(", \"acAsrConf\": " + random.nextInt(256) + " }");
+                    }
+                    out.write(" ]");
+                }
+                out.write("\n  }");
+                t += random.nextInt(4000);
+            }
+            out.write(" ]\n}\n");
+        }
+    }
+}
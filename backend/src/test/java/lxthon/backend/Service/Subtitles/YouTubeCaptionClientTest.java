@@ -0,0 +1,246 @@
+package lxthon.backend.Service.Subtitles;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lxthon.backend.Domain.TranscriptSegment;
+import lxthon.backend.Service.Cache.TranscriptCache;
+import lxthon.backend.Service.Concurrency.InFlightRequestRegistry;
+import lxthon.backend.Service.Process.YtDlpExecutor;
+import lxthon.backend.Service.Search.TranscriptSearchIndex;
+import lxthon.backend.Service.VideoService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link YouTubeCaptionClient}, alone and behind {@link VideoService}, against a
+ * local HTTP server standing in for <code>transcript.native.base-url</code>.
+ * <p>
+ * The server replays the watch pages and json3 track under <code>captions/</code>,
+ * trimmed recordings of YouTube's responses. Track URLs in the pages point back at the
+ * server. yt-dlp is replaced by an executor writing the files it would have written.
+ * </p>
+ */
+public class YouTubeCaptionClientTest {
+
+    private static final String VIDEO_ID = "abcDEF12345";
+
+    private static final String NO_ENGLISH_ID = "noCaptions1";
+
+    private static final String BROKEN_ID = "brokenPage1";
+
+    private static HttpServer server;
+
+    private static String baseUrl;
+
+    private static final Map<String, String> trackQueries = new ConcurrentHashMap<>();
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        server.createContext("/watch", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            if (query.contains("v=" + VIDEO_ID)) {
+                respond(exchange, 200, fixture("watch-page.html").replace("{{BASE}}", baseUrl));
+            } else if (query.contains("v=" + NO_ENGLISH_ID)) {
+                respond(exchange, 200, fixture("watch-page-no-english.html").replace("{{BASE}}", baseUrl));
+            } else if (query.contains("v=" + BROKEN_ID)) {
+                respond(exchange, 200, "<html><body>Before you continue to YouTube</body></html>");
+            } else {
+                respond(exchange, 404, "");
+            }
+        });
+        server.createContext("/api/timedtext", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            if (query.contains("v=" + VIDEO_ID)) {
+                trackQueries.put(VIDEO_ID, query);
+                respond(exchange, 200, fixture(VIDEO_ID + ".en.json3"));
+            } else {
+                respond(exchange, 404, "");
+            }
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testFetchesTheAutomaticEnglishTrack() throws Exception {
+        List<TranscriptSegment> segments = client().fetchTranscript(VIDEO_ID);
+
+        String query = trackQueries.get(VIDEO_ID);
+        assertNotNull(query);
+        assertTrue(query.contains("kind=asr") && query.contains("lang=en"), query);
+        assertTrue(query.endsWith("&fmt=json3"), query);
+
+        // The window-only event and the "\n" append event carry no text
+        assertEquals(4, segments.size());
+        assertSegment(segments.get(0), 0.16, 4.56, "so today we're talking about");
+        assertSegment(segments.get(1), 2.56, 7.08, "binary search trees");
+        assertSegment(segments.get(2), 5.2, 7.6, "[Music]");
+        assertSegment(segments.get(3), 7.08, 0, "and why they stay balanced");
+    }
+
+    @Test
+    public void testReturnsNothingWithoutAnEnglishTrack() throws Exception {
+        assertTrue(client().fetchTranscript(NO_ENGLISH_ID).isEmpty());
+    }
+
+    @Test
+    public void testFailsWithoutAPlayerResponse() throws Exception {
+        try {
+            client().fetchTranscript(BROKEN_ID);
+            fail("A page without ytInitialPlayerResponse must not parse");
+        } catch (IOException expected) {
+            // the caller falls back to yt-dlp
+        }
+    }
+
+    @Test
+    public void testVideoServiceUsesTheNativeClient() throws Exception {
+        FakeYtDlp ytDlp = new FakeYtDlp();
+        VideoService service = videoService(ytDlp);
+
+        List<TranscriptSegment> segments = service.getTranscript("https://www.youtube.com/watch?v=" + VIDEO_ID);
+
+        assertEquals(4, segments.size());
+        assertEquals("binary search trees", segments.get(1).getText());
+        assertEquals(0, ytDlp.calls.get());
+        Map<String, Object> stats = service.getTranscriptBackendStats();
+        assertEquals(1L, ((Number) stats.get("nativeFetches")).longValue());
+        assertEquals(0L, ((Number) stats.get("nativeFallbacks")).longValue());
+        assertEquals(0L, ((Number) stats.get("ytDlpFetches")).longValue());
+    }
+
+    @Test
+    public void testVideoServiceFallsBackToYtDlp() throws Exception {
+        FakeYtDlp ytDlp = new FakeYtDlp();
+        VideoService service = videoService(ytDlp);
+
+        List<TranscriptSegment> segments = service.getTranscript("https://youtu.be/" + NO_ENGLISH_ID);
+
+        assertEquals(1, ytDlp.calls.get());
+        assertEquals(2, segments.size());
+        assertSegment(segments.get(0), 0, 3, "translated by yt-dlp");
+        assertSegment(segments.get(1), 3, 5.5, "from the french track");
+        Map<String, Object> stats = service.getTranscriptBackendStats();
+        assertEquals(1L, ((Number) stats.get("nativeFallbacks")).longValue());
+        assertEquals(1L, ((Number) stats.get("ytDlpFetches")).longValue());
+
+        // The second request is served from the cache
+        service.getTranscript("https://youtu.be/" + NO_ENGLISH_ID);
+        assertEquals(1, ytDlp.calls.get());
+    }
+
+    @Test
+    public void testCachedBundlesAreNotCountedAsYtDlpRuns() throws Exception {
+        FakeYtDlp ytDlp = new FakeYtDlp(false);
+        InFlightRequestRegistry inFlight = new InFlightRequestRegistry();
+        VideoService service = videoService(ytDlp, inFlight);
+
+        // Without subtitles nothing is cached as a transcript, but the bundle is
+        assertTrue(service.getTranscript("https://youtu.be/" + NO_ENGLISH_ID).isEmpty());
+        // The leader unregisters just after handing out its result; a request before that would coalesce
+        for (int i = 0; i < 100 && !Integer.valueOf(0).equals(inFlight.getStats().get("inFlight")); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(service.getTranscript("https://youtu.be/" + NO_ENGLISH_ID).isEmpty());
+
+        assertEquals(1, ytDlp.calls.get());
+        Map<String, Object> stats = service.getTranscriptBackendStats();
+        assertEquals(2L, ((Number) stats.get("nativeFallbacks")).longValue());
+        assertEquals(1L, ((Number) stats.get("ytDlpFetches")).longValue());
+    }
+
+    private static YouTubeCaptionClient client() {
+        return new YouTubeCaptionClient(HttpClient.newHttpClient(), baseUrl + "/", 10);
+    }
+
+    private static VideoService videoService(YtDlpExecutor ytDlp) throws IOException {
+        return videoService(ytDlp, new InFlightRequestRegistry());
+    }
+
+    private static VideoService videoService(YtDlpExecutor ytDlp, InFlightRequestRegistry inFlight) throws IOException {
+        Path cacheDir = Files.createTempDirectory("caption-client-test-cache");
+        Path indexDir = Files.createTempDirectory("caption-client-test-index");
+        return new VideoService(ytDlp, new TranscriptCache(cacheDir.toString(), 1 << 20, 100),
+                inFlight, client(), new TranscriptSearchIndex(indexDir.toString(), 16),
+                "native", 60, 8, 60);
+    }
+
+    private static void assertSegment(TranscriptSegment segment, double start, double end, String text) {
+        assertEquals(start, segment.getStartTime(), 1e-9);
+        assertEquals(end, segment.getEndTime(), 1e-9);
+        assertEquals(text, segment.getText());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String fixture(String name) throws IOException {
+        try (InputStream in = YouTubeCaptionClientTest.class.getResourceAsStream("/captions/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing test fixture: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes the info JSON and English json3 that yt-dlp would, into the directory of
+     * the <code>--output</code> template.
+     */
+    private static final class FakeYtDlp extends YtDlpExecutor {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final boolean writeSubtitles;
+
+        FakeYtDlp() {
+            this(true);
+        }
+
+        FakeYtDlp(boolean writeSubtitles) {
+            super("yt-dlp", 1, 10, 10);
+            this.writeSubtitles = writeSubtitles;
+        }
+
+        @Override
+        public Result run(List<String> args) throws IOException {
+            calls.incrementAndGet();
+            String videoId = args.get(0).contains(NO_ENGLISH_ID) ? NO_ENGLISH_ID : VIDEO_ID;
+            Path dir = Paths.get(args.get(args.indexOf("--output") + 1)).getParent();
+            Files.writeString(dir.resolve(videoId + ".info.json"), fixture(videoId + ".info.json"));
+            if (writeSubtitles) {
+                Files.writeString(dir.resolve(videoId + ".en.json3"), fixture(videoId + ".en.json3"));
+            }
+            return new Result(0, "", "");
+        }
+    }
+}